@@ -0,0 +1,65 @@
+package com.icesi.mio.benchmark.jmh;
+
+import com.icesi.mio.aggregate.ArcSpeedAggregator;
+import com.icesi.mio.distributed.PartialResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acumulación de muestras (PartialResult.addSample) y combinación de
+ * resultados parciales (ArcSpeedAggregator.merge) con el número de arcos
+ * del plan 241 y mayores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+
+    private static final int SAMPLES = 65_536;
+    private static final int PARTIALS = 8;
+
+    @Param({"7000", "100000"})
+    public int arcs;
+
+    private int[] arcIds;
+    private double[] speeds;
+    private PartialResult[] partials;
+
+    @Setup
+    public void setUp() {
+        Random rnd = new Random(3);
+        arcIds = new int[SAMPLES];
+        speeds = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            arcIds[i] = rnd.nextInt(arcs);
+            speeds[i] = 5 + rnd.nextDouble() * 50;
+        }
+        partials = new PartialResult[PARTIALS];
+        for (int p = 0; p < PARTIALS; p++) {
+            partials[p] = new PartialResult(p, arcs);
+            for (int i = 0; i < SAMPLES; i++) partials[p].addSample(arcIds[i], speeds[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public PartialResult addSample() {
+        PartialResult pr = new PartialResult(0, arcs);
+        for (int i = 0; i < SAMPLES; i++) pr.addSample(arcIds[i], speeds[i]);
+        return pr;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PARTIALS)
+    public void merge(Blackhole bh) {
+        ArcSpeedAggregator agg = new ArcSpeedAggregator();
+        for (PartialResult pr : partials) agg.merge(pr);
+        bh.consume(agg.getAggregated());
+    }
+}
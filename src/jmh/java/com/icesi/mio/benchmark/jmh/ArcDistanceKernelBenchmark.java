@@ -0,0 +1,123 @@
+package com.icesi.mio.benchmark.jmh;
+
+import com.icesi.mio.model.Arc;
+import com.icesi.mio.model.ArcGeometry;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.worker.ArcDistanceKernel;
+import com.icesi.mio.worker.ArcMatcher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kernel escalar contra el del Vector API (ArcDistanceKernel) sobre los grafos
+ * reales del plan 241: lineScan recorre todos los arcos de la ruta de cada
+ * consulta (arreglos largos), match usa el índice espacial (pocos candidatos
+ * por celda). Requiere compilar con -Pjmh,vector:
+ *   mvn -Pjmh,vector clean package -DskipTests
+ *   java -cp target/mio-graph-analysis-1.0-SNAPSHOT-jar-with-dependencies.jar org.openjdk.jmh.Main ArcDistanceKernelBenchmark
+ * Sin el kernel vectorial, kernel=vector mide el escalar (se avisa en el setup).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class ArcDistanceKernelBenchmark {
+
+    private static final int QUERIES = 4096;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    private ArcDistanceKernel k;
+    private ArcMatcher matcher;
+    private BenchmarkData.Queries queries;
+    // arcos de cada ruta empaquetados: la ruta de la consulta i ocupa lineStart[i]..lineEnd[i]
+    private double[] fromX, fromY, dx, dy, invLen2;
+    private int[] lineStart, lineEnd;
+    private double[] x, y;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map<Integer, RouteGraph> graphs = BenchmarkData.loadGraphs();
+        k = "vector".equals(kernel) ? ArcDistanceKernel.vector() : ArcDistanceKernel.scalar();
+        if (k == null) {
+            System.out.println("\n[ArcDistanceKernelBenchmark] kernel vectorial no disponible (compilar con -Pvector): se mide el escalar");
+            k = ArcDistanceKernel.scalar();
+        }
+        matcher = new ArcMatcher(graphs, k);
+        queries = BenchmarkData.randomQueries(graphs, QUERIES, 42L);
+        ArcGeometry g = matcher.getGeometry();
+
+        List<Integer> lineIds = new ArrayList<>(graphs.keySet());
+        int total = 0;
+        for (RouteGraph rg : graphs.values()) total += rg.getTotalArcs();
+        fromX = new double[total];
+        fromY = new double[total];
+        dx = new double[total];
+        dy = new double[total];
+        invLen2 = new double[total];
+        Map<Integer, int[]> ranges = new HashMap<>();
+        int n = 0;
+        for (int lineId : lineIds) {
+            RouteGraph rg = graphs.get(lineId);
+            int start = n;
+            for (List<Arc> arcs : List.of(rg.getArcsIda(), rg.getArcsVuelta())) {
+                for (Arc a : arcs) {
+                    fromX[n] = g.fromX(a.getId());
+                    fromY[n] = g.fromY(a.getId());
+                    dx[n] = g.dx(a.getId());
+                    dy[n] = g.dy(a.getId());
+                    invLen2[n++] = g.inverseLengthSquared(a.getId());
+                }
+            }
+            ranges.put(lineId, new int[]{start, n});
+        }
+        lineStart = new int[QUERIES];
+        lineEnd = new int[QUERIES];
+        x = new double[QUERIES];
+        y = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            int[] r = ranges.getOrDefault(queries.lineIds[i], new int[]{0, 0});
+            lineStart[i] = r[0];
+            lineEnd[i] = r[1];
+            x[i] = g.x(queries.lons[i]);
+            y[i] = g.y(queries.lats[i]);
+        }
+
+        // los dos kernels deben elegir el mismo arco
+        int differences = 0;
+        ArcDistanceKernel scalar = ArcDistanceKernel.scalar();
+        for (int i = 0; i < QUERIES; i++) {
+            if (k.nearest(fromX, fromY, dx, dy, invLen2, lineStart[i], lineEnd[i], x[i], y[i])
+                    != scalar.nearest(fromX, fromY, dx, dy, invLen2, lineStart[i], lineEnd[i], x[i], y[i])) {
+                differences++;
+            }
+        }
+        System.out.printf("%n[ArcDistanceKernelBenchmark] kernel=%s arcos=%d promedioPorRuta=%.1f diferenciasConEscalar=%d%n",
+                k.name(), total, (double) total / lineIds.size(), differences);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void lineScan(Blackhole bh) {
+        for (int i = 0; i < QUERIES; i++) {
+            bh.consume(k.nearest(fromX, fromY, dx, dy, invLen2, lineStart[i], lineEnd[i], x[i], y[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void match(Blackhole bh) {
+        for (int i = 0; i < QUERIES; i++) {
+            bh.consume(matcher.match(queries.lineIds[i], queries.lats[i], queries.lons[i]));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.icesi.mio.benchmark.jmh;
+
+import com.icesi.mio.model.ArcGeometry;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.worker.ArcMatcher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el recorrido lineal de ArcMatcher.matchArc contra el índice espacial
+ * (ArcMatcher.match) sobre los grafos reales. bruteForceProjected es el mismo
+ * recorrido con la geometría precalculada (ArcGeometry) en lugar de proyectar
+ * cada arco en cada llamada. Cada operación resuelve un lote de consultas; el
+ * resultado se reporta por consulta.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArcMatcherBenchmark {
+
+    private static final int QUERIES = 4096;
+
+    private Map<Integer, RouteGraph> graphs;
+    private ArcMatcher matcher;
+    private ArcGeometry geometry;
+    private BenchmarkData.Queries queries;
+
+    @Setup
+    public void setUp() throws Exception {
+        graphs = BenchmarkData.loadGraphs();
+        matcher = new ArcMatcher(graphs);
+        geometry = matcher.getGeometry();
+        queries = BenchmarkData.randomQueries(graphs, QUERIES, 42L);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void bruteForceScan(Blackhole bh) {
+        for (int i = 0; i < QUERIES; i++) {
+            bh.consume(ArcMatcher.matchArc(queries.lineIds[i], queries.lats[i], queries.lons[i], graphs));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void bruteForceProjected(Blackhole bh) {
+        for (int i = 0; i < QUERIES; i++) {
+            bh.consume(ArcMatcher.matchArc(queries.lineIds[i], queries.lats[i], queries.lons[i], graphs, geometry));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void spatialIndex(Blackhole bh) {
+        for (int i = 0; i < QUERIES; i++) {
+            bh.consume(matcher.match(queries.lineIds[i], queries.lats[i], queries.lons[i]));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.icesi.mio.benchmark.jmh;
+
+import com.icesi.mio.benchmark.DatagramGenerator;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.Arc;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Datos compartidos por los benchmarks JMH: grafos reales del plan 241
+ * (proyecto-mio/MIO/*-241.csv, ejecutar desde la raíz del repo) y puntos
+ * de consulta reproducibles alrededor de los arcos.
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public static Map<Integer, RouteGraph> loadGraphs() throws IOException {
+        String dataDir = System.getProperty("mio.dataDir", Constants.DEFAULT_DATA_DIR);
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        return gb.buildGraphs();
+    }
+
+    /**
+     * Genera n consultas (lineId, lat, lon) cerca de arcos reales: sobre el
+     * segmento con ruido GPS de hasta ~150 m, y un 10% de puntos lejanos.
+     */
+    public static Queries randomQueries(Map<Integer, RouteGraph> graphs, int n, long seed) {
+        Random rnd = new Random(seed);
+        List<RouteGraph> routes = new ArrayList<>(graphs.values());
+        Queries q = new Queries(n);
+        for (int i = 0; i < n; i++) {
+            RouteGraph rg = routes.get(rnd.nextInt(routes.size()));
+            List<Arc> arcs = new ArrayList<>(rg.getArcsIda());
+            arcs.addAll(rg.getArcsVuelta());
+            Arc a = arcs.get(rnd.nextInt(arcs.size()));
+            double t = rnd.nextDouble();
+            double lat = a.getFromStop().getDecimalLat() + t * (a.getToStop().getDecimalLat() - a.getFromStop().getDecimalLat());
+            double lon = a.getFromStop().getDecimalLong() + t * (a.getToStop().getDecimalLong() - a.getFromStop().getDecimalLong());
+            double noise = rnd.nextInt(10) == 0 ? 0.02 : 0.0027;
+            q.lineIds[i] = rg.getLine().getLineId();
+            q.lats[i] = lat + (rnd.nextDouble() - 0.5) * noise;
+            q.lons[i] = lon + (rnd.nextDouble() - 0.5) * noise;
+        }
+        return q;
+    }
+
+    /**
+     * Datagramas sintéticos en el formato real de 12 columnas (DatagramGenerator),
+     * con ~1% de filas dañadas.
+     */
+    public static String syntheticDatagrams(Map<Integer, RouteGraph> graphs, int rows, int buses, long seed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows * 96);
+        try {
+            new DatagramGenerator(graphs, seed).buses(buses).malformedRate(0.01).generate(out, rows);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    public static Path writeSyntheticDatagrams(Map<Integer, RouteGraph> graphs, int rows, int buses, long seed) throws IOException {
+        Path file = Files.createTempFile("mio-jmh-datagrams", ".csv");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, syntheticDatagrams(graphs, rows, buses, seed), StandardCharsets.US_ASCII);
+        return file;
+    }
+
+    public static final class Queries {
+        public final int[] lineIds;
+        public final double[] lats;
+        public final double[] lons;
+
+        Queries(int n) {
+            this.lineIds = new int[n];
+            this.lats = new double[n];
+            this.lons = new double[n];
+        }
+
+        public int size() {
+            return lineIds.length;
+        }
+    }
+}
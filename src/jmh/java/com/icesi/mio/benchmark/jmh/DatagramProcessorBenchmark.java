@@ -0,0 +1,57 @@
+package com.icesi.mio.benchmark.jmh;
+
+import com.icesi.mio.benchmark.SamplingPartitionManager;
+import com.icesi.mio.distributed.ColumnarDatagramPartition;
+import com.icesi.mio.distributed.ColumnarPartitionManager;
+import com.icesi.mio.distributed.DatagramPartition;
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.distributed.PartitionKey;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.DatagramProcessor;
+import com.icesi.mio.worker.ScanOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Procesamiento completo de una partición ya cargada (agrupar por bus, ordenar,
+ * emparejar, haversine, match y acumulación): versión String[] contra columnar.
+ * Una operación = una partición de `rows` datagramas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatagramProcessorBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private ScanOptions options;
+    private DatagramPartition partition;
+    private ColumnarDatagramPartition columnar;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map<Integer, RouteGraph> graphs = BenchmarkData.loadGraphs();
+        options = new ScanOptions(new ArcMatcher(graphs));
+        Path csv = BenchmarkData.writeSyntheticDatagrams(graphs, rows, 200, 7L);
+        partition = new SamplingPartitionManager(1, rows).createPartitions(csv.toString()).get(0);
+        columnar = new ColumnarPartitionManager(1, PartitionKey.BUS_ID).createPartitions(csv.toString()).get(0);
+    }
+
+    @Benchmark
+    public PartialResult stringRows() {
+        return new DatagramProcessor(partition, options).process();
+    }
+
+    @Benchmark
+    public PartialResult columnarRows() {
+        return DatagramProcessor.processColumnar(columnar, options);
+    }
+}
@@ -0,0 +1,84 @@
+package com.icesi.mio.benchmark.jmh;
+
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.distributed.PartialResultCodec;
+import com.icesi.mio.parser.ByteLineReader;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.RangeScan;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codificación y decodificación de un PartialResult real (datagramas
+ * sintéticos sobre el grafo 241), con y sin compresión LZ4. El tamaño de cada
+ * variante se imprime en el setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PartialResultCodecBenchmark {
+
+    @Param({"200000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    private PartialResult partial;
+    private byte[] frame;
+    private ByteBuffer chunk;
+
+    @Setup
+    public void setUp() throws IOException {
+        var graphs = BenchmarkData.loadGraphs();
+        Path csv = BenchmarkData.writeSyntheticDatagrams(graphs, rows, 1000, 5L);
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            RangeScan scan = new RangeScan(0, false, new ArcMatcher(graphs));
+            scan.scan(new ByteLineReader(ch, 1 << 20));
+            partial = scan.getPartial();
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+        frame = PartialResultCodec.encode(partial, compress);
+        chunk = ByteBuffer.allocate(4096);
+        System.out.println("arcos con muestras=" + partial.getArcStats().size() + " compress=" + compress + " bytes=" + frame.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return PartialResultCodec.encode(partial, compress);
+    }
+
+    @Benchmark
+    public PartialResult decode() throws IOException {
+        return PartialResultCodec.decode(ByteBuffer.wrap(frame));
+    }
+
+    /**
+     * Ida y vuelta por pedazos de 4 KB, como por un socket.
+     */
+    @Benchmark
+    public PartialResult roundTripStreaming() throws IOException {
+        PartialResultCodec.Encoder enc = PartialResultCodec.encoder(partial, compress);
+        PartialResultCodec.Decoder dec = PartialResultCodec.decoder();
+        PartialResult out = null;
+        boolean done = false;
+        while (!done) {
+            chunk.clear();
+            done = enc.encode(chunk);
+            chunk.flip();
+            out = dec.decode(chunk);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,127 @@
+package com.icesi.mio.benchmark.jmh;
+
+import com.icesi.mio.aggregate.ArcSpeedAggregator;
+import com.icesi.mio.aggregate.ArcSpeedQuantiles;
+import com.icesi.mio.distributed.PartialResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de los cuantiles por arco (ArcSpeedQuantiles) frente a sólo (sum, count)
+ * y frente a guardar todas las muestras y ordenarlas (cuantiles exactos).
+ * En el setup se imprime el error relativo máximo de p50/p85/p95 contra los
+ * cuantiles exactos de la misma muestra.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuantileSketchBenchmark {
+
+    private static final int SAMPLES = 65_536;
+    private static final int PARTIALS = 8;
+    private static final double[] QUANTILES = {0.5, 0.85, 0.95};
+
+    @Param({"7000"})
+    public int arcs;
+
+    private int[] arcIds;
+    private double[] speeds;
+    private PartialResult[] partials;
+    // acumuladores ya creados: se mide el lazo caliente, no la asignación de los arreglos por arco
+    private PartialResult plain;
+    private PartialResult sketched;
+
+    @Setup
+    public void setUp() {
+        Random rnd = new Random(3);
+        arcIds = new int[SAMPLES];
+        speeds = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            // pocos arcos concentran la mayoría de las muestras, como en los datos reales
+            arcIds[i] = rnd.nextInt(4) == 0 ? rnd.nextInt(arcs) : rnd.nextInt(Math.max(1, arcs / 50));
+            int kind = rnd.nextInt(20);
+            speeds[i] = kind == 0 ? 0.2 + rnd.nextDouble() * 2        // detenido
+                    : kind == 1 ? 120 + rnd.nextDouble() * 79          // salto de GPS
+                    : Math.exp(Math.log(22) + rnd.nextGaussian() * 0.4);
+        }
+        partials = new PartialResult[PARTIALS];
+        for (int p = 0; p < PARTIALS; p++) {
+            partials[p] = new PartialResult(p, arcs).withQuantiles(new ArcSpeedQuantiles(arcs));
+            for (int i = 0; i < SAMPLES; i++) partials[p].addSample(arcIds[i], speeds[i]);
+        }
+        reportAccuracy();
+    }
+
+    @Setup(Level.Iteration)
+    public void freshAccumulators() {
+        plain = new PartialResult(0, arcs);
+        sketched = new PartialResult(0, arcs).withQuantiles(new ArcSpeedQuantiles(arcs));
+        for (int i = 0; i < SAMPLES; i++) sketched.addSample(arcIds[i], speeds[i]);
+    }
+
+    private void reportAccuracy() {
+        ArcSpeedQuantiles sketch = partials[0].getQuantiles();
+        double[][] exact = collect();
+        double[] maxError = new double[QUANTILES.length];
+        for (int a = 0; a < arcs; a++) {
+            double[] sorted = exact[a];
+            if (sorted.length == 0) continue;
+            for (int k = 0; k < QUANTILES.length; k++) {
+                double e = sorted[(int) Math.max(1, Math.ceil(QUANTILES[k] * sorted.length)) - 1];
+                maxError[k] = Math.max(maxError[k], Math.abs(sketch.quantile(a, QUANTILES[k]) - e) / e);
+            }
+        }
+        System.out.printf("%n[QuantileSketchBenchmark] error relativo máximo p50=%.4f p85=%.4f p95=%.4f (cota %.4f) arcos=%d%n",
+                maxError[0], maxError[1], maxError[2], ArcSpeedQuantiles.RELATIVE_ERROR, sketch.size());
+    }
+
+    // todas las muestras por arco, ordenadas
+    private double[][] collect() {
+        int[] n = new int[arcs];
+        for (int a : arcIds) n[a]++;
+        double[][] byArc = new double[arcs][];
+        for (int a = 0; a < arcs; a++) byArc[a] = new double[n[a]];
+        Arrays.fill(n, 0);
+        for (int i = 0; i < SAMPLES; i++) byArc[arcIds[i]][n[arcIds[i]]++] = speeds[i];
+        for (double[] s : byArc) Arrays.sort(s);
+        return byArc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public PartialResult sumCountOnly() {
+        for (int i = 0; i < SAMPLES; i++) plain.addSample(arcIds[i], speeds[i]);
+        return plain;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public PartialResult withQuantileSketch() {
+        for (int i = 0; i < SAMPLES; i++) sketched.addSample(arcIds[i], speeds[i]);
+        return sketched;
+    }
+
+    /**
+     * Referencia: guardar las muestras y ordenarlas por arco.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double[][] exactQuantiles() {
+        return collect();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PARTIALS)
+    public void mergeSketches(Blackhole bh) {
+        ArcSpeedAggregator agg = new ArcSpeedAggregator();
+        for (PartialResult pr : partials) agg.merge(pr);
+        bh.consume(agg.getQuantiles());
+    }
+}
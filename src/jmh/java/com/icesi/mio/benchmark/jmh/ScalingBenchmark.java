@@ -0,0 +1,60 @@
+package com.icesi.mio.benchmark.jmh;
+
+import com.icesi.mio.distributed.ColumnarPartitionManager;
+import com.icesi.mio.distributed.DistributedComputeCoordinator;
+import com.icesi.mio.distributed.PartitionKey;
+import com.icesi.mio.distributed.StreamingPartitionManager;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Curvas de escalamiento de extremo a extremo (archivo en page cache -> promedios
+ * por arco) variando el número de hilos/particiones. Comparar los puntajes de
+ * cada `threads` contra threads=1 da el speedup de cada modo.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScalingBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"500000"})
+    public int rows;
+
+    private Map<Integer, RouteGraph> graphs;
+    private String csv;
+
+    @Setup
+    public void setUp() throws Exception {
+        graphs = BenchmarkData.loadGraphs();
+        Path file = BenchmarkData.writeSyntheticDatagrams(graphs, rows, 500, 5L);
+        csv = file.toString();
+    }
+
+    @Benchmark
+    public Map<Long, Double> streamingRanges() throws Exception {
+        return new StreamingFullFileProcessor(csv, graphs).processParallel(threads);
+    }
+
+    @Benchmark
+    public Map<Long, Double> partitionQueues() throws Exception {
+        StreamingPartitionManager spm = new StreamingPartitionManager(threads, 4096, 8, PartitionKey.BUS_ID);
+        return new DistributedComputeCoordinator(spm, 600).runJob(csv, graphs);
+    }
+
+    @Benchmark
+    public Map<Long, Double> columnarPartitions() throws Exception {
+        ColumnarPartitionManager cpm = new ColumnarPartitionManager(threads, PartitionKey.BUS_ID);
+        return new DistributedComputeCoordinator(cpm, threads, 600).runJob(csv, graphs);
+    }
+}
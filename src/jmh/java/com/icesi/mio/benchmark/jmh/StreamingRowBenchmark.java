@@ -0,0 +1,80 @@
+package com.icesi.mio.benchmark.jmh;
+
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.parser.DatagramTokenizer;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.BusPairAccumulator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manejo por fila de StreamingFullFileProcessor sin E/S: las líneas ya están
+ * en un ByteBuffer y se mide tokenizar sola y tokenizar + emparejar + match.
+ * El resultado se reporta por fila; con -prof gc, gc.alloc.rate.norm debe ser ~0.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamingRowBenchmark {
+
+    private static final int ROWS = 50_000;
+
+    private ArcMatcher matcher;
+    private ByteBuffer buffer;
+    private int[] lineStart;
+    private int[] lineEnd;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map<Integer, RouteGraph> graphs = BenchmarkData.loadGraphs();
+        matcher = new ArcMatcher(graphs);
+        byte[] bytes = BenchmarkData.syntheticDatagrams(graphs, ROWS, 200, 11L).getBytes(StandardCharsets.UTF_8);
+        buffer = ByteBuffer.wrap(bytes);
+
+        int n = 0;
+        for (byte b : bytes) if (b == '\n') n++;
+        lineStart = new int[n];
+        lineEnd = new int[n];
+        int start = 0;
+        for (int i = 0, k = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                lineStart[k] = start;
+                lineEnd[k++] = i;
+                start = i + 1;
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void tokenize(Blackhole bh) {
+        DatagramTokenizer tokenizer = new DatagramTokenizer();
+        DatagramRow row = new DatagramRow();
+        for (int i = 0; i < lineStart.length; i++) {
+            bh.consume(tokenizer.parse(buffer, lineStart[i], lineEnd[i], row));
+            bh.consume(row.epochSecond);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public PartialResult tokenizeAndPair() {
+        DatagramTokenizer tokenizer = new DatagramTokenizer();
+        DatagramRow row = new DatagramRow();
+        BusPairAccumulator acc = new BusPairAccumulator(matcher, new PartialResult(0, matcher.getArcCount()));
+        for (int i = 0; i < lineStart.length; i++) {
+            if (tokenizer.parse(buffer, lineStart[i], lineEnd[i], row)) acc.accept(row);
+        }
+        return acc.getResult();
+    }
+}
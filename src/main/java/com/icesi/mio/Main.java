@@ -1,20 +1,30 @@
 package com.icesi.mio;
 
+import com.icesi.mio.aggregate.ArcSpeedProfile;
+import com.icesi.mio.aggregate.ArcSpeedQuantiles;
 import com.icesi.mio.graph.GraphBuilder;
 import com.icesi.mio.graph.GraphPrinter;
+import com.icesi.mio.live.FileTailSource;
+import com.icesi.mio.live.LiveSnapshot;
+import com.icesi.mio.live.LiveSpeedEngine;
 import com.icesi.mio.model.Line;
 import com.icesi.mio.model.LineStop;
 import com.icesi.mio.model.RouteGraph;
 import com.icesi.mio.model.Stop;
+import com.icesi.mio.parser.DatagramColumnFile;
+import com.icesi.mio.parser.DatagramQuery;
 import com.icesi.mio.parser.LineParser;
 import com.icesi.mio.parser.LineStopParser;
 import com.icesi.mio.parser.StopParser;
 import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.ArcMatcher;
 import com.icesi.mio.worker.StreamingFullFileProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +47,9 @@ public class Main {
             String lineStopsFile = dataDir + Constants.LINESTOPS_FILE;
             String historicalDataFile = dataDir + "datagrams4history.csv";
             String streamingDataFile = dataDir + "datagrams4streaming.csv";
+            // conversión binaria del histórico (tools.ConvertDatagrams); se usa si existe y
+            // corresponde al CSV actual (mismo tamaño y fecha de modificación)
+            String historicalColumnFile = System.getProperty("mio.columns", dataDir + "datagrams4history.mioc");
 
             // Verificar que existan los archivos básicos
             validateFiles(linesFile, stopsFile, lineStopsFile);
@@ -56,32 +69,97 @@ public class Main {
             GraphBuilder graphBuilder = new GraphBuilder(lines, stops, lineStops);
             Map<Integer, RouteGraph> graphs = graphBuilder.buildGraphs();
             graphBuilder.printStatistics(graphs);
+            // índice, tabla y geometría de los arcos, compartidos por las fases 3 y 4
+            ArcMatcher matcher = new ArcMatcher(graphs, graphBuilder.getArcTable(), graphBuilder.getArcGeometry());
 
             // 3. Calcular velocidades promedio usando datos históricos
             Map<Long, Double> historicalSpeeds = new HashMap<>();
-            if (new File(historicalDataFile).exists()) {
+            // -Dmio.checkpoint=archivo: pasada reanudable/incremental sobre el CSV (secuencial), con un
+            // punto de control cada -Dmio.checkpointEveryMB MB (1024 por defecto)
+            String checkpoint = System.getProperty("mio.checkpoint");
+            // -Dmio.ranges=N: número de rangos procesados en paralelo (1 = lector secuencial)
+            int ranges = Integer.getInteger("mio.ranges", Runtime.getRuntime().availableProcessors());
+            // -Dmio.query.lines / buses / from / to: sólo esas líneas, buses o fechas (ver DatagramQuery)
+            DatagramQuery query = DatagramQuery.fromSystemProperties();
+            if (!query.isAll()) logger.info("Filtro: {}", query);
+            // -Dmio.profiles=WEEK|WEEKDAY_WEEKEND|DAY: perfiles por arco y franja de
+            // -Dmio.profiles.slotMinutes minutos (15 por defecto), exportados a output/
+            String profiles = System.getProperty("mio.profiles");
+            // -Dmio.quantiles=true: mediana, p85 y p95 por arco, exportados a output/
+            boolean quantiles = Boolean.getBoolean("mio.quantiles");
+            // -Dmio.matcher=trajectory: arcos según la trayectoria de cada bus (ArcMatcher.matchAlong);
+            // -Dmio.matcher=route: además, velocidad a lo largo de la ruta (ArcMatcher.alongRoute)
+            String matcherMode = System.getProperty("mio.matcher", "nearest").trim().toLowerCase();
+            // -Dmio.maxGapSeconds=N: no emparejar datagramas de un bus separados por más de N segundos
+            // (BusPairAccumulator.DEFAULT_MAX_GAP_SECONDS por defecto, en todos los modos)
+            Long maxGapSeconds = Long.getLong("mio.maxGapSeconds");
+            StreamingFullFileProcessor historicalProcessor = null;
+            if (checkpoint == null && isCurrentColumnFile(historicalColumnFile, historicalDataFile)) {
+                logger.info("\n=== FASE 3: CÁLCULO DE VELOCIDADES PROMEDIO (DATOS HISTÓRICOS) ===");
+                logger.info("Procesando archivo columnar: {}", historicalColumnFile);
+                historicalProcessor = newHistoricalProcessor(historicalColumnFile, matcher, profiles, quantiles, matcherMode, maxGapSeconds)
+                        .withQuery(query);
+                historicalSpeeds = historicalProcessor.processColumnFile(Path.of(historicalColumnFile), Math.max(1, ranges));
+                logger.info("Velocidades calculadas para {} arcos", historicalSpeeds.size());
+            } else if (new File(historicalDataFile).exists()) {
                 logger.info("\n=== FASE 3: CÁLCULO DE VELOCIDADES PROMEDIO (DATOS HISTÓRICOS) ===");
                 logger.info("Procesando archivo: {}", historicalDataFile);
-                StreamingFullFileProcessor historicalProcessor = new StreamingFullFileProcessor(historicalDataFile, graphs);
-                historicalSpeeds = historicalProcessor.process();
+                historicalProcessor = newHistoricalProcessor(historicalDataFile, matcher, profiles, quantiles, matcherMode, maxGapSeconds);
+                if (checkpoint != null) {
+                    if (!query.isAll()) logger.warn("Los puntos de control guardan el estado completo: se ignora el filtro");
+                    long everyBytes = Long.getLong("mio.checkpointEveryMB", 1024L) << 20;
+                    historicalSpeeds = historicalProcessor.processWithCheckpoints(Path.of(checkpoint), everyBytes);
+                } else if (ranges > 1 && !matcherMode.equals("nearest")) {
+                    // los rangos del CSV no conocen el último arco de cada bus al empezar
+                    logger.warn("-Dmio.matcher={} no admite rangos paralelos sobre el CSV: pasada secuencial", matcherMode);
+                    historicalSpeeds = historicalProcessor.withQuery(query).process();
+                } else {
+                    historicalProcessor.withQuery(query);
+                    historicalSpeeds = ranges > 1
+                            ? historicalProcessor.processParallel(ranges)
+                            : historicalProcessor.process();
+                }
                 logger.info("Velocidades calculadas para {} arcos", historicalSpeeds.size());
             } else {
                 logger.warn("Archivo de datos históricos no encontrado: {}", historicalDataFile);
             }
+            if (historicalProcessor != null && historicalProcessor.getProfile() != null) {
+                ArcSpeedProfile profile = historicalProcessor.getProfile();
+                Path out = Path.of(Constants.OUTPUT_DIR, "arc_speed_profiles.csv");
+                profile.writeCsv(out);
+                logger.info("Perfiles por franja ({} slots de {} s) para {} arcos exportados a {}",
+                        profile.slotCount(), profile.getSlotSeconds(), profile.size(), out);
+            }
+            if (historicalProcessor != null && historicalProcessor.getQuantiles() != null) {
+                ArcSpeedQuantiles q = historicalProcessor.getQuantiles();
+                Path out = Path.of(Constants.OUTPUT_DIR, "arc_speed_quantiles.csv");
+                q.writeCsv(out);
+                logger.info("Cuantiles (error relativo <= {}) para {} arcos exportados a {}",
+                        ArcSpeedQuantiles.RELATIVE_ERROR, q.size(), out);
+            }
+            if ((profiles != null || quantiles) && checkpoint != null) {
+                logger.warn("Los puntos de control no guardan perfiles ni cuantiles: no se exportan");
+            }
 
             // 4. (BONUS) Actualizar velocidades con datos de streaming
-            Map<Long, Double> streamingSpeeds = new HashMap<>();
             if (new File(streamingDataFile).exists()) {
                 logger.info("\n=== FASE 4: ACTUALIZACIÓN CON DATOS DE STREAMING (BONUS) ===");
                 logger.info("Procesando archivo: {}", streamingDataFile);
-                StreamingFullFileProcessor streamingProcessor = new StreamingFullFileProcessor(streamingDataFile, graphs);
-                streamingSpeeds = streamingProcessor.process();
-                logger.info("Velocidades actualizadas para {} arcos", streamingSpeeds.size());
-                
-                // Combinar resultados: streaming tiene prioridad sobre históricos
-                for (Map.Entry<Long, Double> entry : streamingSpeeds.entrySet()) {
-                    historicalSpeeds.put(entry.getKey(), entry.getValue());
-                }
+                // Se reproduce el archivo por el motor en vivo: ventana de los últimos
+                // -Dmio.live.windowSeconds (3600 por defecto) combinada con el histórico como prior
+                int window = Integer.getInteger("mio.live.windowSeconds", 3600);
+                ArcMatcher liveMatcher = matcher;
+                if (matcherMode.equals("trajectory")) liveMatcher = liveMatcher.tracking();
+                else if (matcherMode.equals("route")) liveMatcher = liveMatcher.alongRoute();
+                LiveSpeedEngine engine = new LiveSpeedEngine(liveMatcher, historicalSpeeds)
+                        .windows(window);
+                if (maxGapSeconds != null) engine.maxGapSeconds(maxGapSeconds);
+                new FileTailSource(Path.of(streamingDataFile), engine, false).run();
+                LiveSnapshot snapshot = engine.snapshot(System.currentTimeMillis());
+                logger.info("Velocidades actualizadas para {} arcos (tardíos descartados: {})",
+                        snapshot.window(window).size(), engine.getLate());
+
+                historicalSpeeds = snapshot.speeds(window);
                 logger.info("Total de arcos con velocidad: {}", historicalSpeeds.size());
             } else {
                 logger.warn("Archivo de datos de streaming no encontrado: {}", streamingDataFile);
@@ -103,6 +181,41 @@ public class Main {
         }
     }
 
+    private static StreamingFullFileProcessor newHistoricalProcessor(String file, ArcMatcher matcher,
+                                                                     String profiles, boolean quantiles, String matcherMode,
+                                                                     Long maxGapSeconds) {
+        StreamingFullFileProcessor processor = new StreamingFullFileProcessor(file, matcher);
+        if (matcherMode.equals("trajectory")) processor.withTrajectoryMatching();
+        else if (matcherMode.equals("route")) processor.withRouteDistance();
+        if (maxGapSeconds != null) processor.withMaxGap(maxGapSeconds);
+        if (quantiles) processor.withQuantiles();
+        if (profiles != null) {
+            int slotMinutes = Integer.getInteger("mio.profiles.slotMinutes", 15);
+            processor.withProfiles(slotMinutes * 60, ArcSpeedProfile.Cycle.valueOf(profiles.trim().toUpperCase()));
+        }
+        return processor;
+    }
+
+    /**
+     * true si columnFile existe, se puede abrir y es la conversión del CSV
+     * actual (si el CSV no está, se usa el archivo columnar tal cual)
+     */
+    private static boolean isCurrentColumnFile(String columnFile, String csvFile) {
+        if (!new File(columnFile).exists()) return false;
+        try {
+            DatagramColumnFile file = DatagramColumnFile.open(Path.of(columnFile));
+            if (new File(csvFile).exists() && !file.isConversionOf(Path.of(csvFile))) {
+                logger.warn("{} no corresponde a la versión actual de {}: se procesa el CSV "
+                        + "(volver a convertirlo con tools.ConvertDatagrams)", columnFile, csvFile);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            logger.warn("No se pudo abrir {}: se procesa el CSV ({})", columnFile, e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Valida que existan los archivos necesarios
      */
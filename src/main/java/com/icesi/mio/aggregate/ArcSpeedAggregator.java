@@ -2,31 +2,58 @@ package com.icesi.mio.aggregate;
 
 import com.icesi.mio.distributed.PartialResult;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Agrega resultados parciales (sum/count) y produce promedios finales.
+ * Agrega resultados parciales (sum/count) y produce promedios finales (sum/peso, ver DenseArcStats).
+ * Las llaves son los ordinales densos de arco (Arc.getId()). Si los parciales
+ * traen perfiles por franja (ArcSpeedProfile) o cuantiles (ArcSpeedQuantiles),
+ * también se combinan.
  */
 public class ArcSpeedAggregator {
-    private final ConcurrentHashMap<Long, PartialResult.SumCount> aggregated = new ConcurrentHashMap<>();
+    private final DenseArcStats aggregated = new DenseArcStats(0);
+    private ArcSpeedProfile profile;
+    private ArcSpeedQuantiles quantiles;
 
-    public void merge(PartialResult partial) {
-        for (Map.Entry<Long, PartialResult.SumCount> e : partial.getArcStats().entrySet()) {
-            aggregated.merge(e.getKey(), e.getValue(), (a, b) -> {
-                a.sum += b.sum; a.count += b.count; return a;
-            });
+    public synchronized void merge(PartialResult partial) {
+        aggregated.merge(partial.getArcStats());
+        ArcSpeedProfile p = partial.getProfile();
+        if (p != null) {
+            if (profile == null) profile = p.emptyCopy();
+            profile.merge(p);
         }
+        ArcSpeedQuantiles q = partial.getQuantiles();
+        if (q != null) {
+            if (quantiles == null) quantiles = new ArcSpeedQuantiles(q.arcCount());
+            quantiles.merge(q);
+        }
+    }
+
+    public synchronized void merge(DenseArcStats stats) {
+        aggregated.merge(stats);
     }
 
-    public ConcurrentHashMap<Long, Double> finalizeAverages() {
+    public synchronized DenseArcStats getAggregated() {
+        return aggregated;
+    }
+
+    /**
+     * Perfiles por franja agregados, o null si ningún parcial los tenía.
+     */
+    public synchronized ArcSpeedProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Cuantiles agregados, o null si ningún parcial los tenía.
+     */
+    public synchronized ArcSpeedQuantiles getQuantiles() {
+        return quantiles;
+    }
+
+    public synchronized ConcurrentHashMap<Long, Double> finalizeAverages() {
         ConcurrentHashMap<Long, Double> res = new ConcurrentHashMap<>();
-        for (Map.Entry<Long, PartialResult.SumCount> e : aggregated.entrySet()) {
-            PartialResult.SumCount sc = e.getValue();
-            double avg = sc.count == 0 ? 0.0 : sc.sum / sc.count;
-            res.put(e.getKey(), avg);
-        }
+        aggregated.forEach((arcId, sum, count) -> res.put((long) arcId, sum / aggregated.getWeight(arcId)));
         return res;
     }
 }
-
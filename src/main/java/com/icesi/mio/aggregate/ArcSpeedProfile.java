@@ -0,0 +1,285 @@
+package com.icesi.mio.aggregate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Perfil de velocidad por arco y franja horaria: (sum, count) por ordinal denso
+ * de arco y por slot del ciclo (por defecto 7 días x 96 franjas de 15 minutos =
+ * 672 slots), según el datagramDate de la muestra.
+ *
+ * Cada arco guarda sus slots en un double[] / int[] propios, creados con su
+ * primera muestra: un arco sin muestras no ocupa memoria, y el peor caso es
+ * arcCount * slotCount * 12 bytes (~56 MB para 7.000 arcos y 672 slots).
+ * Las muestras ponderadas (ver DenseArcStats) se promedian con la suma de
+ * pesos, que se guarda en otro double[] sólo para los arcos que las tienen.
+ *
+ * No es thread-safe.
+ */
+public final class ArcSpeedProfile {
+
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    /**
+     * Agrupación de los días del ciclo. Lunes = 0.
+     */
+    public enum Cycle {
+        /** Un grupo por día de la semana. */
+        WEEK(new String[]{"lunes", "martes", "miercoles", "jueves", "viernes", "sabado", "domingo"}),
+        /** Lunes a viernes / sábado y domingo. */
+        WEEKDAY_WEEKEND(new String[]{"habil", "fin_de_semana"}),
+        /** Todos los días juntos. */
+        DAY(new String[]{"todos"});
+
+        private final String[] labels;
+
+        Cycle(String[] labels) {
+            this.labels = labels;
+        }
+
+        public int groups() {
+            return labels.length;
+        }
+
+        public String label(int group) {
+            return labels[group];
+        }
+
+        int group(int dayOfWeek) {
+            switch (this) {
+                case WEEK: return dayOfWeek;
+                case WEEKDAY_WEEKEND: return dayOfWeek < 5 ? 0 : 1;
+                default: return 0;
+            }
+        }
+    }
+
+    /**
+     * Visitante de (arco, slot) con al menos una muestra.
+     */
+    @FunctionalInterface
+    public interface SlotConsumer {
+        void accept(int arcId, int slot, double sum, long count);
+    }
+
+    private final int slotSeconds;
+    private final Cycle cycle;
+    private final int slotsPerDay;
+    private final int slotCount;
+    private double[][] sums;
+    private int[][] counts;
+    // null = todas las muestras del arco pesan 1 (peso == count)
+    private double[][] weights;
+
+    public ArcSpeedProfile(int arcCount, int slotSeconds, Cycle cycle) {
+        if (slotSeconds <= 0 || SECONDS_PER_DAY % slotSeconds != 0) {
+            throw new IllegalArgumentException("slotSeconds debe dividir el día: " + slotSeconds);
+        }
+        this.slotSeconds = slotSeconds;
+        this.cycle = cycle;
+        this.slotsPerDay = (int) (SECONDS_PER_DAY / slotSeconds);
+        this.slotCount = slotsPerDay * cycle.groups();
+        this.sums = new double[arcCount][];
+        this.counts = new int[arcCount][];
+        this.weights = new double[arcCount][];
+    }
+
+    /**
+     * 7 días x franjas de 15 minutos.
+     */
+    public static ArcSpeedProfile weekly(int arcCount) {
+        return new ArcSpeedProfile(arcCount, 900, Cycle.WEEK);
+    }
+
+    /**
+     * Perfil vacío con el mismo ciclo y franjas (por ejemplo, uno por partición).
+     */
+    public ArcSpeedProfile emptyCopy() {
+        return new ArcSpeedProfile(sums.length, slotSeconds, cycle);
+    }
+
+    /**
+     * Slot del ciclo al que pertenece epochSecond (datagramDate, hora local como epoch UTC).
+     */
+    public int slotOf(long epochSecond) {
+        long day = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) (epochSecond - day * SECONDS_PER_DAY);
+        // 1970-01-01 fue jueves
+        int dayOfWeek = (int) Math.floorMod(day + 3, 7L);
+        return cycle.group(dayOfWeek) * slotsPerDay + secondOfDay / slotSeconds;
+    }
+
+    public void add(int arcId, double value, long epochSecond) {
+        add(arcId, value, epochSecond, 1.0);
+    }
+
+    /**
+     * Muestra que pesa weight en el promedio del slot (ver DenseArcStats.addWeighted).
+     */
+    public void add(int arcId, double value, long epochSecond, double weight) {
+        if (arcId >= sums.length) ensureArcCount(arcId + 1);
+        double[] s = sums[arcId];
+        if (s == null) {
+            s = sums[arcId] = new double[slotCount];
+            counts[arcId] = new int[slotCount];
+        }
+        int slot = slotOf(epochSecond);
+        s[slot] += value * weight;
+        if (weight != 1.0 || weights[arcId] != null) weightsOf(arcId)[slot] += weight;
+        counts[arcId][slot]++;
+    }
+
+    // pesos del arco, creados a partir de los count la primera vez
+    private double[] weightsOf(int arcId) {
+        double[] w = weights[arcId];
+        if (w == null) {
+            w = weights[arcId] = new double[slotCount];
+            int[] c = counts[arcId];
+            for (int k = 0; k < slotCount; k++) w[k] = c[k];
+        }
+        return w;
+    }
+
+    /**
+     * Suma todos los acumuladores de other (mismo ciclo y franjas) en éste.
+     */
+    public void merge(ArcSpeedProfile other) {
+        if (other.slotSeconds != slotSeconds || other.cycle != cycle) {
+            throw new IllegalArgumentException("Perfiles incompatibles: " + cycle + "/" + slotSeconds
+                    + " vs " + other.cycle + "/" + other.slotSeconds);
+        }
+        ensureArcCount(other.sums.length);
+        for (int a = 0; a < other.sums.length; a++) {
+            double[] os = other.sums[a];
+            if (os == null) continue;
+            if (sums[a] == null) {
+                sums[a] = os.clone();
+                counts[a] = other.counts[a].clone();
+                if (other.weights[a] != null) weights[a] = other.weights[a].clone();
+                continue;
+            }
+            if (other.weights[a] != null || weights[a] != null) {
+                double[] w = weightsOf(a);
+                for (int k = 0; k < slotCount; k++) w[k] += other.getWeight(a, k);
+            }
+            double[] s = sums[a];
+            int[] c = counts[a];
+            int[] oc = other.counts[a];
+            for (int k = 0; k < slotCount; k++) {
+                s[k] += os[k];
+                c[k] += oc[k];
+            }
+        }
+    }
+
+    public int getSlotSeconds() {
+        return slotSeconds;
+    }
+
+    public Cycle getCycle() {
+        return cycle;
+    }
+
+    public int slotCount() {
+        return slotCount;
+    }
+
+    public int arcCount() {
+        return sums.length;
+    }
+
+    public double getSum(int arcId, int slot) {
+        return arcId < sums.length && sums[arcId] != null ? sums[arcId][slot] : 0.0;
+    }
+
+    public long getCount(int arcId, int slot) {
+        return arcId < counts.length && counts[arcId] != null ? counts[arcId][slot] : 0L;
+    }
+
+    public double getWeight(int arcId, int slot) {
+        if (arcId < weights.length && weights[arcId] != null) return weights[arcId][slot];
+        return getCount(arcId, slot);
+    }
+
+    /**
+     * Promedio sum/peso del arco en el slot, o 0 si no tiene muestras.
+     */
+    public double getAverage(int arcId, int slot) {
+        long c = getCount(arcId, slot);
+        return c == 0 ? 0.0 : sums[arcId][slot] / getWeight(arcId, slot);
+    }
+
+    /**
+     * Número de arcos con al menos una muestra.
+     */
+    public int size() {
+        int n = 0;
+        for (double[] s : sums) if (s != null) n++;
+        return n;
+    }
+
+    public void forEach(SlotConsumer consumer) {
+        for (int a = 0; a < sums.length; a++) {
+            int[] c = counts[a];
+            if (c == null) continue;
+            for (int k = 0; k < slotCount; k++) {
+                if (c[k] > 0) consumer.accept(a, k, sums[a][k], c[k]);
+            }
+        }
+    }
+
+    /**
+     * Etiqueta del slot, por ejemplo "lunes 07:15".
+     */
+    public String slotLabel(int slot) {
+        int second = (slot % slotsPerDay) * slotSeconds;
+        return String.format("%s %02d:%02d", cycle.label(slot / slotsPerDay), second / 3600, second / 60 % 60);
+    }
+
+    /**
+     * Exporta a CSV una fila por (arco, slot) con muestras:
+     * arcId,slot,dia,inicio,muestras,velocidadPromedioKph.
+     */
+    public void writeCsv(Path file) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCsv(out);
+        }
+    }
+
+    public void writeCsv(Writer out) throws IOException {
+        out.write("arcId,slot,dia,inicio,muestras,velocidadPromedioKph\n");
+        StringBuilder sb = new StringBuilder(64);
+        for (int a = 0; a < sums.length; a++) {
+            int[] c = counts[a];
+            if (c == null) continue;
+            for (int k = 0; k < slotCount; k++) {
+                if (c[k] == 0) continue;
+                String label = slotLabel(k);
+                int sp = label.indexOf(' ');
+                sb.setLength(0);
+                sb.append(a).append(',').append(k).append(',')
+                        .append(label, 0, sp).append(',').append(label, sp + 1, label.length()).append(',')
+                        .append(c[k]).append(',').append(sums[a][k] / getWeight(a, k)).append('\n');
+                out.write(sb.toString());
+            }
+        }
+    }
+
+    private void ensureArcCount(int n) {
+        if (n <= sums.length) return;
+        double[][] s = new double[n][];
+        int[][] c = new int[n][];
+        double[][] w = new double[n][];
+        System.arraycopy(sums, 0, s, 0, sums.length);
+        System.arraycopy(counts, 0, c, 0, counts.length);
+        System.arraycopy(weights, 0, w, 0, weights.length);
+        sums = s;
+        counts = c;
+        weights = w;
+    }
+}
@@ -0,0 +1,155 @@
+package com.icesi.mio.aggregate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Cuantiles aproximados de velocidad por ordinal denso de arco (mediana, p85,
+ * p95), con un histograma de bins logarítmicos fijos por arco: cada octava
+ * [2^e, 2^(e+1)) se divide en 32 bins iguales, de 2^-4 a 2^8 km/h (384 bins).
+ *
+ * El bin de una muestra sale de los bits del double (exponente y 5 bits de
+ * mantisa), sin logaritmos. El cuantil devuelto es el centro del bin que
+ * contiene la muestra exacta de ese rango, así que su error relativo es a lo
+ * sumo RELATIVE_ERROR; la combinación de particiones suma conteos y es exacta.
+ * Cada arco ocupa 1,5 KB desde su primera muestra (~10 MB para 7.000 arcos).
+ *
+ * No es thread-safe.
+ */
+public final class ArcSpeedQuantiles {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BINS = 1 << SUB_BITS;
+    private static final int MIN_EXPONENT = -4;
+    private static final int MAX_EXPONENT = 8;
+    static final int BINS = (MAX_EXPONENT - MIN_EXPONENT) * SUB_BINS;
+
+    /** Menor valor con bin propio; los menores caen en el primer bin. */
+    public static final double MIN_VALUE = Math.scalb(1.0, MIN_EXPONENT);
+    /** Los valores desde aquí caen en el último bin. */
+    public static final double MAX_VALUE = Math.scalb(1.0, MAX_EXPONENT);
+    /** Error relativo máximo de un cuantil dentro de [MIN_VALUE, MAX_VALUE). */
+    public static final double RELATIVE_ERROR = 1.0 / (2 * SUB_BINS);
+
+    private int[][] counts;
+    private long[] totals;
+
+    public ArcSpeedQuantiles(int arcCount) {
+        this.counts = new int[arcCount][];
+        this.totals = new long[arcCount];
+    }
+
+    public void add(int arcId, double value) {
+        if (arcId >= counts.length) ensureArcCount(arcId + 1);
+        int[] c = counts[arcId];
+        if (c == null) c = counts[arcId] = new int[BINS];
+        c[binOf(value)]++;
+        totals[arcId]++;
+    }
+
+    /**
+     * Suma los histogramas de other en éste.
+     */
+    public void merge(ArcSpeedQuantiles other) {
+        ensureArcCount(other.counts.length);
+        for (int a = 0; a < other.counts.length; a++) {
+            int[] oc = other.counts[a];
+            if (oc == null) continue;
+            int[] c = counts[a];
+            if (c == null) {
+                counts[a] = oc.clone();
+            } else {
+                for (int k = 0; k < BINS; k++) c[k] += oc[k];
+            }
+            totals[a] += other.totals[a];
+        }
+    }
+
+    public long getCount(int arcId) {
+        return arcId < totals.length ? totals[arcId] : 0L;
+    }
+
+    /**
+     * Cuantil q (0 < q <= 1) del arco por rango más cercano: aproxima la
+     * muestra ordenada número ceil(q * n). NaN si el arco no tiene muestras.
+     */
+    public double quantile(int arcId, double q) {
+        long n = getCount(arcId);
+        if (n == 0) return Double.NaN;
+        long rank = Math.max(1L, (long) Math.ceil(q * n));
+        int[] c = counts[arcId];
+        long seen = 0;
+        for (int k = 0; k < BINS; k++) {
+            seen += c[k];
+            if (seen >= rank) return valueOf(k);
+        }
+        return valueOf(BINS - 1);
+    }
+
+    public double median(int arcId) {
+        return quantile(arcId, 0.5);
+    }
+
+    public int arcCount() {
+        return counts.length;
+    }
+
+    /**
+     * Número de arcos con al menos una muestra.
+     */
+    public int size() {
+        int n = 0;
+        for (long t : totals) if (t > 0) n++;
+        return n;
+    }
+
+    /**
+     * Exporta a CSV una fila por arco con muestras: arcId,muestras,p50,p85,p95.
+     */
+    public void writeCsv(Path file) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCsv(out);
+        }
+    }
+
+    public void writeCsv(Writer out) throws IOException {
+        out.write("arcId,muestras,p50,p85,p95\n");
+        for (int a = 0; a < totals.length; a++) {
+            if (totals[a] == 0) continue;
+            out.write(a + "," + totals[a] + "," + quantile(a, 0.5) + "," + quantile(a, 0.85) + "," + quantile(a, 0.95) + "\n");
+        }
+    }
+
+    static int binOf(double value) {
+        if (!(value >= MIN_VALUE)) return 0;
+        if (value >= MAX_VALUE) return BINS - 1;
+        long bits = Double.doubleToRawLongBits(value);
+        int exponent = (int) ((bits >>> 52) & 0x7FF) - 1023;
+        int sub = (int) (bits >>> (52 - SUB_BITS)) & (SUB_BINS - 1);
+        return ((exponent - MIN_EXPONENT) << SUB_BITS) | sub;
+    }
+
+    /**
+     * Centro del bin: 2^e * (1 + (sub + 0.5) / 32).
+     */
+    static double valueOf(int bin) {
+        int exponent = (bin >> SUB_BITS) + MIN_EXPONENT;
+        int sub = bin & (SUB_BINS - 1);
+        return Math.scalb(1.0 + (sub + 0.5) / SUB_BINS, exponent);
+    }
+
+    private void ensureArcCount(int n) {
+        if (n <= counts.length) return;
+        int[][] c = new int[n][];
+        long[] t = new long[n];
+        System.arraycopy(counts, 0, c, 0, counts.length);
+        System.arraycopy(totals, 0, t, 0, totals.length);
+        counts = c;
+        totals = t;
+    }
+}
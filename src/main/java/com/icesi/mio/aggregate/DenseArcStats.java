@@ -0,0 +1,157 @@
+package com.icesi.mio.aggregate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Acumuladores (sum, count) por ordinal denso de arco en arreglos double[] / long[].
+ * Acumular una muestra es un acceso indexado, sin hashing.
+ *
+ * Además del número de muestras se lleva la suma de sus pesos: add(arcId, value)
+ * pesa 1, y addWeighted() permite que una muestra cuente sólo una fracción (por
+ * ejemplo la parte de un par de datagramas recorrida en ese arco, ver
+ * ArcMatcher.alongRoute()). sum es la suma de valor * peso y el promedio es
+ * sum / peso; sin muestras ponderadas el peso es igual al count.
+ *
+ * No es thread-safe.
+ */
+public final class DenseArcStats {
+
+    /**
+     * Visitante de arcos con al menos una muestra.
+     */
+    @FunctionalInterface
+    public interface ArcConsumer {
+        void accept(int arcId, double sum, long count);
+    }
+
+    private double[] sums;
+    private long[] counts;
+    private double[] weights;
+
+    public DenseArcStats(int arcCount) {
+        this.sums = new double[arcCount];
+        this.counts = new long[arcCount];
+        this.weights = new double[arcCount];
+    }
+
+    public void add(int arcId, double value) {
+        if (arcId >= sums.length) ensureArcCount(arcId + 1);
+        sums[arcId] += value;
+        counts[arcId]++;
+        weights[arcId]++;
+    }
+
+    /**
+     * Muestra que pesa weight (0 < weight <= 1) en el promedio del arco.
+     */
+    public void addWeighted(int arcId, double value, double weight) {
+        if (arcId >= sums.length) ensureArcCount(arcId + 1);
+        sums[arcId] += value * weight;
+        counts[arcId]++;
+        weights[arcId] += weight;
+    }
+
+    public void add(int arcId, double sum, long count) {
+        add(arcId, sum, count, count);
+    }
+
+    public void add(int arcId, double sum, long count, double weight) {
+        if (arcId >= sums.length) ensureArcCount(arcId + 1);
+        sums[arcId] += sum;
+        counts[arcId] += count;
+        weights[arcId] += weight;
+    }
+
+    /**
+     * Suma todos los acumuladores de other en éste.
+     */
+    public void merge(DenseArcStats other) {
+        ensureArcCount(other.sums.length);
+        for (int i = 0; i < other.sums.length; i++) {
+            sums[i] += other.sums[i];
+            counts[i] += other.counts[i];
+            weights[i] += other.weights[i];
+        }
+    }
+
+    public double getSum(int arcId) {
+        return arcId < sums.length ? sums[arcId] : 0.0;
+    }
+
+    public long getCount(int arcId) {
+        return arcId < counts.length ? counts[arcId] : 0L;
+    }
+
+    public double getWeight(int arcId) {
+        return arcId < weights.length ? weights[arcId] : 0.0;
+    }
+
+    /**
+     * Promedio sum/peso del arco, o 0 si no tiene muestras.
+     */
+    public double getAverage(int arcId) {
+        long c = getCount(arcId);
+        return c == 0 ? 0.0 : sums[arcId] / weights[arcId];
+    }
+
+    /**
+     * true si alguna muestra tuvo peso distinto de 1 (el peso de algún arco difiere de su count).
+     */
+    public boolean isWeighted() {
+        for (int i = 0; i < counts.length; i++) {
+            if (weights[i] != counts[i]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Dimensión de los arreglos (número de ordinales).
+     */
+    public int arcCount() {
+        return sums.length;
+    }
+
+    /**
+     * Número de arcos con al menos una muestra.
+     */
+    public int size() {
+        int n = 0;
+        for (long c : counts) if (c > 0) n++;
+        return n;
+    }
+
+    public long totalCount() {
+        long total = 0;
+        for (long c : counts) total += c;
+        return total;
+    }
+
+    public void forEach(ArcConsumer consumer) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) consumer.accept(i, sums[i], counts[i]);
+        }
+    }
+
+    /**
+     * Convierte a arcId -> promedio, sólo para arcos con muestras.
+     */
+    public Map<Long, Double> toAverages() {
+        Map<Long, Double> res = new HashMap<>();
+        forEach((arcId, sum, count) -> res.put((long) arcId, sum / weights[arcId]));
+        return res;
+    }
+
+    private void ensureArcCount(int n) {
+        if (n <= sums.length) return;
+        double[] s = new double[n];
+        long[] c = new long[n];
+        double[] w = new double[n];
+        System.arraycopy(sums, 0, s, 0, sums.length);
+        System.arraycopy(counts, 0, c, 0, counts.length);
+        System.arraycopy(weights, 0, w, 0, weights.length);
+        sums = s;
+        counts = c;
+        weights = w;
+    }
+}
@@ -0,0 +1,116 @@
+package com.icesi.mio.aggregate;
+
+import java.util.Arrays;
+
+/**
+ * Acumuladores (sum, count, peso) por arco y por intervalo de tiempo (bucket de
+ * bucketSeconds), en un anillo de bucketCount buckets: se conservan los
+ * últimos bucketCount * bucketSeconds segundos de datagramDate. Las ventanas
+ * deslizantes o fijas (5/15/60 min) se arman sumando buckets.
+ *
+ * No es thread-safe.
+ */
+public final class WindowedArcStats {
+
+    private final int arcCount;
+    private final int bucketSeconds;
+    private final double[][] sums;
+    private final long[][] counts;
+    private final double[][] weights;
+    // inicio (epoch) del intervalo guardado en cada bucket, o Long.MIN_VALUE si está vacío
+    private final long[] bucketStart;
+    // inicio del bucket más reciente admitido
+    private long head = Long.MIN_VALUE;
+
+    public WindowedArcStats(int arcCount, int bucketSeconds, int bucketCount) {
+        this.arcCount = arcCount;
+        this.bucketSeconds = bucketSeconds;
+        this.sums = new double[bucketCount][arcCount];
+        this.counts = new long[bucketCount][arcCount];
+        this.weights = new double[bucketCount][arcCount];
+        this.bucketStart = new long[bucketCount];
+        Arrays.fill(bucketStart, Long.MIN_VALUE);
+    }
+
+    public int getBucketSeconds() {
+        return bucketSeconds;
+    }
+
+    /**
+     * Segundos de historia que caben en el anillo.
+     */
+    public long retentionSeconds() {
+        return (long) bucketSeconds * bucketStart.length;
+    }
+
+    /**
+     * Agrega una muestra con su datagramDate. Retorna false si es más vieja que
+     * lo que conserva el anillo (se descarta).
+     */
+    public boolean add(int arcId, double value, long epochSecond) {
+        return add(arcId, value, epochSecond, 1.0);
+    }
+
+    /**
+     * Igual que add(arcId, value, epochSecond), con una muestra que pesa weight
+     * (ver DenseArcStats.addWeighted).
+     */
+    public boolean add(int arcId, double value, long epochSecond, double weight) {
+        long start = Math.floorDiv(epochSecond, (long) bucketSeconds) * bucketSeconds;
+        if (start > head) head = start;
+        if (start <= head - retentionSeconds()) return false;
+        int b = slot(start);
+        if (bucketStart[b] != start) {
+            // bucket reciclado: limpiar lo que quedaba del intervalo anterior
+            Arrays.fill(sums[b], 0.0);
+            Arrays.fill(counts[b], 0L);
+            Arrays.fill(weights[b], 0.0);
+            bucketStart[b] = start;
+        }
+        sums[b][arcId] += value * weight;
+        counts[b][arcId]++;
+        weights[b][arcId] += weight;
+        return true;
+    }
+
+    /**
+     * Suma en out los buckets cuyo intervalo empieza en [fromInclusive, toExclusive).
+     */
+    public void sumRange(long fromInclusive, long toExclusive, DenseArcStats out) {
+        for (int b = 0; b < bucketStart.length; b++) {
+            long s = bucketStart[b];
+            if (s == Long.MIN_VALUE || s < fromInclusive || s >= toExclusive || s <= head - retentionSeconds()) continue;
+            double[] sb = sums[b];
+            long[] cb = counts[b];
+            double[] wb = weights[b];
+            for (int a = 0; a < arcCount; a++) {
+                if (cb[a] != 0) out.add(a, sb[a], cb[a], wb[a]);
+            }
+        }
+    }
+
+    /**
+     * Ventana deslizante de windowSeconds que termina en el bucket que contiene endEpochSecond.
+     */
+    public DenseArcStats sliding(long endEpochSecond, int windowSeconds) {
+        long end = Math.floorDiv(endEpochSecond, (long) bucketSeconds) * bucketSeconds + bucketSeconds;
+        DenseArcStats out = new DenseArcStats(arcCount);
+        sumRange(end - windowSeconds, end, out);
+        return out;
+    }
+
+    /**
+     * Última ventana fija (alineada a múltiplos de windowSeconds) que termina
+     * en o antes de endEpochSecond.
+     */
+    public DenseArcStats tumbling(long endEpochSecond, int windowSeconds) {
+        long end = Math.floorDiv(endEpochSecond, (long) windowSeconds) * windowSeconds;
+        DenseArcStats out = new DenseArcStats(arcCount);
+        sumRange(end - windowSeconds, end, out);
+        return out;
+    }
+
+    private int slot(long start) {
+        return (int) Math.floorMod(Math.floorDiv(start, (long) bucketSeconds), (long) bucketStart.length);
+    }
+}
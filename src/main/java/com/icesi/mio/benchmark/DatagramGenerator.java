@@ -0,0 +1,395 @@
+package com.icesi.mio.benchmark;
+
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.Arc;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.model.Stop;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generador de datagramas sintéticos con la forma de datagrams4history.csv
+ * (12 columnas, sin header): N buses recorren los arcos reales de su ruta
+ * (ida y luego vuelta) a una velocidad por turno, reportan cada
+ * minInterval..maxInterval segundos con ruido GPS, pueden cambiar de línea en
+ * cada turno y una fracción de filas sale dañada.
+ *
+ * El tiempo se divide en ventanas que se generan en paralelo y se escriben en
+ * orden, así que el archivo queda ordenado por datagramDate. Todo lo aleatorio
+ * depende sólo de (seed, bus, turno/ventana), por lo que el archivo es idéntico
+ * sin importar el número de hilos.
+ *
+ * Uso: DatagramGenerator &lt;salida.csv&gt; &lt;filas&gt; [buses] [seed] [hilos]
+ */
+public class DatagramGenerator {
+
+    private static final DateTimeFormatter REGISTER_FMT = DateTimeFormatter.ofPattern("dd-MMM-yy", Locale.ENGLISH);
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    // ventanas vacías seguidas antes de abandonar generate()
+    private static final int MAX_EMPTY_WINDOWS = 1000;
+
+    private final List<Route> routes = new ArrayList<>();
+    private final long seed;
+
+    private int buses = 1000;
+    // 2019-05-27 05:00:00 UTC
+    private long startEpochSecond = 1_558_933_200L;
+    private int minIntervalSeconds = 20;
+    private int maxIntervalSeconds = 40;
+    private double minSpeedKph = 10;
+    private double maxSpeedKph = 45;
+    private double gpsNoiseMeters = 15;
+    private int shiftSeconds = 4 * 3600;
+    private double lineSwitchProbability = 0.1;
+    private double malformedRate = 0.001;
+    private int windowSeconds = 600;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    public DatagramGenerator(Map<Integer, RouteGraph> graphs, long seed) {
+        this.seed = seed;
+        // orden por lineId para que las rutas no dependan del orden del Map
+        for (RouteGraph rg : new TreeMap<>(graphs).values()) {
+            Route r = Route.of(rg);
+            if (r != null) routes.add(r);
+        }
+        if (routes.isEmpty()) throw new IllegalArgumentException("No hay rutas con arcos para generar datagramas");
+    }
+
+    public DatagramGenerator buses(int buses) {
+        if (buses < 1) throw new IllegalArgumentException("se necesita al menos un bus");
+        this.buses = buses;
+        return this;
+    }
+
+    public DatagramGenerator startEpochSecond(long startEpochSecond) {
+        this.startEpochSecond = startEpochSecond;
+        return this;
+    }
+
+    public DatagramGenerator reportInterval(int minSeconds, int maxSeconds) {
+        if (minSeconds < 1 || maxSeconds < minSeconds) throw new IllegalArgumentException("intervalo inválido");
+        this.minIntervalSeconds = minSeconds;
+        this.maxIntervalSeconds = maxSeconds;
+        return this;
+    }
+
+    public DatagramGenerator speedKph(double min, double max) {
+        this.minSpeedKph = min;
+        this.maxSpeedKph = max;
+        return this;
+    }
+
+    public DatagramGenerator gpsNoiseMeters(double meters) {
+        this.gpsNoiseMeters = meters;
+        return this;
+    }
+
+    /**
+     * Duración de un turno y probabilidad de que, al empezar un turno, el bus
+     * cambie de su línea habitual a otra.
+     */
+    public DatagramGenerator lineSwitches(int shiftSeconds, double probability) {
+        this.shiftSeconds = shiftSeconds;
+        this.lineSwitchProbability = probability;
+        return this;
+    }
+
+    public DatagramGenerator malformedRate(double rate) {
+        this.malformedRate = rate;
+        return this;
+    }
+
+    public DatagramGenerator threads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    DatagramGenerator windowSeconds(int windowSeconds) {
+        if (windowSeconds < 1) throw new IllegalArgumentException("ventana inválida");
+        this.windowSeconds = windowSeconds;
+        return this;
+    }
+
+    public long generate(Path out, long rows) throws IOException, InterruptedException {
+        try (OutputStream os = Files.newOutputStream(out)) {
+            return generate(os, rows);
+        }
+    }
+
+    /**
+     * Escribe exactamente `rows` filas (la última ventana se corta) y retorna ese número.
+     */
+    public long generate(OutputStream out, long rows) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // a lo sumo 2 ventanas por hilo en memoria
+            ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            long written = 0;
+            long nextWindow = 0;
+            int emptyWindows = 0;
+            while (written < rows) {
+                while (inFlight.size() < threads * 2) {
+                    final long w = nextWindow++;
+                    inFlight.add(pool.submit(() -> generateWindow(w)));
+                }
+                Chunk c = get(inFlight.poll());
+                if (c.rows == 0) {
+                    // con reportInterval mayor que la ventana puede haber ventanas vacías, pero no indefinidamente
+                    if (++emptyWindows > MAX_EMPTY_WINDOWS) {
+                        throw new IllegalStateException(MAX_EMPTY_WINDOWS + " ventanas seguidas sin filas");
+                    }
+                    continue;
+                }
+                emptyWindows = 0;
+                if (written + c.rows <= rows) {
+                    out.write(c.bytes, 0, c.bytes.length);
+                    written += c.rows;
+                } else {
+                    int keep = (int) (rows - written);
+                    out.write(c.bytes, 0, c.lineEnds[keep - 1]);
+                    written += keep;
+                }
+            }
+            for (Future<Chunk> f : inFlight) f.cancel(true);
+            return written;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Chunk get(Future<Chunk> f) throws IOException, InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Falló la generación de una ventana", e.getCause());
+        }
+    }
+
+    /**
+     * Filas de todos los buses con datagramDate en [inicio, inicio + windowSeconds) de la ventana w.
+     */
+    Chunk generateWindow(long w) {
+        long w0 = startEpochSecond + w * windowSeconds;
+        long w1 = w0 + windowSeconds;
+
+        // eventos (segundo relativo a w0, bus) empaquetados para ordenarlos por tiempo
+        long[] events = new long[buses * (windowSeconds / minIntervalSeconds + 2)];
+        int n = 0;
+        for (int b = 0; b < buses; b++) {
+            SplittableRandom rnd = new SplittableRandom(mix(seed, b, w, 0x5EED));
+            long t = w0 + rnd.nextInt(maxIntervalSeconds);
+            while (t < w1) {
+                events[n++] = ((t - w0) << 32) | b;
+                t += minIntervalSeconds + rnd.nextInt(maxIntervalSeconds - minIntervalSeconds + 1);
+            }
+        }
+        Arrays.sort(events, 0, n);
+
+        StringBuilder sb = new StringBuilder(n * 96);
+        int[] lineEnds = new int[n];
+        long day = Long.MIN_VALUE;
+        String datePrefix = null;
+        String register = null;
+        for (int i = 0; i < n; i++) {
+            long t = w0 + (events[i] >>> 32);
+            int b = (int) events[i];
+            if (Math.floorDiv(t, 86400L) != day) {
+                day = Math.floorDiv(t, 86400L);
+                LocalDate d = LocalDate.ofEpochDay(day);
+                datePrefix = d.toString() + " ";
+                register = d.format(REGISTER_FMT).toUpperCase(Locale.ROOT);
+            }
+            appendRow(sb, b, t, datePrefix, register);
+            lineEnds[i] = sb.length();
+        }
+        return new Chunk(sb.toString().getBytes(StandardCharsets.US_ASCII), lineEnds, n);
+    }
+
+    private void appendRow(StringBuilder sb, int bus, long t, String datePrefix, String register) {
+        long shift = Math.floorDiv(t - startEpochSecond, (long) shiftSeconds);
+        SplittableRandom shiftRnd = new SplittableRandom(mix(seed, bus, shift, 0x5417));
+        Route route = routes.get(bus % routes.size());
+        if (shiftRnd.nextDouble() < lineSwitchProbability) route = routes.get(shiftRnd.nextInt(routes.size()));
+        double speedMps = (minSpeedKph + shiftRnd.nextDouble() * (maxSpeedKph - minSpeedKph)) / 3.6;
+        double offset = shiftRnd.nextDouble() * route.length;
+        long shiftStart = startEpochSecond + shift * shiftSeconds;
+
+        double along = (offset + speedMps * (t - shiftStart)) % route.length;
+        int seg = route.segmentAt(along);
+        double segLen = route.cumulative[seg + 1] - route.cumulative[seg];
+        double f = segLen == 0 ? 0 : (along - route.cumulative[seg]) / segLen;
+        double lat = route.lat[seg] + f * (route.lat[seg + 1] - route.lat[seg]);
+        double lon = route.lon[seg] + f * (route.lon[seg + 1] - route.lon[seg]);
+
+        SplittableRandom rnd = new SplittableRandom(mix(seed, bus, t, 0x6E55));
+        lat += gaussian(rnd) * gpsNoiseMeters / METERS_PER_DEGREE;
+        lon += gaussian(rnd) * gpsNoiseMeters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+
+        String latField = String.valueOf(Math.round(lat * 1e7));
+        String lonField = String.valueOf(Math.round(lon * 1e7));
+        String lineField = String.valueOf(route.lineId);
+        String dateField = datePrefix + hhmmss(t);
+        int damage = rnd.nextDouble() < malformedRate ? 1 + rnd.nextInt(4) : 0;
+        switch (damage) {
+            case 1: latField = ""; break;
+            case 2: lineField = "-"; break;
+            case 3: dateField = datePrefix.trim(); break;
+            default: break;
+        }
+
+        // 0:eventType,1:registerdate,2:stopId,3:odometer,4:lat,5:lon,6:taskId,7:lineId,8:tripId,9:unknown,10:datagramDate,11:busId
+        sb.append("0,").append(register).append(',').append(route.stopIdAt(seg)).append(',')
+                .append((long) (along)).append(',').append(latField).append(',').append(lonField)
+                .append(',').append(shift).append(',').append(lineField).append(',')
+                .append(route.lineId * 1000L + shift).append(",-1,").append(dateField);
+        if (damage == 4) {
+            // fila cortada: sin busId (menos de 12 columnas)
+            sb.append('\n');
+            return;
+        }
+        sb.append(',').append(1000 + bus).append('\n');
+    }
+
+    private static String hhmmss(long t) {
+        int s = (int) Math.floorMod(t, 86400L);
+        char[] c = {
+                (char) ('0' + s / 36000), (char) ('0' + s / 3600 % 10), ':',
+                (char) ('0' + s % 3600 / 600), (char) ('0' + s % 3600 / 60 % 10), ':',
+                (char) ('0' + s % 60 / 10), (char) ('0' + s % 10)};
+        return new String(c);
+    }
+
+    // Box-Muller; SplittableRandom no trae nextGaussian en Java 17
+    private static double gaussian(SplittableRandom rnd) {
+        double u = 1.0 - rnd.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * rnd.nextDouble());
+    }
+
+    private static long mix(long seed, long a, long b, long salt) {
+        long h = seed ^ salt;
+        h = (h ^ a) * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 31) ^ b) * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 29);
+    }
+
+    static final class Chunk {
+        final byte[] bytes;
+        // posición (exclusiva) del fin de cada fila, incluyendo el '\n'
+        final int[] lineEnds;
+        final int rows;
+
+        Chunk(byte[] bytes, int[] lineEnds, int rows) {
+            this.bytes = bytes;
+            this.lineEnds = lineEnds;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Polilínea de una ruta (paradas de ida y luego de vuelta) con longitudes acumuladas.
+     */
+    private static final class Route {
+        final int lineId;
+        final double[] lat;
+        final double[] lon;
+        final int[] stopIds;
+        final double[] cumulative;
+        final double length;
+
+        private Route(int lineId, List<Stop> stops) {
+            this.lineId = lineId;
+            int n = stops.size();
+            lat = new double[n];
+            lon = new double[n];
+            stopIds = new int[n];
+            cumulative = new double[n];
+            for (int i = 0; i < n; i++) {
+                lat[i] = stops.get(i).getDecimalLat();
+                lon[i] = stops.get(i).getDecimalLong();
+                stopIds[i] = stops.get(i).getStopId();
+                if (i > 0) cumulative[i] = cumulative[i - 1] + distanceMeters(lat[i - 1], lon[i - 1], lat[i], lon[i]);
+            }
+            length = cumulative[n - 1];
+        }
+
+        static Route of(RouteGraph rg) {
+            List<Stop> stops = new ArrayList<>();
+            appendPath(stops, rg.getArcsIda());
+            appendPath(stops, rg.getArcsVuelta());
+            if (stops.size() < 2) return null;
+            Route r = new Route(rg.getLine().getLineId(), stops);
+            return r.length > 0 ? r : null;
+        }
+
+        private static void appendPath(List<Stop> stops, List<Arc> arcs) {
+            for (Arc a : arcs) {
+                if (stops.isEmpty() || stops.get(stops.size() - 1) != a.getFromStop()) stops.add(a.getFromStop());
+                stops.add(a.getToStop());
+            }
+        }
+
+        /**
+         * Índice del segmento [i, i+1] que contiene la distancia `along`.
+         */
+        int segmentAt(double along) {
+            int i = Arrays.binarySearch(cumulative, along);
+            if (i < 0) i = -i - 2;
+            return Math.max(0, Math.min(i, cumulative.length - 2));
+        }
+
+        int stopIdAt(int seg) {
+            return stopIds[seg];
+        }
+
+        private static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+            double dLat = (lat2 - lat1) * METERS_PER_DEGREE;
+            double dLon = (lon2 - lon1) * METERS_PER_DEGREE * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+            return Math.sqrt(dLat * dLat + dLon * dLon);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Uso: DatagramGenerator <salida.csv> <filas> [buses] [seed] [hilos]");
+            return;
+        }
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+
+        long rows = Long.parseLong(args[1]);
+        DatagramGenerator gen = new DatagramGenerator(gb.buildGraphs(), args.length > 3 ? Long.parseLong(args[3]) : 42L);
+        if (args.length > 2) gen.buses(Integer.parseInt(args[2]));
+        if (args.length > 4) gen.threads(Integer.parseInt(args[4]));
+
+        long start = System.currentTimeMillis();
+        long written = gen.generate(Path.of(args[0]), rows);
+        long end = System.currentTimeMillis();
+        System.out.println("Archivo generado: " + args[0] + " filas=" + written + " tiempo_ms=" + (end - start));
+    }
+}
@@ -9,6 +9,7 @@ import com.icesi.mio.parser.LineStopParser;
 import com.icesi.mio.parser.StopParser;
 import com.icesi.mio.util.Constants;
 import com.icesi.mio.distributed.DistributedComputeCoordinator;
+import com.icesi.mio.distributed.PartitionKey;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -94,7 +95,7 @@ public class RealDataBenchmarkRunner {
             for (int workers : workersList) {
                 logger.info("\n== Ejecutando benchmark real con workers={} (muestra de {} filas) ==", workers, maxRowsSample);
 
-                SamplingPartitionManager pm = new SamplingPartitionManager(workers, maxRowsSample);
+                SamplingPartitionManager pm = new SamplingPartitionManager(workers, maxRowsSample, PartitionKey.BUS_ID);
                 DistributedComputeCoordinator dcc = new DistributedComputeCoordinator(pm, workers, 3600);
 
                 long start = System.currentTimeMillis();
@@ -104,7 +105,7 @@ public class RealDataBenchmarkRunner {
                 long elapsed = end - start;
                 int arcCount = res.size();
 
-                logger.info("workers={} -> time_ms={} arcCount={} ", workers, elapsed, arcCount);
+                logger.info("workers={} -> time_ms={} arcCount={} skew=[{}]", workers, elapsed, arcCount, pm.getLastSkew());
                 report.write(workers + "," + elapsed + "," + arcCount + "\\n");
             }
         }
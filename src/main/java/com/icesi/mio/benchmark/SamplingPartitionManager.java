@@ -1,6 +1,7 @@
 package com.icesi.mio.benchmark;
 
 import com.icesi.mio.distributed.DatagramPartition;
+import com.icesi.mio.distributed.PartitionKey;
 import com.icesi.mio.distributed.PartitionManager;
 
 import java.io.BufferedReader;
@@ -20,7 +21,11 @@ public class SamplingPartitionManager extends PartitionManager {
     private final int maxRows;
 
     public SamplingPartitionManager(int partitions, int maxRows) {
-        super(partitions);
+        this(partitions, maxRows, PartitionKey.LINE_ID);
+    }
+
+    public SamplingPartitionManager(int partitions, int maxRows, PartitionKey key) {
+        super(partitions, key);
         this.partitions = partitions;
         this.maxRows = maxRows;
     }
@@ -37,20 +42,13 @@ public class SamplingPartitionManager extends PartitionManager {
             // IMPORTANTE: los archivos datagrams4*.csv no tienen header; no se debe saltar ninguna línea.
             while ((line = br.readLine()) != null && count < maxRows) {
                 String[] r = line.split(",");
-                try {
-                    // Formato real: 0:eventType, 1:registerdate, 2:stopId, 3:odometer,
-                    // 4:lat, 5:lon, 6:taskId, 7:lineId, 8:tripId, 9:unknown, 10:datagramDate, 11:busId
-                    int lineId = Integer.parseInt(r[7].trim());
-                    int idx = Math.floorMod(lineId, partitions);
-                    parts.get(idx).addRow(r);
-                } catch (Exception e) {
-                    // Si algo falla, mandar la fila a la partición 0 para no perder datos
-                    parts.get(0).addRow(r);
-                }
+                // Filas mal formadas caen en la partición 0 para no perder datos
+                parts.get(partitionOf(r)).addRow(r);
                 count++;
             }
         }
 
+        recordSkew(parts);
         return parts;
     }
 }
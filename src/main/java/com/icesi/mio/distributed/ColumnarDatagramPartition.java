@@ -0,0 +1,244 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.parser.DatagramRow;
+
+import java.util.Arrays;
+
+/**
+ * Partición de datagramas en columnas primitivas, en lugar de List&lt;String[]&gt;.
+ * Cada fila ocupa ~25 bytes: código de bus (int), lineId (int), lat/lon en
+ * grados * 1e7 (int), datagramDate en segundos epoch (long) y un byte de flags.
+ *
+ * Las columnas crecen por bloques de CHUNK_ROWS filas, así que agregar filas
+ * nunca copia lo ya guardado. Los busId se codifican con un diccionario
+ * (busCode denso 0..busCount-1), lo que permite ordenar por bus con un counting sort.
+ *
+ * No es thread-safe.
+ */
+public final class ColumnarDatagramPartition {
+
+    static final int CHUNK_SHIFT = 14;
+    static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+
+    private final int id;
+
+    private int[][] busCode = new int[0][];
+    private int[][] lineId = new int[0][];
+    private int[][] latE7 = new int[0][];
+    private int[][] lonE7 = new int[0][];
+    private long[][] epochSecond = new long[0][];
+    private byte[][] flags = new byte[0][];
+    private int size;
+
+    // diccionario busId -> busCode (open addressing) y busCode -> busId
+    private long[] dictKeys = new long[64];
+    private int[] dictCodes = new int[64];
+    private boolean[] dictUsed = new boolean[64];
+    private long[] busIds = new long[16];
+    private int busCount;
+
+    public ColumnarDatagramPartition(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Agrega una fila decodificada. Coordenadas que no caben en un int (más de
+     * ±214 grados) se guardan como inválidas.
+     */
+    public void add(DatagramRow row) {
+        int c = size >>> CHUNK_SHIFT;
+        if (c == busCode.length) addChunk();
+        int o = size & CHUNK_MASK;
+
+        byte f = row.flags();
+        if (row.coordsValid && (row.latE7 != (int) row.latE7 || row.lonE7 != (int) row.lonE7)) {
+            f &= ~DatagramRow.COORDS_VALID;
+        }
+        busCode[c][o] = codeOf(row.busId);
+        lineId[c][o] = row.lineId;
+        latE7[c][o] = (int) row.latE7;
+        lonE7[c][o] = (int) row.lonE7;
+        epochSecond[c][o] = row.epochSecond;
+        flags[c][o] = f;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int busCount() {
+        return busCount;
+    }
+
+    public long busId(int busCode) {
+        return busIds[busCode];
+    }
+
+    public int busCode(int row) {
+        return busCode[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public int lineId(int row) {
+        return lineId[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public int latE7(int row) {
+        return latE7[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public int lonE7(int row) {
+        return lonE7[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public long epochSecond(int row) {
+        return epochSecond[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public boolean has(int row, byte flag) {
+        return (flags[row >>> CHUNK_SHIFT][row & CHUNK_MASK] & flag) != 0;
+    }
+
+    /** Copia la fila en out (busId real, no el busCode). */
+    public void get(int row, DatagramRow out) {
+        int c = row >>> CHUNK_SHIFT;
+        int o = row & CHUNK_MASK;
+        out.complete = true;
+        out.busId = busIds[busCode[c][o]];
+        out.lineId = lineId[c][o];
+        out.latE7 = latE7[c][o];
+        out.lonE7 = lonE7[c][o];
+        out.epochSecond = epochSecond[c][o];
+        out.setFlags(flags[c][o]);
+    }
+
+    /**
+     * Índices de las filas ordenados por (bus, datagramDate), estable. Primero un
+     * counting sort por busCode y luego cada tramo de bus se ordena por tiempo
+     * sobre llaves long (tiempo relativo, índice) empaquetadas.
+     */
+    public int[] sortedByBusAndTime() {
+        int[] start = new int[busCount + 1];
+        for (int i = 0; i < size; i++) start[busCode(i) + 1]++;
+        for (int b = 0; b < busCount; b++) start[b + 1] += start[b];
+
+        int[] order = new int[size];
+        int[] next = Arrays.copyOf(start, busCount);
+        for (int i = 0; i < size; i++) order[next[busCode(i)]++] = i;
+
+        long[] keys = new long[0];
+        for (int b = 0; b < busCount; b++) {
+            int from = start[b];
+            int n = start[b + 1] - from;
+            if (n < 2) continue;
+            if (keys.length < n) keys = new long[Math.max(n, keys.length * 2)];
+            sortSegmentByTime(order, from, n, keys);
+        }
+        return order;
+    }
+
+    private void sortSegmentByTime(int[] order, int from, int n, long[] keys) {
+        // tiempos inválidos primero; el resto relativo al mínimo del bus
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int k = 0; k < n; k++) {
+            int r = order[from + k];
+            if (!has(r, DatagramRow.TIME_VALID)) continue;
+            long t = epochSecond(r);
+            min = Math.min(min, t);
+            max = Math.max(max, t);
+        }
+        if (min != Long.MAX_VALUE && max - min >= Integer.MAX_VALUE) {
+            // rango de fechas absurdo (> 68 años): ordenar con comparador
+            Integer[] boxed = new Integer[n];
+            for (int k = 0; k < n; k++) boxed[k] = order[from + k];
+            Arrays.sort(boxed, (x, y) -> Long.compare(timeKey(x), timeKey(y)));
+            for (int k = 0; k < n; k++) order[from + k] = boxed[k];
+            return;
+        }
+        for (int k = 0; k < n; k++) {
+            int r = order[from + k];
+            long rank = has(r, DatagramRow.TIME_VALID) ? epochSecond(r) - min + 1 : 0;
+            keys[k] = (rank << 32) | k;
+        }
+        Arrays.sort(keys, 0, n);
+        int[] tmp = new int[n];
+        for (int k = 0; k < n; k++) tmp[k] = order[from + (int) keys[k]];
+        System.arraycopy(tmp, 0, order, from, n);
+    }
+
+    private long timeKey(int row) {
+        return has(row, DatagramRow.TIME_VALID) ? epochSecond(row) : Long.MIN_VALUE;
+    }
+
+    /**
+     * Bytes aproximados usados por las columnas y el diccionario.
+     */
+    public long estimatedHeapBytes() {
+        long perChunk = (long) CHUNK_ROWS * (4 + 4 + 4 + 4 + 8 + 1);
+        long dict = dictKeys.length * (8L + 4 + 1) + busIds.length * 8L;
+        return busCode.length * perChunk + dict;
+    }
+
+    private void addChunk() {
+        int n = busCode.length + 1;
+        busCode = Arrays.copyOf(busCode, n);
+        lineId = Arrays.copyOf(lineId, n);
+        latE7 = Arrays.copyOf(latE7, n);
+        lonE7 = Arrays.copyOf(lonE7, n);
+        epochSecond = Arrays.copyOf(epochSecond, n);
+        flags = Arrays.copyOf(flags, n);
+        busCode[n - 1] = new int[CHUNK_ROWS];
+        lineId[n - 1] = new int[CHUNK_ROWS];
+        latE7[n - 1] = new int[CHUNK_ROWS];
+        lonE7[n - 1] = new int[CHUNK_ROWS];
+        epochSecond[n - 1] = new long[CHUNK_ROWS];
+        flags[n - 1] = new byte[CHUNK_ROWS];
+    }
+
+    private int codeOf(long busId) {
+        int mask = dictKeys.length - 1;
+        int i = mix(busId) & mask;
+        while (dictUsed[i]) {
+            if (dictKeys[i] == busId) return dictCodes[i];
+            i = (i + 1) & mask;
+        }
+        int code = busCount++;
+        dictUsed[i] = true;
+        dictKeys[i] = busId;
+        dictCodes[i] = code;
+        if (code == busIds.length) busIds = Arrays.copyOf(busIds, code * 2);
+        busIds[code] = busId;
+        if (busCount * 2 > dictKeys.length) rehash();
+        return code;
+    }
+
+    private void rehash() {
+        long[] oldKeys = dictKeys;
+        int[] oldCodes = dictCodes;
+        boolean[] oldUsed = dictUsed;
+        int cap = oldKeys.length * 2;
+        dictKeys = new long[cap];
+        dictCodes = new int[cap];
+        dictUsed = new boolean[cap];
+        int mask = cap - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (!oldUsed[j]) continue;
+            int i = mix(oldKeys[j]) & mask;
+            while (dictUsed[i]) i = (i + 1) & mask;
+            dictUsed[i] = true;
+            dictKeys[i] = oldKeys[j];
+            dictCodes[i] = oldCodes[j];
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,92 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.parser.ByteLineReader;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.parser.DatagramTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Variante de PartitionManager que carga los datagramas en particiones
+ * columnares (ColumnarDatagramPartition), parseando desde bytes sin crear
+ * Strings por fila. Opcionalmente sólo toma las primeras maxRows líneas, como
+ * SamplingPartitionManager.
+ *
+ * Los archivos datagrams4*.csv no tienen header: no se salta ninguna línea.
+ */
+public class ColumnarPartitionManager {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarPartitionManager.class);
+
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    private final int partitions;
+    private final PartitionKey key;
+    private final long maxRows;
+    private final ConsistentHashRing ring;
+    private PartitionSkew lastSkew;
+
+    public ColumnarPartitionManager(int partitions, PartitionKey key) {
+        this(partitions, key, Long.MAX_VALUE);
+    }
+
+    public ColumnarPartitionManager(int partitions, PartitionKey key, long maxRows) {
+        this.partitions = partitions;
+        this.key = key;
+        this.maxRows = maxRows;
+        this.ring = key == PartitionKey.BUS_ID ? new ConsistentHashRing(partitions) : null;
+    }
+
+    public List<ColumnarDatagramPartition> createPartitions(String csvPath) throws IOException {
+        List<ColumnarDatagramPartition> parts = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) parts.add(new ColumnarDatagramPartition(i));
+
+        DatagramTokenizer tokenizer = new DatagramTokenizer();
+        DatagramRow row = new DatagramRow();
+        long count = 0;
+        try (FileChannel ch = FileChannel.open(Path.of(csvPath), StandardOpenOption.READ)) {
+            ByteLineReader reader = new ByteLineReader(ch, READ_BUFFER_BYTES);
+            while (count < maxRows && reader.nextLine()) {
+                count++;
+                // Las filas con menos de 12 columnas nunca generan muestras: no se guardan
+                if (!tokenizer.parse(reader.buffer(), reader.lineStart(), reader.lineEnd(), row)) continue;
+                parts.get(partitionOf(row)).add(row);
+            }
+        }
+
+        long[] rows = new long[partitions];
+        int[] buses = new int[partitions];
+        long bytes = 0;
+        for (int i = 0; i < partitions; i++) {
+            rows[i] = parts.get(i).size();
+            buses[i] = parts.get(i).busCount();
+            bytes += parts.get(i).estimatedHeapBytes();
+        }
+        lastSkew = new PartitionSkew(rows, buses);
+        logger.info("Particiones columnares por {}: {} (~{} MB)", key, lastSkew, bytes >> 20);
+        return parts;
+    }
+
+    /**
+     * Misma regla que StreamingPartitionManager: hash consistente del busId, o
+     * lineId % nPartitions (0 si el lineId no se pudo parsear).
+     */
+    protected int partitionOf(DatagramRow row) {
+        if (ring != null) return ring.partitionOf(row.busId);
+        return row.lineIdValid ? Math.floorMod(row.lineId, partitions) : 0;
+    }
+
+    public PartitionKey getKey() {
+        return key;
+    }
+
+    public PartitionSkew getLastSkew() {
+        return lastSkew;
+    }
+}
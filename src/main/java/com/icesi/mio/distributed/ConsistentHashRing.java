@@ -0,0 +1,82 @@
+package com.icesi.mio.distributed;
+
+import java.util.Arrays;
+
+/**
+ * Anillo de hash consistente con nodos virtuales: cada partición ocupa
+ * virtualNodes puntos del anillo y una llave va a la partición del primer
+ * punto igual o mayor a su hash. Con suficientes nodos virtuales la carga
+ * queda pareja y agregar una partición sólo mueve ~1/n de las llaves.
+ *
+ * Inmutable, se puede compartir entre hilos.
+ */
+public final class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final int partitions;
+    private final long[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(int partitions) {
+        this(partitions, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(int partitions, int virtualNodes) {
+        if (partitions <= 0) throw new IllegalArgumentException("partitions must be > 0: " + partitions);
+        if (virtualNodes <= 0) throw new IllegalArgumentException("virtualNodes must be > 0: " + virtualNodes);
+        this.partitions = partitions;
+
+        int n = partitions * virtualNodes;
+        long[] hashes = new long[n];
+        for (int p = 0, k = 0; p < partitions; p++) {
+            for (int v = 0; v < virtualNodes; v++, k++) {
+                // el punto depende sólo de (p, v): agregar particiones no mueve los existentes
+                hashes[k] = mix64(((long) p << 32) | v);
+            }
+        }
+        // ordenar puntos conservando su dueño
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.points = new long[n];
+        this.owners = new int[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    public int partitions() {
+        return partitions;
+    }
+
+    public int partitionOf(long key) {
+        long h = mix64(key);
+        int i = Arrays.binarySearch(points, h);
+        if (i < 0) i = -i - 1;
+        if (i == points.length) i = 0; // vuelta al inicio del anillo
+        return owners[i];
+    }
+
+    /**
+     * Partición del busId tal como viene en el CSV (se usa el texto, igual que
+     * la agrupación por bus de DatagramProcessor).
+     */
+    public int partitionOf(String key) {
+        // FNV-1a de 64 bits sobre los chars
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return partitionOf(h);
+    }
+
+    // finalizador de SplitMix64
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
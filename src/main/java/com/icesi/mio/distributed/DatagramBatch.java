@@ -0,0 +1,63 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.parser.DatagramRow;
+
+/**
+ * Lote de datagramas ya decodificados (columnas primitivas) que viaja por las
+ * colas acotadas de StreamingPartitionManager hacia los workers.
+ */
+public final class DatagramBatch {
+
+    /**
+     * Marca de fin de flujo: el productor la encola una vez por partición.
+     */
+    public static final DatagramBatch END = new DatagramBatch(0);
+
+    private final long[] busId;
+    private final long[] latE7;
+    private final long[] lonE7;
+    private final long[] epochSecond;
+    private final int[] lineId;
+    private final byte[] flags;
+    private int size;
+
+    public DatagramBatch(int capacity) {
+        this.busId = new long[capacity];
+        this.latE7 = new long[capacity];
+        this.lonE7 = new long[capacity];
+        this.epochSecond = new long[capacity];
+        this.lineId = new int[capacity];
+        this.flags = new byte[capacity];
+    }
+
+    public void add(DatagramRow row) {
+        int i = size++;
+        busId[i] = row.busId;
+        latE7[i] = row.latE7;
+        lonE7[i] = row.lonE7;
+        epochSecond[i] = row.epochSecond;
+        lineId[i] = row.lineId;
+        flags[i] = row.flags();
+    }
+
+    /**
+     * Copia la fila i en out.
+     */
+    public void get(int i, DatagramRow out) {
+        out.complete = true;
+        out.busId = busId[i];
+        out.latE7 = latE7[i];
+        out.lonE7 = lonE7[i];
+        out.epochSecond = epochSecond[i];
+        out.lineId = lineId[i];
+        out.setFlags(flags[i]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == busId.length;
+    }
+}
@@ -38,11 +38,13 @@ public class DemoRunner {
         GraphBuilder gb = new GraphBuilder(lines, stops, lineStops);
         Map<Integer, RouteGraph> graphs = gb.buildGraphs();
 
-        // Construir índice arcId -> Arc para consulta legible
-        var arcIndex = com.icesi.mio.util.ArcIndexBuilder.buildIndex(graphs);
+        // Tabla arcId (ordinal denso) -> Arc para consulta legible
+        var arcTable = gb.getArcTable();
 
-        PartitionManager pm = new PartitionManager(4);
+        PartitionManager pm = new PartitionManager(4, PartitionKey.BUS_ID);
         DistributedComputeCoordinator dcc = new DistributedComputeCoordinator(pm, 4, 600);
+        // -Dmio.execution=VIRTUAL_THREADS: hilos virtuales para la E/S (JDK 21)
+        dcc.setExecutionMode(ExecutionMode.valueOf(System.getProperty("mio.execution", "PLATFORM_THREADS")));
 
         long start = System.currentTimeMillis();
         var res = dcc.runJob(datagramsFile, graphs);
@@ -58,7 +60,7 @@ public class DemoRunner {
             for (var e : res.entrySet()) {
                 long arcId = e.getKey();
                 double avg = e.getValue();
-                var arc = arcIndex.get(arcId);
+                var arc = arcTable.get((int) arcId);
                 if (arc != null) {
                     logger.info("arcId={} line={} orientation={} seq={} from={} to={} avgSpeedKph={}",
                             arcId, arc.getLineId(), arc.getOrientationName(), arc.getSequence(), arc.getFromStop().getShortName(), arc.getToStop().getShortName(), avg);
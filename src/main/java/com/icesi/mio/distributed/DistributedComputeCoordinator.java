@@ -1,62 +1,180 @@
 package com.icesi.mio.distributed;
 
 import com.icesi.mio.aggregate.ArcSpeedAggregator;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.BusPairAccumulator;
 import com.icesi.mio.worker.DatagramProcessor;
+import com.icesi.mio.worker.ScanOptions;
 import com.icesi.mio.model.RouteGraph;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 
 /**
  * Orquestador simple que distribuye particiones a un pool local de workers (simula distribución).
+ * Con setExecutionMode(VIRTUAL_THREADS) las etapas de E/S del modo streaming usan hilos virtuales.
  */
 public class DistributedComputeCoordinator {
     private final PartitionManager partitionManager;
+    private final StreamingPartitionManager streamingManager;
+    private final ColumnarPartitionManager columnarManager;
     private final int numWorkers;
     private final long timeoutSeconds;
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM_THREADS;
+    private long maxGapSeconds = BusPairAccumulator.DEFAULT_MAX_GAP_SECONDS;
 
     public DistributedComputeCoordinator(PartitionManager partitionManager, int numWorkers, long timeoutSeconds) {
         this.partitionManager = partitionManager;
+        this.streamingManager = null;
+        this.columnarManager = null;
         this.numWorkers = numWorkers;
         this.timeoutSeconds = timeoutSeconds;
     }
 
-    public Map<Long, Double> runJob(String datagramCsvPath, Map<Integer, RouteGraph> routeGraphs) throws IOException, InterruptedException {
-        List<DatagramPartition> parts = partitionManager.createPartitions(datagramCsvPath);
+    /**
+     * Modo streaming: un worker por partición consume su cola mientras el hilo
+     * que llama a runJob lee el archivo. numWorkers no aplica en este modo.
+     */
+    public DistributedComputeCoordinator(StreamingPartitionManager streamingManager, long timeoutSeconds) {
+        this.partitionManager = null;
+        this.streamingManager = streamingManager;
+        this.columnarManager = null;
+        this.numWorkers = streamingManager.getPartitions();
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Modo columnar: particiones en arreglos primitivos (ColumnarDatagramPartition)
+     * procesadas con DatagramProcessor.processColumnar.
+     */
+    public DistributedComputeCoordinator(ColumnarPartitionManager columnarManager, int numWorkers, long timeoutSeconds) {
+        this.partitionManager = null;
+        this.streamingManager = null;
+        this.columnarManager = columnarManager;
+        this.numWorkers = numWorkers;
+        this.timeoutSeconds = timeoutSeconds;
+    }
 
-        ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
-        CompletionService<PartialResult> ecs = new ExecutorCompletionService<>(pool);
+    /**
+     * Hilos para las etapas de E/S; PLATFORM_THREADS por defecto.
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
 
-        for (DatagramPartition p : parts) {
-            ecs.submit(() -> {
-                DatagramProcessor proc = new DatagramProcessor(p, routeGraphs);
-                return proc.process();
-            });
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Pausa máxima entre los datagramas de un par, en todos los modos (ver
+     * BusPairAccumulator.maxGapSeconds); DEFAULT_MAX_GAP_SECONDS por defecto.
+     */
+    public void setMaxGapSeconds(long maxGapSeconds) {
+        if (maxGapSeconds <= 0) throw new IllegalArgumentException("maxGapSeconds debe ser positivo: " + maxGapSeconds);
+        this.maxGapSeconds = maxGapSeconds;
+    }
+
+    /**
+     * Ejecuta el trabajo completo. Si un worker falla o se vence el plazo, las
+     * tareas pendientes se cancelan y se lanza la causa (TimeoutException en el
+     * caso del plazo); nunca se retornan promedios de un subconjunto de particiones.
+     * Fuera del modo streaming el plazo empieza cuando ya se crearon las particiones.
+     */
+    public Map<Long, Double> runJob(String datagramCsvPath, Map<Integer, RouteGraph> routeGraphs)
+            throws IOException, InterruptedException, TimeoutException {
+        if (streamingManager != null) return runStreamingJob(datagramCsvPath, routeGraphs);
+
+        // El índice espacial se construye una sola vez y se comparte entre workers (sólo lectura)
+        ScanOptions options = scanOptions(routeGraphs);
+
+        // La lectura (createPartitions) corre en este hilo antes de abrir el scope,
+        // así el plazo sólo cuenta el emparejamiento, que corre en un pool fijo
+        List<Callable<PartialResult>> tasks = new ArrayList<>();
+        if (columnarManager != null) {
+            for (ColumnarDatagramPartition p : columnarManager.createPartitions(datagramCsvPath)) {
+                tasks.add(() -> DatagramProcessor.processColumnar(p, options));
+            }
+        } else {
+            for (DatagramPartition p : partitionManager.createPartitions(datagramCsvPath)) {
+                tasks.add(() -> new DatagramProcessor(p, options).process());
+            }
         }
 
-        ArcSpeedAggregator aggregator = new ArcSpeedAggregator();
+        List<Future<PartialResult>> results = new ArrayList<>();
+        try (TaskScope scope = new TaskScope("runJob", Executors.newFixedThreadPool(numWorkers), timeoutSeconds)) {
+            for (Callable<PartialResult> task : tasks) results.add(scope.fork(task));
+            scope.join();
+        } catch (ExecutionException e) {
+            throw workerFailure(e);
+        }
+
+        return merge(results);
+    }
 
-        long deadline = System.currentTimeMillis() + timeoutSeconds * 1000;
-        int received = 0;
-        while (received < parts.size() && System.currentTimeMillis() < deadline) {
-            Future<PartialResult> f = ecs.poll(1, TimeUnit.SECONDS);
-            if (f != null) {
-                try {
-                    PartialResult pr = f.get();
-                    aggregator.merge(pr);
-                    received++;
-                } catch (ExecutionException e) {
-                    // log and continue
-                    e.printStackTrace();
-                }
+    /**
+     * Productor y un consumidor por cola como tareas de E/S (hilos de
+     * plataforma o virtuales según executionMode). Con hilos virtuales el
+     * emparejamiento de cada lote se delega a un pool acotado de hilos de
+     * plataforma, así que el paralelismo de CPU no depende del número de colas.
+     */
+    private Map<Long, Double> runStreamingJob(String datagramCsvPath, Map<Integer, RouteGraph> routeGraphs)
+            throws IOException, InterruptedException, TimeoutException {
+        ScanOptions options = scanOptions(routeGraphs);
+        List<BlockingQueue<DatagramBatch>> queues = streamingManager.createQueues();
+
+        boolean virtual = executionMode == ExecutionMode.VIRTUAL_THREADS;
+        ExecutorService cpu = virtual
+                ? Executors.newFixedThreadPool(Math.min(queues.size(), Runtime.getRuntime().availableProcessors()))
+                : null;
+        List<Future<PartialResult>> results = new ArrayList<>();
+        // Los consumidores deben correr a la vez (uno por cola), si no el productor se bloquea
+        try (TaskScope scope = new TaskScope("runStreamingJob", executionMode.newIoExecutor(queues.size() + 1), timeoutSeconds)) {
+            for (int i = 0; i < queues.size(); i++) {
+                final int partitionId = i;
+                final BlockingQueue<DatagramBatch> queue = queues.get(i);
+                results.add(scope.fork(() -> DatagramProcessor.processQueue(partitionId, queue, options, cpu)));
             }
+            scope.fork(() -> {
+                long lines = streamingManager.stream(datagramCsvPath, queues);
+                System.out.println("[DistributedComputeCoordinator] streamed lines=" + lines + " by " + streamingManager.getKey() + ": " + streamingManager.getLastSkew());
+                return lines;
+            });
+            scope.join();
+        } catch (ExecutionException e) {
+            throw workerFailure(e);
+        } finally {
+            if (cpu != null) cpu.shutdownNow();
         }
 
-        pool.shutdownNow();
+        return merge(results);
+    }
 
+    private ScanOptions scanOptions(Map<Integer, RouteGraph> routeGraphs) {
+        return new ScanOptions(new ArcMatcher(routeGraphs)).withMaxGapSeconds(maxGapSeconds);
+    }
+
+    private static Map<Long, Double> merge(List<Future<PartialResult>> results) throws InterruptedException {
+        ArcSpeedAggregator aggregator = new ArcSpeedAggregator();
+        for (Future<PartialResult> f : results) {
+            try {
+                aggregator.merge(f.get());
+            } catch (ExecutionException e) {
+                // join() ya verificó que todas terminaron bien
+                throw new IllegalStateException(e);
+            }
+        }
         return aggregator.finalizeAverages();
     }
-}
 
+    private static IOException workerFailure(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) return (IOException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        return new IOException("Falló un worker", cause);
+    }
+}
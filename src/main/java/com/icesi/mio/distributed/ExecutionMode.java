@@ -0,0 +1,59 @@
+package com.icesi.mio.distributed;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hilos usados por DistributedComputeCoordinator para las etapas de E/S
+ * (lectura y parseo del archivo, espera en las colas). El emparejamiento con
+ * ArcMatcher, que es de CPU, siempre corre en un pool acotado de hilos de plataforma.
+ */
+public enum ExecutionMode {
+    /**
+     * Un hilo de plataforma por tarea de E/S.
+     */
+    PLATFORM_THREADS,
+    /**
+     * Un hilo virtual por tarea de E/S (JDK 21+; compilar con -Pjdk21). En una
+     * JVM anterior se usan hilos de plataforma.
+     */
+    VIRTUAL_THREADS;
+
+    // Executors.newVirtualThreadPerTaskExecutor() se busca en ejecución para que
+    // el build con release 17 siga funcionando
+    private static final MethodHandle NEW_VIRTUAL_EXECUTOR = findVirtualExecutorFactory();
+
+    public static boolean virtualThreadsAvailable() {
+        return NEW_VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * Executor para tareas de E/S; platformThreads es el tamaño del pool cuando
+     * se usan hilos de plataforma.
+     */
+    ExecutorService newIoExecutor(int platformThreads) {
+        if (this == VIRTUAL_THREADS) {
+            if (NEW_VIRTUAL_EXECUTOR != null) {
+                try {
+                    return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invokeExact();
+                } catch (Throwable t) {
+                    throw new IllegalStateException("No se pudo crear el executor de hilos virtuales", t);
+                }
+            }
+            System.out.println("[ExecutionMode] Hilos virtuales no disponibles en Java " + Runtime.version().feature() + ", se usan hilos de plataforma");
+        }
+        return Executors.newFixedThreadPool(platformThreads);
+    }
+
+    private static MethodHandle findVirtualExecutorFactory() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -1,42 +1,79 @@
 package com.icesi.mio.distributed;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.icesi.mio.aggregate.ArcSpeedProfile;
+import com.icesi.mio.aggregate.ArcSpeedQuantiles;
+import com.icesi.mio.aggregate.DenseArcStats;
 
 /**
- * Resultado parcial devuelto por un worker: map arcId -> SumCount
+ * Resultado parcial devuelto por un worker: (sum, count) por ordinal denso de arco
+ * y, opcionalmente, por arco y franja horaria (ArcSpeedProfile) y cuantiles
+ * por arco (ArcSpeedQuantiles)
  */
 public class PartialResult {
     private final int partitionId;
-    private final Map<Long, SumCount> arcStats = new HashMap<>();
+    private final DenseArcStats arcStats;
+    // null = sin perfiles por franja
+    private ArcSpeedProfile profile;
+    // null = sin cuantiles
+    private ArcSpeedQuantiles quantiles;
 
-    public PartialResult(int partitionId) {
+    public PartialResult(int partitionId, int arcCount) {
         this.partitionId = partitionId;
+        this.arcStats = new DenseArcStats(arcCount);
     }
 
     public int getPartitionId() {
         return partitionId;
     }
 
-    public Map<Long, SumCount> getArcStats() {
+    public DenseArcStats getArcStats() {
         return arcStats;
     }
 
-    public void addSample(long arcId, double speed) {
-        arcStats.compute(arcId, (k, v) -> {
-            if (v == null) return new SumCount(speed, 1);
-            v.sum += speed; v.count += 1; return v;
-        });
+    public ArcSpeedProfile getProfile() {
+        return profile;
     }
 
-    public static class SumCount {
-        public double sum;
-        public long count;
+    /**
+     * Activa la acumulación por franja: las muestras con datagramDate
+     * (addSample(arcId, speed, epochSecond)) también se suman en profile.
+     */
+    public PartialResult withProfile(ArcSpeedProfile profile) {
+        this.profile = profile;
+        return this;
+    }
 
-        public SumCount(double sum, long count) {
-            this.sum = sum;
-            this.count = count;
-        }
+    public ArcSpeedQuantiles getQuantiles() {
+        return quantiles;
+    }
+
+    /**
+     * Activa los cuantiles por arco: cada muestra también se suma en quantiles.
+     */
+    public PartialResult withQuantiles(ArcSpeedQuantiles quantiles) {
+        this.quantiles = quantiles;
+        return this;
+    }
+
+    public void addSample(int arcId, double speed) {
+        arcStats.add(arcId, speed);
+        if (quantiles != null) quantiles.add(arcId, speed);
+    }
+
+    public void addSample(int arcId, double speed, long epochSecond) {
+        arcStats.add(arcId, speed);
+        if (profile != null) profile.add(arcId, speed, epochSecond);
+        if (quantiles != null) quantiles.add(arcId, speed);
     }
-}
 
+    /**
+     * Muestra que pesa weight (0 < weight <= 1) en los promedios por arco y
+     * por franja (ver DenseArcStats.addWeighted). Los cuantiles la cuentan
+     * como una muestra más: describen las velocidades observadas en el arco.
+     */
+    public void addSample(int arcId, double speed, long epochSecond, double weight) {
+        arcStats.addWeighted(arcId, speed, weight);
+        if (profile != null) profile.add(arcId, speed, epochSecond, weight);
+        if (quantiles != null) quantiles.add(arcId, speed);
+    }
+}
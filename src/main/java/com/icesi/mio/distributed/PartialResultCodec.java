@@ -0,0 +1,347 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.aggregate.DenseArcStats;
+import com.icesi.mio.util.Lz4Block;
+import com.icesi.mio.util.VarInts;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Codificación binaria versionada de PartialResult.
+ *
+ * Frame: magic "MIOP" (4), versión (1), flags (1), largo del payload (4) y,
+ * si está comprimido, largo sin comprimir (4); luego el payload. El payload
+ * va en columnas: partitionId (zigzag varint), arcCount y número de arcos con
+ * muestras (varint), los arcId ordenados como deltas varint, los count como
+ * varint y las sumas como double de 8 bytes; con FLAG_WEIGHTED siguen los
+ * pesos por arco como double (ver DenseArcStats; sin el flag el peso es el
+ * count). Con FLAG_LZ4 el payload va comprimido en formato de bloque LZ4 (Lz4Block).
+ *
+ * Encoder y Decoder permiten escribir y leer el frame por pedazos en
+ * ByteBuffers de cualquier tamaño.
+ */
+public final class PartialResultCodec {
+
+    public static final int MAGIC = 0x4D494F50; // "MIOP"
+    public static final byte VERSION = 2;
+    public static final byte FLAG_LZ4 = 1;
+    public static final byte FLAG_WEIGHTED = 2;
+
+    static final int HEADER_BYTES = 4 + 1 + 1 + 4;
+    // payload mayor a esto se rechaza al decodificar (dato corrupto)
+    private static final int MAX_PAYLOAD_BYTES = 1 << 30;
+
+    private PartialResultCodec() {
+    }
+
+    /**
+     * Frame completo en un arreglo.
+     */
+    public static byte[] encode(PartialResult result, boolean compress) {
+        Encoder encoder = encoder(result, compress);
+        ByteBuffer frame = ByteBuffer.allocate(encoder.frameBytes());
+        encoder.encode(frame);
+        return frame.array();
+    }
+
+    /**
+     * Escribe el frame en out; lanza BufferOverflowException si no cabe.
+     */
+    public static void encode(PartialResult result, boolean compress, ByteBuffer out) {
+        Encoder encoder = encoder(result, compress);
+        if (out.remaining() < encoder.frameBytes()) throw new BufferOverflowException();
+        encoder.encode(out);
+    }
+
+    /**
+     * Escribe el frame en out por pedazos de a lo sumo 64 KB.
+     */
+    public static void write(PartialResult result, boolean compress, OutputStream out) throws IOException {
+        Encoder encoder = encoder(result, compress);
+        ByteBuffer chunk = ByteBuffer.allocate(Math.min(encoder.frameBytes(), 1 << 16));
+        boolean done;
+        do {
+            chunk.clear();
+            done = encoder.encode(chunk);
+            out.write(chunk.array(), 0, chunk.position());
+        } while (!done);
+    }
+
+    /**
+     * Lee un frame completo desde la posición actual de in.
+     */
+    public static PartialResult decode(ByteBuffer in) throws IOException {
+        try {
+            int flags = readHeader(in);
+            int payloadLength = in.getInt();
+            int rawLength = (flags & FLAG_LZ4) != 0 ? in.getInt() : payloadLength;
+            checkLength(payloadLength);
+            checkLength(rawLength);
+            byte[] payload = new byte[payloadLength];
+            in.get(payload);
+            return decodePayload(payload, flags, rawLength);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Frame de PartialResult incompleto");
+        }
+    }
+
+    /**
+     * Lee un frame completo de un stream.
+     */
+    public static PartialResult read(InputStream in) throws IOException {
+        DataInputStream din = in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in);
+        byte[] header = new byte[HEADER_BYTES];
+        din.readFully(header);
+        ByteBuffer h = ByteBuffer.wrap(header);
+        int flags = readHeader(h);
+        int payloadLength = h.getInt();
+        int rawLength = (flags & FLAG_LZ4) != 0 ? din.readInt() : payloadLength;
+        checkLength(payloadLength);
+        checkLength(rawLength);
+        byte[] payload = new byte[payloadLength];
+        din.readFully(payload);
+        return decodePayload(payload, flags, rawLength);
+    }
+
+    public static Encoder encoder(PartialResult result, boolean compress) {
+        return new Encoder(result, compress);
+    }
+
+    public static Decoder decoder() {
+        return new Decoder();
+    }
+
+    /**
+     * Escribe un frame por pedazos: cada llamada a encode escribe en dst lo
+     * que quepa. Sin compresión los campos se generan desde los acumuladores
+     * a medida que se piden, sin armar el frame en memoria; con FLAG_LZ4 el
+     * payload se arma y comprime al crear el Encoder, porque el bloque LZ4
+     * necesita la entrada completa.
+     */
+    public static final class Encoder {
+        private static final int PREFIX = 0;
+        private static final int IDS = 1;
+        private static final int COUNTS = 2;
+        private static final int SUMS = 3;
+        private static final int WEIGHTS = 4;
+        private static final int DONE = 5;
+
+        private final DenseArcStats stats;
+        private final int partitionId;
+        private final boolean weighted;
+        private final int frameBytes;
+        // bytes pendientes de copiar: el encabezado, un campo o el frame comprimido
+        private final byte[] scratch = new byte[3 * VarInts.MAX_BYTES];
+        private byte[] pending;
+        private int pendingPos;
+        private int pendingEnd;
+        // columna que se está escribiendo y siguiente arco con muestras
+        private int column = PREFIX;
+        private int cursor;
+        private int prevArc;
+        private int written;
+
+        private Encoder(PartialResult result, boolean compress) {
+            this.stats = result.getArcStats();
+            this.partitionId = result.getPartitionId();
+            this.weighted = stats.isWeighted();
+            byte flags = weighted ? FLAG_WEIGHTED : 0;
+            int payloadLength = payloadLength();
+            if (!compress) {
+                frameBytes = HEADER_BYTES + payloadLength;
+                ByteBuffer.wrap(scratch).putInt(MAGIC).put(VERSION).put(flags).putInt(payloadLength);
+                setPending(scratch, HEADER_BYTES);
+                return;
+            }
+            byte[] payload = new byte[payloadLength];
+            int length = 0;
+            while (nextField()) {
+                System.arraycopy(pending, 0, payload, length, pendingEnd);
+                length += pendingEnd;
+            }
+            byte[] frame = new byte[HEADER_BYTES + 4 + Lz4Block.maxCompressedLength(payloadLength)];
+            int n = Lz4Block.compress(payload, 0, payloadLength, frame, HEADER_BYTES + 4);
+            ByteBuffer.wrap(frame).putInt(MAGIC).put(VERSION).put((byte) (flags | FLAG_LZ4)).putInt(n).putInt(payloadLength);
+            frameBytes = HEADER_BYTES + 4 + n;
+            setPending(frame, frameBytes);
+        }
+
+        /**
+         * Retorna true cuando ya se escribió el frame completo.
+         */
+        public boolean encode(ByteBuffer dst) {
+            while (dst.hasRemaining()) {
+                if (pendingPos == pendingEnd && !nextField()) break;
+                int n = Math.min(dst.remaining(), pendingEnd - pendingPos);
+                dst.put(pending, pendingPos, n);
+                pendingPos += n;
+                written += n;
+            }
+            return written == frameBytes;
+        }
+
+        public int frameBytes() {
+            return frameBytes;
+        }
+
+        private void setPending(byte[] bytes, int end) {
+            pending = bytes;
+            pendingPos = 0;
+            pendingEnd = end;
+        }
+
+        // deja en pending el siguiente campo del payload; false si no quedan
+        private boolean nextField() {
+            ByteBuffer buf = ByteBuffer.wrap(scratch);
+            if (column == PREFIX) {
+                VarInts.put(buf, VarInts.zigzag(partitionId));
+                VarInts.put(buf, stats.arcCount());
+                VarInts.put(buf, stats.size());
+                column = IDS;
+                cursor = nextArc(0);
+            } else {
+                while (cursor < 0) {
+                    if (column == (weighted ? WEIGHTS : SUMS) || column == DONE) {
+                        column = DONE;
+                        return false;
+                    }
+                    column++;
+                    cursor = nextArc(0);
+                }
+                if (column == IDS) {
+                    VarInts.put(buf, cursor - prevArc);
+                    prevArc = cursor;
+                } else if (column == COUNTS) {
+                    VarInts.put(buf, stats.getCount(cursor));
+                } else if (column == SUMS) {
+                    buf.putDouble(stats.getSum(cursor));
+                } else {
+                    buf.putDouble(stats.getWeight(cursor));
+                }
+                cursor = nextArc(cursor + 1);
+            }
+            setPending(scratch, buf.position());
+            return true;
+        }
+
+        private int nextArc(int from) {
+            for (int a = from; a < stats.arcCount(); a++) {
+                if (stats.getCount(a) > 0) return a;
+            }
+            return -1;
+        }
+
+        private int payloadLength() {
+            int n = VarInts.size(VarInts.zigzag(partitionId)) + VarInts.size(stats.arcCount()) + VarInts.size(stats.size());
+            int prev = 0;
+            for (int a = nextArc(0); a >= 0; a = nextArc(a + 1)) {
+                n += VarInts.size(a - prev) + VarInts.size(stats.getCount(a)) + (weighted ? 2 : 1) * Double.BYTES;
+                prev = a;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Lee un frame por pedazos: cada llamada a decode consume de src sólo los
+     * bytes de este frame, y retorna el resultado cuando el frame está completo
+     * (null mientras falten bytes). Después de retornar un resultado se puede
+     * reutilizar para el siguiente frame.
+     */
+    public static final class Decoder {
+        private final byte[] header = new byte[HEADER_BYTES + 4];
+        private int headerLength;
+        private int headerNeeded = HEADER_BYTES;
+        private byte[] payload;
+        private int payloadLength;
+        private int flags;
+        private int rawLength;
+
+        private Decoder() {
+        }
+
+        public PartialResult decode(ByteBuffer src) throws IOException {
+            if (payload == null) {
+                int n = Math.min(src.remaining(), headerNeeded - headerLength);
+                src.get(header, headerLength, n);
+                headerLength += n;
+                if (headerLength < headerNeeded) return null;
+                ByteBuffer h = ByteBuffer.wrap(header, 0, headerLength);
+                flags = readHeader(h);
+                int length = h.getInt();
+                if ((flags & FLAG_LZ4) != 0 && headerNeeded == HEADER_BYTES) {
+                    // falta el largo sin comprimir
+                    headerNeeded += 4;
+                    return decode(src);
+                }
+                rawLength = (flags & FLAG_LZ4) != 0 ? h.getInt() : length;
+                checkLength(length);
+                checkLength(rawLength);
+                payload = new byte[length];
+                payloadLength = 0;
+            }
+            int n = Math.min(src.remaining(), payload.length - payloadLength);
+            src.get(payload, payloadLength, n);
+            payloadLength += n;
+            if (payloadLength < payload.length) return null;
+
+            PartialResult result = decodePayload(payload, flags, rawLength);
+            payload = null;
+            headerLength = 0;
+            headerNeeded = HEADER_BYTES;
+            return result;
+        }
+    }
+
+    private static int readHeader(ByteBuffer h) throws IOException {
+        if (h.getInt() != MAGIC) throw new IOException("No es un PartialResult codificado");
+        byte version = h.get();
+        if (version != VERSION) throw new IOException("Versión de PartialResult no soportada: " + version);
+        return h.get();
+    }
+
+    private static void checkLength(int n) throws IOException {
+        if (n < 0 || n > MAX_PAYLOAD_BYTES) throw new IOException("Largo de payload inválido: " + n);
+    }
+
+    private static PartialResult decodePayload(byte[] payload, int flags, int rawLength) throws IOException {
+        byte[] raw = payload;
+        if ((flags & FLAG_LZ4) != 0) {
+            raw = new byte[rawLength];
+            Lz4Block.decompress(payload, 0, payload.length, raw, 0, rawLength);
+        }
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(raw);
+            int partitionId = (int) VarInts.unzigzag(VarInts.get(buf));
+            long arcCount = VarInts.get(buf);
+            long n = VarInts.get(buf);
+            if (arcCount > Integer.MAX_VALUE || n > arcCount || n > raw.length) throw new IOException("PartialResult corrupto");
+            PartialResult result = new PartialResult(partitionId, (int) arcCount);
+            int[] arcIds = new int[(int) n];
+            long[] counts = new long[(int) n];
+            long arcId = 0;
+            for (int k = 0; k < n; k++) {
+                arcId += VarInts.get(buf);
+                if (arcId >= arcCount) throw new IOException("PartialResult corrupto: arcId " + arcId);
+                arcIds[k] = (int) arcId;
+            }
+            for (int k = 0; k < n; k++) counts[k] = VarInts.get(buf);
+            double[] sums = new double[(int) n];
+            for (int k = 0; k < n; k++) sums[k] = buf.getDouble();
+            DenseArcStats stats = result.getArcStats();
+            boolean weighted = (flags & FLAG_WEIGHTED) != 0;
+            for (int k = 0; k < n; k++) stats.add(arcIds[k], sums[k], counts[k], weighted ? buf.getDouble() : counts[k]);
+            if (buf.hasRemaining()) throw new IOException("PartialResult corrupto: bytes de sobra");
+            return result;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("PartialResult corrupto: payload truncado");
+        }
+    }
+}
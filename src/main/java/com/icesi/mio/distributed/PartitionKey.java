@@ -0,0 +1,17 @@
+package com.icesi.mio.distributed;
+
+/**
+ * Columna usada para repartir los datagramas entre particiones.
+ */
+public enum PartitionKey {
+    /**
+     * lineId % nPartitions (modo original). Un bus que cambia de línea queda
+     * repartido en varias particiones y se pierden los pares en el cambio.
+     */
+    LINE_ID,
+    /**
+     * Hash consistente del busId: todos los datagramas de un bus caen en la misma
+     * partición, así que los pares consecutivos son los mismos que en una sola pasada.
+     */
+    BUS_ID
+}
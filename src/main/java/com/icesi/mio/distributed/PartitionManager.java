@@ -1,6 +1,8 @@
 package com.icesi.mio.distributed;
 
 import com.icesi.mio.parser.CSVReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -8,14 +10,25 @@ import java.util.List;
 
 /**
  * Crea particiones sencillas a partir de un CSV leyendo en memoria y repartiendo
- * por "lineId % nPartitions" si el CSV tiene lineId en la columna esperada.
+ * por "lineId % nPartitions" (PartitionKey.LINE_ID) o por hash consistente del
+ * busId (PartitionKey.BUS_ID).
  */
 public class PartitionManager {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionManager.class);
 
     private final int partitions;
+    private final PartitionKey key;
+    private final ConsistentHashRing ring;
+    private PartitionSkew lastSkew;
 
     public PartitionManager(int partitions) {
+        this(partitions, PartitionKey.LINE_ID);
+    }
+
+    public PartitionManager(int partitions, PartitionKey key) {
         this.partitions = partitions;
+        this.key = key;
+        this.ring = key == PartitionKey.BUS_ID ? new ConsistentHashRing(partitions) : null;
     }
 
     public List<DatagramPartition> createPartitions(String csvPath) throws IOException {
@@ -24,24 +37,49 @@ public class PartitionManager {
         for (int i = 0; i < partitions; i++) parts.add(new DatagramPartition(i));
 
         for (String[] r : rows) {
-            // Formato real de datagrams MIO:
-            // 0:eventType, 1:registerdate, 2:stopId, 3:odometer, 4:lat, 5:lon,
-            // 6:taskId, 7:lineId, 8:tripId, 9:unknown, 10:datagramDate, 11:busId
-            try {
-                if (r.length > 7) {
-                    int lineId = Integer.parseInt(r[7].trim());
-                    int idx = Math.floorMod(lineId, partitions);
-                    parts.get(idx).addRow(r);
-                } else {
-                    // Fila mal formada, mandar a partición 0
-                    parts.get(0).addRow(r);
-                }
-            } catch (Exception e) {
-                // Si falla el parseo de lineId, enviar a la partición 0
-                parts.get(0).addRow(r);
-            }
+            parts.get(partitionOf(r)).addRow(r);
         }
+        recordSkew(parts);
         return parts;
     }
-}
 
+    /**
+     * Partición de una fila ya separada en columnas.
+     */
+    protected int partitionOf(String[] r) {
+        // Formato real de datagrams MIO:
+        // 0:eventType, 1:registerdate, 2:stopId, 3:odometer, 4:lat, 5:lon,
+        // 6:taskId, 7:lineId, 8:tripId, 9:unknown, 10:datagramDate, 11:busId
+        if (key == PartitionKey.BUS_ID) {
+            // misma llave con la que DatagramProcessor agrupa por bus
+            return ring.partitionOf(r.length > 11 ? r[11] : "");
+        }
+        try {
+            if (r.length > 7) {
+                int lineId = Integer.parseInt(r[7].trim());
+                return Math.floorMod(lineId, partitions);
+            }
+            // Fila mal formada, mandar a partición 0
+            return 0;
+        } catch (Exception e) {
+            // Si falla el parseo de lineId, enviar a la partición 0
+            return 0;
+        }
+    }
+
+    protected void recordSkew(List<DatagramPartition> parts) {
+        lastSkew = PartitionSkew.of(parts);
+        logger.info("Particiones por {}: {}", key, lastSkew);
+    }
+
+    public PartitionKey getKey() {
+        return key;
+    }
+
+    /**
+     * Métricas de desbalance de la última llamada a createPartitions, o null.
+     */
+    public PartitionSkew getLastSkew() {
+        return lastSkew;
+    }
+}
@@ -0,0 +1,99 @@
+package com.icesi.mio.distributed;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Métricas de desbalance entre particiones: filas (y buses, si se conocen) por
+ * partición, max/promedio y coeficiente de variación de las filas.
+ */
+public final class PartitionSkew {
+
+    private final long[] rows;
+    private final int[] buses;
+
+    /**
+     * @param buses buses distintos por partición, o null si no se contaron
+     */
+    public PartitionSkew(long[] rows, int[] buses) {
+        this.rows = rows.clone();
+        this.buses = buses == null ? null : buses.clone();
+    }
+
+    public static PartitionSkew of(List<DatagramPartition> parts) {
+        long[] rows = new long[parts.size()];
+        int[] buses = new int[parts.size()];
+        for (int i = 0; i < parts.size(); i++) {
+            DatagramPartition p = parts.get(i);
+            Set<String> ids = new HashSet<>();
+            for (String[] r : p.getRows()) ids.add(r.length > 11 ? r[11] : "");
+            rows[i] = p.size();
+            buses[i] = ids.size();
+        }
+        return new PartitionSkew(rows, buses);
+    }
+
+    public int partitions() {
+        return rows.length;
+    }
+
+    public long rows(int partition) {
+        return rows[partition];
+    }
+
+    /**
+     * Buses distintos de la partición, o -1 si no se contaron.
+     */
+    public int buses(int partition) {
+        return buses == null ? -1 : buses[partition];
+    }
+
+    public long totalRows() {
+        long total = 0;
+        for (long r : rows) total += r;
+        return total;
+    }
+
+    public long maxRows() {
+        long max = 0;
+        for (long r : rows) max = Math.max(max, r);
+        return max;
+    }
+
+    public long minRows() {
+        long min = Long.MAX_VALUE;
+        for (long r : rows) min = Math.min(min, r);
+        return rows.length == 0 ? 0 : min;
+    }
+
+    public double meanRows() {
+        return rows.length == 0 ? 0.0 : (double) totalRows() / rows.length;
+    }
+
+    /**
+     * Filas de la partición más cargada sobre el promedio (1.0 = balance perfecto).
+     * Acota el speedup: el trabajo termina cuando termina la partición más grande.
+     */
+    public double maxOverMean() {
+        double mean = meanRows();
+        return mean == 0 ? 1.0 : maxRows() / mean;
+    }
+
+    /**
+     * Desviación estándar / promedio de las filas por partición.
+     */
+    public double coefficientOfVariation() {
+        double mean = meanRows();
+        if (mean == 0) return 0.0;
+        double sq = 0;
+        for (long r : rows) sq += (r - mean) * (r - mean);
+        return Math.sqrt(sq / rows.length) / mean;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("partitions=%d rows=%d min=%d max=%d max/mean=%.3f cv=%.3f",
+                partitions(), totalRows(), minRows(), maxRows(), maxOverMean(), coefficientOfVariation());
+    }
+}
@@ -0,0 +1,411 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.aggregate.ArcSpeedAggregator;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.MappedLineReader;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.util.VarInts;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.BusPairAccumulator;
+import com.icesi.mio.worker.RangeStitcher;
+import com.icesi.mio.worker.ScanOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coordinador del modo distribuido real: escucha en TCP a procesos RemoteWorker
+ * (en este u otros hosts), les envía el grafo una sola vez y les reparte rangos
+ * de bytes del archivo de datagramas alineados a inicio de línea. Cada worker
+ * devuelve el PartialResult de su rango y el primer/último datagrama de cada
+ * bus; el coordinador une los rangos en orden con RangeStitcher, así que el
+ * resultado es el mismo que el de StreamingFullFileProcessor.process().
+ *
+ * Si un worker se cae o reporta un error, su rango en curso vuelve a la cola
+ * y lo toma otro worker (incluso uno que se conecte después). Un rango que
+ * falla MAX_ATTEMPTS veces aborta el trabajo.
+ *
+ * Por defecto escucha sólo en loopback; -Dmio.remote.bind=host (p.ej.
+ * 0.0.0.0) lo expone a otros hosts. Cada worker debe probar que conoce el
+ * token compartido (variable de entorno MIO_REMOTE_TOKEN) antes de recibir
+ * el grafo o tareas; las conexiones que no lo hacen se cierran.
+ *
+ * Uso: RemoteCoordinator [dataDir] [datagramas.csv] [workers] [puerto], con
+ * -Dmio.maxGapSeconds=N para la pausa máxima entre los datagramas de un par.
+ * Con -Dmio.spawnWorkers=true lanza los workers como JVMs locales (si no hay
+ * MIO_REMOTE_TOKEN se genera uno sólo para ellos).
+ */
+public class RemoteCoordinator implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(RemoteCoordinator.class);
+
+    static final int DEFAULT_PORT = 7070;
+    /** Variable de entorno con el token compartido entre coordinador y workers. */
+    public static final String TOKEN_ENV = "MIO_REMOTE_TOKEN";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long POLL_MILLIS = 200;
+
+    private final ServerSocket server;
+    private final String token;
+    private final SecureRandom random = new SecureRandom();
+    private final int workers;
+    private final int rangesPerWorker;
+    private final long timeoutSeconds;
+    private long maxGapSeconds = BusPairAccumulator.DEFAULT_MAX_GAP_SECONDS;
+
+    /**
+     * Escucha en loopback.
+     */
+    public RemoteCoordinator(int port, String token, int workers, int rangesPerWorker, long timeoutSeconds) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, token, workers, rangesPerWorker, timeoutSeconds);
+    }
+
+    /**
+     * @param bindAddress     interfaz donde escuchar (loopback salvo que los workers estén en otros hosts)
+     * @param port            puerto TCP (0 = cualquiera libre, ver getPort())
+     * @param token           secreto compartido con los workers (no vacío)
+     * @param workers         workers esperados; define el número de rangos
+     * @param rangesPerWorker rangos por worker (más rangos = menos trabajo a repetir si uno falla)
+     */
+    public RemoteCoordinator(InetAddress bindAddress, int port, String token, int workers, int rangesPerWorker,
+                             long timeoutSeconds) throws IOException {
+        if (token == null || token.isEmpty()) throw new IllegalArgumentException("Se necesita un token compartido");
+        this.token = token;
+        this.server = new ServerSocket();
+        this.server.bind(new InetSocketAddress(bindAddress, port));
+        this.server.setSoTimeout((int) POLL_MILLIS);
+        this.workers = workers;
+        this.rangesPerWorker = rangesPerWorker;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public InetAddress getBindAddress() {
+        return server.getInetAddress();
+    }
+
+    /**
+     * Pausa máxima entre los datagramas de un par (ver BusPairAccumulator.maxGapSeconds);
+     * se envía a los workers con el grafo. DEFAULT_MAX_GAP_SECONDS por defecto.
+     */
+    public void setMaxGapSeconds(long maxGapSeconds) {
+        if (maxGapSeconds <= 0) throw new IllegalArgumentException("maxGapSeconds debe ser positivo: " + maxGapSeconds);
+        this.maxGapSeconds = maxGapSeconds;
+    }
+
+    /**
+     * Token aleatorio para workers lanzados con startLocalWorker.
+     */
+    public static String newToken() {
+        byte[] b = new byte[24];
+        new SecureRandom().nextBytes(b);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+    }
+
+    /**
+     * Procesa datagramCsvPath con los workers que se conecten. Los CSV del grafo
+     * se leen de dataDir (Constants.LINES_FILE, ...) y se envían tal cual.
+     */
+    public Map<Long, Double> runJob(String datagramCsvPath, String dataDir)
+            throws IOException, InterruptedException, TimeoutException {
+        byte[][] graphFiles = {
+                Files.readAllBytes(Path.of(dataDir + Constants.LINES_FILE)),
+                Files.readAllBytes(Path.of(dataDir + Constants.STOPS_FILE)),
+                Files.readAllBytes(Path.of(dataDir + Constants.LINESTOPS_FILE))};
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        Map<Integer, RouteGraph> graphs = gb.buildGraphs();
+        ScanOptions options = new ScanOptions(new ArcMatcher(graphs, gb.getArcTable(), gb.getArcGeometry()))
+                .withMaxGapSeconds(maxGapSeconds);
+
+        long[] bounds;
+        try (FileChannel ch = FileChannel.open(Path.of(datagramCsvPath), StandardOpenOption.READ)) {
+            long size = ch.size();
+            int nRanges = Math.max(1, workers * rangesPerWorker);
+            bounds = new long[nRanges + 1];
+            for (int k = 1; k < nRanges; k++) {
+                bounds[k] = MappedLineReader.alignToLineStart(ch, Math.max(bounds[k - 1], size * k / nRanges), size);
+            }
+            bounds[nRanges] = size;
+        }
+
+        Job job = new Job(Path.of(datagramCsvPath).toAbsolutePath().toString(), graphFiles,
+                options.matcher().getArcCount(), options.maxGapSeconds(), bounds);
+        Thread acceptor = new Thread(() -> acceptLoop(job), "remote-coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        long start = System.currentTimeMillis();
+        try {
+            if (!job.done.await(timeoutSeconds, TimeUnit.SECONDS)) {
+                throw new TimeoutException("Rangos sin terminar tras " + timeoutSeconds + "s: " + job.done.getCount() + " de " + job.rangeCount());
+            }
+            if (job.failure != null) throw job.failure;
+        } finally {
+            job.finished = true;
+            acceptor.join(POLL_MILLIS * 5);
+            // los workers libres reciben BYE; luego se cierran las conexiones de workers colgados
+            long waitUntil = System.currentTimeMillis() + POLL_MILLIS * 5;
+            while (!job.sockets.isEmpty() && System.currentTimeMillis() < waitUntil) Thread.sleep(10);
+            for (Socket s : job.sockets) {
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        ArcSpeedAggregator aggregator = new ArcSpeedAggregator();
+        RangeStitcher stitcher = new RangeStitcher(options);
+        long lines = 0;
+        for (RangeResult r : job.results) {
+            lines += r.lineCount;
+            for (DatagramRow row : r.first) stitcher.addFirst(row);
+            for (DatagramRow row : r.last) stitcher.addLast(row);
+            aggregator.merge(r.partial);
+        }
+        aggregator.merge(stitcher.getBoundaryPairs());
+        logger.info("Trabajo remoto terminado en {} ms: {} rangos, {} filas, {} conexiones de workers, {} reasignaciones",
+                System.currentTimeMillis() - start, job.rangeCount(), lines, job.connections, job.reassigned);
+        return aggregator.finalizeAverages();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Lanza un RemoteWorker como JVM aparte con el classpath de esta JVM; el
+     * token va en su entorno (no en la línea de comandos).
+     */
+    public static Process startLocalWorker(int port, String token) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                RemoteWorker.class.getName(), "localhost", String.valueOf(port))
+                .inheritIO();
+        pb.environment().put(TOKEN_ENV, token);
+        return pb.start();
+    }
+
+    private void acceptLoop(Job job) {
+        while (!job.finished) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketTimeoutException e) {
+                continue;
+            } catch (IOException e) {
+                if (!job.finished) job.fail(e);
+                return;
+            }
+            job.sockets.add(socket);
+            job.connections++;
+            Thread t = new Thread(() -> serve(job, socket), "remote-worker-" + socket.getRemoteSocketAddress());
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private void serve(Job job, Socket socket) {
+        int current = -1;
+        String name = String.valueOf(socket.getRemoteSocketAddress());
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+
+            WireProtocol.expect(in, WireProtocol.HELLO);
+            if (in.readInt() != WireProtocol.MAGIC) throw new IOException("No es un RemoteWorker");
+            byte version = in.readByte();
+            if (version != WireProtocol.VERSION) throw new IOException("Versión de protocolo no soportada: " + version);
+
+            byte[] nonce = new byte[WireProtocol.NONCE_BYTES];
+            random.nextBytes(nonce);
+            out.writeByte(WireProtocol.CHALLENGE);
+            out.write(nonce);
+            out.flush();
+            WireProtocol.expect(in, WireProtocol.AUTH);
+            byte[] answer = new byte[WireProtocol.SIGNATURE_BYTES];
+            in.readFully(answer);
+            if (!MessageDigest.isEqual(answer, WireProtocol.sign(token, nonce))) {
+                throw new IOException("Token inválido");
+            }
+
+            out.writeByte(WireProtocol.GRAPH);
+            for (byte[] file : job.graphFiles) WireProtocol.writeBlob(out, file);
+            out.writeUTF(job.datagramCsvPath);
+            VarInts.write(out, job.maxGapSeconds);
+            out.flush();
+            WireProtocol.expect(in, WireProtocol.READY);
+            long arcCount = VarInts.read(in);
+            if (arcCount != job.arcCount) {
+                throw new IOException("El worker construyó " + arcCount + " arcos; el coordinador tiene " + job.arcCount);
+            }
+            logger.info("Worker {} listo", name);
+
+            while (!job.finished && job.done.getCount() > 0) {
+                Integer range = job.pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (range == null) continue;
+                current = range;
+                out.writeByte(WireProtocol.TASK);
+                VarInts.write(out, range);
+                VarInts.write(out, job.bounds[range]);
+                VarInts.write(out, job.bounds[range + 1]);
+                out.flush();
+
+                WireProtocol.expect(in, WireProtocol.RESULT);
+                if (VarInts.read(in) != range) throw new IOException("Resultado de otro rango");
+                RangeResult r = new RangeResult();
+                r.lineCount = VarInts.read(in);
+                r.partial = PartialResultCodec.read(in);
+                if (r.partial.getArcStats().arcCount() > job.arcCount) throw new IOException("Resultado con arcos fuera del grafo");
+                r.first = WireProtocol.readRows(in);
+                r.last = WireProtocol.readRows(in);
+                job.complete(range, r);
+                current = -1;
+            }
+            out.writeByte(WireProtocol.BYE);
+            out.flush();
+        } catch (IOException | InterruptedException e) {
+            if (job.finished && current < 0) return;
+            logger.warn("Worker {} falló: {}", name, e.toString());
+            if (current >= 0) job.retry(current, e);
+        } finally {
+            job.sockets.remove(socket);
+        }
+    }
+
+    /**
+     * Estado de un runJob compartido entre los hilos de cada conexión.
+     */
+    private static final class Job {
+        final String datagramCsvPath;
+        final byte[][] graphFiles;
+        final int arcCount;
+        final long maxGapSeconds;
+        final long[] bounds;
+        final RangeResult[] results;
+        final int[] attempts;
+        final BlockingDeque<Integer> pending = new LinkedBlockingDeque<>();
+        final CountDownLatch done;
+        final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+        volatile boolean finished;
+        volatile IOException failure;
+        volatile int connections;
+        volatile int reassigned;
+
+        Job(String datagramCsvPath, byte[][] graphFiles, int arcCount, long maxGapSeconds, long[] bounds) {
+            this.datagramCsvPath = datagramCsvPath;
+            this.graphFiles = graphFiles;
+            this.arcCount = arcCount;
+            this.maxGapSeconds = maxGapSeconds;
+            this.bounds = bounds;
+            this.results = new RangeResult[bounds.length - 1];
+            this.attempts = new int[bounds.length - 1];
+            this.done = new CountDownLatch(bounds.length - 1);
+            for (int r = 0; r < bounds.length - 1; r++) pending.add(r);
+        }
+
+        int rangeCount() {
+            return results.length;
+        }
+
+        synchronized void complete(int range, RangeResult r) {
+            if (results[range] != null) return;
+            results[range] = r;
+            done.countDown();
+        }
+
+        synchronized void retry(int range, Exception cause) {
+            if (results[range] != null) return;
+            if (++attempts[range] >= MAX_ATTEMPTS) {
+                fail(new IOException("El rango " + range + " falló " + attempts[range] + " veces", cause));
+                return;
+            }
+            reassigned++;
+            // al frente de la cola: es el más atrasado
+            pending.addFirst(range);
+        }
+
+        synchronized void fail(IOException e) {
+            if (failure == null) failure = e;
+            while (done.getCount() > 0) done.countDown();
+        }
+    }
+
+    /**
+     * Resultado de un rango recibido de un worker.
+     */
+    private static final class RangeResult {
+        long lineCount;
+        PartialResult partial;
+        List<DatagramRow> first = new ArrayList<>();
+        List<DatagramRow> last = new ArrayList<>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dataDir = args.length > 0 ? args[0] : Constants.DEFAULT_DATA_DIR;
+        String datagramsFile = args.length > 1 ? args[1] : dataDir + "datagrams4history.csv";
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_PORT;
+        if (!new File(datagramsFile).exists()) throw new IOException("Archivo no encontrado: " + datagramsFile);
+
+        boolean spawn = Boolean.getBoolean("mio.spawnWorkers");
+        String token = System.getenv(TOKEN_ENV);
+        if (token == null || token.isEmpty()) {
+            if (!spawn) throw new IllegalStateException("Defina " + TOKEN_ENV + " (el mismo valor en los workers)");
+            token = newToken();
+        }
+        InetAddress bind = InetAddress.getByName(System.getProperty("mio.remote.bind", InetAddress.getLoopbackAddress().getHostAddress()));
+
+        List<Process> spawned = new ArrayList<>();
+        try (RemoteCoordinator coordinator = new RemoteCoordinator(bind, port, token, workers, 4, 3600)) {
+            coordinator.setMaxGapSeconds(Long.getLong("mio.maxGapSeconds", BusPairAccumulator.DEFAULT_MAX_GAP_SECONDS));
+            logger.info("Coordinador escuchando en {}:{}", coordinator.getBindAddress().getHostAddress(), coordinator.getPort());
+            if (spawn) {
+                for (int i = 0; i < workers; i++) spawned.add(startLocalWorker(coordinator.getPort(), token));
+            }
+            Map<Long, Double> res = coordinator.runJob(datagramsFile, dataDir);
+            logger.info("Averages computed: {} arcs", res.size());
+        } finally {
+            for (Process p : spawned) p.waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+}
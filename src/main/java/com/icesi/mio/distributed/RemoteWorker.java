@@ -0,0 +1,169 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.MappedLineReader;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.VarInts;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.RangeScan;
+import com.icesi.mio.worker.ScanOptions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Proceso worker del modo distribuido real: se conecta a un RemoteCoordinator,
+ * recibe una sola vez los CSV del grafo (y construye su ArcMatcher) y luego
+ * procesa los rangos de bytes del archivo de datagramas que le asignan. El
+ * archivo se lee localmente, así que debe estar en la misma ruta en cada host
+ * (disco compartido o copia).
+ *
+ * Uso: RemoteWorker [host] [puerto], con el token compartido en la variable
+ * de entorno MIO_REMOTE_TOKEN.
+ */
+public class RemoteWorker {
+
+    // Ventana de mapeo por rango
+    private static final int MAP_WINDOW_BYTES = 256 << 20;
+    // -Dmio.wire.lz4=true: resultados comprimidos (conviene en redes lentas)
+    private static final boolean COMPRESS = Boolean.getBoolean("mio.wire.lz4");
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : RemoteCoordinator.DEFAULT_PORT;
+        String token = System.getenv(RemoteCoordinator.TOKEN_ENV);
+        if (token == null || token.isEmpty()) throw new IllegalStateException("Defina " + RemoteCoordinator.TOKEN_ENV);
+        run(host, port, token);
+    }
+
+    /**
+     * Atiende al coordinador hasta recibir BYE o hasta que se cierre la conexión.
+     */
+    public static void run(String host, int port, String token) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            out.writeByte(WireProtocol.HELLO);
+            out.writeInt(WireProtocol.MAGIC);
+            out.writeByte(WireProtocol.VERSION);
+            out.flush();
+
+            WireProtocol.expect(in, WireProtocol.CHALLENGE);
+            byte[] nonce = new byte[WireProtocol.NONCE_BYTES];
+            in.readFully(nonce);
+            out.writeByte(WireProtocol.AUTH);
+            out.write(WireProtocol.sign(token, nonce));
+            out.flush();
+
+            WireProtocol.expect(in, WireProtocol.GRAPH);
+            ArcMatcher matcher = new ArcMatcher(readGraphs(in));
+            String datagramCsvPath = in.readUTF();
+            ScanOptions options = new ScanOptions(matcher).withMaxGapSeconds(VarInts.read(in));
+            System.out.println("[RemoteWorker] grafo recibido: " + matcher.getArcCount() + " arcos, datagramas en " + datagramCsvPath
+                    + ", pausa máxima " + options.maxGapSeconds() + " s");
+            out.writeByte(WireProtocol.READY);
+            VarInts.write(out, matcher.getArcCount());
+            out.flush();
+
+            try (FileChannel ch = FileChannel.open(Path.of(datagramCsvPath), StandardOpenOption.READ)) {
+                while (true) {
+                    byte type;
+                    try {
+                        type = in.readByte();
+                    } catch (EOFException e) {
+                        System.out.println("[RemoteWorker] el coordinador cerró la conexión");
+                        break;
+                    }
+                    if (type == WireProtocol.BYE) break;
+                    if (type != WireProtocol.TASK) throw new IOException("Mensaje inesperado: " + type);
+                    int rangeId = (int) VarInts.read(in);
+                    long from = VarInts.read(in);
+                    long to = VarInts.read(in);
+                    RangeScan scan = new RangeScan(rangeId, true, options);
+                    try {
+                        scan.scan(new MappedLineReader(ch, from, to, MAP_WINDOW_BYTES));
+                    } catch (IOException | RuntimeException e) {
+                        out.writeByte(WireProtocol.ERROR);
+                        VarInts.write(out, rangeId);
+                        out.writeUTF(String.valueOf(e));
+                        out.flush();
+                        continue;
+                    }
+                    writeResult(out, scan);
+                    System.out.println("[RemoteWorker] rango " + rangeId + " [" + from + ", " + to + ") filas=" + scan.getLineCount());
+                    out.flush();
+                }
+            }
+        }
+        System.out.println("[RemoteWorker] fin");
+    }
+
+    private static void writeResult(DataOutputStream out, RangeScan scan) throws IOException {
+        try {
+            writeResultUnchecked(out, scan);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeResultUnchecked(DataOutputStream out, RangeScan scan) throws IOException {
+        out.writeByte(WireProtocol.RESULT);
+        VarInts.write(out, scan.getPartitionId());
+        VarInts.write(out, scan.getLineCount());
+        PartialResultCodec.write(scan.getPartial(), COMPRESS, out);
+        VarInts.write(out, scan.firstCount());
+        scan.forEachFirst(row -> writeRow(out, row));
+        VarInts.write(out, scan.busCount());
+        scan.forEachLast(row -> writeRow(out, row));
+    }
+
+    private static void writeRow(DataOutputStream out, DatagramRow row) {
+        try {
+            WireProtocol.writeRow(out, row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Los parsers leen de archivos: se escriben los CSV recibidos en un directorio temporal.
+     */
+    private static Map<Integer, RouteGraph> readGraphs(DataInputStream in) throws IOException {
+        Path dir = Files.createTempDirectory("mio-worker");
+        try {
+            Path lines = dir.resolve("lines.csv");
+            Path stops = dir.resolve("stops.csv");
+            Path lineStops = dir.resolve("linestops.csv");
+            Files.write(lines, WireProtocol.readBlob(in));
+            Files.write(stops, WireProtocol.readBlob(in));
+            Files.write(lineStops, WireProtocol.readBlob(in));
+            GraphBuilder gb = new GraphBuilder(
+                    new LineParser().parseLines(lines.toString()),
+                    new StopParser().parseStops(stops.toString()),
+                    new LineStopParser().parseLineStops(lineStops.toString()));
+            return gb.buildGraphs();
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
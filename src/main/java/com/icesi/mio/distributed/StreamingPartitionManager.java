@@ -0,0 +1,126 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.parser.ByteLineReader;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.parser.DatagramTokenizer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Particionador en streaming: lee el CSV de datagramas una sola vez y va
+ * empujando lotes a una cola acotada por partición (según PartitionKey), que
+ * los workers consumen en paralelo. put() bloquea cuando una cola está llena,
+ * así que la lectura avanza al ritmo del worker más lento y la memoria usada
+ * no depende del tamaño del archivo (a lo sumo queueCapacity + 1 lotes por partición).
+ */
+public class StreamingPartitionManager {
+
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    private final int partitions;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final PartitionKey key;
+    private final ConsistentHashRing ring;
+    private volatile PartitionSkew lastSkew;
+
+    public StreamingPartitionManager(int partitions) {
+        this(partitions, 4096, 8);
+    }
+
+    public StreamingPartitionManager(int partitions, int batchSize, int queueCapacity) {
+        this(partitions, batchSize, queueCapacity, PartitionKey.LINE_ID);
+    }
+
+    public StreamingPartitionManager(int partitions, int batchSize, int queueCapacity, PartitionKey key) {
+        this.partitions = partitions;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.key = key;
+        this.ring = key == PartitionKey.BUS_ID ? new ConsistentHashRing(partitions) : null;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public List<BlockingQueue<DatagramBatch>> createQueues() {
+        List<BlockingQueue<DatagramBatch>> queues = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        return queues;
+    }
+
+    /**
+     * Lee el archivo y reparte sus filas en las colas; al terminar (o si falla)
+     * encola DatagramBatch.END en todas (si se interrumpe, sólo donde haya
+     * espacio). Retorna el número de filas leídas.
+     */
+    public long stream(String csvPath, List<BlockingQueue<DatagramBatch>> queues) throws IOException, InterruptedException {
+        DatagramBatch[] pending = new DatagramBatch[partitions];
+        for (int i = 0; i < partitions; i++) pending[i] = new DatagramBatch(batchSize);
+
+        DatagramTokenizer tokenizer = new DatagramTokenizer();
+        DatagramRow row = new DatagramRow();
+        long lineCount = 0L;
+        long[] rowsPerPartition = new long[partitions];
+        boolean cancelled = false;
+        try (FileChannel ch = FileChannel.open(Path.of(csvPath), StandardOpenOption.READ)) {
+            ByteLineReader reader = new ByteLineReader(ch, READ_BUFFER_BYTES);
+            while (reader.nextLine()) {
+                lineCount++;
+                // Las filas con menos de 12 columnas nunca generan muestras: se descartan aquí
+                if (!tokenizer.parse(reader.buffer(), reader.lineStart(), reader.lineEnd(), row)) continue;
+
+                int idx = partitionOf(row);
+                rowsPerPartition[idx]++;
+                DatagramBatch batch = pending[idx];
+                batch.add(row);
+                if (batch.isFull()) {
+                    queues.get(idx).put(batch);
+                    pending[idx] = new DatagramBatch(batchSize);
+                }
+            }
+            for (int i = 0; i < partitions; i++) {
+                if (pending[i].size() > 0) queues.get(i).put(pending[i]);
+            }
+        } catch (InterruptedException e) {
+            cancelled = true;
+            throw e;
+        } finally {
+            // cancelado: los consumidores también se cancelan, no esperar espacio en las colas
+            for (BlockingQueue<DatagramBatch> q : queues) {
+                if (cancelled) q.offer(DatagramBatch.END);
+                else q.put(DatagramBatch.END);
+            }
+        }
+        lastSkew = new PartitionSkew(rowsPerPartition, null);
+        return lineCount;
+    }
+
+    /**
+     * Partición de la fila: hash consistente del busId, o lineId % nPartitions
+     * (0 si el lineId no se pudo parsear).
+     */
+    protected int partitionOf(DatagramRow row) {
+        if (ring != null) return ring.partitionOf(row.busId);
+        return row.lineIdValid ? Math.floorMod(row.lineId, partitions) : 0;
+    }
+
+    public PartitionKey getKey() {
+        return key;
+    }
+
+    /**
+     * Filas enviadas a cada partición en la última llamada a stream, o null.
+     */
+    public PartitionSkew getLastSkew() {
+        return lastSkew;
+    }
+}
@@ -0,0 +1,89 @@
+package com.icesi.mio.distributed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Grupo de tareas que termina completo o no termina: join() espera a todas
+ * hasta el plazo y, si una falla o el plazo vence, cancela (interrumpe) las
+ * pendientes y lanza la causa en vez de devolver resultados parciales. close()
+ * cancela lo que quede y espera a que los hilos realmente se detengan; si el
+ * hilo que cierra es interrumpido deja de esperar y conserva la interrupción.
+ *
+ * Es dueño del executor que recibe. Pensado para usarse en try-with-resources
+ * desde un solo hilo.
+ */
+final class TaskScope implements AutoCloseable {
+
+    // espera máxima para que las tareas canceladas respondan a la interrupción
+    private static final long CANCEL_GRACE_MILLIS = 5_000;
+
+    private final String name;
+    private final ExecutorService executor;
+    private final CompletionService<Object> completion;
+    private final List<Future<Object>> forked = new ArrayList<>();
+    private final long timeoutSeconds;
+    private final long deadlineNanos;
+
+    TaskScope(String name, ExecutorService executor, long timeoutSeconds) {
+        this.name = name;
+        this.executor = executor;
+        this.completion = new ExecutorCompletionService<>(executor);
+        this.timeoutSeconds = timeoutSeconds;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+    }
+
+    @SuppressWarnings("unchecked")
+    <V> Future<V> fork(Callable<V> task) {
+        Future<Object> f = completion.submit((Callable<Object>) task);
+        forked.add(f);
+        return (Future<V>) f;
+    }
+
+    /**
+     * Espera a que terminen todas las tareas. Al retornar, get() de cada Future
+     * no bloquea.
+     */
+    void join() throws InterruptedException, ExecutionException, TimeoutException {
+        boolean ok = false;
+        try {
+            for (int done = 0; done < forked.size(); done++) {
+                long remaining = deadlineNanos - System.nanoTime();
+                Future<Object> f = remaining > 0 ? completion.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (f == null) {
+                    throw new TimeoutException(name + ": " + (forked.size() - done) + " de " + forked.size()
+                            + " tareas sin terminar tras " + timeoutSeconds + "s");
+                }
+                f.get(); // propaga la falla de la tarea
+            }
+            ok = true;
+        } finally {
+            if (!ok) cancelAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CANCEL_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+                System.out.println("[TaskScope] " + name + ": hay tareas que no respondieron a la cancelación");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void cancelAll() {
+        for (Future<Object> f : forked) f.cancel(true);
+    }
+}
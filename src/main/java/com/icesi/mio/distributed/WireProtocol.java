@@ -0,0 +1,116 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.util.VarInts;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Protocolo TCP entre RemoteCoordinator y RemoteWorker. Mensajes binarios
+ * (DataOutputStream), cada uno precedido por un byte de tipo:
+ *
+ * worker -> coordinador: HELLO (magic, versión); AUTH (HMAC-SHA256 del reto con el token compartido);
+ *                        READY (arcCount);
+ *                        RESULT (rangeId, filas, frame de PartialResultCodec, primeros y últimos datagramas por bus);
+ *                        ERROR (rangeId, mensaje)
+ * coordinador -> worker: CHALLENGE (reto aleatorio de NONCE_BYTES bytes);
+ *                        GRAPH (lines, stops, linestops como bytes de los CSV, ruta de los datagramas,
+ *                               pausa máxima entre los datagramas de un par en segundos);
+ *                        TASK (rangeId, desde, hasta); BYE
+ *
+ * El token no viaja por la red: el worker prueba que lo conoce firmando el
+ * reto, y el coordinador cierra la conexión si la firma no coincide.
+ *
+ * Enteros en varint (zigzag si pueden ser negativos).
+ */
+final class WireProtocol {
+
+    static final int MAGIC = 0x4D494F57; // "MIOW"
+    static final byte VERSION = 4;
+    static final int NONCE_BYTES = 32;
+    static final int SIGNATURE_BYTES = 32;
+
+    static final byte HELLO = 1;
+    static final byte GRAPH = 2;
+    static final byte READY = 3;
+    static final byte TASK = 4;
+    static final byte RESULT = 5;
+    static final byte ERROR = 6;
+    static final byte BYE = 7;
+    static final byte CHALLENGE = 8;
+    static final byte AUTH = 9;
+
+    private WireProtocol() {
+    }
+
+    static void expect(DataInputStream in, byte type) throws IOException {
+        byte got = in.readByte();
+        if (got == ERROR) {
+            VarInts.read(in); // rangeId
+            throw new IOException("El otro extremo reportó un error: " + in.readUTF());
+        }
+        if (got != type) throw new IOException("Mensaje inesperado: " + got + " (se esperaba " + type + ")");
+    }
+
+    /**
+     * Respuesta al reto: HMAC-SHA256(token, nonce).
+     */
+    static byte[] sign(String token, byte[] nonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(token.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 no disponible", e);
+        }
+    }
+
+    static void writeBlob(DataOutputStream out, byte[] data) throws IOException {
+        VarInts.write(out, data.length);
+        out.write(data);
+    }
+
+    static byte[] readBlob(DataInputStream in) throws IOException {
+        long n = VarInts.read(in);
+        if (n < 0 || n > Integer.MAX_VALUE - 8) throw new IOException("Bloque demasiado grande: " + n);
+        byte[] data = new byte[(int) n];
+        in.readFully(data);
+        return data;
+    }
+
+    static void writeRow(DataOutputStream out, DatagramRow row) throws IOException {
+        VarInts.write(out, VarInts.zigzag(row.busId));
+        VarInts.write(out, VarInts.zigzag(row.latE7));
+        VarInts.write(out, VarInts.zigzag(row.lonE7));
+        VarInts.write(out, VarInts.zigzag(row.epochSecond));
+        VarInts.write(out, VarInts.zigzag(row.lineId));
+        out.writeByte(row.flags());
+    }
+
+    static DatagramRow readRow(DataInputStream in) throws IOException {
+        DatagramRow row = new DatagramRow();
+        row.complete = true;
+        row.busId = VarInts.unzigzag(VarInts.read(in));
+        row.latE7 = VarInts.unzigzag(VarInts.read(in));
+        row.lonE7 = VarInts.unzigzag(VarInts.read(in));
+        row.epochSecond = VarInts.unzigzag(VarInts.read(in));
+        row.lineId = (int) VarInts.unzigzag(VarInts.read(in));
+        row.setFlags(in.readByte());
+        return row;
+    }
+
+    static List<DatagramRow> readRows(DataInputStream in) throws IOException {
+        long n = VarInts.read(in);
+        List<DatagramRow> rows = new ArrayList<>((int) Math.min(n, 1 << 16));
+        for (long i = 0; i < n; i++) rows.add(readRow(in));
+        return rows;
+    }
+}
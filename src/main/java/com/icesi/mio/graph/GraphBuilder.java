@@ -16,6 +16,11 @@ public class GraphBuilder {
     private final Map<Integer, Stop> stops;
     private final List<LineStop> lineStops;
 
+    // Siguiente ordinal denso de arco y tabla global resultante
+    private int nextArcId;
+    private ArcTable arcTable;
+    private ArcGeometry arcGeometry;
+
     public GraphBuilder(Map<Integer, Line> lines, Map<Integer, Stop> stops, List<LineStop> lineStops) {
         this.lines = lines;
         this.stops = stops;
@@ -23,12 +28,16 @@ public class GraphBuilder {
     }
 
     /**
-     * Construye todos los grafos de rutas
+     * Construye todos los grafos de rutas.
+     *
+     * Cada arco recibe un ordinal denso (0..N-1) estable: las rutas, orientaciones
+     * y variantes se recorren en orden ascendente y los arcos en orden de secuencia.
      */
     public Map<Integer, RouteGraph> buildGraphs() {
         logger.info("Construyendo grafos de rutas...");
         
         Map<Integer, RouteGraph> graphs = new HashMap<>();
+        nextArcId = 0;
         
         // Agrupar lineStops por lineId
         Map<Integer, List<LineStop>> lineStopsByLine = groupByLine();
@@ -48,10 +57,26 @@ public class GraphBuilder {
             graphs.put(lineId, graph);
         }
         
+        arcTable = ArcTable.from(graphs);
+        arcGeometry = ArcGeometry.from(arcTable);
         logger.info("Total de grafos construidos: {}", graphs.size());
         return graphs;
     }
 
+    /**
+     * Tabla global arcId -> Arc del último buildGraphs()
+     */
+    public ArcTable getArcTable() {
+        return arcTable;
+    }
+
+    /**
+     * Paradas y arcos del último buildGraphs() proyectados a metros (ver ArcGeometry)
+     */
+    public ArcGeometry getArcGeometry() {
+        return arcGeometry;
+    }
+
     /**
      * Construye el grafo para una ruta específica.
      *
@@ -64,14 +89,14 @@ public class GraphBuilder {
         RouteGraph graph = new RouteGraph(line);
 
         // Agrupar por orientación y luego por variante
-        Map<Integer, Map<String, List<LineStop>>> byOrientationAndVariant = new HashMap<>();
+        Map<Integer, Map<String, List<LineStop>>> byOrientationAndVariant = new TreeMap<>();
 
         for (LineStop ls : stopsInLine) {
             int orientation = ls.getOrientation();
             String variant = ls.getLineVariant() == null ? "" : ls.getLineVariant();
 
             byOrientationAndVariant
-                    .computeIfAbsent(orientation, o -> new HashMap<>())
+                    .computeIfAbsent(orientation, o -> new TreeMap<>())
                     .computeIfAbsent(variant, v -> new ArrayList<>())
                     .add(ls);
         }
@@ -86,7 +111,7 @@ public class GraphBuilder {
                 group.sort(Comparator.comparingInt(LineStop::getStopSequence));
 
                 // Solo creamos arcos dentro de este grupo (misma orientación y variante)
-                createArcs(graph, group, orientation);
+                createArcs(graph, group, orientation, varEntry.getKey());
             }
         }
 
@@ -96,7 +121,7 @@ public class GraphBuilder {
     /**
      * Crea arcos entre paradas consecutivas
      */
-    private void createArcs(RouteGraph graph, List<LineStop> orderedStops, int orientation) {
+    private void createArcs(RouteGraph graph, List<LineStop> orderedStops, int orientation, String variant) {
         for (int i = 0; i < orderedStops.size() - 1; i++) {
             LineStop current = orderedStops.get(i);
             LineStop next = orderedStops.get(i + 1);
@@ -106,8 +131,10 @@ public class GraphBuilder {
             
             if (fromStop != null && toStop != null) {
                 Arc arc = new Arc(
+                    nextArcId++,
                     current.getLineId(),
                     orientation,
+                    variant,
                     fromStop,
                     toStop,
                     current.getStopSequence()
@@ -128,7 +155,7 @@ public class GraphBuilder {
      * Agrupa lineStops por lineId
      */
     private Map<Integer, List<LineStop>> groupByLine() {
-        Map<Integer, List<LineStop>> grouped = new HashMap<>();
+        Map<Integer, List<LineStop>> grouped = new TreeMap<>();
         
         for (LineStop ls : lineStops) {
             grouped.computeIfAbsent(ls.getLineId(), k -> new ArrayList<>()).add(ls);
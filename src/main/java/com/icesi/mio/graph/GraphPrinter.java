@@ -2,7 +2,6 @@ package com.icesi.mio.graph;
 
 import com.icesi.mio.model.Arc;
 import com.icesi.mio.model.RouteGraph;
-import com.icesi.mio.util.ArcIndexBuilder;
 
 import java.util.List;
 import java.util.Map;
@@ -129,16 +128,13 @@ public class GraphPrinter {
     }
 
     /**
-     * Imprime todos los grafos con velocidades promedio
+     * Imprime todos los grafos con velocidades promedio (speeds indexado por Arc.getId())
      */
     public void printAllGraphsWithSpeeds(Map<Integer, RouteGraph> graphs, Map<Long, Double> speeds) {
         System.out.println("\n" + "=".repeat(120));
         System.out.println("GRAFOS DE RUTAS SITM-MIO - ANÁLISIS DE ARCOS CON VELOCIDADES PROMEDIO");
         System.out.println("=".repeat(120) + "\n");
 
-        // Construir índice de arcos para acceso rápido
-        Map<Long, Arc> arcIndex = ArcIndexBuilder.buildIndex(graphs);
-
         // Ordenar por lineId
         List<Integer> sortedLineIds = graphs.keySet().stream()
                 .sorted()
@@ -146,16 +142,16 @@ public class GraphPrinter {
 
         for (Integer lineId : sortedLineIds) {
             RouteGraph graph = graphs.get(lineId);
-            printRouteGraphWithSpeeds(graph, speeds, arcIndex);
+            printRouteGraphWithSpeeds(graph, speeds);
         }
 
-        printSummaryWithSpeeds(graphs, speeds, arcIndex);
+        printSummaryWithSpeeds(graphs, speeds);
     }
 
     /**
      * Imprime el grafo de una ruta específica con velocidades
      */
-    private void printRouteGraphWithSpeeds(RouteGraph graph, Map<Long, Double> speeds, Map<Long, Arc> arcIndex) {
+    private void printRouteGraphWithSpeeds(RouteGraph graph, Map<Long, Double> speeds) {
         System.out.println("\n" + "-".repeat(120));
         System.out.printf("RUTA: %s - %s (ID: %d)%n", 
                 graph.getLine().getShortName(),
@@ -164,13 +160,13 @@ public class GraphPrinter {
         System.out.println("-".repeat(120));
 
         // Imprimir arcos de IDA
-        printArcsWithSpeeds("IDA", graph.getArcsIda(), speeds, arcIndex);
+        printArcsWithSpeeds("IDA", graph.getArcsIda(), speeds);
 
         // Imprimir arcos de VUELTA
-        printArcsWithSpeeds("VUELTA", graph.getArcsVuelta(), speeds, arcIndex);
+        printArcsWithSpeeds("VUELTA", graph.getArcsVuelta(), speeds);
 
         // Resumen de la ruta
-        int arcsWithSpeed = countArcsWithSpeed(graph, speeds, arcIndex);
+        int arcsWithSpeed = countArcsWithSpeed(graph, speeds);
         System.out.printf("\nRESUMEN: %d paradas, %d arcos (IDA: %d, VUELTA: %d), %d con velocidad promedio%n",
                 graph.getTotalStops(),
                 graph.getTotalArcs(),
@@ -182,7 +178,7 @@ public class GraphPrinter {
     /**
      * Imprime los arcos de una orientación con velocidades
      */
-    private void printArcsWithSpeeds(String orientation, List<Arc> arcs, Map<Long, Double> speeds, Map<Long, Arc> arcIndex) {
+    private void printArcsWithSpeeds(String orientation, List<Arc> arcs, Map<Long, Double> speeds) {
         if (arcs.isEmpty()) {
             System.out.printf("\n  %s: Sin arcos%n", orientation);
             return;
@@ -195,8 +191,7 @@ public class GraphPrinter {
         System.out.println("  " + "-".repeat(116));
 
         for (Arc arc : arcs) {
-            long arcId = ArcIndexBuilder.generateId(arc);
-            Double speed = speeds.get(arcId);
+            Double speed = speeds.get((long) arc.getId());
             String speedStr = speed != null ? String.format("%.2f", speed) : "N/A";
             
             System.out.printf("  %-5d %-25s %-10d -> %-25s %-10d %-15s%n",
@@ -212,15 +207,13 @@ public class GraphPrinter {
     /**
      * Cuenta cuántos arcos tienen velocidad calculada
      */
-    private int countArcsWithSpeed(RouteGraph graph, Map<Long, Double> speeds, Map<Long, Arc> arcIndex) {
+    private int countArcsWithSpeed(RouteGraph graph, Map<Long, Double> speeds) {
         int count = 0;
         for (Arc arc : graph.getArcsIda()) {
-            long arcId = ArcIndexBuilder.generateId(arc);
-            if (speeds.containsKey(arcId)) count++;
+            if (speeds.containsKey((long) arc.getId())) count++;
         }
         for (Arc arc : graph.getArcsVuelta()) {
-            long arcId = ArcIndexBuilder.generateId(arc);
-            if (speeds.containsKey(arcId)) count++;
+            if (speeds.containsKey((long) arc.getId())) count++;
         }
         return count;
     }
@@ -228,7 +221,7 @@ public class GraphPrinter {
     /**
      * Imprime resumen general con estadísticas de velocidades
      */
-    private void printSummaryWithSpeeds(Map<Integer, RouteGraph> graphs, Map<Long, Double> speeds, Map<Long, Arc> arcIndex) {
+    private void printSummaryWithSpeeds(Map<Integer, RouteGraph> graphs, Map<Long, Double> speeds) {
         System.out.println("\n" + "=".repeat(120));
         System.out.println("RESUMEN GENERAL CON VELOCIDADES");
         System.out.println("=".repeat(120));
@@ -0,0 +1,114 @@
+package com.icesi.mio.live;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sigue un archivo de datagramas que crece (como tail -f) y entrega cada línea
+ * completa al motor. Si el archivo se trunca o se reemplaza por uno más corto,
+ * vuelve a leer desde el inicio.
+ */
+public final class FileTailSource implements Runnable {
+
+    private final Path file;
+    private final LiveSpeedEngine engine;
+    private final boolean follow;
+    private long pollMillis = 200;
+    private boolean fromEnd;
+    private volatile boolean running = true;
+    private volatile long offset;
+    private volatile long lines;
+
+    /**
+     * @param follow true para seguir esperando datos al llegar al final; false para
+     *               leer lo que hay, publicar y terminar (reproducción)
+     */
+    public FileTailSource(Path file, LiveSpeedEngine engine, boolean follow) {
+        this.file = file;
+        this.engine = engine;
+        this.follow = follow;
+    }
+
+    public FileTailSource pollMillis(long millis) {
+        this.pollMillis = millis;
+        return this;
+    }
+
+    /**
+     * Empieza al final del archivo, ignorando lo ya escrito.
+     */
+    public FileTailSource fromEnd(boolean fromEnd) {
+        this.fromEnd = fromEnd;
+        return this;
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    @Override
+    public void run() {
+        LineFeeder feeder = new LineFeeder(engine);
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        try {
+            long pos = 0;
+            boolean first = true;
+            while (running) {
+                if (!Files.exists(file)) {
+                    if (!follow) break;
+                    sleep();
+                    continue;
+                }
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    if (first && fromEnd) pos = ch.size();
+                    first = false;
+                    if (ch.size() < pos) {
+                        System.out.println("[FileTailSource] " + file + " truncado, releyendo desde el inicio");
+                        pos = 0;
+                        feeder.reset();
+                    }
+                    int n;
+                    while (running && (n = ch.read(buf, pos)) > 0) {
+                        feeder.feed(buf.array(), 0, n);
+                        buf.clear();
+                        pos += n;
+                        offset = pos;
+                        lines = feeder.lines();
+                        engine.tick(System.currentTimeMillis());
+                    }
+                }
+                if (!follow) {
+                    feeder.finish();
+                    lines = feeder.lines();
+                    break;
+                }
+                engine.tick(System.currentTimeMillis());
+                sleep();
+            }
+        } catch (IOException e) {
+            System.out.println("[FileTailSource] Error leyendo " + file + ": " + e.getMessage());
+        }
+        if (!follow) engine.flush(System.currentTimeMillis());
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pollMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.icesi.mio.live;
+
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.parser.DatagramTokenizer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Corta bytes en líneas y entrega cada datagrama al motor. Guarda la línea
+ * incompleta del final hasta que llegue el resto. No es thread-safe: una
+ * instancia por fuente.
+ */
+final class LineFeeder {
+
+    private final LiveSpeedEngine engine;
+    private final DatagramTokenizer tokenizer = new DatagramTokenizer();
+    private final DatagramRow row = new DatagramRow();
+    private byte[] pending = new byte[8192];
+    private int pendingLength;
+    private long lines;
+
+    LineFeeder(LiveSpeedEngine engine) {
+        this.engine = engine;
+    }
+
+    void feed(byte[] data, int off, int len) {
+        int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            if (data[i] != '\n') continue;
+            if (pendingLength > 0) {
+                append(data, start, i - start);
+                emit(pending, 0, pendingLength);
+                pendingLength = 0;
+            } else {
+                emit(data, start, i - start);
+            }
+            start = i + 1;
+        }
+        if (start < end) append(data, start, end - start);
+    }
+
+    /**
+     * Entrega la última línea aunque no termine en salto de línea (fin de la entrada).
+     */
+    void finish() {
+        if (pendingLength > 0) emit(pending, 0, pendingLength);
+        pendingLength = 0;
+    }
+
+    /**
+     * Descarta la línea incompleta (el archivo se truncó).
+     */
+    void reset() {
+        pendingLength = 0;
+    }
+
+    long lines() {
+        return lines;
+    }
+
+    private void emit(byte[] data, int off, int len) {
+        if (len > 0 && data[off + len - 1] == '\r') len--;
+        if (len == 0) return;
+        lines++;
+        if (tokenizer.parse(ByteBuffer.wrap(data), off, off + len, row)) {
+            engine.offer(row);
+        }
+    }
+
+    private void append(byte[] data, int off, int len) {
+        if (pendingLength + len > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + len));
+        }
+        System.arraycopy(data, off, pending, pendingLength, len);
+        pendingLength += len;
+    }
+}
@@ -0,0 +1,100 @@
+package com.icesi.mio.live;
+
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.Line;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.model.Stop;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.BusPairAccumulator;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modo en vivo: sigue datagrams4streaming.csv (o escucha en un puerto local) y
+ * publica periódicamente las velocidades por ventana, combinadas con los
+ * promedios de datagrams4history.csv.
+ *
+ * Uso: LiveRunner [dataDir] [archivo | port:N]
+ * Propiedades: -Dmio.live.windows=300,900,3600 -Dmio.live.mode=SLIDING|TUMBLING
+ * -Dmio.live.latenessSeconds=120 -Dmio.live.publishMillis=1000 -Dmio.live.priorWeight=5
+ */
+public class LiveRunner {
+    private static final Logger logger = LoggerFactory.getLogger(LiveRunner.class);
+
+    public static void main(String[] args) throws Exception {
+        String dataDir = args.length > 0 ? args[0] : Constants.DEFAULT_DATA_DIR;
+        String source = args.length > 1 ? args[1] : dataDir + "datagrams4streaming.csv";
+        String historicalDataFile = dataDir + "datagrams4history.csv";
+
+        Map<Integer, Line> lines = new LineParser().parseLines(dataDir + Constants.LINES_FILE);
+        Map<Integer, Stop> stops = new StopParser().parseStops(dataDir + Constants.STOPS_FILE);
+        var lineStops = new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE);
+        Map<Integer, RouteGraph> graphs = new GraphBuilder(lines, stops, lineStops).buildGraphs();
+
+        Map<Long, Double> historical = new HashMap<>();
+        if (new File(historicalDataFile).exists()) {
+            historical = new StreamingFullFileProcessor(historicalDataFile, graphs)
+                    .processParallel(Runtime.getRuntime().availableProcessors());
+            logger.info("Prior histórico: {} arcos", historical.size());
+        }
+
+        String[] w = System.getProperty("mio.live.windows", "300,900,3600").split(",");
+        int[] windows = new int[w.length];
+        for (int i = 0; i < w.length; i++) windows[i] = Integer.parseInt(w[i].trim());
+
+        LiveSpeedEngine engine = new LiveSpeedEngine(new ArcMatcher(graphs), historical)
+                .windows(windows)
+                .mode(LiveSpeedEngine.WindowMode.valueOf(System.getProperty("mio.live.mode", "SLIDING")))
+                .allowedLatenessSeconds(Long.getLong("mio.live.latenessSeconds", 120L))
+                .maxGapSeconds(Long.getLong("mio.live.maxGapSeconds", BusPairAccumulator.DEFAULT_MAX_GAP_SECONDS))
+                .publishIntervalMillis(Long.getLong("mio.live.publishMillis", 1000L))
+                .priorWeight(Double.parseDouble(System.getProperty("mio.live.priorWeight", "5")))
+                .listener(LiveRunner::logSnapshot);
+
+        // publica aunque no lleguen datos (acota la latencia de lo ya recibido)
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(() -> engine.tick(System.currentTimeMillis()), 1, 1, TimeUnit.SECONDS);
+        try {
+            if (source.startsWith("port:")) {
+                SocketSource socket = new SocketSource(Integer.parseInt(source.substring(5)), engine);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        socket.close();
+                    } catch (Exception ignored) {
+                    }
+                }));
+                logger.info("Escuchando datagramas en localhost:{}", socket.getPort());
+                socket.run();
+            } else {
+                FileTailSource tail = new FileTailSource(Path.of(source), engine, true);
+                Runtime.getRuntime().addShutdownHook(new Thread(tail::stop));
+                logger.info("Siguiendo {}", source);
+                tail.run();
+            }
+        } finally {
+            ticker.shutdownNow();
+        }
+    }
+
+    private static void logSnapshot(LiveSnapshot s) {
+        StringBuilder sb = new StringBuilder();
+        for (int w : s.getWindowSeconds()) {
+            sb.append(' ').append(w / 60).append("min=").append(s.window(w).size()).append(" arcos");
+        }
+        logger.info("watermark={}{}", s.getWatermark() == Long.MIN_VALUE ? "-" : Instant.ofEpochSecond(s.getWatermark()), sb);
+    }
+}
@@ -0,0 +1,90 @@
+package com.icesi.mio.live;
+
+import com.icesi.mio.aggregate.DenseArcStats;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Velocidades publicadas por LiveSpeedEngine: una ventana por cada tamaño
+ * configurado, cerradas en el watermark del momento de publicar.
+ *
+ * La velocidad de un arco combina las muestras de la ventana con el promedio
+ * histórico como prior: (w * histórico + suma) / (w + peso de las muestras,
+ * ver DenseArcStats). Un arco sin
+ * muestras recientes conserva su velocidad histórica.
+ */
+public final class LiveSnapshot {
+
+    private final long watermark;
+    private final long publishedAtMillis;
+    private final int[] windowSeconds;
+    private final DenseArcStats[] windows;
+    private final Map<Long, Double> historical;
+    private final double priorWeight;
+
+    LiveSnapshot(long watermark, long publishedAtMillis, int[] windowSeconds, DenseArcStats[] windows,
+                 Map<Long, Double> historical, double priorWeight) {
+        this.watermark = watermark;
+        this.publishedAtMillis = publishedAtMillis;
+        this.windowSeconds = windowSeconds;
+        this.windows = windows;
+        this.historical = historical;
+        this.priorWeight = priorWeight;
+    }
+
+    /**
+     * datagramDate (epoch) hasta el cual las ventanas están completas.
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public long getPublishedAtMillis() {
+        return publishedAtMillis;
+    }
+
+    public int[] getWindowSeconds() {
+        return windowSeconds.clone();
+    }
+
+    /**
+     * Suma y conteo de muestras por arco en la ventana, sin el prior.
+     */
+    public DenseArcStats window(int seconds) {
+        return windows[indexOf(seconds)];
+    }
+
+    /**
+     * Velocidad combinada del arco en la ventana, o NaN si no hay muestras ni histórico.
+     */
+    public double speed(int seconds, int arcId) {
+        DenseArcStats w = windows[indexOf(seconds)];
+        Double prior = historical.get((long) arcId);
+        double weight = w.getWeight(arcId);
+        if (prior == null) return w.getCount(arcId) == 0 ? Double.NaN : w.getSum(arcId) / weight;
+        return (priorWeight * prior + w.getSum(arcId)) / (priorWeight + weight);
+    }
+
+    /**
+     * Velocidades combinadas de todos los arcos (llave = ordinal de arco), como
+     * las de StreamingFullFileProcessor.
+     */
+    public Map<Long, Double> speeds(int seconds) {
+        DenseArcStats w = windows[indexOf(seconds)];
+        Map<Long, Double> res = new HashMap<>(historical);
+        w.forEach((arcId, sum, count) -> {
+            Double prior = historical.get((long) arcId);
+            double weight = w.getWeight(arcId);
+            res.put((long) arcId, prior == null ? sum / weight : (priorWeight * prior + sum) / (priorWeight + weight));
+        });
+        return res;
+    }
+
+    private int indexOf(int seconds) {
+        for (int i = 0; i < windowSeconds.length; i++) {
+            if (windowSeconds[i] == seconds) return i;
+        }
+        throw new IllegalArgumentException("Ventana no configurada: " + seconds + "s");
+    }
+}
@@ -0,0 +1,375 @@
+package com.icesi.mio.live;
+
+import com.icesi.mio.aggregate.DenseArcStats;
+import com.icesi.mio.aggregate.WindowedArcStats;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.BusPairAccumulator;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Velocidades por arco en tiempo real sobre ventanas de datagramDate.
+ *
+ * Los datagramas pueden llegar desordenados: se guardan en un buffer ordenado
+ * por datagramDate y sólo se procesan cuando el watermark (máximo datagramDate
+ * visto - allowedLatenessSeconds) los alcanza, así que cada bus se empareja en
+ * orden de tiempo igual que en el procesamiento histórico. Un datagrama que
+ * llega con datagramDate menor al watermark se descarta y se cuenta como tardío;
+ * uno sin datagramDate válido se descarta sin afectar el par de su bus.
+ *
+ * Las muestras se acumulan en un WindowedArcStats (buckets de bucketSeconds) y
+ * cada publishIntervalMillis se publica un LiveSnapshot con una ventana por tamaño
+ * configurado. Latencia máxima de una muestra hasta publicarse: allowedLateness
+ * (en datagramDate) + publishInterval (en reloj), siempre que se llame a tick().
+ *
+ * Un par de un bus separado por más de maxGapSeconds (30 minutos por defecto)
+ * no aporta muestra, y cada vez que el watermark avanza EVICT_EVERY_SECONDS se
+ * sacan del estado por bus los que llevan más de maxGapSeconds sin datagramas:
+ * en un proceso continuo la memoria depende de los buses activos, no de todos
+ * los vistos. Como los datagramas se procesan en orden de tiempo, sacarlos no
+ * cambia ninguna muestra.
+ *
+ * Los métodos públicos son synchronized; el listener se llama con el lock tomado.
+ */
+public final class LiveSpeedEngine {
+
+    public enum WindowMode { SLIDING, TUMBLING }
+
+    private static final long EVICT_EVERY_SECONDS = 60;
+
+    @FunctionalInterface
+    public interface Listener {
+        void onSnapshot(LiveSnapshot snapshot);
+    }
+
+    private final ArcMatcher matcher;
+    private final Map<Long, Double> historical;
+
+    private long allowedLatenessSeconds = 120;
+    private int bucketSeconds = 60;
+    private int[] windowSeconds = {300, 900, 3600};
+    private WindowMode mode = WindowMode.SLIDING;
+    private double priorWeight = 5.0;
+    private long publishIntervalMillis = 1000;
+    private int maxBuffered = 1 << 20;
+    private long maxGapSeconds = BusPairAccumulator.DEFAULT_MAX_GAP_SECONDS;
+    private Listener listener = s -> { };
+
+    // estado creado con el primer datagrama (la configuración ya no cambia)
+    private WindowedArcStats stats;
+    private BusPairAccumulator pairs;
+
+    // buffer de reordenamiento: filas en columnas primitivas + min-heap de slots por (epoch, seq)
+    private long[] busId = new long[256];
+    private long[] latE7 = new long[256];
+    private long[] lonE7 = new long[256];
+    private long[] epoch = new long[256];
+    private long[] seq = new long[256];
+    private int[] lineId = new int[256];
+    private byte[] flags = new byte[256];
+    private int[] heap = new int[256];
+    private int heapSize;
+    private int[] free = new int[256];
+    private int freeSize;
+    private int slots;
+    private final DatagramRow drained = new DatagramRow();
+
+    private long nextSeq;
+    private long maxEventTime = Long.MIN_VALUE;
+    private long watermark = Long.MIN_VALUE;
+    private long lastPublishMillis = Long.MIN_VALUE;
+    private long lastEviction = Long.MIN_VALUE;
+
+    private long accepted;
+    private long late;
+    private long invalid;
+    private long samples;
+    private long evicted;
+
+    /**
+     * @param historical promedios históricos (llave = ordinal de arco) usados como prior; no se modifican
+     */
+    public LiveSpeedEngine(ArcMatcher matcher, Map<Long, Double> historical) {
+        this.matcher = matcher;
+        this.historical = historical;
+    }
+
+    public synchronized LiveSpeedEngine allowedLatenessSeconds(long seconds) {
+        checkNotStarted();
+        this.allowedLatenessSeconds = seconds;
+        return this;
+    }
+
+    public synchronized LiveSpeedEngine bucketSeconds(int seconds) {
+        checkNotStarted();
+        this.bucketSeconds = seconds;
+        return this;
+    }
+
+    /**
+     * Tamaños de ventana en segundos (múltiplos de bucketSeconds).
+     */
+    public synchronized LiveSpeedEngine windows(int... seconds) {
+        checkNotStarted();
+        this.windowSeconds = seconds.clone();
+        return this;
+    }
+
+    public synchronized LiveSpeedEngine mode(WindowMode mode) {
+        checkNotStarted();
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * Peso del promedio histórico, en número de muestras equivalentes.
+     */
+    public synchronized LiveSpeedEngine priorWeight(double weight) {
+        this.priorWeight = weight;
+        return this;
+    }
+
+    public synchronized LiveSpeedEngine publishIntervalMillis(long millis) {
+        this.publishIntervalMillis = millis;
+        return this;
+    }
+
+    /**
+     * Máximo de datagramas en espera; al superarlo se procesa el más antiguo
+     * aunque el watermark no lo haya alcanzado.
+     */
+    public synchronized LiveSpeedEngine maxBuffered(int rows) {
+        this.maxBuffered = rows;
+        return this;
+    }
+
+    /**
+     * Máxima separación en datagramDate entre dos datagramas de un bus para
+     * que formen un par; también el tiempo de inactividad tras el cual se
+     * olvida el bus.
+     */
+    public synchronized LiveSpeedEngine maxGapSeconds(long seconds) {
+        checkNotStarted();
+        if (seconds <= 0) throw new IllegalArgumentException("maxGapSeconds debe ser positivo: " + seconds);
+        this.maxGapSeconds = seconds;
+        return this;
+    }
+
+    public synchronized LiveSpeedEngine listener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Recibe un datagrama. Retorna false si se descartó (sin datagramDate válido o tardío).
+     */
+    public synchronized boolean offer(DatagramRow row) {
+        start();
+        if (!row.complete || !row.timeValid) {
+            invalid++;
+            return false;
+        }
+        if (row.epochSecond < watermark) {
+            late++;
+            return false;
+        }
+        push(row);
+        accepted++;
+        if (row.epochSecond > maxEventTime) {
+            maxEventTime = row.epochSecond;
+            watermark = Math.max(watermark, maxEventTime - allowedLatenessSeconds);
+        }
+        drainUpTo(watermark);
+        while (heapSize > maxBuffered) {
+            // buffer lleno: adelantar el watermark hasta el más antiguo
+            watermark = Math.max(watermark, epoch[heap[0]]);
+            drainUpTo(watermark);
+        }
+        return true;
+    }
+
+    /**
+     * Publica si pasó publishIntervalMillis desde la última publicación. Retorna
+     * la publicación, o null si todavía no tocaba.
+     */
+    public synchronized LiveSnapshot tick(long nowMillis) {
+        if (lastPublishMillis != Long.MIN_VALUE && nowMillis - lastPublishMillis < publishIntervalMillis) return null;
+        return publish(nowMillis);
+    }
+
+    /**
+     * Procesa todo el buffer (fin de la entrada) y publica.
+     */
+    public synchronized LiveSnapshot flush(long nowMillis) {
+        start();
+        if (maxEventTime != Long.MIN_VALUE) watermark = Math.max(watermark, maxEventTime);
+        drainUpTo(Long.MAX_VALUE);
+        return publish(nowMillis);
+    }
+
+    /**
+     * Arma las ventanas al watermark actual sin publicar.
+     */
+    public synchronized LiveSnapshot snapshot(long nowMillis) {
+        start();
+        DenseArcStats[] windows = new DenseArcStats[windowSeconds.length];
+        for (int i = 0; i < windowSeconds.length; i++) {
+            if (watermark == Long.MIN_VALUE) {
+                windows[i] = new DenseArcStats(matcher.getArcCount());
+            } else if (mode == WindowMode.SLIDING) {
+                windows[i] = stats.sliding(watermark, windowSeconds[i]);
+            } else {
+                windows[i] = stats.tumbling(watermark, windowSeconds[i]);
+            }
+        }
+        return new LiveSnapshot(watermark, nowMillis, windowSeconds.clone(), windows, historical, priorWeight);
+    }
+
+    public synchronized long getWatermark() {
+        return watermark;
+    }
+
+    public synchronized long getAccepted() {
+        return accepted;
+    }
+
+    public synchronized long getLate() {
+        return late;
+    }
+
+    public synchronized long getInvalid() {
+        return invalid;
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    public synchronized int getBuffered() {
+        return heapSize;
+    }
+
+    /**
+     * Buses con estado (último datagrama) en memoria.
+     */
+    public synchronized int getBuses() {
+        return pairs == null ? 0 : pairs.busCount();
+    }
+
+    /**
+     * Buses olvidados por inactividad desde el inicio.
+     */
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    private LiveSnapshot publish(long nowMillis) {
+        LiveSnapshot s = snapshot(nowMillis);
+        lastPublishMillis = nowMillis;
+        listener.onSnapshot(s);
+        return s;
+    }
+
+    private void checkNotStarted() {
+        if (stats != null) throw new IllegalStateException("La configuración de ventanas no se puede cambiar después del primer datagrama");
+    }
+
+    private void start() {
+        if (stats != null) return;
+        int maxWindow = 0;
+        for (int w : windowSeconds) {
+            if (w <= 0 || w % bucketSeconds != 0) {
+                throw new IllegalArgumentException("La ventana " + w + "s no es múltiplo de " + bucketSeconds + "s");
+            }
+            maxWindow = Math.max(maxWindow, w);
+        }
+        // un bucket extra para el intervalo abierto que contiene el watermark
+        stats = new WindowedArcStats(matcher.getArcCount(), bucketSeconds, maxWindow / bucketSeconds + 1);
+        pairs = new BusPairAccumulator(matcher, (arcId, speedKph, epochSecond, weight) -> {
+            if (stats.add(arcId, speedKph, epochSecond, weight)) samples++;
+        }).maxGapSeconds(maxGapSeconds);
+    }
+
+    private void drainUpTo(long limit) {
+        while (heapSize > 0 && epoch[heap[0]] <= limit) {
+            int slot = pop();
+            drained.complete = true;
+            drained.busId = busId[slot];
+            drained.latE7 = latE7[slot];
+            drained.lonE7 = lonE7[slot];
+            drained.epochSecond = epoch[slot];
+            drained.lineId = lineId[slot];
+            drained.setFlags(flags[slot]);
+            free[freeSize++] = slot;
+            pairs.accept(drained);
+        }
+        // lo que llegue después tiene datagramDate >= watermark (si no, es tardío)
+        if (watermark != Long.MIN_VALUE
+                && (lastEviction == Long.MIN_VALUE || watermark - lastEviction >= EVICT_EVERY_SECONDS)) {
+            evicted += pairs.evictIdle(watermark);
+            lastEviction = watermark;
+        }
+    }
+
+    private void push(DatagramRow row) {
+        int slot;
+        if (freeSize > 0) {
+            slot = free[--freeSize];
+        } else {
+            if (slots == busId.length) grow();
+            slot = slots++;
+        }
+        busId[slot] = row.busId;
+        latE7[slot] = row.latE7;
+        lonE7[slot] = row.lonE7;
+        epoch[slot] = row.epochSecond;
+        seq[slot] = nextSeq++;
+        lineId[slot] = row.lineId;
+        flags[slot] = row.flags();
+
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(slot, heap[parent])) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child])) child++;
+            if (!less(heap[child], last)) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+
+    // orden por datagramDate y, a igual tiempo, por orden de llegada
+    private boolean less(int a, int b) {
+        return epoch[a] < epoch[b] || (epoch[a] == epoch[b] && seq[a] < seq[b]);
+    }
+
+    private void grow() {
+        int n = busId.length * 2;
+        busId = Arrays.copyOf(busId, n);
+        latE7 = Arrays.copyOf(latE7, n);
+        lonE7 = Arrays.copyOf(lonE7, n);
+        epoch = Arrays.copyOf(epoch, n);
+        seq = Arrays.copyOf(seq, n);
+        lineId = Arrays.copyOf(lineId, n);
+        flags = Arrays.copyOf(flags, n);
+        heap = Arrays.copyOf(heap, n);
+        free = Arrays.copyOf(free, n);
+    }
+}
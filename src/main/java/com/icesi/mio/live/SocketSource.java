@@ -0,0 +1,70 @@
+package com.icesi.mio.live;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * Recibe datagramas por TCP en localhost, una línea CSV por datagrama. Cada
+ * conexión se atiende en su propio hilo; todas alimentan el mismo motor.
+ */
+public final class SocketSource implements Runnable, AutoCloseable {
+
+    private final ServerSocket server;
+    private final LiveSpeedEngine engine;
+    private volatile boolean running = true;
+
+    public SocketSource(int port, LiveSpeedEngine engine) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.engine = engine;
+    }
+
+    /**
+     * Puerto en que escucha (útil si se pidió el puerto 0).
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                Thread t = new Thread(() -> serve(socket), "live-socket-" + socket.getPort());
+                t.setDaemon(true);
+                t.start();
+            } catch (SocketException e) {
+                // close() cierra el ServerSocket para salir de accept()
+                if (running) System.out.println("[SocketSource] Error aceptando conexión: " + e.getMessage());
+                break;
+            } catch (IOException e) {
+                System.out.println("[SocketSource] Error aceptando conexión: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        LineFeeder feeder = new LineFeeder(engine);
+        byte[] buf = new byte[1 << 16];
+        try (socket; InputStream in = socket.getInputStream()) {
+            int n;
+            while (running && (n = in.read(buf)) > 0) {
+                feeder.feed(buf, 0, n);
+                engine.tick(System.currentTimeMillis());
+            }
+            feeder.finish();
+        } catch (IOException e) {
+            System.out.println("[SocketSource] Conexión cerrada: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+    }
+}
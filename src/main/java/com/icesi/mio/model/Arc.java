@@ -3,23 +3,46 @@ package com.icesi.mio.model;
 import java.util.Objects;
 
 /**
- * Representa un arco entre dos paradas consecutivas en una ruta
+ * Representa un arco entre dos paradas consecutivas en una ruta.
+ *
+ * id es el ordinal denso (0..N-1) asignado por GraphBuilder a todos los arcos
+ * del plan; se usa para indexar acumuladores y resultados (ver ArcTable).
+ * variant es la variante de línea (lineVariant) del recorrido al que pertenece.
  */
 public class Arc {
+    private final int id;
     private final int lineId;
     private final int orientation;
+    private final String variant;
     private final Stop fromStop;
     private final Stop toStop;
     private final int sequence;
 
     public Arc(int lineId, int orientation, Stop fromStop, Stop toStop, int sequence) {
+        this(-1, lineId, orientation, fromStop, toStop, sequence);
+    }
+
+    public Arc(int id, int lineId, int orientation, Stop fromStop, Stop toStop, int sequence) {
+        this(id, lineId, orientation, "", fromStop, toStop, sequence);
+    }
+
+    public Arc(int id, int lineId, int orientation, String variant, Stop fromStop, Stop toStop, int sequence) {
+        this.id = id;
         this.lineId = lineId;
         this.orientation = orientation;
+        this.variant = variant == null ? "" : variant;
         this.fromStop = fromStop;
         this.toStop = toStop;
         this.sequence = sequence;
     }
 
+    /**
+     * Ordinal denso del arco, o -1 si no fue creado por GraphBuilder
+     */
+    public int getId() {
+        return id;
+    }
+
     public int getLineId() {
         return lineId;
     }
@@ -28,6 +51,13 @@ public class Arc {
         return orientation;
     }
 
+    /**
+     * Variante de línea del arco ("" si no tiene)
+     */
+    public String getVariant() {
+        return variant;
+    }
+
     public Stop getFromStop() {
         return fromStop;
     }
@@ -0,0 +1,131 @@
+package com.icesi.mio.model;
+
+import java.util.Map;
+
+/**
+ * Geometría de los arcos en metros, indexada por el ordinal denso (Arc.getId()).
+ *
+ * Todas las paradas se proyectan una sola vez con una proyección
+ * equirectangular fija centrada en el plan (x = metros al este, y = metros al
+ * norte del centro). En el área de Cali el error frente a la proyección
+ * centrada en cada arco es del orden de 1e-4 relativo. Por arco se guardan el
+ * origen, el vector del segmento, su longitud al cuadrado y el inverso de
+ * ésta, en arreglos planos (struct-of-arrays): la distancia punto-segmento
+ * queda en unas pocas multiplicaciones y sumas, sin funciones trigonométricas.
+ */
+public final class ArcGeometry {
+
+    private static final double EARTH_RADIUS_M = 6371000.0;
+    /** Metros por grado de latitud. */
+    public static final double METERS_PER_DEGREE = Math.toRadians(1.0) * EARTH_RADIUS_M;
+
+    private final double originLat;
+    private final double originLon;
+    // metros por grado de longitud en originLat
+    private final double metersPerDegreeLon;
+
+    private final double[] fromX;
+    private final double[] fromY;
+    private final double[] dx;
+    private final double[] dy;
+    private final double[] len2;
+    // 1 / len2, 0 para arcos de longitud cero (o huecos del ordinal)
+    private final double[] invLen2;
+
+    private ArcGeometry(double originLat, double originLon, int arcCount) {
+        this.originLat = originLat;
+        this.originLon = originLon;
+        this.metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(originLat));
+        this.fromX = new double[arcCount];
+        this.fromY = new double[arcCount];
+        this.dx = new double[arcCount];
+        this.dy = new double[arcCount];
+        this.len2 = new double[arcCount];
+        this.invLen2 = new double[arcCount];
+    }
+
+    /**
+     * Proyecta los arcos de los grafos de GraphBuilder, con el origen en el
+     * centro del rectángulo que contiene todas sus paradas.
+     */
+    public static ArcGeometry from(Map<Integer, RouteGraph> graphs) {
+        return from(ArcTable.from(graphs));
+    }
+
+    /**
+     * Igual que from(graphs), a partir de la tabla de arcos ya construida.
+     */
+    public static ArcGeometry from(ArcTable table) {
+        double loLat = Double.MAX_VALUE, hiLat = -Double.MAX_VALUE;
+        double loLon = Double.MAX_VALUE, hiLon = -Double.MAX_VALUE;
+        for (int id = 0; id < table.size(); id++) {
+            Arc a = table.get(id);
+            if (a == null) continue;
+            for (Stop s : new Stop[]{a.getFromStop(), a.getToStop()}) {
+                loLat = Math.min(loLat, s.getDecimalLat());
+                hiLat = Math.max(hiLat, s.getDecimalLat());
+                loLon = Math.min(loLon, s.getDecimalLong());
+                hiLon = Math.max(hiLon, s.getDecimalLong());
+            }
+        }
+        ArcGeometry g = loLat > hiLat
+                ? new ArcGeometry(0, 0, table.size())
+                : new ArcGeometry((loLat + hiLat) / 2, (loLon + hiLon) / 2, table.size());
+        for (int id = 0; id < table.size(); id++) {
+            Arc a = table.get(id);
+            if (a == null) continue;
+            double x1 = g.x(a.getFromStop().getDecimalLong()), y1 = g.y(a.getFromStop().getDecimalLat());
+            double x2 = g.x(a.getToStop().getDecimalLong()), y2 = g.y(a.getToStop().getDecimalLat());
+            g.fromX[id] = x1;
+            g.fromY[id] = y1;
+            g.dx[id] = x2 - x1;
+            g.dy[id] = y2 - y1;
+            g.len2[id] = g.dx[id] * g.dx[id] + g.dy[id] * g.dy[id];
+            g.invLen2[id] = g.len2[id] == 0 ? 0 : 1.0 / g.len2[id];
+        }
+        return g;
+    }
+
+    /** Metros al este del origen. */
+    public double x(double lon) {
+        return (lon - originLon) * metersPerDegreeLon;
+    }
+
+    /** Metros al norte del origen. */
+    public double y(double lat) {
+        return (lat - originLat) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Parámetro (0..1) de la proyección del punto (x, y) sobre el segmento del arco.
+     */
+    public double projection(int arcId, double x, double y) {
+        double t = ((x - fromX[arcId]) * dx[arcId] + (y - fromY[arcId]) * dy[arcId]) * invLen2[arcId];
+        return Math.max(0, Math.min(1, t));
+    }
+
+    /**
+     * Distancia al cuadrado (m²) del punto (x, y) al segmento del arco.
+     */
+    public double distanceSquared(int arcId, double x, double y) {
+        double px = x - fromX[arcId], py = y - fromY[arcId];
+        double t = Math.max(0, Math.min(1, (px * dx[arcId] + py * dy[arcId]) * invLen2[arcId]));
+        double ex = px - t * dx[arcId], ey = py - t * dy[arcId];
+        return ex * ex + ey * ey;
+    }
+
+    public double fromX(int arcId) { return fromX[arcId]; }
+    public double fromY(int arcId) { return fromY[arcId]; }
+    public double dx(int arcId) { return dx[arcId]; }
+    public double dy(int arcId) { return dy[arcId]; }
+    public double lengthSquared(int arcId) { return len2[arcId]; }
+    public double inverseLengthSquared(int arcId) { return invLen2[arcId]; }
+
+    public double length(int arcId) {
+        return Math.sqrt(len2[arcId]);
+    }
+
+    public int size() {
+        return fromX.length;
+    }
+}
@@ -0,0 +1,55 @@
+package com.icesi.mio.model;
+
+import java.util.Map;
+
+/**
+ * Tabla global de arcos indexada por su ordinal denso (Arc.getId()).
+ */
+public class ArcTable {
+    private final Arc[] arcs;
+
+    private ArcTable(Arc[] arcs) {
+        this.arcs = arcs;
+    }
+
+    /**
+     * Construye la tabla a partir de los grafos de GraphBuilder. Si se pasa sólo
+     * un subconjunto de rutas, los ordinales de las demás quedan como huecos (null).
+     */
+    public static ArcTable from(Map<Integer, RouteGraph> graphs) {
+        int maxId = -1;
+        for (RouteGraph rg : graphs.values()) {
+            for (Arc a : rg.getArcsIda()) maxId = Math.max(maxId, a.getId());
+            for (Arc a : rg.getArcsVuelta()) maxId = Math.max(maxId, a.getId());
+        }
+
+        Arc[] arcs = new Arc[maxId + 1];
+        for (RouteGraph rg : graphs.values()) {
+            for (Arc a : rg.getArcsIda()) place(arcs, a);
+            for (Arc a : rg.getArcsVuelta()) place(arcs, a);
+        }
+        return new ArcTable(arcs);
+    }
+
+    private static void place(Arc[] arcs, Arc a) {
+        int id = a.getId();
+        if (id < 0 || arcs[id] != null) {
+            throw new IllegalArgumentException("Ordinal de arco inválido o repetido: " + a);
+        }
+        arcs[id] = a;
+    }
+
+    /**
+     * Arco con ese ordinal, o null si no existe.
+     */
+    public Arc get(int arcId) {
+        return arcId >= 0 && arcId < arcs.length ? arcs[arcId] : null;
+    }
+
+    /**
+     * Número de ordinales (máximo ordinal + 1); dimensión de los acumuladores densos.
+     */
+    public int size() {
+        return arcs.length;
+    }
+}
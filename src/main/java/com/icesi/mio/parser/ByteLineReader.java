@@ -0,0 +1,145 @@
+package com.icesi.mio.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Lector de líneas a nivel de bytes sobre un canal, sin crear Strings.
+ * Reconoce los mismos terminadores que BufferedReader.readLine ('\n', '\r' y "\r\n").
+ */
+public final class ByteLineReader implements LineSource {
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buf;
+    // offset absoluto (en el canal) del byte buf[0]
+    private long base;
+    private int pos;
+    private int lineStart;
+    private int lineEnd;
+    private boolean eof;
+    private boolean pendingCr;
+
+    public ByteLineReader(ReadableByteChannel channel, int bufferSize) {
+        this(channel, bufferSize, 0L);
+    }
+
+    /**
+     * @param startOffset posición actual del canal; sólo afecta a los offsets reportados
+     */
+    public ByteLineReader(ReadableByteChannel channel, int bufferSize, long startOffset) {
+        this.channel = channel;
+        this.buf = ByteBuffer.allocate(bufferSize);
+        this.buf.limit(0);
+        this.base = startOffset;
+    }
+
+    @Override
+    public boolean nextLine() throws IOException {
+        if (pendingCr) {
+            // "\r\n" cuenta como un único terminador
+            if (pos >= buf.limit() && !eof) refill();
+            if (pos < buf.limit() && buf.get(pos) == '\n') pos++;
+            pendingCr = false;
+        }
+
+        int scan = pos;
+        while (true) {
+            int limit = buf.limit();
+            for (int i = scan; i < limit; i++) {
+                byte c = buf.get(i);
+                if (c == '\n' || c == '\r') {
+                    lineStart = pos;
+                    lineEnd = i;
+                    pos = i + 1;
+                    pendingCr = c == '\r';
+                    return true;
+                }
+            }
+            if (eof) {
+                if (pos < limit) {
+                    // última línea sin terminador
+                    lineStart = pos;
+                    lineEnd = limit;
+                    pos = limit;
+                    return true;
+                }
+                return false;
+            }
+            scan = limit - pos;
+            refill();
+        }
+    }
+
+    @Override
+    public ByteBuffer buffer() {
+        return buf;
+    }
+
+    @Override
+    public int lineStart() {
+        return lineStart;
+    }
+
+    @Override
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * Offset absoluto donde empieza la línea actual.
+     */
+    public long lineStartOffset() {
+        return base + lineStart;
+    }
+
+    /**
+     * Offset absoluto del primer byte aún no consumido (fin de la línea actual y su terminador).
+     */
+    public long offset() {
+        return base + pos;
+    }
+
+    /**
+     * false si la línea actual es la última del archivo y no tiene terminador
+     * (puede estar incompleta si el archivo sigue creciendo).
+     */
+    public boolean lineTerminated() {
+        return pos > lineEnd;
+    }
+
+    /**
+     * true si la línea actual terminó en '\r': un '\n' inmediato será parte del mismo terminador.
+     */
+    public boolean pendingCr() {
+        return pendingCr;
+    }
+
+    /**
+     * Para reanudar justo después de un '\r': descarta un '\n' inicial.
+     */
+    public void skipNextLf() {
+        pendingCr = true;
+    }
+
+    // Mueve los bytes pendientes al inicio del buffer y lee más datos del canal
+    private void refill() throws IOException {
+        base += pos;
+        buf.position(pos);
+        buf.compact();
+        pos = 0;
+        if (!buf.hasRemaining()) {
+            // línea más larga que el buffer: duplicar capacidad
+            ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() * 2);
+            buf.flip();
+            bigger.put(buf);
+            buf = bigger;
+        }
+        int n;
+        do {
+            n = channel.read(buf);
+        } while (n == 0);
+        if (n < 0) eof = true;
+        buf.flip();
+    }
+}
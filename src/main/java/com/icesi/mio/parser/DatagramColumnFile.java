@@ -0,0 +1,388 @@
+package com.icesi.mio.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Archivo binario columnar de datagramas (lo escribe DatagramColumnWriter),
+ * leído con FileChannel.map: ninguna fila se parsea de texto.
+ *
+ * Formato (little-endian):
+ * - header de HEADER_BYTES: magic "MIOC", versión, filas, líneas del CSV de
+ *   origen, filas por bloque, número de bloques, offsets de estadísticas e
+ *   índice, y tamaño y fecha de modificación del CSV al convertirlo.
+ * - bloques de blockRows filas ordenadas por (busId, datagramDate), con las
+ *   fechas inválidas primero dentro de cada bus y, a igual llave, en orden del
+ *   CSV. Cada bloque guarda sus columnas de ancho fijo una tras otra: busId
+ *   (long), datagramDate en segundos epoch (long), lat y lon en grados * 1e7
+ *   (int), lineId (int) y flags de validez de DatagramRow (byte).
+ * - estadísticas por bloque: min/max de busId, de datagramDate y de lineId
+ *   (estos dos sólo sobre valores válidos), número de filas y los flags de
+ *   validez presentes en todas sus filas.
+ * - índice por (busId, día UTC): primera fila y número de filas de cada tramo.
+ *
+ * Las estadísticas y el índice se cargan al abrir; los bloques se leen con
+ * get absolutos, así que una instancia se puede compartir entre hilos.
+ */
+public final class DatagramColumnFile {
+
+    public static final int MAGIC = 0x434F494D; // "MIOC" en little-endian
+    public static final int VERSION = 2;
+
+    static final int HEADER_BYTES = 80;
+    // busId, epoch, lat, lon, lineId, flags
+    static final int ROW_BYTES = 8 + 8 + 4 + 4 + 4 + 1;
+    static final int STATS_BYTES = 8 * 4 + 4 * 4;
+    static final int INDEX_BYTES = 8 + 4 + 4 + 8;
+
+    /**
+     * Día del índice para las filas sin datagramDate válido.
+     */
+    public static final int INVALID_DAY = Integer.MIN_VALUE;
+
+    // ventanas de mapeo de a lo sumo 1 GB, siempre con bloques completos
+    private static final long MAX_WINDOW_BYTES = 1L << 30;
+
+    private final Path path;
+    private final long rowCount;
+    private final long sourceLines;
+    private final long sourceBytes;
+    private final long sourceModifiedMillis;
+    private final int blockRows;
+    private final int blockCount;
+
+    private final long[] minBusId;
+    private final long[] maxBusId;
+    private final long[] minEpoch;
+    private final long[] maxEpoch;
+    private final int[] minLineId;
+    private final int[] maxLineId;
+    private final byte[] allFlags;
+
+    private final long[] indexBusId;
+    private final int[] indexDay;
+    private final int[] indexRows;
+    private final long[] indexFirstRow;
+
+    private final MappedByteBuffer[] windows;
+    private final int windowBlocks;
+
+    private DatagramColumnFile(Path path, FileChannel ch) throws IOException {
+        this.path = path;
+        long size = ch.size();
+        ByteBuffer h = read(ch, 0, HEADER_BYTES, size);
+        if (h.getInt() != MAGIC) throw new IOException("No es un archivo columnar de datagramas: " + path);
+        int version = h.getInt();
+        if (version != VERSION) throw new IOException("Versión de archivo columnar no soportada: " + version);
+        rowCount = h.getLong();
+        sourceLines = h.getLong();
+        blockRows = h.getInt();
+        blockCount = h.getInt();
+        long statsOffset = h.getLong();
+        long indexOffset = h.getLong();
+        int indexEntries = h.getInt();
+        sourceBytes = h.getLong();
+        sourceModifiedMillis = h.getLong();
+        if (blockRows <= 0 || rowCount < 0 || indexEntries < 0
+                || blockCount != (rowCount + blockRows - 1) / blockRows
+                || statsOffset < dataEnd()
+                || indexOffset != statsOffset + (long) blockCount * STATS_BYTES
+                || size < indexOffset + (long) indexEntries * INDEX_BYTES) {
+            throw new IOException("Header de archivo columnar corrupto: " + path);
+        }
+
+        ByteBuffer s = read(ch, statsOffset, (long) blockCount * STATS_BYTES, size);
+        minBusId = new long[blockCount];
+        maxBusId = new long[blockCount];
+        minEpoch = new long[blockCount];
+        maxEpoch = new long[blockCount];
+        minLineId = new int[blockCount];
+        maxLineId = new int[blockCount];
+        allFlags = new byte[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            minBusId[b] = s.getLong();
+            maxBusId[b] = s.getLong();
+            minEpoch[b] = s.getLong();
+            maxEpoch[b] = s.getLong();
+            minLineId[b] = s.getInt();
+            maxLineId[b] = s.getInt();
+            int rows = s.getInt();
+            allFlags[b] = (byte) s.getInt();
+            if (rows != blockRows(b)) throw new IOException("Estadísticas de bloque corruptas: " + path);
+        }
+
+        ByteBuffer x = read(ch, indexOffset, (long) indexEntries * INDEX_BYTES, size);
+        indexBusId = new long[indexEntries];
+        indexDay = new int[indexEntries];
+        indexRows = new int[indexEntries];
+        indexFirstRow = new long[indexEntries];
+        long next = 0;
+        for (int e = 0; e < indexEntries; e++) {
+            indexBusId[e] = x.getLong();
+            indexDay[e] = x.getInt();
+            indexRows[e] = x.getInt();
+            indexFirstRow[e] = x.getLong();
+            if (indexFirstRow[e] != next) throw new IOException("Índice de archivo columnar corrupto: " + path);
+            next += indexRows[e];
+        }
+        if (next != rowCount) throw new IOException("Índice de archivo columnar corrupto: " + path);
+
+        windowBlocks = (int) Math.max(1, MAX_WINDOW_BYTES / blockBytes(blockRows));
+        windows = new MappedByteBuffer[(blockCount + windowBlocks - 1) / windowBlocks];
+        for (int w = 0; w < windows.length; w++) {
+            long from = blockOffset(w * windowBlocks);
+            long to = Math.min(blockOffset((w + 1) * windowBlocks), dataEnd());
+            windows[w] = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            windows[w].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Abre y mapea el archivo. El canal se cierra al terminar; el mapeo sigue vigente.
+     */
+    public static DatagramColumnFile open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new DatagramColumnFile(path, ch);
+        }
+    }
+
+    /**
+     * true si el archivo empieza con el magic del formato columnar.
+     */
+    public static boolean isColumnFile(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return ch.size() >= HEADER_BYTES && read(ch, 0, 4, ch.size()).getInt() == MAGIC;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Líneas del CSV de origen, incluidas las mal formadas que no se guardaron.
+     */
+    public long sourceLines() {
+        return sourceLines;
+    }
+
+    /**
+     * Tamaño en bytes del CSV de origen al convertirlo.
+     */
+    public long sourceBytes() {
+        return sourceBytes;
+    }
+
+    /**
+     * Fecha de modificación (ms epoch) del CSV de origen al convertirlo.
+     */
+    public long sourceModifiedMillis() {
+        return sourceModifiedMillis;
+    }
+
+    /**
+     * true si csv tiene el mismo tamaño y fecha de modificación que el CSV del
+     * que se convirtió este archivo; si no, el archivo columnar está desactualizado.
+     */
+    public boolean isConversionOf(Path csv) throws IOException {
+        return Files.size(csv) == sourceBytes
+                && Files.getLastModifiedTime(csv).toMillis() == sourceModifiedMillis;
+    }
+
+    public int blockCount() {
+        return blockCount;
+    }
+
+    public int blockRows() {
+        return blockRows;
+    }
+
+    public int blockRows(int block) {
+        return (int) Math.min(blockRows, rowCount - (long) block * blockRows);
+    }
+
+    public long blockFirstRow(int block) {
+        return (long) block * blockRows;
+    }
+
+    public int blockOf(long row) {
+        return (int) (row / blockRows);
+    }
+
+    public long minBusId(int block) { return minBusId[block]; }
+    public long maxBusId(int block) { return maxBusId[block]; }
+
+    /**
+     * Mínimo datagramDate válido del bloque (Long.MAX_VALUE si no tiene ninguno).
+     */
+    public long minEpochSecond(int block) { return minEpoch[block]; }
+
+    /**
+     * Máximo datagramDate válido del bloque (Long.MIN_VALUE si no tiene ninguno).
+     */
+    public long maxEpochSecond(int block) { return maxEpoch[block]; }
+
+    /**
+     * Mínimo lineId válido del bloque (Integer.MAX_VALUE si no tiene ninguno).
+     */
+    public int minLineId(int block) { return minLineId[block]; }
+
+    /**
+     * Máximo lineId válido del bloque (Integer.MIN_VALUE si no tiene ninguno).
+     */
+    public int maxLineId(int block) { return maxLineId[block]; }
+
+    /**
+     * true si todas las filas del bloque tienen lineId válido.
+     */
+    public boolean allLineIdsValid(int block) {
+        return (allFlags[block] & DatagramRow.LINE_VALID) != 0;
+    }
+
+    /**
+     * Entradas del índice (busId, día), ordenadas igual que las filas.
+     */
+    public int indexSize() {
+        return indexBusId.length;
+    }
+
+    public long indexBusId(int entry) { return indexBusId[entry]; }
+
+    /**
+     * Día UTC (epoch day) de la entrada, o INVALID_DAY.
+     */
+    public int indexDay(int entry) { return indexDay[entry]; }
+
+    public long indexFirstRow(int entry) { return indexFirstRow[entry]; }
+
+    public int indexRows(int entry) { return indexRows[entry]; }
+
+    /**
+     * Primera entrada del índice que empieza en o después de row (indexSize() si no hay).
+     */
+    public int indexEntryAt(long row) {
+        int lo = 0;
+        int hi = indexFirstRow.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexFirstRow[mid] < row) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Divide las filas en a lo sumo parts rangos contiguos de tamaño parecido
+     * sin partir ningún bus. Retorna parts + 1 límites (rangos [b[k], b[k+1]),
+     * posiblemente vacíos).
+     */
+    public long[] splitByBus(int parts) {
+        long[] bounds = new long[parts + 1];
+        int e = 0;
+        for (int k = 1; k < parts; k++) {
+            long target = rowCount * k / parts;
+            while (e < indexBusId.length && indexFirstRow[e] < target) e++;
+            // avanzar hasta el inicio del siguiente bus
+            while (e > 0 && e < indexBusId.length && indexBusId[e] == indexBusId[e - 1]) e++;
+            bounds[k] = e < indexBusId.length ? indexFirstRow[e] : rowCount;
+        }
+        bounds[parts] = rowCount;
+        return bounds;
+    }
+
+    public Block block(int block) {
+        if (block < 0 || block >= blockCount) throw new IndexOutOfBoundsException("bloque " + block);
+        MappedByteBuffer w = windows[block / windowBlocks];
+        int base = (int) (blockOffset(block) - blockOffset(block / windowBlocks * windowBlocks));
+        return new Block(w, base, blockRows(block), blockFirstRow(block));
+    }
+
+    /**
+     * Columnas de un bloque sobre el archivo mapeado.
+     */
+    public static final class Block {
+        private final ByteBuffer buf;
+        private final int rows;
+        private final long firstRow;
+        private final int busOff;
+        private final int epochOff;
+        private final int latOff;
+        private final int lonOff;
+        private final int lineOff;
+        private final int flagsOff;
+
+        private Block(ByteBuffer buf, int base, int rows, long firstRow) {
+            this.buf = buf;
+            this.rows = rows;
+            this.firstRow = firstRow;
+            busOff = base;
+            epochOff = busOff + 8 * rows;
+            latOff = epochOff + 8 * rows;
+            lonOff = latOff + 4 * rows;
+            lineOff = lonOff + 4 * rows;
+            flagsOff = lineOff + 4 * rows;
+        }
+
+        public int rows() { return rows; }
+        public long firstRow() { return firstRow; }
+
+        public long busId(int i) { return buf.getLong(busOff + 8 * i); }
+        public long epochSecond(int i) { return buf.getLong(epochOff + 8 * i); }
+        public int latE7(int i) { return buf.getInt(latOff + 4 * i); }
+        public int lonE7(int i) { return buf.getInt(lonOff + 4 * i); }
+        public int lineId(int i) { return buf.getInt(lineOff + 4 * i); }
+        public byte flags(int i) { return buf.get(flagsOff + i); }
+
+        /**
+         * Copia la fila i a row.
+         */
+        public void get(int i, DatagramRow row) {
+            row.complete = true;
+            row.busId = busId(i);
+            row.epochSecond = epochSecond(i);
+            row.latE7 = latE7(i);
+            row.lonE7 = lonE7(i);
+            row.lineId = lineId(i);
+            row.setFlags(flags(i));
+        }
+    }
+
+    static int blockBytes(int rows) {
+        // cada bloque empieza alineado a 8 bytes
+        return (rows * ROW_BYTES + 7) & ~7;
+    }
+
+    private long dataEnd() {
+        if (blockCount == 0) return HEADER_BYTES;
+        return blockOffset(blockCount - 1) + blockBytes(blockRows(blockCount - 1));
+    }
+
+    private long blockOffset(int block) {
+        return HEADER_BYTES + (long) block * blockBytes(blockRows);
+    }
+
+    private static ByteBuffer read(FileChannel ch, long offset, long length, long size) throws IOException {
+        if (length > Integer.MAX_VALUE || offset + length > size) throw new IOException("Archivo columnar truncado");
+        ByteBuffer buf = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, offset + buf.position()) < 0) throw new IOException("Archivo columnar truncado");
+        }
+        return buf.flip();
+    }
+
+    @Override
+    public String toString() {
+        return "DatagramColumnFile[" + path + ", filas=" + rowCount + ", bloques=" + blockCount
+                + ", índice=" + indexBusId.length + "]";
+    }
+}
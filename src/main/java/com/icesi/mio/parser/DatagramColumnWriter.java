@@ -0,0 +1,408 @@
+package com.icesi.mio.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Convierte un CSV de datagramas al formato de DatagramColumnFile.
+ *
+ * Las filas completas (12 columnas) se decodifican con DatagramTokenizer y se
+ * ordenan por (busId, datagramDate) con un ordenamiento externo: se juntan
+ * hasta runRows filas en memoria, se ordenan y, si el archivo no cabe en una
+ * sola corrida, se vuelcan a archivos temporales que luego se mezclan. El
+ * orden es estable: a igual (busId, datagramDate) queda el orden del CSV, y
+ * las filas sin fecha válida van primero dentro de su bus, igual que en
+ * ColumnarDatagramPartition.sortedByBusAndTime.
+ *
+ * Coordenadas que no caben en un int se guardan como inválidas.
+ */
+public final class DatagramColumnWriter {
+
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+    private static final int RUN_IO_BUFFER_BYTES = 1 << 16;
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    private int blockRows = 1 << 16;
+    private int runRows = 1 << 22;
+    private Path tempDir;
+
+    public DatagramColumnWriter blockRows(int rows) {
+        if (rows <= 0) throw new IllegalArgumentException("blockRows debe ser positivo");
+        this.blockRows = rows;
+        return this;
+    }
+
+    /**
+     * Filas ordenadas en memoria por corrida (~37 bytes por fila).
+     */
+    public DatagramColumnWriter runRows(int rows) {
+        if (rows <= 0) throw new IllegalArgumentException("runRows debe ser positivo");
+        this.runRows = rows;
+        return this;
+    }
+
+    /**
+     * Carpeta de las corridas temporales; por defecto la del archivo de salida.
+     */
+    public DatagramColumnWriter tempDir(Path dir) {
+        this.tempDir = dir;
+        return this;
+    }
+
+    /**
+     * Convierte csv en out (se sobrescribe). Retorna el número de filas escritas.
+     */
+    public long convert(Path csv, Path out) throws IOException {
+        Path dir = tempDir != null ? tempDir : out.toAbsolutePath().getParent();
+        // antes de leer: si el CSV cambia durante la conversión, el archivo queda desactualizado
+        long sourceBytes = Files.size(csv);
+        long sourceModifiedMillis = Files.getLastModifiedTime(csv).toMillis();
+        // crece hasta runRows: un CSV pequeño no reserva la corrida completa
+        Rows run = new Rows(Math.min(runRows, 1 << 16));
+        List<Path> runs = new ArrayList<>();
+        try {
+            DatagramTokenizer tokenizer = new DatagramTokenizer();
+            DatagramRow row = new DatagramRow();
+            long lines = 0;
+            try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+                ByteLineReader reader = new ByteLineReader(ch, READ_BUFFER_BYTES);
+                while (reader.nextLine()) {
+                    lines++;
+                    // Las filas con menos de 12 columnas nunca generan muestras: no se guardan
+                    if (!tokenizer.parse(reader.buffer(), reader.lineStart(), reader.lineEnd(), row)) continue;
+                    run.add(row);
+                    if (run.size == runRows) {
+                        runs.add(spill(run, dir));
+                        run.size = 0;
+                    }
+                }
+            }
+
+            try (BlockWriter w = new BlockWriter(out, blockRows, lines, sourceBytes, sourceModifiedMillis)) {
+                if (runs.isEmpty()) {
+                    for (int i : run.sortedOrder()) w.add(run, i);
+                } else {
+                    if (run.size > 0) runs.add(spill(run, dir));
+                    run = null;
+                    merge(runs, w);
+                }
+                w.finish();
+                return w.rowCount;
+            }
+        } finally {
+            for (Path p : runs) Files.deleteIfExists(p);
+        }
+    }
+
+    private static Path spill(Rows run, Path dir) throws IOException {
+        Path file = Files.createTempFile(dir, "datagrams-", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), RUN_IO_BUFFER_BYTES))) {
+            for (int i : run.sortedOrder()) {
+                out.writeLong(run.busId[i]);
+                out.writeLong(run.epoch[i]);
+                out.writeInt(run.latE7[i]);
+                out.writeInt(run.lonE7[i]);
+                out.writeInt(run.lineId[i]);
+                out.writeByte(run.flags[i]);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Mezcla k corridas ordenadas con un min-heap; a igual llave gana la corrida
+     * anterior (filas anteriores en el CSV).
+     */
+    private static void merge(List<Path> runs, BlockWriter w) throws IOException {
+        int k = runs.size();
+        Rows head = new Rows(k);
+        head.size = k;
+        DataInputStream[] in = new DataInputStream[k];
+        int[] heap = new int[k];
+        int heapSize = 0;
+        try {
+            for (int r = 0; r < k; r++) {
+                in[r] = new DataInputStream(new BufferedInputStream(Files.newInputStream(runs.get(r)), RUN_IO_BUFFER_BYTES));
+                if (!head.read(r, in[r])) continue;
+                int i = heapSize++;
+                while (i > 0 && head.compare(r, heap[(i - 1) >>> 1]) < 0) {
+                    heap[i] = heap[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+                heap[i] = r;
+            }
+            while (heapSize > 0) {
+                int r = heap[0];
+                w.add(head, r);
+                int top = r;
+                if (!head.read(r, in[r])) top = heap[--heapSize];
+                // bajar top desde la raíz
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= heapSize) break;
+                    if (child + 1 < heapSize && head.compare(heap[child + 1], heap[child]) < 0) child++;
+                    if (head.compare(heap[child], top) >= 0) break;
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                if (heapSize > 0) heap[i] = top;
+            }
+        } finally {
+            for (DataInputStream s : in) {
+                if (s != null) s.close();
+            }
+        }
+    }
+
+    /**
+     * Filas en columnas primitivas, ordenables por (busId, datagramDate, posición).
+     */
+    private static final class Rows {
+        long[] busId;
+        long[] epoch;
+        int[] latE7;
+        int[] lonE7;
+        int[] lineId;
+        byte[] flags;
+        int size;
+
+        Rows(int capacity) {
+            busId = new long[capacity];
+            epoch = new long[capacity];
+            latE7 = new int[capacity];
+            lonE7 = new int[capacity];
+            lineId = new int[capacity];
+            flags = new byte[capacity];
+        }
+
+        void add(DatagramRow row) {
+            byte f = row.flags();
+            if (row.coordsValid && (row.latE7 != (int) row.latE7 || row.lonE7 != (int) row.lonE7)) {
+                f &= ~DatagramRow.COORDS_VALID;
+            }
+            if (size == busId.length) grow();
+            int i = size++;
+            busId[i] = row.busId;
+            epoch[i] = row.epochSecond;
+            latE7[i] = (int) row.latE7;
+            lonE7[i] = (int) row.lonE7;
+            lineId[i] = row.lineId;
+            flags[i] = f;
+        }
+
+        private void grow() {
+            int n = busId.length * 2;
+            busId = Arrays.copyOf(busId, n);
+            epoch = Arrays.copyOf(epoch, n);
+            latE7 = Arrays.copyOf(latE7, n);
+            lonE7 = Arrays.copyOf(lonE7, n);
+            lineId = Arrays.copyOf(lineId, n);
+            flags = Arrays.copyOf(flags, n);
+        }
+
+        boolean read(int i, DataInputStream in) throws IOException {
+            try {
+                busId[i] = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            epoch[i] = in.readLong();
+            latE7[i] = in.readInt();
+            lonE7[i] = in.readInt();
+            lineId[i] = in.readInt();
+            flags[i] = in.readByte();
+            return true;
+        }
+
+        // fechas inválidas primero dentro del bus
+        long timeKey(int i) {
+            return (flags[i] & DatagramRow.TIME_VALID) != 0 ? epoch[i] : Long.MIN_VALUE;
+        }
+
+        int compare(int a, int b) {
+            int c = Long.compare(busId[a], busId[b]);
+            if (c != 0) return c;
+            c = Long.compare(timeKey(a), timeKey(b));
+            return c != 0 ? c : Integer.compare(a, b);
+        }
+
+        /**
+         * Índices ordenados con merge sort sobre int[] (estable, sin objetos por fila).
+         */
+        int[] sortedOrder() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            int[] tmp = new int[size];
+            for (int width = 1; width < size; width *= 2) {
+                for (int lo = 0; lo < size - width; lo += 2 * width) {
+                    int mid = lo + width;
+                    int hi = Math.min(lo + 2 * width, size);
+                    if (compare(order[mid - 1], order[mid]) <= 0) continue; // ya en orden
+                    System.arraycopy(order, lo, tmp, lo, hi - lo);
+                    int a = lo, b = mid, o = lo;
+                    while (a < mid && b < hi) order[o++] = compare(tmp[a], tmp[b]) <= 0 ? tmp[a++] : tmp[b++];
+                    while (a < mid) order[o++] = tmp[a++];
+                    while (b < hi) order[o++] = tmp[b++];
+                }
+            }
+            return order;
+        }
+    }
+
+    /**
+     * Escribe las filas ya ordenadas por bloques, con sus estadísticas y el
+     * índice por (busId, día); finish() agrega ambos al final y escribe el header
+     * (sin finish() el archivo queda sin header válido).
+     */
+    private static final class BlockWriter implements AutoCloseable {
+        private final FileChannel ch;
+        private final int blockRows;
+        private final long sourceLines;
+        private final long sourceBytes;
+        private final long sourceModifiedMillis;
+        private final Rows block;
+        private final ByteBuffer out;
+        private ByteBuffer stats = ByteBuffer.allocate(64 * DatagramColumnFile.STATS_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private ByteBuffer index = ByteBuffer.allocate(1024 * DatagramColumnFile.INDEX_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private int blockCount;
+        private long rowCount;
+        private long position = DatagramColumnFile.HEADER_BYTES;
+
+        // entrada del índice en curso
+        private long entryBusId;
+        private int entryDay;
+        private int entryRows;
+        private long entryFirstRow;
+        private int indexEntries;
+
+        BlockWriter(Path file, int blockRows, long sourceLines, long sourceBytes, long sourceModifiedMillis) throws IOException {
+            this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.blockRows = blockRows;
+            this.sourceLines = sourceLines;
+            this.sourceBytes = sourceBytes;
+            this.sourceModifiedMillis = sourceModifiedMillis;
+            this.block = new Rows(blockRows);
+            this.out = ByteBuffer.allocate(DatagramColumnFile.blockBytes(blockRows)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void add(Rows src, int i) throws IOException {
+            int day = (src.flags[i] & DatagramRow.TIME_VALID) != 0
+                    ? (int) Math.floorDiv(src.epoch[i], SECONDS_PER_DAY)
+                    : DatagramColumnFile.INVALID_DAY;
+            if (entryRows == 0 || src.busId[i] != entryBusId || day != entryDay) {
+                if (entryRows > 0) writeEntry();
+                entryBusId = src.busId[i];
+                entryDay = day;
+                entryFirstRow = rowCount;
+            }
+            entryRows++;
+
+            int j = block.size++;
+            block.busId[j] = src.busId[i];
+            block.epoch[j] = src.epoch[i];
+            block.latE7[j] = src.latE7[i];
+            block.lonE7[j] = src.lonE7[i];
+            block.lineId[j] = src.lineId[i];
+            block.flags[j] = src.flags[i];
+            rowCount++;
+            if (block.size == blockRows) flushBlock();
+        }
+
+        private void writeEntry() {
+            if (index.remaining() < DatagramColumnFile.INDEX_BYTES) index = grow(index);
+            index.putLong(entryBusId).putInt(entryDay).putInt(entryRows).putLong(entryFirstRow);
+            indexEntries++;
+            entryRows = 0;
+        }
+
+        private void flushBlock() throws IOException {
+            int n = block.size;
+            long minBus = Long.MAX_VALUE, maxBus = Long.MIN_VALUE;
+            long minEpoch = Long.MAX_VALUE, maxEpoch = Long.MIN_VALUE;
+            int minLine = Integer.MAX_VALUE, maxLine = Integer.MIN_VALUE;
+            int allFlags = 0xFF;
+            out.clear();
+            for (int i = 0; i < n; i++) {
+                out.putLong(block.busId[i]);
+                minBus = Math.min(minBus, block.busId[i]);
+                maxBus = Math.max(maxBus, block.busId[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                out.putLong(block.epoch[i]);
+                if ((block.flags[i] & DatagramRow.TIME_VALID) != 0) {
+                    minEpoch = Math.min(minEpoch, block.epoch[i]);
+                    maxEpoch = Math.max(maxEpoch, block.epoch[i]);
+                }
+            }
+            for (int i = 0; i < n; i++) out.putInt(block.latE7[i]);
+            for (int i = 0; i < n; i++) out.putInt(block.lonE7[i]);
+            for (int i = 0; i < n; i++) {
+                out.putInt(block.lineId[i]);
+                if ((block.flags[i] & DatagramRow.LINE_VALID) != 0) {
+                    minLine = Math.min(minLine, block.lineId[i]);
+                    maxLine = Math.max(maxLine, block.lineId[i]);
+                }
+            }
+            for (int i = 0; i < n; i++) allFlags &= block.flags[i];
+            out.put(block.flags, 0, n);
+            out.position(DatagramColumnFile.blockBytes(n));
+            out.flip();
+            position += writeFully(out, position);
+
+            if (stats.remaining() < DatagramColumnFile.STATS_BYTES) stats = grow(stats);
+            stats.putLong(minBus).putLong(maxBus).putLong(minEpoch).putLong(maxEpoch)
+                    .putInt(minLine).putInt(maxLine).putInt(n).putInt(allFlags);
+            blockCount++;
+            block.size = 0;
+        }
+
+        void finish() throws IOException {
+            if (block.size > 0) flushBlock();
+            if (entryRows > 0) writeEntry();
+            long statsOffset = position;
+            position += writeFully(stats.flip(), position);
+            long indexOffset = position;
+            writeFully(index.flip(), position);
+
+            ByteBuffer h = ByteBuffer.allocate(DatagramColumnFile.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            h.putInt(DatagramColumnFile.MAGIC).putInt(DatagramColumnFile.VERSION)
+                    .putLong(rowCount).putLong(sourceLines)
+                    .putInt(blockRows).putInt(blockCount)
+                    .putLong(statsOffset).putLong(indexOffset).putInt(indexEntries)
+                    .putLong(sourceBytes).putLong(sourceModifiedMillis);
+            h.clear();
+            writeFully(h, 0);
+            ch.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+
+        private int writeFully(ByteBuffer buf, long at) throws IOException {
+            int n = buf.remaining();
+            while (buf.hasRemaining()) at += ch.write(buf, at);
+            return n;
+        }
+
+        private static ByteBuffer grow(ByteBuffer buf) {
+            ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            return bigger.put(buf.flip());
+        }
+    }
+}
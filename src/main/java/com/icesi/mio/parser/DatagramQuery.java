@@ -0,0 +1,172 @@
+package com.icesi.mio.parser;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Filtro de un análisis de velocidades: conjunto de lineId, conjunto de busId
+ * y rango [from, to) de datagramDate. Inmutable; cada método retorna una copia.
+ *
+ * Una muestra (par de datagramas consecutivos de un bus) se conserva si su bus
+ * está en busIds, el datagramDate del datagrama actual está en el rango y el
+ * lineId de la muestra (el del actual, o el del anterior si el actual no tiene)
+ * está en lineIds. El resultado es exactamente el del análisis completo
+ * restringido a esas muestras: el datagrama anterior de un par puede no cumplir
+ * el filtro, así que sólo se descartan sin parsear las filas de otros buses
+ * (DatagramTokenizer) y, en el archivo columnar, los tramos del índice y los
+ * bloques donde ninguna fila puede ser el datagrama actual de una muestra.
+ */
+public final class DatagramQuery {
+
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final DatagramQuery ALL = new DatagramQuery(null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    // ordenados; null = sin filtro
+    private final int[] lineIds;
+    private final long[] busIds;
+    private final long fromEpochSecond;
+    private final long toEpochSecond;
+
+    private DatagramQuery(int[] lineIds, long[] busIds, long fromEpochSecond, long toEpochSecond) {
+        this.lineIds = lineIds;
+        this.busIds = busIds;
+        this.fromEpochSecond = fromEpochSecond;
+        this.toEpochSecond = toEpochSecond;
+    }
+
+    /**
+     * Sin filtro.
+     */
+    public static DatagramQuery all() {
+        return ALL;
+    }
+
+    public DatagramQuery lineIds(int... ids) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        return new DatagramQuery(sorted, busIds, fromEpochSecond, toEpochSecond);
+    }
+
+    public DatagramQuery busIds(long... ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        return new DatagramQuery(lineIds, sorted, fromEpochSecond, toEpochSecond);
+    }
+
+    /**
+     * datagramDate en [fromEpochSecond, toEpochSecond), segundos epoch UTC.
+     */
+    public DatagramQuery between(long fromEpochSecond, long toEpochSecond) {
+        return new DatagramQuery(lineIds, busIds, fromEpochSecond, toEpochSecond);
+    }
+
+    public DatagramQuery between(LocalDateTime from, LocalDateTime to) {
+        return between(from.toEpochSecond(ZoneOffset.UTC), to.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    /**
+     * Filtro a partir de -Dmio.query.lines=131,132 -Dmio.query.buses=...
+     * -Dmio.query.from=2019-05-27 -Dmio.query.to=2019-05-28 (fechas
+     * "yyyy-MM-dd" o "yyyy-MM-dd HH:mm:ss"; to es exclusivo).
+     */
+    public static DatagramQuery fromSystemProperties() {
+        DatagramQuery q = all();
+        String lines = System.getProperty("mio.query.lines");
+        if (lines != null && !lines.isBlank()) {
+            q = q.lineIds(Arrays.stream(lines.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray());
+        }
+        String buses = System.getProperty("mio.query.buses");
+        if (buses != null && !buses.isBlank()) {
+            q = q.busIds(Arrays.stream(buses.split(",")).map(String::trim).mapToLong(Long::parseLong).toArray());
+        }
+        String from = System.getProperty("mio.query.from");
+        String to = System.getProperty("mio.query.to");
+        if (from != null || to != null) {
+            q = q.between(from == null ? Long.MIN_VALUE : parseDate(from), to == null ? Long.MAX_VALUE : parseDate(to));
+        }
+        return q;
+    }
+
+    private static long parseDate(String s) {
+        s = s.trim();
+        if (s.length() == 10) return LocalDate.parse(s).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.parse(s, TimestampDecoder.TS_FMT).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public boolean isAll() {
+        return lineIds == null && busIds == null && fromEpochSecond == Long.MIN_VALUE && toEpochSecond == Long.MAX_VALUE;
+    }
+
+    public boolean acceptsBus(long busId) {
+        return busIds == null || Arrays.binarySearch(busIds, busId) >= 0;
+    }
+
+    public boolean acceptsLine(int lineId) {
+        return lineIds == null || Arrays.binarySearch(lineIds, lineId) >= 0;
+    }
+
+    public boolean acceptsTime(long epochSecond) {
+        return epochSecond >= fromEpochSecond && epochSecond < toEpochSecond;
+    }
+
+    /**
+     * true si se conserva una muestra del bus, con ese lineId y el datagramDate del datagrama actual.
+     */
+    public boolean acceptsSample(long busId, int lineId, long epochSecond) {
+        return acceptsTime(epochSecond) && acceptsLine(lineId) && acceptsBus(busId);
+    }
+
+    /**
+     * true si alguna fila del día (entrada del índice de DatagramColumnFile)
+     * puede ser el datagrama actual de una muestra conservada.
+     */
+    public boolean acceptsDay(int epochDay) {
+        if (epochDay == DatagramColumnFile.INVALID_DAY) {
+            // sin datagramDate una fila nunca forma par
+            return false;
+        }
+        long dayStart = epochDay * SECONDS_PER_DAY;
+        return dayStart < toEpochSecond && dayStart + SECONDS_PER_DAY > fromEpochSecond;
+    }
+
+    /**
+     * false si, según sus estadísticas, ninguna fila del bloque puede ser el
+     * datagrama actual de una muestra conservada.
+     */
+    public boolean mayMatchBlock(DatagramColumnFile file, int block) {
+        if (busIds != null && !anyBusIn(file.minBusId(block), file.maxBusId(block))) return false;
+        if (file.maxEpochSecond(block) < fromEpochSecond || file.minEpochSecond(block) >= toEpochSecond) return false;
+        // una fila sin lineId usa el del anterior: sólo se descarta si todas tienen lineId
+        if (lineIds != null && file.allLineIdsValid(block) && !anyLineIn(file.minLineId(block), file.maxLineId(block))) return false;
+        return true;
+    }
+
+    private boolean anyBusIn(long min, long max) {
+        int i = Arrays.binarySearch(busIds, min);
+        if (i >= 0) return true;
+        i = -i - 1;
+        return i < busIds.length && busIds[i] <= max;
+    }
+
+    private boolean anyLineIn(int min, int max) {
+        int i = Arrays.binarySearch(lineIds, min);
+        if (i >= 0) return true;
+        i = -i - 1;
+        return i < lineIds.length && lineIds[i] <= max;
+    }
+
+    @Override
+    public String toString() {
+        if (isAll()) return "DatagramQuery[todo]";
+        StringBuilder sb = new StringBuilder("DatagramQuery[");
+        if (lineIds != null) sb.append("lineIds=").append(Arrays.toString(lineIds)).append(' ');
+        if (busIds != null) sb.append("busIds=").append(Arrays.toString(busIds)).append(' ');
+        if (fromEpochSecond != Long.MIN_VALUE || toEpochSecond != Long.MAX_VALUE) {
+            sb.append("datagramDate=[").append(fromEpochSecond).append(", ").append(toEpochSecond).append(") ");
+        }
+        sb.setLength(sb.length() - 1);
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,68 @@
+package com.icesi.mio.parser;
+
+/**
+ * Datagrama decodificado a primitivos. Se reutiliza fila a fila (lo llena DatagramTokenizer).
+ *
+ * Formato real: 0:eventType, 1:registerdate, 2:stopId, 3:odometer,
+ * 4:lat, 5:lon, 6:taskId, 7:lineId, 8:tripId, 9:unknown, 10:datagramDate, 11:busId
+ *
+ * Los flags *Valid indican si la columna se pudo parsear; una columna inválida
+ * equivale a una excepción de parseo en el procesamiento basado en String.split.
+ */
+public final class DatagramRow {
+    public static final int COLUMNS = 12;
+
+    // true si la fila tiene al menos 12 columnas (equivalente a split(",").length >= 12)
+    public boolean complete;
+
+    public long busId;
+
+    public boolean coordsValid;
+    // grados * 1e7, tal como vienen en el archivo
+    public long latE7;
+    public long lonE7;
+
+    public boolean timeValid;
+    // datagramDate como segundos epoch (UTC)
+    public long epochSecond;
+
+    public boolean lineIdValid;
+    public int lineId;
+
+    // Flags de validez empaquetados en un byte (para tablas y lotes primitivos)
+    public static final byte COORDS_VALID = 1;
+    public static final byte TIME_VALID = 2;
+    public static final byte LINE_VALID = 4;
+
+    public byte flags() {
+        return (byte) ((coordsValid ? COORDS_VALID : 0)
+                | (timeValid ? TIME_VALID : 0)
+                | (lineIdValid ? LINE_VALID : 0));
+    }
+
+    public void setFlags(byte flags) {
+        coordsValid = (flags & COORDS_VALID) != 0;
+        timeValid = (flags & TIME_VALID) != 0;
+        lineIdValid = (flags & LINE_VALID) != 0;
+    }
+
+    void reset() {
+        complete = false;
+        busId = 0L;
+        coordsValid = false;
+        latE7 = 0L;
+        lonE7 = 0L;
+        timeValid = false;
+        epochSecond = 0L;
+        lineIdValid = false;
+        lineId = 0;
+    }
+
+    public double latDegrees() {
+        return latE7 / 1e7;
+    }
+
+    public double lonDegrees() {
+        return lonE7 / 1e7;
+    }
+}
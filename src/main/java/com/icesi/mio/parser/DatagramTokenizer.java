@@ -0,0 +1,203 @@
+package com.icesi.mio.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Tokenizador de datagramas que parsea directamente desde bytes las columnas
+ * usadas por el cálculo de velocidades (lat, lon, lineId, datagramDate, busId).
+ *
+ * El camino normal no crea ningún objeto por fila. Sólo cuando una columna no
+ * tiene la forma esperada (p.ej. fecha con otro formato, número con exponente)
+ * se construye un String y se usa el parser de la JDK, para obtener exactamente
+ * el mismo resultado que el procesamiento basado en String.split.
+ *
+ * No es thread-safe: usar una instancia por hilo.
+ */
+public final class DatagramTokenizer {
+
+    private static final int COL_LAT = 4;
+    private static final int COL_LON = 5;
+    private static final int COL_LINE = 7;
+    private static final int COL_DATE = 10;
+    private static final int COL_BUS = 11;
+
+    private final int[] fieldStart = new int[DatagramRow.COLUMNS];
+    private final int[] fieldEnd = new int[DatagramRow.COLUMNS];
+
+    private final Charset charset = Charset.defaultCharset();
+
+    /**
+     * Parsea la línea [from, to) de buf en out. Retorna out.complete.
+     */
+    public boolean parse(ByteBuffer buf, int from, int to, DatagramRow out) {
+        return parse(buf, from, to, out, null);
+    }
+
+    /**
+     * Igual que parse, pero si el busId no está en query retorna false sin
+     * parsear el resto de las columnas (las filas de otros buses nunca forman
+     * pares con las del filtro). query null = sin filtro.
+     */
+    public boolean parse(ByteBuffer buf, int from, int to, DatagramRow out, DatagramQuery query) {
+        out.reset();
+
+        // Delimitar columnas; como String.split, las columnas vacías al final no cuentan
+        int field = 0;
+        int start = from;
+        int lastNonEmpty = -1;
+        for (int i = from; i <= to; i++) {
+            if (i == to || buf.get(i) == ',') {
+                if (i > start) lastNonEmpty = field;
+                if (field < DatagramRow.COLUMNS) {
+                    fieldStart[field] = start;
+                    fieldEnd[field] = i;
+                }
+                field++;
+                start = i + 1;
+            }
+        }
+        if (lastNonEmpty < DatagramRow.COLUMNS - 1) return false;
+
+        long busId = parseBusId(buf, fieldStart[COL_BUS], fieldEnd[COL_BUS]);
+        if (query != null && !query.acceptsBus(busId)) return false;
+        out.complete = true;
+        out.busId = busId;
+
+        long lat = parseCoordinate(buf, fieldStart[COL_LAT], fieldEnd[COL_LAT]);
+        long lon = parseCoordinate(buf, fieldStart[COL_LON], fieldEnd[COL_LON]);
+        if (lat != Long.MIN_VALUE && lon != Long.MIN_VALUE) {
+            out.coordsValid = true;
+            out.latE7 = lat;
+            out.lonE7 = lon;
+        }
+
+        long ts = parseTimestamp(buf, fieldStart[COL_DATE], fieldEnd[COL_DATE]);
+        if (ts != Long.MIN_VALUE) {
+            out.timeValid = true;
+            out.epochSecond = ts;
+        }
+
+        long line = parseInt(buf, fieldStart[COL_LINE], fieldEnd[COL_LINE]);
+        if (line != Long.MIN_VALUE) {
+            out.lineIdValid = true;
+            out.lineId = (int) line;
+        }
+        return true;
+    }
+
+    private long parseBusId(ByteBuffer buf, int s, int e) {
+        int len = e - s;
+        if (len >= 1 && len <= 18 && (len == 1 || buf.get(s) != '0')) {
+            long v = 0;
+            int i = s;
+            for (; i < e; i++) {
+                int d = buf.get(i) - '0';
+                if (d < 0 || d > 9) break;
+                v = v * 10 + d;
+            }
+            if (i == e) return v;
+        }
+        // busIds que no son enteros canónicos (p.ej. "0012" o texto): id negativo derivado
+        // de los bytes (FNV-1a), igual en cualquier instancia, rango del archivo o reanudación
+        long h = 0xcbf29ce484222325L;
+        for (int i = s; i < e; i++) {
+            h ^= buf.get(i) & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return -1L - (h >>> 2);
+    }
+
+    /**
+     * Equivalente a Double.parseDouble para coordenadas enteras (grados * 1e7).
+     * Long.MIN_VALUE si no se puede parsear o el valor no es entero.
+     */
+    private long parseCoordinate(ByteBuffer buf, int s, int e) {
+        long v = parseSignedDigits(buf, s, e, 18);
+        if (v != Long.MIN_VALUE) return v;
+        try {
+            double d = Double.parseDouble(slice(buf, s, e));
+            if (d == Math.rint(d) && Math.abs(d) < 9.0e18) return (long) d;
+        } catch (NumberFormatException ignore) {
+            // columna mal formada
+        }
+        return Long.MIN_VALUE;
+    }
+
+    // Equivalente a Integer.parseInt(s.trim()); Long.MIN_VALUE si falla
+    private long parseInt(ByteBuffer buf, int s, int e) {
+        long v = parseSignedDigits(buf, s, e, 9);
+        if (v != Long.MIN_VALUE) return v;
+        try {
+            return Integer.parseInt(slice(buf, s, e).trim());
+        } catch (NumberFormatException ex) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // [espacios] [+|-] dígitos [espacios], con a lo sumo maxDigits dígitos
+    private static long parseSignedDigits(ByteBuffer buf, int s, int e, int maxDigits) {
+        while (s < e && (buf.get(s) & 0xFF) <= ' ') s++;
+        while (e > s && (buf.get(e - 1) & 0xFF) <= ' ') e--;
+        if (s == e) return Long.MIN_VALUE;
+        boolean neg = false;
+        byte first = buf.get(s);
+        if (first == '-' || first == '+') {
+            neg = first == '-';
+            s++;
+        }
+        int len = e - s;
+        if (len < 1 || len > maxDigits) return Long.MIN_VALUE;
+        long v = 0;
+        for (int i = s; i < e; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) return Long.MIN_VALUE;
+            v = v * 10 + d;
+        }
+        return neg ? -v : v;
+    }
+
+    /**
+     * Segundos epoch (UTC) de "yyyy-MM-dd HH:mm:ss", calculados desde los dígitos.
+     * Long.MIN_VALUE si la fecha no es válida.
+     */
+    private long parseTimestamp(ByteBuffer buf, int s, int e) {
+        if (e - s == 19
+                && buf.get(s + 4) == '-' && buf.get(s + 7) == '-' && buf.get(s + 10) == ' '
+                && buf.get(s + 13) == ':' && buf.get(s + 16) == ':') {
+            int year = digits(buf, s, 4);
+            int month = digits(buf, s + 5, 2);
+            int day = digits(buf, s + 8, 2);
+            int hour = digits(buf, s + 11, 2);
+            int minute = digits(buf, s + 14, 2);
+            int second = digits(buf, s + 17, 2);
+            if (TimestampDecoder.isValid(year, month, day, hour, minute, second)) {
+                return TimestampDecoder.toEpochSecond(year, month, day, hour, minute, second);
+            }
+        }
+        // Casos raros (fecha fuera de rango, otro formato): delegar en la JDK
+        try {
+            return LocalDateTime.parse(slice(buf, s, e), TimestampDecoder.TS_FMT).toEpochSecond(ZoneOffset.UTC);
+        } catch (Exception ex) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static int digits(ByteBuffer buf, int s, int n) {
+        int v = 0;
+        for (int i = s; i < s + n; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private String slice(ByteBuffer buf, int s, int e) {
+        byte[] b = new byte[e - s];
+        for (int i = 0; i < b.length; i++) b[i] = buf.get(s + i);
+        return new String(b, charset);
+    }
+}
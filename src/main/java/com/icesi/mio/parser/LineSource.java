@@ -0,0 +1,20 @@
+package com.icesi.mio.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Fuente de líneas a nivel de bytes. Después de cada nextLine() la línea actual
+ * son los bytes [lineStart(), lineEnd()) de buffer(); esos índices sólo son
+ * válidos hasta la siguiente llamada.
+ */
+public interface LineSource {
+
+    boolean nextLine() throws IOException;
+
+    ByteBuffer buffer();
+
+    int lineStart();
+
+    int lineEnd();
+}
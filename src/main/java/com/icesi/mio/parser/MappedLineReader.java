@@ -0,0 +1,136 @@
+package com.icesi.mio.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Lector de líneas sobre un rango [start, end) de un archivo, mapeado en memoria
+ * por ventanas (FileChannel.map) en lugar de copiarlo a un buffer de lectura.
+ *
+ * start debe coincidir con el inicio de una línea (ver alignToLineStart). Cuando
+ * una línea cruza el final de la ventana, la siguiente ventana se mapea desde el
+ * inicio de esa línea. Mismos terminadores que BufferedReader.readLine.
+ */
+public final class MappedLineReader implements LineSource {
+
+    private final FileChannel channel;
+    private final long end;
+    private int windowBytes;
+    private MappedByteBuffer window;
+    private long windowOffset;
+    private int pos;
+    private int lineStart;
+    private int lineEnd;
+    private boolean pendingCr;
+
+    public MappedLineReader(FileChannel channel, long start, long end, int windowBytes) throws IOException {
+        this.channel = channel;
+        this.end = end;
+        this.windowBytes = windowBytes;
+        map(start);
+    }
+
+    @Override
+    public boolean nextLine() throws IOException {
+        if (pendingCr) {
+            // "\r\n" cuenta como un único terminador
+            if (pos >= window.limit() && windowOffset + pos < end) map(windowOffset + pos);
+            if (pos < window.limit() && window.get(pos) == '\n') pos++;
+            pendingCr = false;
+        }
+
+        int scan = pos;
+        while (true) {
+            int limit = window.limit();
+            for (int i = scan; i < limit; i++) {
+                byte c = window.get(i);
+                if (c == '\n' || c == '\r') {
+                    lineStart = pos;
+                    lineEnd = i;
+                    pos = i + 1;
+                    pendingCr = c == '\r';
+                    return true;
+                }
+            }
+            if (windowOffset + limit >= end) {
+                if (pos < limit) {
+                    // última línea del rango sin terminador
+                    lineStart = pos;
+                    lineEnd = limit;
+                    pos = limit;
+                    return true;
+                }
+                return false;
+            }
+            // la línea cruza el final de la ventana: remapear desde su inicio
+            int scanned = limit - pos;
+            if (pos == 0) {
+                // línea más larga que la ventana
+                windowBytes = (int) Math.min(Integer.MAX_VALUE, windowBytes * 2L);
+            }
+            map(windowOffset + pos);
+            scan = scanned;
+        }
+    }
+
+    @Override
+    public ByteBuffer buffer() {
+        return window;
+    }
+
+    @Override
+    public int lineStart() {
+        return lineStart;
+    }
+
+    @Override
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    private void map(long offset) throws IOException {
+        long len = Math.min(windowBytes, end - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, len);
+        windowOffset = offset;
+        pos = 0;
+    }
+
+    /**
+     * Primer inicio de línea en o después de offset (offset > 0), o size si no hay más líneas.
+     */
+    public static long alignToLineStart(FileChannel channel, long offset, long size) throws IOException {
+        if (offset <= 0) return 0;
+        if (offset >= size) return size;
+        ByteBuffer one = ByteBuffer.allocate(1);
+        byte prev = readByte(channel, offset - 1, one);
+        if (prev == '\n') return offset;
+        if (prev == '\r' && readByte(channel, offset, one) != '\n') return offset;
+
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        long p = offset;
+        while (p < size) {
+            chunk.clear();
+            int n = channel.read(chunk, p);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                byte c = chunk.get(i);
+                if (c == '\n') return p + i + 1;
+                if (c == '\r') {
+                    long next = p + i + 1;
+                    if (next < size && readByte(channel, next, one) == '\n') return next + 1;
+                    return next;
+                }
+            }
+            p += n;
+        }
+        return size;
+    }
+
+    private static byte readByte(FileChannel channel, long offset, ByteBuffer one) throws IOException {
+        one.clear();
+        channel.read(one, offset);
+        return one.get(0);
+    }
+}
@@ -0,0 +1,90 @@
+package com.icesi.mio.parser;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Decodifica datagramDate ("yyyy-MM-dd HH:mm:ss") a segundos epoch UTC
+ * directamente desde los caracteres, sin DateTimeFormatter en el caso normal.
+ * Los casos raros se delegan en LocalDateTime.parse con el mismo patrón, así
+ * que el resultado es idéntico al parseo con la JDK.
+ */
+public final class TimestampDecoder {
+
+    /**
+     * Valor devuelto cuando la fecha no se puede parsear.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private TimestampDecoder() {
+    }
+
+    public static long decode(CharSequence s) {
+        if (s.length() == 19
+                && s.charAt(4) == '-' && s.charAt(7) == '-' && s.charAt(10) == ' '
+                && s.charAt(13) == ':' && s.charAt(16) == ':') {
+            int year = digits(s, 0, 4);
+            int month = digits(s, 5, 2);
+            int day = digits(s, 8, 2);
+            int hour = digits(s, 11, 2);
+            int minute = digits(s, 14, 2);
+            int second = digits(s, 17, 2);
+            if (isValid(year, month, day, hour, minute, second)) {
+                return toEpochSecond(year, month, day, hour, minute, second);
+            }
+        }
+        // Casos raros (fecha fuera de rango, otro formato): delegar en la JDK
+        try {
+            return LocalDateTime.parse(s, TS_FMT).toEpochSecond(ZoneOffset.UTC);
+        } catch (Exception ex) {
+            return INVALID;
+        }
+    }
+
+    private static int digits(CharSequence s, int from, int n) {
+        int v = 0;
+        for (int i = from; i < from + n; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /**
+     * true si los campos forman una fecha/hora existente (dígitos inválidos llegan como -1).
+     */
+    static boolean isValid(int year, int month, int day, int hour, int minute, int second) {
+        return year >= 1 && month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month)
+                && hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4: case 6: case 9: case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Fecha civil (calendario gregoriano proléptico) a segundos epoch UTC.
+     */
+    public static long toEpochSecond(int year, int month, int day, int hour, int minute, int second) {
+        // días desde 1970-01-01 (algoritmo days_from_civil)
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        long days = era * 146097 + doe - 719468;
+        return days * 86400L + hour * 3600L + minute * 60L + second;
+    }
+}
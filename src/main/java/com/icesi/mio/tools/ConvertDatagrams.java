@@ -0,0 +1,47 @@
+package com.icesi.mio.tools;
+
+import com.icesi.mio.parser.DatagramColumnFile;
+import com.icesi.mio.parser.DatagramColumnWriter;
+import com.icesi.mio.util.Constants;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Conversión única de un CSV de datagramas al formato binario columnar
+ * (DatagramColumnFile), para que las siguientes pasadas lean columnas mapeadas
+ * en memoria en lugar de parsear texto.
+ *
+ * Uso: ConvertDatagrams [datagrams.csv] [salida.mioc]
+ * Por defecto convierte datagrams4history.csv a datagrams4history.mioc en la
+ * carpeta de datos. -Dmio.columns.blockRows y -Dmio.columns.runRows ajustan el
+ * tamaño de bloque y de cada corrida del ordenamiento externo.
+ */
+public class ConvertDatagrams {
+    public static void main(String[] args) throws Exception {
+        Path csv = Path.of(args.length > 0 ? args[0] : Constants.DEFAULT_DATA_DIR + "datagrams4history.csv");
+        Path out = args.length > 1 ? Path.of(args[1]) : columnFileFor(csv);
+
+        DatagramColumnWriter writer = new DatagramColumnWriter()
+                .blockRows(Integer.getInteger("mio.columns.blockRows", 1 << 16))
+                .runRows(Integer.getInteger("mio.columns.runRows", 1 << 22));
+
+        System.out.println("Convirtiendo " + csv + " (" + Files.size(csv) + " bytes) -> " + out);
+        long start = System.currentTimeMillis();
+        long rows = writer.convert(csv, out);
+        long elapsed = System.currentTimeMillis() - start;
+
+        DatagramColumnFile file = DatagramColumnFile.open(out);
+        System.out.printf("Filas=%d (de %d líneas) bloques=%d índice(bus,día)=%d bytes=%d tiempo=%d ms%n",
+                rows, file.sourceLines(), file.blockCount(), file.indexSize(), Files.size(out), elapsed);
+    }
+
+    /**
+     * Misma ruta con extensión .mioc en lugar de .csv.
+     */
+    public static Path columnFileFor(Path csv) {
+        String name = csv.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return csv.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".mioc");
+    }
+}
@@ -0,0 +1,155 @@
+package com.icesi.mio.util;
+
+import java.io.IOException;
+
+/**
+ * Compresión en el formato de bloque de LZ4 (sin el frame), en Java puro.
+ * Secuencias token + literales + offset de 2 bytes + largo de match, con una
+ * ventana de 64 KB y una tabla hash de 4096 posiciones: rápido y con una
+ * razón de compresión modesta, pensado para bloques de unos pocos MB a lo sumo.
+ */
+public final class Lz4Block {
+
+    private static final int MIN_MATCH = 4;
+    // los últimos 5 bytes siempre son literales y un match no empieza en los últimos 12
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 12;
+
+    private Lz4Block() {
+    }
+
+    /**
+     * Tamaño máximo de la salida de compress para n bytes de entrada.
+     */
+    public static int maxCompressedLength(int n) {
+        return n + n / 255 + 16;
+    }
+
+    /**
+     * Comprime src[srcOff, srcOff + srcLen) en dst desde dstOff, que debe tener
+     * al menos maxCompressedLength(srcLen) bytes libres. Retorna los bytes escritos.
+     */
+    public static int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        int[] table = new int[1 << HASH_LOG];
+        int end = srcOff + srcLen;
+        int matchLimit = end - LAST_LITERALS;
+        int mfLimit = end - MF_LIMIT;
+        int ip = srcOff;
+        int anchor = srcOff;
+        int op = dstOff;
+
+        if (srcLen > MF_LIMIT) {
+            // posiciones + 1 para que 0 signifique "vacío"
+            while (ip < mfLimit) {
+                int seq = readIntLE(src, ip);
+                int h = (seq * -1640531535) >>> (32 - HASH_LOG);
+                int ref = table[h] - 1;
+                table[h] = ip + 1;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readIntLE(src, ref) != seq) {
+                    ip++;
+                    continue;
+                }
+                // extender hacia atrás sobre los literales pendientes
+                while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int len = MIN_MATCH;
+                while (ip + len < matchLimit && src[ip + len] == src[ref + len]) len++;
+
+                op = writeSequence(src, anchor, ip - anchor, dst, op, ip - ref, len);
+                ip += len;
+                anchor = ip;
+            }
+        }
+        return writeLastLiterals(src, anchor, end - anchor, dst, op) - dstOff;
+    }
+
+    /**
+     * Descomprime un bloque de srcLen bytes que produce exactamente dstLen bytes.
+     */
+    public static void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) throws IOException {
+        int ip = srcOff;
+        int srcEnd = srcOff + srcLen;
+        int op = dstOff;
+        int dstEnd = dstOff + dstLen;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xFF;
+                int litLen = token >>> 4;
+                if (litLen == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        litLen += b;
+                    } while (b == 255);
+                }
+                if (litLen > srcEnd - ip || litLen > dstEnd - op) throw corrupt();
+                System.arraycopy(src, ip, dst, op, litLen);
+                ip += litLen;
+                op += litLen;
+                if (ip == srcEnd) break; // última secuencia: sólo literales
+
+                int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+                ip += 2;
+                int matchLen = token & 0x0F;
+                if (matchLen == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLen += b;
+                    } while (b == 255);
+                }
+                matchLen += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < dstOff || matchLen > dstEnd - op) throw corrupt();
+                // puede solaparse con lo que se está escribiendo: copiar byte a byte
+                for (int i = 0; i < matchLen; i++) dst[op + i] = dst[ref + i];
+                op += matchLen;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw corrupt();
+        }
+        if (op != dstEnd) throw corrupt();
+    }
+
+    private static int writeSequence(byte[] src, int litOff, int litLen, byte[] dst, int op, int offset, int matchLen) {
+        int ml = matchLen - MIN_MATCH;
+        int tokenPos = op++;
+        int token = (Math.min(litLen, 15) << 4) | Math.min(ml, 15);
+        if (litLen >= 15) op = writeLength(dst, op, litLen - 15);
+        System.arraycopy(src, litOff, dst, op, litLen);
+        op += litLen;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        if (ml >= 15) op = writeLength(dst, op, ml - 15);
+        dst[tokenPos] = (byte) token;
+        return op;
+    }
+
+    private static int writeLastLiterals(byte[] src, int litOff, int litLen, byte[] dst, int op) {
+        dst[op++] = (byte) (Math.min(litLen, 15) << 4);
+        if (litLen >= 15) op = writeLength(dst, op, litLen - 15);
+        System.arraycopy(src, litOff, dst, op, litLen);
+        return op + litLen;
+    }
+
+    private static int writeLength(byte[] dst, int op, int n) {
+        while (n >= 255) {
+            dst[op++] = (byte) 255;
+            n -= 255;
+        }
+        dst[op++] = (byte) n;
+        return op;
+    }
+
+    private static int readIntLE(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static IOException corrupt() {
+        return new IOException("Bloque LZ4 corrupto");
+    }
+}
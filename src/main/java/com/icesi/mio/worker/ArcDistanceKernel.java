@@ -0,0 +1,113 @@
+package com.icesi.mio.worker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Búsqueda del segmento más cercano a un punto sobre arreglos empaquetados de
+ * arcos en metros (ver ArcGeometry): origen (fromX, fromY), vector (dx, dy) e
+ * inverso de la longitud al cuadrado, posiciones from..to-1 contiguas.
+ *
+ * La implementación escalar siempre está disponible. La del Vector API
+ * (jdk.incubator.vector) se compila sólo con el perfil -Pvector y se usa con
+ * -Dmio.simd=true si la JVM tiene el módulo (--add-modules
+ * jdk.incubator.vector); si no, select() vuelve a la escalar. Ambas calculan
+ * las mismas distancias con las mismas operaciones, así que devuelven la
+ * misma posición.
+ */
+public interface ArcDistanceKernel {
+
+    /**
+     * Posición k en [from, to) del segmento de menor distancia al punto (x, y)
+     * (en empate, la menor), o -1 si el rango está vacío.
+     */
+    int nearest(double[] fromX, double[] fromY, double[] dx, double[] dy, double[] invLen2,
+                int from, int to, double x, double y);
+
+    String name();
+
+    /**
+     * Distancia al cuadrado (m²) del punto (x, y) al segmento k; la misma
+     * cuenta que hacen los kernels.
+     */
+    static double distanceSquared(double[] fromX, double[] fromY, double[] dx, double[] dy, double[] invLen2,
+                                  int k, double x, double y) {
+        double px = x - fromX[k], py = y - fromY[k];
+        double t = Math.max(0, Math.min(1, (px * dx[k] + py * dy[k]) * invLen2[k]));
+        double ex = px - t * dx[k], ey = py - t * dy[k];
+        return ex * ex + ey * ey;
+    }
+
+    static ArcDistanceKernel scalar() {
+        return Scalar.INSTANCE;
+    }
+
+    /**
+     * Kernel del Vector API, o null si no se compiló (-Pvector) o la JVM no
+     * tiene el módulo jdk.incubator.vector.
+     */
+    static ArcDistanceKernel vector() {
+        try {
+            return (ArcDistanceKernel) Class.forName("com.icesi.mio.worker.VectorArcDistanceKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * El kernel del Vector API si -Dmio.simd=true y está disponible; si no, el
+     * escalar. Se elige una sola vez por JVM.
+     */
+    static ArcDistanceKernel select() {
+        return Selected.KERNEL;
+    }
+
+    /**
+     * Elección de select(), hecha (y avisada en el log) al primer uso.
+     */
+    final class Selected {
+        private static final Logger logger = LoggerFactory.getLogger(ArcDistanceKernel.class);
+        static final ArcDistanceKernel KERNEL = choose();
+
+        private Selected() {
+        }
+
+        private static ArcDistanceKernel choose() {
+            if (!Boolean.getBoolean("mio.simd")) return scalar();
+            ArcDistanceKernel vector = vector();
+            if (vector != null) return vector;
+            logger.warn("-Dmio.simd=true sin Vector API (compilar con -Pvector y ejecutar con "
+                    + "--add-modules jdk.incubator.vector): se usa el kernel escalar");
+            return scalar();
+        }
+    }
+
+    /**
+     * Recorrido escalar; el JIT puede desenrollarlo, pero el mínimo con índice
+     * no se auto-vectoriza.
+     */
+    final class Scalar implements ArcDistanceKernel {
+        static final Scalar INSTANCE = new Scalar();
+
+        private Scalar() {
+        }
+
+        @Override
+        public int nearest(double[] fromX, double[] fromY, double[] dx, double[] dy, double[] invLen2,
+                           int from, int to, double x, double y) {
+            double bestDist = Double.MAX_VALUE;
+            int best = -1;
+            for (int k = from; k < to; k++) {
+                double d = distanceSquared(fromX, fromY, dx, dy, invLen2, k, x, y);
+                if (d < bestDist) { bestDist = d; best = k; }
+            }
+            return best;
+        }
+
+        @Override
+        public String name() {
+            return "escalar";
+        }
+    }
+}
@@ -2,19 +2,289 @@ package com.icesi.mio.worker;
 
 import com.icesi.mio.model.RouteGraph;
 import com.icesi.mio.model.Arc;
-import com.icesi.mio.model.Stop;
+import com.icesi.mio.model.ArcGeometry;
+import com.icesi.mio.model.ArcTable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * ArcMatcher sencillo: busca el arco (ida o vuelta) de la ruta cuyo segmento
  * (fromStop -> toStop) tiene la menor distancia perpendicular al punto dado.
- * Retorna un arcId consistente (hash de lineId, orientation, sequence) o -1 si no se encuentra.
+ * Retorna el ordinal denso del arco (Arc.getId(), asignado por GraphBuilder) o -1 si no se encuentra.
+ *
+ * Una instancia usa un ArcSpatialIndex precalculado y sólo evalúa los arcos
+ * cercanos al punto; el método estático matchArc conserva el recorrido lineal
+ * como referencia (usado en tests y benchmarks). Las distancias de la
+ * instancia salen de la geometría proyectada del plan (ArcGeometry); matchArc
+ * proyecta alrededor de cada arco, así que sólo difieren en empates a menos
+ * de ~1e-4 relativo.
+ *
+ * matchAlong() es la variante con estado por bus (ver tracking()): parte del
+ * último arco del bus y prueba ese arco y sus sucesores en la ruta; sólo si
+ * ninguno está cerca recurre a la búsqueda espacial, prefiriendo los arcos en
+ * el sentido del movimiento. Es la versión voraz (un paso) de un matcher HMM
+ * restringido al grafo de la ruta, y evita saltar entre ida y vuelta donde
+ * ambos sentidos comparten calzada.
+ *
+ * alongRoute() agrega a lo anterior la distancia a lo largo de la ruta: los
+ * acumuladores emparejan cada punto del par (matchPoint) y miden la
+ * velocidad sobre la polilínea de la ruta (ver RouteSpeed).
  */
 public class ArcMatcher {
 
-    public static long matchArc(int lineId, double lat, double lon, Map<Integer, RouteGraph> graphs) {
+    // Umbral: si el punto está a más de 200 metros del arco, ignorar
+    public static final double MAX_MATCH_DISTANCE_METERS = 200.0;
+    // Seguimiento: distancia máxima a un arco de la secuencia para no buscar en la grilla
+    public static final double TRACK_DISTANCE_METERS = 60.0;
+    // Seguimiento: arcos sucesores que se prueban después del último
+    public static final int TRACK_LOOKAHEAD = 3;
+    // Seguimiento: con más tiempo que esto entre datagramas no se usa el último arco
+    public static final long TRACK_MAX_GAP_SECONDS = 300L;
+    // Seguimiento: costo (en metros) de pasar a un arco del otro sentido, como en
+    // la probabilidad de transición de un HMM; en las terminales ida y vuelta se tocan
+    public static final double TRACK_SWITCH_METERS = 25.0;
+
+    private final ArcSpatialIndex index;
+    private final ArcTable arcTable;
+    private final ArcGeometry geometry;
+    private final boolean tracking;
+    private final boolean alongRoute;
+    // por ordinal: línea, sentido y sucesores (CSR: arcos de la misma línea que
+    // salen de la parada destino, incluye el cambio de ida a vuelta)
+    private final int[] arcLine;
+    private final int[] arcOrientation;
+    private final int[] nextStart;
+    private final int[] next;
+    private final RoutePolylines routes;
+
+    public ArcMatcher(Map<Integer, RouteGraph> graphs) {
+        this(graphs, ArcDistanceKernel.select());
+    }
+
+    /**
+     * Matcher cuyo índice espacial recorre los candidatos con kernel (por
+     * defecto ArcDistanceKernel.select(), según -Dmio.simd).
+     */
+    public ArcMatcher(Map<Integer, RouteGraph> graphs, ArcDistanceKernel kernel) {
+        this(graphs, ArcTable.from(graphs), kernel);
+    }
+
+    /**
+     * Matcher sobre la tabla de arcos y la geometría que ya calculó GraphBuilder
+     * (getArcTable(), getArcGeometry()) para estos grafos, sin volver a construirlas.
+     */
+    public ArcMatcher(Map<Integer, RouteGraph> graphs, ArcTable arcTable, ArcGeometry geometry) {
+        this(graphs, arcTable, geometry, ArcDistanceKernel.select());
+    }
+
+    private ArcMatcher(Map<Integer, RouteGraph> graphs, ArcTable arcTable, ArcDistanceKernel kernel) {
+        this(graphs, arcTable, ArcGeometry.from(arcTable), kernel);
+    }
+
+    public ArcMatcher(Map<Integer, RouteGraph> graphs, ArcTable arcTable, ArcGeometry geometry, ArcDistanceKernel kernel) {
+        this.arcTable = arcTable;
+        this.geometry = geometry;
+        this.index = ArcSpatialIndex.build(graphs, geometry, MAX_MATCH_DISTANCE_METERS, kernel);
+        this.tracking = false;
+        this.alongRoute = false;
+
+        int n = arcTable.size();
+        this.arcLine = new int[n];
+        this.arcOrientation = new int[n];
+        Arrays.fill(arcLine, Integer.MIN_VALUE);
+        Map<Long, List<Arc>> byFromStop = new HashMap<>();
+        for (int id = 0; id < n; id++) {
+            Arc a = arcTable.get(id);
+            if (a == null) continue;
+            arcLine[id] = a.getLineId();
+            arcOrientation[id] = a.getOrientation();
+            byFromStop.computeIfAbsent(lineStopKey(a.getLineId(), a.getFromStop().getStopId()), k -> new ArrayList<>()).add(a);
+        }
+        this.nextStart = new int[n + 1];
+        List<Integer> successors = new ArrayList<>();
+        for (int id = 0; id < n; id++) {
+            nextStart[id] = successors.size();
+            Arc a = arcTable.get(id);
+            if (a == null) continue;
+            for (Arc s : byFromStop.getOrDefault(lineStopKey(a.getLineId(), a.getToStop().getStopId()), List.of())) {
+                if (s.getId() != id) successors.add(s.getId());
+            }
+        }
+        nextStart[n] = successors.size();
+        this.next = successors.stream().mapToInt(Integer::intValue).toArray();
+        this.routes = RoutePolylines.build(graphs, geometry);
+    }
+
+    private ArcMatcher(ArcMatcher base, boolean tracking, boolean alongRoute) {
+        this.index = base.index;
+        this.arcTable = base.arcTable;
+        this.geometry = base.geometry;
+        this.tracking = tracking;
+        this.alongRoute = alongRoute;
+        this.arcLine = base.arcLine;
+        this.arcOrientation = base.arcOrientation;
+        this.nextStart = base.nextStart;
+        this.next = base.next;
+        this.routes = base.routes;
+    }
+
+    /**
+     * Mismo matcher (comparte índice y tablas) con seguimiento por bus: los
+     * acumuladores que lo usan emparejan con matchAlong() y guardan el último
+     * arco de cada bus. El resultado depende del historial de cada bus, así
+     * que processParallel sobre el CSV puede diferir de process() en la
+     * primera muestra de cada bus en cada rango.
+     */
+    public ArcMatcher tracking() {
+        return tracking ? this : new ArcMatcher(this, true, alongRoute);
+    }
+
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * tracking() que además mide la velocidad a lo largo de la ruta en lugar
+     * de en línea recta, repartiendo cada par entre los arcos que recorre.
+     */
+    public ArcMatcher alongRoute() {
+        return alongRoute ? this : new ArcMatcher(this, true, true);
+    }
+
+    public boolean isAlongRoute() {
+        return alongRoute;
+    }
+
+    RoutePolylines routes() {
+        return routes;
+    }
+
+    public int match(int lineId, double lat, double lon) {
+        ArcSpatialIndex.LineIndex li = index.forLine(lineId);
+        if (li == null) return -1;
+        Arc best = li.nearest(lat, lon, MAX_MATCH_DISTANCE_METERS);
+        return best == null ? -1 : best.getId();
+    }
+
+    /**
+     * Arco del par (lat1, lon1) -> (lat2, lon2) de un bus cuyo último arco fue
+     * lastArc (-1 si no hay): el más cercano al punto medio entre lastArc y
+     * sus sucesores directos que no vaya contra el movimiento (los del otro
+     * sentido suman TRACK_SWITCH_METERS), si está a menos de
+     * TRACK_DISTANCE_METERS; si no hay, lo mismo con los sucesores a 2, 3, ...
+     * TRACK_LOOKAHEAD pasos (menos pasos primero); si no, el más
+     * cercano de la grilla en el sentido del movimiento (o en cualquier sentido
+     * si no hay ninguno), a menos de MAX_MATCH_DISTANCE_METERS. Retorna -1 si
+     * no hay arco.
+     */
+    public int matchAlong(int lineId, double lat1, double lon1, double lat2, double lon2, int lastArc) {
+        return matchPoint(lineId, (lat1 + lat2) / 2.0, (lon1 + lon2) / 2.0, lat2 - lat1, lon2 - lon1, lastArc);
+    }
+
+    /**
+     * matchAlong() para un punto (lat, lon) con desplazamiento (moveLat,
+     * moveLon) en grados: el del par al que pertenece.
+     */
+    public int matchPoint(int lineId, double lat, double lon, double moveLat, double moveLon, int lastArc) {
+        if (lastArc >= 0 && lastArc < arcLine.length && arcLine[lastArc] == lineId) {
+            // sin desplazamiento suficiente (bus detenido) no se descarta ningún sentido
+            boolean heading = ArcSpatialIndex.hasHeading(moveLat, moveLon);
+            double x = geometry.x(lon), y = geometry.y(lat);
+            // desplazamiento en metros, como el vector de cada arco en geometry
+            double moveX = heading ? geometry.x(lon + moveLon) - x : 0;
+            double moveY = heading ? geometry.y(lat + moveLat) - y : 0;
+            int orientation = arcOrientation[lastArc];
+            // casi siempre resuelve el primer nivel: el mismo arco o el siguiente
+            long best = nearestAhead(lastArc, 0, 1, x, y, moveX, moveY, orientation, TRACK_DISTANCE_METERS);
+            for (int level = 2; best < 0 && level <= TRACK_LOOKAHEAD; level++) {
+                best = nearestAhead(lastArc, level, level, x, y, moveX, moveY, orientation, TRACK_DISTANCE_METERS);
+            }
+            if (best >= 0) return (int) best;
+        }
+        ArcSpatialIndex.LineIndex li = index.forLine(lineId);
+        if (li == null) return -1;
+        Arc best = li.nearestAlong(lat, lon, moveLat, moveLon, MAX_MATCH_DISTANCE_METERS);
+        return best == null ? -1 : best.getId();
+    }
+
+    /**
+     * El arco de menor costo (distancia al punto proyectado (x, y), más TRACK_SWITCH_METERS si no es del
+     * sentido orientation) por debajo de limit entre los sucesores de arc a
+     * fromLevel..toLevel pasos (0 = arc), sin contar los que van contra el
+     * desplazamiento (moveX, moveY) en metros. Retorna -1, o el arco en los 32 bits bajos y el costo
+     * (float) en los altos. En empate gana el más próximo en la secuencia.
+     */
+    private long nearestAhead(int arc, int fromLevel, int toLevel, double x, double y, double moveX, double moveY,
+                              int orientation, double limit) {
+        long best = -1;
+        if (fromLevel <= 0 && geometry.dx(arc) * moveX + geometry.dy(arc) * moveY >= 0) {
+            double cost = Math.sqrt(geometry.distanceSquared(arc, x, y)) + (arcOrientation[arc] == orientation ? 0.0 : TRACK_SWITCH_METERS);
+            if (cost < limit) {
+                best = pack(arc, cost);
+                limit = cost;
+            }
+        }
+        if (toLevel == 0) return best;
+        for (int k = nextStart[arc]; k < nextStart[arc + 1]; k++) {
+            long c = nearestAhead(next[k], fromLevel - 1, toLevel - 1, x, y, moveX, moveY, orientation, limit);
+            if (c >= 0) {
+                best = c;
+                limit = Float.intBitsToFloat((int) (c >>> 32));
+            }
+        }
+        return best;
+    }
+
+    private static long pack(int arc, double cost) {
+        // costo >= 0: el long empaquetado también es >= 0
+        return ((long) Float.floatToIntBits((float) cost) << 32) | (arc & 0xFFFFFFFFL);
+    }
+
+    private static long lineStopKey(int lineId, long stopId) {
+        return ((long) lineId << 32) ^ (stopId & 0xFFFFFFFFL);
+    }
+
+    public ArcTable getArcTable() {
+        return arcTable;
+    }
+
+    public ArcGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Dimensión de los acumuladores densos (PartialResult) para estos grafos.
+     */
+    public int getArcCount() {
+        return arcTable.size();
+    }
+
+    /**
+     * Recorrido lineal con la geometría proyectada del plan: mismo resultado
+     * que match() sobre un matcher construido con esa geometría.
+     */
+    public static int matchArc(int lineId, double lat, double lon, Map<Integer, RouteGraph> graphs, ArcGeometry geometry) {
+        RouteGraph rg = graphs.get(lineId);
+        if (rg == null) return -1;
+
+        double x = geometry.x(lon), y = geometry.y(lat);
+        double bestDist = Double.MAX_VALUE;
+        Arc best = null;
+        for (List<Arc> arcs : List.of(rg.getArcsIda(), rg.getArcsVuelta())) {
+            for (Arc a : arcs) {
+                double d = geometry.distanceSquared(a.getId(), x, y);
+                if (d < bestDist) { bestDist = d; best = a; }
+            }
+        }
+        if (best == null || bestDist > MAX_MATCH_DISTANCE_METERS * MAX_MATCH_DISTANCE_METERS) return -1;
+        return best.getId();
+    }
+
+    public static int matchArc(int lineId, double lat, double lon, Map<Integer, RouteGraph> graphs) {
         RouteGraph rg = graphs.get(lineId);
         if (rg == null) return -1;
 
@@ -34,20 +304,13 @@ public class ArcMatcher {
             if (d < bestDist) { bestDist = d; best = a; }
         }
 
-        // Umbral: si el punto está a más de 200 metros del arco, ignorar
-        if (best == null || bestDist > 200) return -1;
-
-        // Generar id estable
-        long arcId = generateArcId(best);
-        return arcId;
-    }
+        if (best == null || bestDist > MAX_MATCH_DISTANCE_METERS) return -1;
 
-    private static long generateArcId(Arc a) {
-        return java.util.Objects.hash(a.getLineId(), a.getOrientation(), a.getSequence());
+        return best.getId();
     }
 
     // Distancia punto-segmento aproximada en metros usando haversine para los extremos
-    private static double pointToSegmentDistanceMeters(double plat, double plon, double lat1, double lon1, double lat2, double lon2) {
+    static double pointToSegmentDistanceMeters(double plat, double plon, double lat1, double lon1, double lat2, double lon2) {
         // Transformar a coordenadas en metros usando una proyección simple (equirectangular) centrada
         double R = 6371000; // m
         double phi = Math.toRadians((lat1 + lat2 + plat) / 3.0);
@@ -0,0 +1,270 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.model.Arc;
+import com.icesi.mio.model.ArcGeometry;
+import com.icesi.mio.model.RouteGraph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice espacial por ruta (grilla uniforme en grados) construido una sola vez
+ * a partir de los grafos de GraphBuilder.
+ *
+ * Cada arco se registra en todas las celdas que toca su bounding box expandido
+ * con el umbral de matching, de modo que cualquier punto a menos de ese umbral
+ * de un arco lo encuentra como candidato en su propia celda. Los candidatos de
+ * cada celda se guardan en el mismo orden que el recorrido lineal (ida y luego
+ * vuelta), así que el desempate es idéntico al de la búsqueda exhaustiva.
+ *
+ * Las distancias usan la geometría proyectada del plan (ArcGeometry): el
+ * punto se proyecta una vez por consulta y cada candidato cuesta unas pocas
+ * multiplicaciones. La geometría de los candidatos se copia por celda en
+ * arreglos empaquetados (struct-of-arrays, en el orden de cellArcs), y
+ * nearest() los recorre con un ArcDistanceKernel (escalar o Vector API).
+ */
+public class ArcSpatialIndex {
+
+    // Tamaño de celda aproximado en metros
+    static final double CELL_SIZE_METERS = 250.0;
+
+    private static final double EARTH_RADIUS_M = 6371000.0;
+
+    // Desplazamiento mínimo para usar el sentido del movimiento (ruido GPS de un bus detenido)
+    static final double MIN_HEADING_METERS = 10.0;
+    private static final double MIN_HEADING_DEGREES_SQ = Math.pow(Math.toDegrees(MIN_HEADING_METERS / EARTH_RADIUS_M), 2);
+
+    private final Map<Integer, LineIndex> byLine;
+
+    private ArcSpatialIndex(Map<Integer, LineIndex> byLine) {
+        this.byLine = byLine;
+    }
+
+    public static ArcSpatialIndex build(Map<Integer, RouteGraph> graphs, double maxDistanceMeters) {
+        return build(graphs, ArcGeometry.from(graphs), maxDistanceMeters);
+    }
+
+    public static ArcSpatialIndex build(Map<Integer, RouteGraph> graphs, ArcGeometry geometry, double maxDistanceMeters) {
+        return build(graphs, geometry, maxDistanceMeters, ArcDistanceKernel.select());
+    }
+
+    public static ArcSpatialIndex build(Map<Integer, RouteGraph> graphs, ArcGeometry geometry, double maxDistanceMeters,
+                                        ArcDistanceKernel kernel) {
+        Map<Integer, LineIndex> byLine = new HashMap<>();
+        for (Map.Entry<Integer, RouteGraph> e : graphs.entrySet()) {
+            RouteGraph rg = e.getValue();
+            List<Arc> arcs = new ArrayList<>(rg.getTotalArcs());
+            arcs.addAll(rg.getArcsIda());
+            arcs.addAll(rg.getArcsVuelta());
+            if (arcs.isEmpty()) continue;
+            byLine.put(e.getKey(), new LineIndex(arcs.toArray(new Arc[0]), geometry, maxDistanceMeters, kernel));
+        }
+        return new ArcSpatialIndex(byLine);
+    }
+
+    /**
+     * true si el desplazamiento (en grados) alcanza para usar su sentido.
+     */
+    static boolean hasHeading(double dLat, double dLon) {
+        return dLat * dLat + dLon * dLon >= MIN_HEADING_DEGREES_SQ;
+    }
+
+    /**
+     * Índice de la ruta, o null si la ruta no existe o no tiene arcos.
+     */
+    public LineIndex forLine(int lineId) {
+        return byLine.get(lineId);
+    }
+
+    public int size() {
+        return byLine.size();
+    }
+
+    /**
+     * Grilla de una ruta en formato CSR: cellStart[c]..cellStart[c+1] delimita
+     * las posiciones (en arcs) de los candidatos de la celda c.
+     */
+    public static final class LineIndex {
+        private final Arc[] arcs;
+        // fromLat, fromLon, toLat, toLon por arco
+        private final double[] coords;
+        // por posición en cellArcs, en metros (ArcGeometry): origen, vector y 1 / longitud²
+        private final ArcGeometry geometry;
+        private final ArcDistanceKernel kernel;
+        private final double[] fromX;
+        private final double[] fromY;
+        private final double[] dx;
+        private final double[] dy;
+        private final double[] invLen2;
+        private final double minLat;
+        private final double minLon;
+        private final double cellLat;
+        private final double cellLon;
+        private final int rows;
+        private final int cols;
+        private final int[] cellStart;
+        private final int[] cellArcs;
+
+        LineIndex(Arc[] arcs, ArcGeometry geometry, double maxDistanceMeters, ArcDistanceKernel kernel) {
+            this.arcs = arcs;
+            this.coords = new double[arcs.length * 4];
+            this.geometry = geometry;
+            this.kernel = kernel;
+
+            double loLat = Double.MAX_VALUE, hiLat = -Double.MAX_VALUE;
+            double loLon = Double.MAX_VALUE, hiLon = -Double.MAX_VALUE;
+            for (int i = 0; i < arcs.length; i++) {
+                Arc a = arcs[i];
+                int o = i * 4;
+                coords[o] = a.getFromStop().getDecimalLat();
+                coords[o + 1] = a.getFromStop().getDecimalLong();
+                coords[o + 2] = a.getToStop().getDecimalLat();
+                coords[o + 3] = a.getToStop().getDecimalLong();
+                loLat = Math.min(loLat, Math.min(coords[o], coords[o + 2]));
+                hiLat = Math.max(hiLat, Math.max(coords[o], coords[o + 2]));
+                loLon = Math.min(loLon, Math.min(coords[o + 1], coords[o + 3]));
+                hiLon = Math.max(hiLon, Math.max(coords[o + 1], coords[o + 3]));
+            }
+
+            // Margen del umbral en grados (con holgura del 5%). Para longitud se usa
+            // el coseno de la latitud más alejada del ecuador, que es el peor caso.
+            double marginLat = Math.toDegrees(maxDistanceMeters / EARTH_RADIUS_M) * 1.05;
+            double worstLat = Math.min(89.0, Math.max(Math.abs(loLat), Math.abs(hiLat)) + marginLat);
+            double cosLat = Math.cos(Math.toRadians(worstLat));
+            double marginLon = marginLat / cosLat;
+
+            this.cellLat = Math.toDegrees(CELL_SIZE_METERS / EARTH_RADIUS_M);
+            this.cellLon = cellLat / cosLat;
+            this.minLat = loLat - marginLat;
+            this.minLon = loLon - marginLon;
+            this.rows = (int) Math.floor((hiLat + marginLat - minLat) / cellLat) + 1;
+            this.cols = (int) Math.floor((hiLon + marginLon - minLon) / cellLon) + 1;
+
+            // Primera pasada: contar candidatos por celda
+            int nCells = rows * cols;
+            int[] counts = new int[nCells + 1];
+            int[] ranges = new int[arcs.length * 4];
+            for (int i = 0; i < arcs.length; i++) {
+                int o = i * 4;
+                ranges[o] = row(Math.min(coords[o], coords[o + 2]) - marginLat);
+                ranges[o + 1] = row(Math.max(coords[o], coords[o + 2]) + marginLat);
+                ranges[o + 2] = col(Math.min(coords[o + 1], coords[o + 3]) - marginLon);
+                ranges[o + 3] = col(Math.max(coords[o + 1], coords[o + 3]) + marginLon);
+                for (int r = ranges[o]; r <= ranges[o + 1]; r++) {
+                    for (int c = ranges[o + 2]; c <= ranges[o + 3]; c++) {
+                        counts[r * cols + c + 1]++;
+                    }
+                }
+            }
+            for (int c = 0; c < nCells; c++) counts[c + 1] += counts[c];
+            this.cellStart = counts;
+
+            // Segunda pasada: llenar en orden creciente de posición (mantiene el desempate)
+            this.cellArcs = new int[counts[nCells]];
+            int[] fill = new int[nCells];
+            for (int i = 0; i < arcs.length; i++) {
+                int o = i * 4;
+                for (int r = ranges[o]; r <= ranges[o + 1]; r++) {
+                    for (int c = ranges[o + 2]; c <= ranges[o + 3]; c++) {
+                        int cell = r * cols + c;
+                        cellArcs[cellStart[cell] + fill[cell]++] = i;
+                    }
+                }
+            }
+
+            // Geometría empaquetada por celda: los candidatos de una celda quedan contiguos
+            int packed = cellArcs.length;
+            this.fromX = new double[packed];
+            this.fromY = new double[packed];
+            this.dx = new double[packed];
+            this.dy = new double[packed];
+            this.invLen2 = new double[packed];
+            for (int k = 0; k < packed; k++) {
+                int id = arcs[cellArcs[k]].getId();
+                fromX[k] = geometry.fromX(id);
+                fromY[k] = geometry.fromY(id);
+                dx[k] = geometry.dx(id);
+                dy[k] = geometry.dy(id);
+                invLen2[k] = geometry.inverseLengthSquared(id);
+            }
+        }
+
+        private int row(double lat) {
+            return Math.max(0, Math.min(rows - 1, (int) Math.floor((lat - minLat) / cellLat)));
+        }
+
+        private int col(double lon) {
+            return Math.max(0, Math.min(cols - 1, (int) Math.floor((lon - minLon) / cellLon)));
+        }
+
+        /**
+         * Arco más cercano al punto entre los candidatos de su celda, o null si
+         * ninguno está a menos de maxDistanceMeters.
+         */
+        public Arc nearest(double lat, double lon, double maxDistanceMeters) {
+            double r = Math.floor((lat - minLat) / cellLat);
+            double c = Math.floor((lon - minLon) / cellLon);
+            // fuera de la grilla (incluye NaN): no hay arcos dentro del umbral
+            if (!(r >= 0 && r < rows && c >= 0 && c < cols)) return null;
+
+            int cell = (int) r * cols + (int) c;
+            double x = geometry.x(lon), y = geometry.y(lat);
+            int best = kernel.nearest(fromX, fromY, dx, dy, invLen2, cellStart[cell], cellStart[cell + 1], x, y);
+            if (best < 0 || distanceSquared(best, x, y) > maxDistanceMeters * maxDistanceMeters) return null;
+            return arcs[cellArcs[best]];
+        }
+
+        // distancia al cuadrado (m²) del punto proyectado (x, y) al candidato en la posición k de cellArcs
+        private double distanceSquared(int k, double x, double y) {
+            return ArcDistanceKernel.distanceSquared(fromX, fromY, dx, dy, invLen2, k, x, y);
+        }
+
+        /**
+         * Como nearest(), pero entre los candidatos prefiere los arcos cuyo
+         * sentido (from -> to) coincide con el desplazamiento (dLat, dLon) del
+         * bus; si ninguno a menos del umbral va en ese sentido, o el
+         * desplazamiento es menor a MIN_HEADING_METERS, equivale a nearest().
+         */
+        public Arc nearestAlong(double lat, double lon, double dLat, double dLon, double maxDistanceMeters) {
+            double r = Math.floor((lat - minLat) / cellLat);
+            double c = Math.floor((lon - minLon) / cellLon);
+            if (!(r >= 0 && r < rows && c >= 0 && c < cols)) return null;
+
+            // producto punto en grados: el factor cos(lat) de la longitud no cambia el signo en la práctica
+            boolean heading = hasHeading(dLat, dLon);
+            int cell = (int) r * cols + (int) c;
+            double x = geometry.x(lon), y = geometry.y(lat);
+            double bestDist = Double.MAX_VALUE, bestAlongDist = Double.MAX_VALUE;
+            int best = -1, bestAlong = -1;
+            for (int k = cellStart[cell], end = cellStart[cell + 1]; k < end; k++) {
+                int i = cellArcs[k];
+                int o = i * 4;
+                double d = distanceSquared(k, x, y);
+                if (d < bestDist) { bestDist = d; best = i; }
+                if (heading && d < bestAlongDist
+                        && (coords[o + 2] - coords[o]) * dLat + (coords[o + 3] - coords[o + 1]) * dLon > 0) {
+                    bestAlongDist = d;
+                    bestAlong = i;
+                }
+            }
+            double max2 = maxDistanceMeters * maxDistanceMeters;
+            if (bestAlong >= 0 && bestAlongDist <= max2) return arcs[bestAlong];
+            if (best < 0 || bestDist > max2) return null;
+            return arcs[best];
+        }
+
+        public int getArcCount() {
+            return arcs.length;
+        }
+
+        public int getCellCount() {
+            return rows * cols;
+        }
+
+        public ArcDistanceKernel getKernel() {
+            return kernel;
+        }
+    }
+}
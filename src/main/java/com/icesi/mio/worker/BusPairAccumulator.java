@@ -0,0 +1,205 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.parser.DatagramQuery;
+import com.icesi.mio.parser.DatagramRow;
+
+/**
+ * Empareja cada datagrama con el último datagrama del mismo bus y, si el par es
+ * válido, acumula la velocidad en el arco más cercano. Cualquier columna
+ * inválida (en cualquiera de los dos datagramas) descarta el par. Con un
+ * ArcMatcher de seguimiento (ArcMatcher.tracking()) el arco sale de
+ * matchAlong() a partir del último arco del bus; con ArcMatcher.alongRoute()
+ * la velocidad se mide a lo largo de la ruta y el par puede aportar una
+ * muestra a cada arco que recorre, ponderada por los metros recorridos en
+ * él (ver RouteSpeed).
+ *
+ * Un par separado por más de maxGapSeconds() (DEFAULT_MAX_GAP_SECONDS por
+ * defecto; por ejemplo la noche entre dos turnos) no aporta muestra y el
+ * seguimiento del bus vuelve a empezar; evictIdle() saca de la tabla los
+ * buses inactivos por más de ese tiempo, cuyo siguiente par se descartaría
+ * de todas formas.
+ *
+ * Los datagramas deben llegar en orden temporal por bus (orden del archivo).
+ * No es thread-safe: una instancia por hilo.
+ */
+public final class BusPairAccumulator {
+
+    /**
+     * Pausa máxima por defecto entre los dos datagramas de un par: 30 minutos,
+     * la misma en todos los modos (histórico, particiones, remoto y en vivo).
+     */
+    public static final long DEFAULT_MAX_GAP_SECONDS = 1800L;
+
+    /**
+     * Destino de cada muestra de velocidad, con el datagramDate del datagrama
+     * actual y su peso (1, salvo los pares repartidos entre arcos con
+     * ArcMatcher.alongRoute(), ver RouteSpeed).
+     */
+    @FunctionalInterface
+    public interface SampleSink {
+        void accept(int arcId, double speedKph, long epochSecond, double weight);
+    }
+
+    private final ArcMatcher matcher;
+    private final PartialResult result;
+    private final SampleSink sink;
+    private final DatagramQuery query;
+    private final BusStateTable lastByBus = new BusStateTable(4096);
+    private final RouteSpeed route;
+    private long maxGapSeconds = DEFAULT_MAX_GAP_SECONDS;
+
+    public BusPairAccumulator(ArcMatcher matcher, PartialResult result) {
+        this(matcher, result, DatagramQuery.all());
+    }
+
+    /**
+     * Sólo acumula las muestras que conserva query (ver DatagramQuery); los
+     * datagramas que no cumplen el filtro igual cuentan como anterior de su bus.
+     */
+    public BusPairAccumulator(ArcMatcher matcher, PartialResult result, DatagramQuery query) {
+        this.matcher = matcher;
+        this.result = result;
+        this.sink = null;
+        this.query = query;
+        this.route = matcher.isAlongRoute() ? new RouteSpeed(matcher) : null;
+    }
+
+    /**
+     * Variante que entrega las muestras a sink en lugar de acumularlas en un PartialResult.
+     */
+    public BusPairAccumulator(ArcMatcher matcher, SampleSink sink) {
+        this.matcher = matcher;
+        this.result = null;
+        this.sink = sink;
+        this.query = DatagramQuery.all();
+        this.route = matcher.isAlongRoute() ? new RouteSpeed(matcher) : null;
+    }
+
+    /**
+     * Descarta los pares separados por más de seconds segundos (Long.MAX_VALUE = sin límite).
+     */
+    public BusPairAccumulator maxGapSeconds(long seconds) {
+        if (seconds <= 0) throw new IllegalArgumentException("maxGapSeconds debe ser positivo: " + seconds);
+        this.maxGapSeconds = seconds;
+        return this;
+    }
+
+    public long getMaxGapSeconds() {
+        return maxGapSeconds;
+    }
+
+    public void accept(DatagramRow cur) {
+        int prev = lastByBus.find(cur.busId);
+        if (prev >= 0 && cur.coordsValid && cur.timeValid
+                && lastByBus.has(prev, DatagramRow.COORDS_VALID)
+                && lastByBus.has(prev, DatagramRow.TIME_VALID)) {
+            double lat1 = lastByBus.latE7(prev) / 1e7;
+            double lon1 = lastByBus.lonE7(prev) / 1e7;
+            double lat2 = cur.latDegrees();
+            double lon2 = cur.lonDegrees();
+
+            double dt = (double) (cur.epochSecond - lastByBus.epochSecond(prev));
+            if (dt > maxGapSeconds) {
+                // pausa larga: no hay muestra y el seguimiento empieza de nuevo
+                lastByBus.setLastArc(prev, -1);
+            } else if (dt > 0 && route != null) {
+                int lineId = cur.lineIdValid ? cur.lineId
+                        : lastByBus.has(prev, DatagramRow.LINE_VALID) ? lastByBus.lineId(prev) : 0;
+                if (lineId != 0) {
+                    int last = dt <= ArcMatcher.TRACK_MAX_GAP_SECONDS ? lastByBus.lastArc(prev) : -1;
+                    int arcs = route.pair(lineId, lat1, lon1, lat2, lon2, dt, last);
+                    lastByBus.setLastArc(prev, route.lastArc());
+                    if (arcs > 0 && query.acceptsSample(cur.busId, lineId, cur.epochSecond)) {
+                        for (int k = 0; k < arcs; k++) {
+                            if (sink == null) result.addSample(route.arc(k), route.speedKph(), cur.epochSecond, route.weight(k));
+                            else sink.accept(route.arc(k), route.speedKph(), cur.epochSecond, route.weight(k));
+                        }
+                    }
+                }
+            } else if (dt > 0) {
+                double dist = haversine(lat1, lon1, lat2, lon2); // metros
+                double speedKph = dist / dt * 3.6;
+
+                if (speedKph > 0 && speedKph < 200) {
+                    // lineId del datagrama actual; si no se pudo parsear, el del anterior
+                    int lineId = cur.lineIdValid ? cur.lineId
+                            : lastByBus.has(prev, DatagramRow.LINE_VALID) ? lastByBus.lineId(prev) : 0;
+                    if (lineId != 0 && matcher.isTracking()) {
+                        // el último arco se actualiza aunque query descarte la muestra
+                        int last = dt <= ArcMatcher.TRACK_MAX_GAP_SECONDS ? lastByBus.lastArc(prev) : -1;
+                        int arcId = matcher.matchAlong(lineId, lat1, lon1, lat2, lon2, last);
+                        lastByBus.setLastArc(prev, arcId);
+                        if (arcId != -1 && query.acceptsSample(cur.busId, lineId, cur.epochSecond)) {
+                            if (sink == null) result.addSample(arcId, speedKph, cur.epochSecond);
+                            else sink.accept(arcId, speedKph, cur.epochSecond, 1.0);
+                        }
+                    } else if (lineId != 0 && query.acceptsSample(cur.busId, lineId, cur.epochSecond)) {
+                        int arcId = matcher.match(lineId, (lat1 + lat2) / 2.0, (lon1 + lon2) / 2.0);
+                        if (arcId != -1) {
+                            if (sink == null) result.addSample(arcId, speedKph, cur.epochSecond);
+                            else sink.accept(arcId, speedKph, cur.epochSecond, 1.0);
+                        }
+                    }
+                }
+            }
+        }
+        // actualizar último datagrama del bus
+        lastByBus.put(cur);
+    }
+
+    /**
+     * Registra row como último datagrama de su bus sin evaluar el par (para
+     * retomar después de saltarse filas que no pueden formar muestras).
+     */
+    void remember(DatagramRow row) {
+        lastByBus.put(row);
+    }
+
+    /**
+     * Saca los buses cuyo último datagrama es anterior a nowEpochSecond -
+     * maxGapSeconds: con los datagramas posteriores en orden de tiempo, su
+     * siguiente par se descartaría igual. Retorna cuántos sacó (0 sin límite).
+     */
+    public int evictIdle(long nowEpochSecond) {
+        if (maxGapSeconds == Long.MAX_VALUE || nowEpochSecond == Long.MIN_VALUE) return 0;
+        return lastByBus.evictOlderThan(nowEpochSecond - maxGapSeconds);
+    }
+
+    /**
+     * true si ya se vio algún datagrama del bus.
+     */
+    public boolean knows(long busId) {
+        return lastByBus.find(busId) >= 0;
+    }
+
+    public int busCount() {
+        return lastByBus.size();
+    }
+
+    /**
+     * PartialResult acumulado, o null si se creó con un SampleSink.
+     */
+    public PartialResult getResult() {
+        return result;
+    }
+
+    BusStateTable lastByBus() {
+        return lastByBus;
+    }
+
+    // Haversine distance in meters
+    static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        final int R = 6371000; // metres
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dphi = Math.toRadians(lat2 - lat1);
+        double dlambda = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(dphi / 2) * Math.sin(dphi / 2) +
+                Math.cos(phi1) * Math.cos(phi2) *
+                        Math.sin(dlambda / 2) * Math.sin(dlambda / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return R * c;
+    }
+}
@@ -0,0 +1,167 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.parser.DatagramRow;
+
+import java.util.Arrays;
+
+/**
+ * Último datagrama conocido por bus, en arreglos primitivos (open addressing
+ * por busId). Reemplaza el Map&lt;String, String[]&gt; del procesamiento por texto.
+ * También guarda el último arco asignado a cada bus (ArcMatcher.matchAlong).
+ * evictOlderThan() saca los buses inactivos, así que en un proceso continuo la
+ * tabla queda acotada por los buses activos y no por todos los vistos.
+ */
+final class BusStateTable {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] latE7;
+    private long[] lonE7;
+    private long[] epochSecond;
+    private int[] lineId;
+    // flags de validez (DatagramRow.COORDS_VALID, TIME_VALID, LINE_VALID)
+    private byte[] flags;
+    // último arco del bus, -1 si no hay
+    private int[] lastArc;
+    private int size;
+
+    BusStateTable(int expectedBuses) {
+        int cap = Integer.highestOneBit(Math.max(16, expectedBuses * 2) - 1) << 1;
+        allocate(cap);
+    }
+
+    private void allocate(int cap) {
+        keys = new long[cap];
+        Arrays.fill(keys, EMPTY);
+        latE7 = new long[cap];
+        lonE7 = new long[cap];
+        epochSecond = new long[cap];
+        lineId = new int[cap];
+        flags = new byte[cap];
+        lastArc = new int[cap];
+        Arrays.fill(lastArc, -1);
+        size = 0;
+    }
+
+    /**
+     * Slot del bus, o -1 si no se ha visto.
+     */
+    int find(long busId) {
+        int mask = keys.length - 1;
+        int i = mix(busId) & mask;
+        while (true) {
+            long k = keys[i];
+            if (k == busId) return i;
+            if (k == EMPTY) return -1;
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Guarda la fila como último datagrama del bus (conserva su último arco).
+     */
+    void put(DatagramRow row) {
+        if ((size + 1) * 2 > keys.length) grow();
+        int mask = keys.length - 1;
+        int i = mix(row.busId) & mask;
+        while (keys[i] != EMPTY && keys[i] != row.busId) i = (i + 1) & mask;
+        if (keys[i] == EMPTY) {
+            keys[i] = row.busId;
+            size++;
+        }
+        latE7[i] = row.latE7;
+        lonE7[i] = row.lonE7;
+        epochSecond[i] = row.epochSecond;
+        lineId[i] = row.lineId;
+        flags[i] = row.flags();
+    }
+
+    long latE7(int slot) { return latE7[slot]; }
+    long lonE7(int slot) { return lonE7[slot]; }
+    long epochSecond(int slot) { return epochSecond[slot]; }
+    int lineId(int slot) { return lineId[slot]; }
+    boolean has(int slot, byte flag) { return (flags[slot] & flag) != 0; }
+    int lastArc(int slot) { return lastArc[slot]; }
+    void setLastArc(int slot, int arcId) { lastArc[slot] = arcId; }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    boolean occupied(int slot) {
+        return keys[slot] != EMPTY;
+    }
+
+    /**
+     * Copia el estado del slot a row (inverso de put).
+     */
+    void load(int slot, DatagramRow row) {
+        row.complete = true;
+        row.busId = keys[slot];
+        row.latE7 = latE7[slot];
+        row.lonE7 = lonE7[slot];
+        row.epochSecond = epochSecond[slot];
+        row.lineId = lineId[slot];
+        row.setFlags(flags[slot]);
+    }
+
+    /**
+     * Saca los buses cuyo último datagrama tiene datagramDate válido anterior a
+     * minEpochSecond (los que no tienen datagramDate válido se conservan) y
+     * reduce la capacidad si quedó sobrada. Retorna cuántos sacó.
+     */
+    int evictOlderThan(long minEpochSecond) {
+        int evicted = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (isIdle(i, minEpochSecond)) evicted++;
+        }
+        if (evicted == 0) return 0;
+        int survivors = size - evicted;
+        int cap = Integer.highestOneBit(Math.max(16, survivors * 4) - 1) << 1;
+        rehash(Math.min(cap, keys.length), minEpochSecond);
+        return evicted;
+    }
+
+    private boolean isIdle(int slot, long minEpochSecond) {
+        return keys[slot] != EMPTY && (flags[slot] & DatagramRow.TIME_VALID) != 0
+                && epochSecond[slot] < minEpochSecond;
+    }
+
+    private void grow() {
+        rehash(keys.length * 2, Long.MIN_VALUE);
+    }
+
+    // copia a una tabla de capacidad cap los buses que no están inactivos desde minEpochSecond
+    private void rehash(int cap, long minEpochSecond) {
+        long[] oldKeys = keys, oldLat = latE7, oldLon = lonE7, oldEpoch = epochSecond;
+        int[] oldLine = lineId;
+        byte[] oldFlags = flags;
+        int[] oldArc = lastArc;
+        allocate(cap);
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == EMPTY) continue;
+            if ((oldFlags[j] & DatagramRow.TIME_VALID) != 0 && oldEpoch[j] < minEpochSecond) continue;
+            int i = mix(oldKeys[j]) & mask;
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            latE7[i] = oldLat[j];
+            lonE7[i] = oldLon[j];
+            epochSecond[i] = oldEpoch[j];
+            lineId[i] = oldLine[j];
+            flags[i] = oldFlags[j];
+            lastArc[i] = oldArc[j];
+            size++;
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
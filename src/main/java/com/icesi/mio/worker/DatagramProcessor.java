@@ -1,12 +1,21 @@
 package com.icesi.mio.worker;
 
+import com.icesi.mio.distributed.ColumnarDatagramPartition;
+import com.icesi.mio.distributed.DatagramBatch;
 import com.icesi.mio.distributed.DatagramPartition;
 import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.parser.DatagramColumnFile;
+import com.icesi.mio.parser.DatagramQuery;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.parser.TimestampDecoder;
 import com.icesi.mio.model.RouteGraph;
-import com.icesi.mio.model.Arc;
-import com.icesi.mio.model.Stop;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Procesador mejorado: asigna cada par de datagramas al arco más cercano
@@ -14,7 +23,7 @@ import java.util.*;
  */
 public class DatagramProcessor {
     private final DatagramPartition partition;
-    private final Map<Integer, RouteGraph> routeGraphs;
+    private final ScanOptions options;
 
     // Formato real de datagrams MIO (sin header):
     // 0:eventType, 1:registerdate (dd-MMM-yy), 2:stopId, 3:odometer,
@@ -22,12 +31,23 @@ public class DatagramProcessor {
     // 6:taskId, 7:lineId, 8:tripId, 9:unknown, 10:datagramDate (yyyy-MM-dd HH:mm:ss), 11:busId
 
     public DatagramProcessor(DatagramPartition partition, Map<Integer, RouteGraph> routeGraphs) {
+        this(partition, new ScanOptions(new ArcMatcher(routeGraphs)));
+    }
+
+    /**
+     * Permite compartir un mismo ArcMatcher (y su índice espacial) entre
+     * particiones. Aplica el matcher, la pausa máxima y los acumuladores de
+     * options; no admite filtro (DatagramQuery).
+     */
+    public DatagramProcessor(DatagramPartition partition, ScanOptions options) {
+        requireNoQuery(options);
         this.partition = partition;
-        this.routeGraphs = routeGraphs;
+        this.options = options;
     }
 
     public PartialResult process() {
-        PartialResult result = new PartialResult(partition.getId());
+        BusPairAccumulator acc = options.newAccumulator(options.newPartial(partition.getId()));
+        DatagramRow row = new DatagramRow();
 
         // Agrupar por busId (columna 11 en el formato real)
         Map<String, List<String[]>> byBus = new HashMap<>();
@@ -36,103 +56,273 @@ public class DatagramProcessor {
             byBus.computeIfAbsent(busId, k -> new ArrayList<>()).add(r);
         }
 
-        for (Map.Entry<String, List<String[]>> e : byBus.entrySet()) {
-            List<String[]> rows = e.getValue();
-            // Ordenar por fecha/hora de datagrama (columna 10, yyyy-MM-dd HH:mm:ss)
-            rows.sort(Comparator.comparing(a -> a.length > 10 ? a[10] : ""));
+        // Los busId de la columna 11 pueden no ser numéricos: cada grupo recibe un id sintético
+        long bus = 0L;
+        for (List<String[]> rows : byBus.values()) {
+            checkCancelled(partition.getId());
+            // Cada fila se decodifica una sola vez y se entrega al acumulador en orden de tiempo
+            BusTrack track = BusTrack.decode(rows);
+            for (int cur : track.sortedByTime()) {
+                track.get(cur, bus, row);
+                acc.accept(row);
+            }
+            bus++;
+        }
+
+        // breve log
+        System.out.println("[DatagramProcessor] partition=" + partition.getId() + " rows=" + partition.size() + " buses=" + byBus.size() + " arcSamples=" + acc.getResult().getArcStats().size());
+
+        return acc.getResult();
+    }
+
+    /**
+     * Variante columnar de process(): ordena las filas por (bus, datagramDate)
+     * sobre llaves primitivas y las entrega en ese orden a BusPairAccumulator,
+     * sin parsear Strings. Como process(), no admite filtro en options.
+     */
+    public static PartialResult processColumnar(ColumnarDatagramPartition part, ScanOptions options) {
+        requireNoQuery(options);
+        BusPairAccumulator acc = options.newAccumulator(options.newPartial(part.getId()));
+        DatagramRow row = new DatagramRow();
+        int visited = 0;
+        for (int cur : part.sortedByBusAndTime()) {
+            if ((++visited & 0x3FFF) == 0) checkCancelled(part.getId());
+            part.get(cur, row);
+            acc.accept(row);
+        }
+
+        System.out.println("[DatagramProcessor] partition=" + part.getId() + " rows=" + part.size() + " buses=" + part.busCount() + " arcSamples=" + acc.getResult().getArcStats().size());
+        return acc.getResult();
+    }
+
+    /**
+     * Worker sobre las filas [fromRow, toRow) de un archivo columnar mapeado en
+     * memoria (DatagramColumnFile): sin parseo, los datagramas llegan ordenados
+     * por (bus, datagramDate) y se emparejan con las reglas de BusPairAccumulator.
+     * El rango no debe partir un bus (ver DatagramColumnFile.splitByBus).
+     *
+     * Con un filtro en options se saltan las entradas del índice (bus, día) y
+     * los bloques (según sus estadísticas) donde ninguna fila puede ser el
+     * datagrama actual de una muestra. Al retomar después de un salto, la fila
+     * anterior se registra como último datagrama de su bus, así que el
+     * resultado es el de recorrer todo el rango y filtrar las muestras. Con un
+     * ArcMatcher de seguimiento sólo se saltan otros buses: el último arco de
+     * cada bus depende de todos sus datagramas.
+     */
+    public static PartialResult processColumnRange(int partitionId, DatagramColumnFile file, long fromRow, long toRow,
+                                                   ScanOptions options) {
+        ArcMatcher matcher = options.matcher();
+        DatagramQuery query = options.query();
+        BusPairAccumulator acc = options.newAccumulator(options.newPartial(partitionId));
+        DatagramRow row = new DatagramRow();
+        long next = fromRow; // fila siguiente a la última entregada al acumulador
+        long rows = 0;
+        int blocks = 0;
+        int lastBlock = -1;
+        boolean skipRows = !matcher.isTracking();
+        for (int e = file.indexEntryAt(fromRow); e < file.indexSize() && file.indexFirstRow(e) < toRow; e++) {
+            if (!query.acceptsBus(file.indexBusId(e))) continue;
+            if (skipRows && !query.acceptsDay(file.indexDay(e))) continue;
+            long entryEnd = Math.min(toRow, file.indexFirstRow(e) + file.indexRows(e));
+            for (int b = file.blockOf(file.indexFirstRow(e)); b < file.blockCount() && file.blockFirstRow(b) < entryEnd; b++) {
+                if (skipRows && !query.mayMatchBlock(file, b)) continue;
+                checkCancelled(partitionId);
+                DatagramColumnFile.Block block = file.block(b);
+                long from = Math.max(file.indexFirstRow(e), block.firstRow());
+                long to = Math.min(entryEnd, block.firstRow() + block.rows());
+                if (from != next && from > fromRow) {
+                    // se saltaron filas: la anterior sigue siendo el par de la primera
+                    readRow(file, from - 1, row);
+                    acc.remember(row);
+                }
+                for (int i = (int) (from - block.firstRow()); i < to - block.firstRow(); i++) {
+                    block.get(i, row);
+                    acc.accept(row);
+                }
+                next = to;
+                rows += to - from;
+                if (b != lastBlock) blocks++;
+                lastBlock = b;
+            }
+        }
 
-            String[] prev = null;
-            for (String[] cur : rows) {
-                if (prev != null) {
+        System.out.println("[DatagramProcessor] partition=" + partitionId + " rows=" + rows + " blocks=" + blocks + " buses=" + acc.busCount() + " arcSamples=" + acc.getResult().getArcStats().size());
+        return acc.getResult();
+    }
+
+    private static void readRow(DatagramColumnFile file, long r, DatagramRow row) {
+        int b = file.blockOf(r);
+        file.block(b).get((int) (r - file.blockFirstRow(b)), row);
+    }
+
+    /**
+     * Worker del modo streaming: consume lotes de la cola de su partición hasta
+     * recibir DatagramBatch.END. Los datagramas se emparejan en el orden en que
+     * llegan (orden del archivo), igual que StreamingFullFileProcessor.
+     */
+    public static PartialResult processQueue(int partitionId, BlockingQueue<DatagramBatch> queue, ScanOptions options) throws InterruptedException {
+        return processQueue(partitionId, queue, options, null);
+    }
+
+    /**
+     * Igual que processQueue, pero si cpu no es null el emparejamiento de cada
+     * lote corre en ese pool y este hilo sólo espera la cola y el lote (pensado
+     * para consumidores en hilos virtuales). Los lotes de la partición se siguen
+     * procesando de a uno y en orden.
+     */
+    public static PartialResult processQueue(int partitionId, BlockingQueue<DatagramBatch> queue, ScanOptions options,
+                                             ExecutorService cpu) throws InterruptedException {
+        BusPairAccumulator acc = options.newAccumulator(options.newPartial(partitionId));
+        DatagramRow row = new DatagramRow();
+        long rows = 0L;
+        RuntimeException failure = null;
+        while (true) {
+            DatagramBatch batch = queue.take();
+            if (batch == DatagramBatch.END) break;
+            // Tras un error se sigue vaciando la cola para no bloquear al productor
+            if (failure != null) continue;
+            try {
+                if (cpu == null) {
+                    acceptAll(batch, acc, row);
+                } else {
+                    Future<?> f = cpu.submit(() -> acceptAll(batch, acc, row));
                     try {
-                        // Parseo de coordenadas: vienen como enteros en grados * 1e7, las convertimos a grados decimales
-                        double lat1 = parseLat(prev);
-                        double lon1 = parseLon(prev);
-                        double lat2 = parseLat(cur);
-                        double lon2 = parseLon(cur);
-
-                        // Parseo de tiempos: usamos la columna datagramDate (10)
-                        double dt = parseDeltaSeconds(prev, cur);
-                        if (dt <= 0) { prev = cur; continue; }
-
-                        double dist = haversine(lat1, lon1, lat2, lon2); // metros
-                        double speedMps = dist / dt;
-                        double speedKph = speedMps * 3.6;
-
-                        if (!(speedKph > 0 && speedKph < 200)) { prev = cur; continue; }
-
-                        // elegir lineId (preferimos cur; si no, usamos prev)
-                        int lineId = 0;
-                        try {
-                            lineId = Integer.parseInt(cur.length > 7 ? cur[7] : "0");
-                        } catch(Exception ex) {
-                            try {
-                                lineId = Integer.parseInt(prev.length > 7 ? prev[7] : "0");
-                            } catch(Exception e2) {
-                                lineId = 0;
-                            }
-                        }
-
-                        if (lineId == 0) { prev = cur; continue; }
-
-                        long arcId = ArcMatcher.matchArc(lineId, (lat1+lat2)/2.0, (lon1+lon2)/2.0, routeGraphs);
-                        if (arcId != -1) {
-                            result.addSample(arcId, speedKph);
-                        }
-                    } catch (Exception ex) {
-                        // ignorar fila mal formada
+                        f.get();
+                    } catch (InterruptedException ex) {
+                        f.cancel(true);
+                        throw ex;
+                    } catch (ExecutionException ex) {
+                        throw ex.getCause() instanceof RuntimeException
+                                ? (RuntimeException) ex.getCause()
+                                : new IllegalStateException(ex.getCause());
                     }
                 }
-                prev = cur;
+                rows += batch.size();
+            } catch (RuntimeException ex) {
+                failure = ex;
             }
         }
+        if (failure != null) throw failure;
 
-        // breve log
-        System.out.println("[DatagramProcessor] partition=" + partition.getId() + " rows=" + partition.size() + " buses=" + byBus.size() + " arcSamples=" + result.getArcStats().size());
-
-        return result;
+        System.out.println("[DatagramProcessor] partition=" + partitionId + " rows=" + rows + " buses=" + acc.busCount() + " arcSamples=" + acc.getResult().getArcStats().size());
+        return acc.getResult();
     }
 
-    // Haversine distance in meters
-    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371000; // metres
-        double phi1 = Math.toRadians(lat1);
-        double phi2 = Math.toRadians(lat2);
-        double dphi = Math.toRadians(lat2 - lat1);
-        double dlambda = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(dphi/2) * Math.sin(dphi/2) +
-                   Math.cos(phi1) * Math.cos(phi2) *
-                   Math.sin(dlambda/2) * Math.sin(dlambda/2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
-        return R * c;
+    private static void acceptAll(DatagramBatch batch, BusPairAccumulator acc, DatagramRow row) {
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i, row);
+            acc.accept(row);
+        }
     }
 
-    // Helpers para el formato real de datagrams
-    private static double parseLat(String[] row) {
-        if (row.length <= 4) return 0.0;
-        double raw = Double.parseDouble(row[4]);
-        return raw / 1e7; // convertir a grados decimales
+    private static void requireNoQuery(ScanOptions options) {
+        if (!options.query().isAll()) throw new IllegalArgumentException("Las particiones no aplican DatagramQuery: " + options.query());
     }
 
-    private static double parseLon(String[] row) {
-        if (row.length <= 5) return 0.0;
-        double raw = Double.parseDouble(row[5]);
-        return raw / 1e7; // convertir a grados decimales
+    // Cancelación cooperativa: los workers revisan la interrupción entre buses / bloques de filas
+    private static void checkCancelled(int partitionId) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("partition=" + partitionId + " cancelada");
+        }
     }
 
-    private static double parseDeltaSeconds(String[] prev, String[] cur) {
-        if (prev.length <= 10 || cur.length <= 10) return 0.0;
-        try {
-            java.time.format.DateTimeFormatter fmt = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            java.time.LocalDateTime t1 = java.time.LocalDateTime.parse(prev[10], fmt);
-            java.time.LocalDateTime t2 = java.time.LocalDateTime.parse(cur[10], fmt);
-            java.time.ZoneOffset offset = java.time.ZoneOffset.UTC;
-            long s1 = t1.toEpochSecond(offset);
-            long s2 = t2.toEpochSecond(offset);
-            return (double)(s2 - s1);
-        } catch (Exception e) {
-            return 0.0;
+    /**
+     * Filas de un bus decodificadas a arreglos primitivos (una entrada por fila,
+     * en el orden de la partición).
+     */
+    private static final class BusTrack {
+        final long[] epoch;
+        final long[] latE7;
+        final long[] lonE7;
+        final boolean[] coordsValid;
+        final int[] lineId;
+        final boolean[] lineValid;
+
+        private BusTrack(int n) {
+            epoch = new long[n];
+            latE7 = new long[n];
+            lonE7 = new long[n];
+            coordsValid = new boolean[n];
+            lineId = new int[n];
+            lineValid = new boolean[n];
+        }
+
+        static BusTrack decode(List<String[]> rows) {
+            BusTrack t = new BusTrack(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                String[] r = rows.get(i);
+                // Sin datagramDate (columna 10) la fila nunca forma par
+                t.epoch[i] = r.length > 10 ? TimestampDecoder.decode(r[10]) : TimestampDecoder.INVALID;
+                try {
+                    // Coordenadas: enteros en grados * 1e7 (mismas reglas que DatagramTokenizer)
+                    double lat = Double.parseDouble(r[4]);
+                    double lon = Double.parseDouble(r[5]);
+                    if (isCoordinate(lat) && isCoordinate(lon)) {
+                        t.latE7[i] = (long) lat;
+                        t.lonE7[i] = (long) lon;
+                        t.coordsValid[i] = true;
+                    }
+                } catch (Exception ex) {
+                    // fila mal formada: no participa en pares
+                }
+                try {
+                    t.lineId[i] = Integer.parseInt(r[7]);
+                    t.lineValid[i] = true;
+                } catch (Exception ex) {
+                    // sin lineId: se usa el del otro datagrama del par
+                }
+            }
+            return t;
+        }
+
+        private static boolean isCoordinate(double d) {
+            return d == Math.rint(d) && Math.abs(d) < 9.0e18;
+        }
+
+        // Copia la fila i en out con el busId dado
+        void get(int i, long busId, DatagramRow out) {
+            out.complete = true;
+            out.busId = busId;
+            out.coordsValid = coordsValid[i];
+            out.latE7 = latE7[i];
+            out.lonE7 = lonE7[i];
+            out.timeValid = epoch[i] != TimestampDecoder.INVALID;
+            out.epochSecond = epoch[i];
+            out.lineIdValid = lineValid[i];
+            out.lineId = lineId[i];
+        }
+
+        /**
+         * Índices de las filas ordenados por datagramDate (estable; las fechas
+         * inválidas van primero). Se ordena un long[] con (tiempo relativo, índice)
+         * empaquetados, sin comparar Strings ni crear objetos por fila.
+         */
+        int[] sortedByTime() {
+            int n = epoch.length;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (long t : epoch) {
+                if (t == TimestampDecoder.INVALID) continue;
+                min = Math.min(min, t);
+                max = Math.max(max, t);
+            }
+            int[] order = new int[n];
+            if (min != Long.MAX_VALUE && max - min >= Integer.MAX_VALUE) {
+                // rango de fechas absurdo (> 68 años): ordenar con comparador
+                Integer[] boxed = new Integer[n];
+                for (int i = 0; i < n; i++) boxed[i] = i;
+                Arrays.sort(boxed, (x, y) -> Long.compare(epoch[x], epoch[y]));
+                for (int i = 0; i < n; i++) order[i] = boxed[i];
+                return order;
+            }
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                long rank = epoch[i] == TimestampDecoder.INVALID ? 0 : epoch[i] - min + 1;
+                keys[i] = (rank << 32) | i;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < n; i++) order[i] = (int) keys[i];
+            return order;
         }
     }
 }
@@ -0,0 +1,157 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.distributed.PartialResultCodec;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.util.VarInts;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Punto de control de StreamingFullFileProcessor.processWithCheckpoints: offset
+ * en bytes hasta donde se procesó el archivo, último datagrama y último arco
+ * por bus y acumuladores por arco. Con esto se reanuda una pasada interrumpida, o se
+ * procesan sólo los datos agregados al final del archivo.
+ *
+ * Formato binario (enteros en varint, con zigzag los que pueden ser negativos):
+ * cabecera con el modo del ArcMatcher, huella del archivo, acumuladores por
+ * arco como frame de PartialResultCodec y buses (busId, lat, lon, epoch,
+ * lineId, flags, último arco). Sólo se reanuda con el mismo modo: con
+ * seguimiento el último arco de cada bus decide la asignación siguiente.
+ */
+final class HistoryCheckpoint {
+
+    private static final int MAGIC = 0x4D494F43; // "MIOC"
+    private static final byte VERSION = 3;
+    // modos de ArcMatcher: más cercano, tracking(), alongRoute()
+    private static final byte MODE_NEAREST = 0;
+    private static final byte MODE_TRACKING = 1;
+    private static final byte MODE_ALONG_ROUTE = 2;
+    // bytes previos al offset usados como huella del archivo
+    private static final int FINGERPRINT_BYTES = 64 * 1024;
+
+    final long offset;
+    final boolean pendingCr;
+    final long lineCount;
+    final long fingerprint;
+
+    private HistoryCheckpoint(long offset, boolean pendingCr, long lineCount, long fingerprint) {
+        this.offset = offset;
+        this.pendingCr = pendingCr;
+        this.lineCount = lineCount;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Escribe el estado en un archivo temporal y lo mueve sobre target, de modo
+     * que un corte durante la escritura deja intacto el punto de control anterior.
+     */
+    static void write(Path target, FileChannel data, ArcMatcher matcher, long offset, boolean pendingCr, long lineCount,
+                      PartialResult partial, BusStateTable lastByBus) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(mode(matcher));
+            VarInts.write(out, offset);
+            out.writeBoolean(pendingCr);
+            VarInts.write(out, lineCount);
+            out.writeLong(fingerprint(data, offset));
+
+            PartialResultCodec.write(partial, false, out);
+
+            VarInts.write(out, lastByBus.size());
+            DatagramRow row = new DatagramRow();
+            for (int slot = 0; slot < lastByBus.capacity(); slot++) {
+                if (!lastByBus.occupied(slot)) continue;
+                lastByBus.load(slot, row);
+                VarInts.write(out, VarInts.zigzag(row.busId));
+                VarInts.write(out, VarInts.zigzag(row.latE7));
+                VarInts.write(out, VarInts.zigzag(row.lonE7));
+                VarInts.write(out, VarInts.zigzag(row.epochSecond));
+                VarInts.write(out, VarInts.zigzag(row.lineId));
+                out.writeByte(row.flags());
+                VarInts.write(out, VarInts.zigzag(lastByBus.lastArc(slot)));
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lee el punto de control, sumando los acumuladores a partial y cargando los
+     * buses en lastByBus. Falla si se escribió con otro modo de matcher.
+     */
+    static HistoryCheckpoint read(Path source, ArcMatcher matcher, PartialResult partial, BusStateTable lastByBus) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException("No es un punto de control: " + source);
+            byte version = in.readByte();
+            if (version != VERSION) throw new IOException("Versión de punto de control no soportada: " + version);
+            byte mode = in.readByte();
+            if (mode != mode(matcher)) {
+                throw new IOException("El punto de control se generó con otro modo de asignación de arcos (" + mode
+                        + "), se esperaba " + mode(matcher) + ": " + source);
+            }
+            long offset = VarInts.read(in);
+            boolean pendingCr = in.readBoolean();
+            long lineCount = VarInts.read(in);
+            long fingerprint = in.readLong();
+
+            // merge() crece si el grafo tenía más arcos al escribir
+            partial.getArcStats().merge(PartialResultCodec.read(in).getArcStats());
+
+            long buses = VarInts.read(in);
+            DatagramRow row = new DatagramRow();
+            for (long i = 0; i < buses; i++) {
+                row.busId = VarInts.unzigzag(VarInts.read(in));
+                row.latE7 = VarInts.unzigzag(VarInts.read(in));
+                row.lonE7 = VarInts.unzigzag(VarInts.read(in));
+                row.epochSecond = VarInts.unzigzag(VarInts.read(in));
+                row.lineId = (int) VarInts.unzigzag(VarInts.read(in));
+                row.setFlags(in.readByte());
+                lastByBus.put(row);
+                lastByBus.setLastArc(lastByBus.find(row.busId), (int) VarInts.unzigzag(VarInts.read(in)));
+            }
+            return new HistoryCheckpoint(offset, pendingCr, lineCount, fingerprint);
+        }
+    }
+
+    /**
+     * Falla si el archivo es más corto que el offset o si sus bytes antes del
+     * offset no son los que se procesaron (archivo reemplazado o modificado).
+     */
+    void verify(FileChannel data, String name) throws IOException {
+        if (data.size() < offset) {
+            throw new IOException("El punto de control llega hasta el byte " + offset + " pero " + name + " tiene " + data.size());
+        }
+        if (fingerprint(data, offset) != fingerprint) {
+            throw new IOException("El punto de control no corresponde al contenido de " + name);
+        }
+    }
+
+    private static byte mode(ArcMatcher matcher) {
+        if (matcher.isAlongRoute()) return MODE_ALONG_ROUTE;
+        return matcher.isTracking() ? MODE_TRACKING : MODE_NEAREST;
+    }
+
+    private static long fingerprint(FileChannel data, long offset) throws IOException {
+        long from = Math.max(0, offset - FINGERPRINT_BYTES);
+        ByteBuffer buf = ByteBuffer.allocate((int) (offset - from));
+        while (buf.hasRemaining()) {
+            if (data.read(buf, from + buf.position()) < 0) throw new IOException("Archivo truncado");
+        }
+        CRC32 crc = new CRC32();
+        buf.flip();
+        crc.update(buf);
+        return (offset << 32) ^ crc.getValue();
+    }
+}
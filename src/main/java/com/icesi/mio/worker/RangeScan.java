@@ -0,0 +1,139 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.parser.DatagramQuery;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.parser.DatagramTokenizer;
+import com.icesi.mio.parser.LineSource;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Recorrido secuencial de un rango del archivo de datagramas: empareja los
+ * datagramas de cada bus en orden de archivo y, si trackFirst, recuerda el
+ * primer datagrama de cada bus en el rango para que RangeStitcher resuelva
+ * los pares que cruzan el límite con el rango anterior.
+ *
+ * Sin trackFirst, cada EVICT_EVERY_ROWS filas válidas se sacan los buses sin
+ * datagramas en los últimos 2 * maxGapSeconds (ver ScanOptions) respecto al mayor
+ * datagramDate visto: el resultado no cambia mientras el desorden entre buses
+ * del archivo sea menor que maxGapSeconds. Con trackFirst no se saca ninguno,
+ * porque el primer datagrama de cada bus en el rango debe ser el primero de verdad.
+ */
+public final class RangeScan {
+    static final int EVICT_EVERY_ROWS = 1 << 16;
+
+    final int partitionId;
+    final PartialResult partial;
+    final BusPairAccumulator pairs;
+    final BusStateTable firstByBus;
+    private final DatagramQuery query;
+    long lineCount;
+    // filas emparejadas y mayor datagramDate visto, para sacar buses inactivos
+    private long acceptedRows;
+    private long maxEpochSecond = Long.MIN_VALUE;
+    private long evicted;
+
+    public RangeScan(int partitionId, boolean trackFirst, ArcMatcher matcher) {
+        this(partitionId, trackFirst, new ScanOptions(matcher));
+    }
+
+    /**
+     * Acumula en options.newPartial() las muestras que conserva el filtro de
+     * options; las filas de otros buses se descartan sin parsearlas.
+     */
+    public RangeScan(int partitionId, boolean trackFirst, ScanOptions options) {
+        this.partitionId = partitionId;
+        this.partial = options.newPartial(partitionId);
+        this.pairs = options.newAccumulator(partial);
+        this.firstByBus = trackFirst ? new BusStateTable(4096) : null;
+        this.query = options.query().isAll() ? null : options.query();
+    }
+
+    /**
+     * Procesa todas las líneas de src.
+     */
+    public void scan(LineSource src) throws IOException {
+        DatagramTokenizer tokenizer = new DatagramTokenizer();
+        DatagramRow row = new DatagramRow();
+        while (src.nextLine()) {
+            lineCount++;
+            if (tokenizer.parse(src.buffer(), src.lineStart(), src.lineEnd(), row, query)) {
+                accept(row);
+            }
+
+            if (partitionId < 0 && lineCount % 1_000_000 == 0) {
+                System.out.println("[StreamingFullFileProcessor] procesadas " + lineCount + " filas...");
+            }
+        }
+    }
+
+    /**
+     * Empareja una fila ya parseada (la siguiente del rango).
+     */
+    void accept(DatagramRow row) {
+        if (firstByBus != null && !pairs.knows(row.busId)) {
+            // primer datagrama del bus en este rango: su par se resuelve al unir rangos
+            firstByBus.put(row);
+        }
+        pairs.accept(row);
+        if (row.timeValid && row.epochSecond > maxEpochSecond) maxEpochSecond = row.epochSecond;
+        if (firstByBus == null && ++acceptedRows % EVICT_EVERY_ROWS == 0 && maxEpochSecond != Long.MIN_VALUE) {
+            evicted += pairs.evictIdle(maxEpochSecond - pairs.getMaxGapSeconds());
+        }
+    }
+
+    public int getPartitionId() {
+        return partitionId;
+    }
+
+    public PartialResult getPartial() {
+        return partial;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public int busCount() {
+        return pairs.busCount();
+    }
+
+    /**
+     * Buses sacados de la tabla por inactividad (ver ScanOptions.maxGapSeconds).
+     */
+    public long getEvicted() {
+        return evicted;
+    }
+
+    /**
+     * Número de buses con primer datagrama registrado (0 sin trackFirst).
+     */
+    public int firstCount() {
+        return firstByBus == null ? 0 : firstByBus.size();
+    }
+
+    /**
+     * Primer datagrama de cada bus en el rango (requiere trackFirst). La fila se reutiliza entre llamadas.
+     */
+    public void forEachFirst(Consumer<DatagramRow> consumer) {
+        if (firstByBus != null) forEach(firstByBus, consumer);
+    }
+
+    /**
+     * Último datagrama de cada bus en el rango. La fila se reutiliza entre llamadas.
+     */
+    public void forEachLast(Consumer<DatagramRow> consumer) {
+        forEach(pairs.lastByBus(), consumer);
+    }
+
+    private static void forEach(BusStateTable table, Consumer<DatagramRow> consumer) {
+        DatagramRow row = new DatagramRow();
+        for (int slot = 0; slot < table.capacity(); slot++) {
+            if (!table.occupied(slot)) continue;
+            table.load(slot, row);
+            consumer.accept(row);
+        }
+    }
+}
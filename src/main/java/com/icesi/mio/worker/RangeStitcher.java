@@ -0,0 +1,67 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.parser.DatagramRow;
+
+/**
+ * Une rangos consecutivos del archivo procesados por separado: empareja, en
+ * orden de archivo, el primer datagrama de cada bus en el rango k+1 con su
+ * último datagrama en los rangos anteriores. Con los rangos agregados en
+ * orden se generan exactamente los mismos pares que en una sola pasada.
+ *
+ * No admite un ArcMatcher de seguimiento (ArcMatcher.tracking()): cada rango
+ * asigna los primeros pares de un bus sin su último arco del rango anterior,
+ * y esas asignaciones ya no se pueden corregir al unir.
+ */
+public final class RangeStitcher {
+    private final PartialResult boundaryPairs;
+    private final BusPairAccumulator carry;
+
+    public RangeStitcher(ArcMatcher matcher) {
+        this(new ScanOptions(matcher));
+    }
+
+    /**
+     * Con las mismas opciones de los rangos: los pares entre rangos usan su
+     * filtro y su pausa máxima y se acumulan en options.newPartial().
+     */
+    public RangeStitcher(ScanOptions options) {
+        if (options.matcher().isTracking()) throw new IllegalArgumentException("RangeStitcher no admite ArcMatcher.tracking()");
+        this.boundaryPairs = options.newPartial(-1);
+        this.carry = options.newAccumulator(boundaryPairs);
+    }
+
+    /**
+     * Agrega el siguiente rango; equivale a addFirst de sus primeros datagramas
+     * seguido de addLast de los últimos.
+     */
+    public void add(RangeScan scan) {
+        scan.forEachFirst(this::addFirst);
+        scan.forEachLast(this::addLast);
+    }
+
+    /**
+     * Primer datagrama de un bus en el siguiente rango.
+     */
+    public void addFirst(DatagramRow row) {
+        carry.accept(row);
+    }
+
+    /**
+     * Último datagrama de un bus en el rango (después de sus addFirst).
+     */
+    public void addLast(DatagramRow row) {
+        carry.lastByBus().put(row);
+    }
+
+    /**
+     * Muestras de los pares que cruzan límites de rango.
+     */
+    public PartialResult getBoundaryPairs() {
+        return boundaryPairs;
+    }
+
+    public int busCount() {
+        return carry.busCount();
+    }
+}
@@ -0,0 +1,183 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.model.Arc;
+import com.icesi.mio.model.ArcGeometry;
+import com.icesi.mio.model.RouteGraph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recorrido de cada ruta como polilíneas: una cadena por orientación y
+ * variante (arcos en el orden de GraphBuilder, donde el destino de uno es el
+ * origen del siguiente; un cambio de variante o un hueco en la secuencia abre
+ * otra cadena), con la longitud acumulada hasta el inicio de cada arco. La
+ * posición de un punto es su proyección sobre un arco más esa longitud
+ * acumulada, así que la distancia a lo largo de la ruta entre dos puntos
+ * cuesta O(1).
+ *
+ * Longitudes y proyecciones salen de la geometría proyectada del plan
+ * (ArcGeometry), la misma con la que ArcMatcher mide distancias.
+ */
+final class RoutePolylines {
+
+    private final ArcGeometry geometry;
+    // por ordinal de arco: cadena (-1 si no existe), posición en chainArcs,
+    // metros desde el inicio de la cadena y longitud
+    private final int[] chainOf;
+    private final int[] indexOf;
+    private final double[] offset;
+    private final double[] length;
+
+    // por cadena (CSR): chainArcs[chainStart[c]..chainStart[c + 1]), línea y paradas de los extremos
+    private final int[] chainArcs;
+    private final int[] chainStart;
+    private final double[] chainLength;
+    private final int[] chainLine;
+    private final long[] chainFirstStop;
+    private final long[] chainLastStop;
+
+    private RoutePolylines(ArcGeometry geometry, int chains, int[] chainArcs, int[] chainStart, int[] chainLine,
+                           long[] chainFirstStop, long[] chainLastStop) {
+        int arcCount = geometry.size();
+        this.geometry = geometry;
+        this.chainOf = new int[arcCount];
+        this.indexOf = new int[arcCount];
+        this.offset = new double[arcCount];
+        this.length = new double[arcCount];
+        Arrays.fill(chainOf, -1);
+        this.chainArcs = chainArcs;
+        this.chainStart = chainStart;
+        this.chainLength = new double[chains];
+        this.chainLine = chainLine;
+        this.chainFirstStop = chainFirstStop;
+        this.chainLastStop = chainLastStop;
+
+        for (int c = 0; c < chains; c++) {
+            double acc = 0;
+            for (int k = chainStart[c]; k < chainStart[c + 1]; k++) {
+                int id = chainArcs[k];
+                chainOf[id] = c;
+                indexOf[id] = k;
+                offset[id] = acc;
+                length[id] = geometry.length(id);
+                acc += length[id];
+            }
+            chainLength[c] = acc;
+        }
+    }
+
+    static RoutePolylines build(Map<Integer, RouteGraph> graphs, ArcGeometry geometry) {
+        int total = 0;
+        for (RouteGraph rg : graphs.values()) total += rg.getArcsIda().size() + rg.getArcsVuelta().size();
+        int[] chainArcs = new int[total];
+        int[] chainStart = new int[total + 1];
+        int[] chainLine = new int[total];
+        long[] firstStop = new long[total];
+        long[] lastStop = new long[total];
+        int n = 0, chains = 0;
+        for (RouteGraph rg : graphs.values()) {
+            for (List<Arc> oriented : List.of(rg.getArcsIda(), rg.getArcsVuelta())) {
+                Arc prev = null;
+                for (Arc a : oriented) {
+                    if (prev == null || !prev.getVariant().equals(a.getVariant())
+                            || prev.getToStop().getStopId() != a.getFromStop().getStopId()) {
+                        chainStart[chains] = n;
+                        chainLine[chains] = a.getLineId();
+                        firstStop[chains] = a.getFromStop().getStopId();
+                        chains++;
+                    }
+                    lastStop[chains - 1] = a.getToStop().getStopId();
+                    chainArcs[n++] = a.getId();
+                    prev = a;
+                }
+            }
+        }
+        chainStart[chains] = n;
+        return new RoutePolylines(geometry, chains, chainArcs, Arrays.copyOf(chainStart, chains + 1),
+                chainLine, firstStop, lastStop);
+    }
+
+    /**
+     * Metros desde el inicio de la cadena del arco hasta la proyección del
+     * punto sobre el arco (recortada a sus extremos).
+     */
+    double position(int arc, double lat, double lon) {
+        return offset[arc] + geometry.projection(arc, geometry.x(lon), geometry.y(lat)) * length[arc];
+    }
+
+    /**
+     * Metros a lo largo de la ruta desde la posición pos1 (sobre arc1) hasta
+     * pos2 (sobre arc2), hacia adelante en la misma cadena o pasando a una
+     * cadena de la misma línea que empieza donde termina la de arc1 (por
+     * ejemplo de ida a vuelta en la terminal). NaN si no hay tal recorrido.
+     */
+    double distance(int arc1, double pos1, int arc2, double pos2) {
+        int c1 = chainOf[arc1], c2 = chainOf[arc2];
+        if (c1 < 0 || c2 < 0) return Double.NaN;
+        if (c1 == c2) return pos2 >= pos1 ? pos2 - pos1 : Double.NaN;
+        return follows(c1, c2) ? chainLength[c1] - pos1 + pos2 : Double.NaN;
+    }
+
+    private boolean follows(int c1, int c2) {
+        return chainLine[c1] == chainLine[c2] && chainLastStop[c1] == chainFirstStop[c2];
+    }
+
+    /**
+     * Escribe en out los arcos que recorre el tramo de distance() entre
+     * (arc1, pos1) y (arc2, pos2), en orden, omitiendo los que toca menos
+     * de minMeters (siempre queda al menos arc2), y en weights la fracción
+     * del tramo conservado que cae en cada uno (suman 1). Retorna cuántos
+     * escribió; out y weights deben tener al menos arcsBetween(arc1, arc2) posiciones.
+     */
+    int crossed(int arc1, double pos1, int arc2, double pos2, double minMeters, int[] out, double[] weights) {
+        int c1 = chainOf[arc1], c2 = chainOf[arc2];
+        int n;
+        if (c1 == c2) {
+            n = collect(indexOf[arc1], indexOf[arc2], pos1, pos2, minMeters, out, weights, 0);
+        } else {
+            n = collect(indexOf[arc1], chainStart[c1 + 1] - 1, pos1, chainLength[c1], minMeters, out, weights, 0);
+            n = collect(chainStart[c2], indexOf[arc2], 0, pos2, minMeters, out, weights, n);
+        }
+        if (n == 0) {
+            out[0] = arc2;
+            weights[0] = 1.0;
+            return 1;
+        }
+        double meters = 0;
+        for (int k = 0; k < n; k++) meters += weights[k];
+        for (int k = 0; k < n; k++) weights[k] /= meters;
+        return n;
+    }
+
+    // escribe los arcos y sus metros recorridos
+    private int collect(int from, int to, double pos1, double pos2, double minMeters, int[] out, double[] meters, int n) {
+        for (int k = from; k <= to; k++) {
+            int id = chainArcs[k];
+            double overlap = Math.min(pos2, offset[id] + length[id]) - Math.max(pos1, offset[id]);
+            if (overlap >= minMeters) {
+                meters[n] = overlap;
+                out[n++] = id;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Cota del número de arcos que puede escribir crossed() para ese tramo.
+     */
+    int arcsBetween(int arc1, int arc2) {
+        int c1 = chainOf[arc1], c2 = chainOf[arc2];
+        if (c1 == c2) return indexOf[arc2] - indexOf[arc1] + 1;
+        return chainStart[c1 + 1] - indexOf[arc1] + indexOf[arc2] - chainStart[c2] + 1;
+    }
+
+    double length(int arc) {
+        return length[arc];
+    }
+
+    double chainLength(int arc) {
+        return chainOf[arc] < 0 ? Double.NaN : chainLength[chainOf[arc]];
+    }
+}
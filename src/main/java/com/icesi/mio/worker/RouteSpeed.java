@@ -0,0 +1,92 @@
+package com.icesi.mio.worker;
+
+/**
+ * Velocidad de un par de datagramas medida a lo largo de la ruta
+ * (ArcMatcher.alongRoute()): cada punto se empareja con su arco siguiendo la
+ * trayectoria del bus, se proyecta sobre la polilínea de la ruta
+ * (RoutePolylines) y la distancia es la diferencia de posiciones. El tiempo
+ * del par se reparte entre los arcos recorridos en proporción a los metros
+ * recorridos en cada uno: todos reciben una muestra con la misma velocidad
+ * (distancia / dt), ponderada por esa fracción (weight(k), las de un par
+ * suman 1), así que un arco apenas tocado casi no mueve su promedio.
+ *
+ * Si los dos puntos no quedan en un mismo recorrido hacia adelante, o la
+ * distancia por la ruta es demasiado larga frente a la distancia en línea
+ * recta (emparejamiento dudoso), se usa haversine y el arco del punto medio,
+ * como en el seguimiento normal.
+ *
+ * No es thread-safe: una instancia por acumulador.
+ */
+final class RouteSpeed {
+
+    // metros mínimos recorridos en un arco para que reciba la muestra
+    static final double MIN_CROSSED_METERS = 1.0;
+    // la distancia por la ruta se acepta hasta DETOUR_FACTOR veces la recta más DETOUR_SLACK_METERS
+    static final double DETOUR_FACTOR = 3.0;
+    static final double DETOUR_SLACK_METERS = 100.0;
+
+    private final ArcMatcher matcher;
+    private final RoutePolylines routes;
+    private int[] arcs = new int[16];
+    private double[] weights = new double[16];
+    private double speedKph;
+    private int lastArc = -1;
+
+    RouteSpeed(ArcMatcher matcher) {
+        this.matcher = matcher;
+        this.routes = matcher.routes();
+    }
+
+    /**
+     * Evalúa el par (lat1, lon1) -> (lat2, lon2) separado dt segundos de un
+     * bus cuyo último arco fue lastArc (-1 si no hay). Retorna el número de
+     * arcos que reciben la muestra (arc(0..n-1), todos con speedKph() y peso
+     * weight(0..n-1)), 0 si el par no produce muestra. lastArc() queda con el arco del segundo punto.
+     */
+    int pair(int lineId, double lat1, double lon1, double lat2, double lon2, double dt, int lastArc) {
+        double dLat = lat2 - lat1, dLon = lon2 - lon1;
+        int a1 = matcher.matchPoint(lineId, lat1, lon1, dLat, dLon, lastArc);
+        int a2 = matcher.matchPoint(lineId, lat2, lon2, dLat, dLon, a1 >= 0 ? a1 : lastArc);
+        this.lastArc = a2;
+
+        double straight = BusPairAccumulator.haversine(lat1, lon1, lat2, lon2);
+        if (a1 >= 0 && a2 >= 0) {
+            double pos1 = routes.position(a1, lat1, lon1);
+            double pos2 = routes.position(a2, lat2, lon2);
+            double along = routes.distance(a1, pos1, a2, pos2);
+            if (along <= straight * DETOUR_FACTOR + DETOUR_SLACK_METERS) {
+                speedKph = along / dt * 3.6;
+                if (!(speedKph > 0 && speedKph < 200)) return 0;
+                int max = routes.arcsBetween(a1, a2);
+                if (max > arcs.length) {
+                    arcs = new int[Math.max(max, arcs.length * 2)];
+                    weights = new double[arcs.length];
+                }
+                return routes.crossed(a1, pos1, a2, pos2, MIN_CROSSED_METERS, arcs, weights);
+            }
+        }
+        speedKph = straight / dt * 3.6;
+        if (!(speedKph > 0 && speedKph < 200)) return 0;
+        int arcId = matcher.matchAlong(lineId, lat1, lon1, lat2, lon2, a1 >= 0 ? a1 : lastArc);
+        if (arcId < 0) return 0;
+        arcs[0] = arcId;
+        weights[0] = 1.0;
+        return 1;
+    }
+
+    int arc(int k) {
+        return arcs[k];
+    }
+
+    double weight(int k) {
+        return weights[k];
+    }
+
+    double speedKph() {
+        return speedKph;
+    }
+
+    int lastArc() {
+        return lastArc;
+    }
+}
@@ -0,0 +1,109 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.aggregate.ArcSpeedProfile;
+import com.icesi.mio.aggregate.ArcSpeedQuantiles;
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.parser.DatagramQuery;
+
+/**
+ * Opciones de una pasada sobre los datagramas: el ArcMatcher, el filtro
+ * (DatagramQuery), la pausa máxima entre los datagramas de un par (ver
+ * BusPairAccumulator.maxGapSeconds) y qué acumula cada resultado parcial además de (sum, count)
+ * por arco (perfiles por franja, cuantiles). Inmutable; cada método with*
+ * retorna una copia, así que los rangos de una misma pasada comparten la instancia.
+ *
+ * newPartial() es el único lugar donde se arma un PartialResult para una
+ * pasada: cada rango, partición o unión de rangos parte de uno de ellos.
+ */
+public final class ScanOptions {
+
+    private final ArcMatcher matcher;
+    private final DatagramQuery query;
+    private final long maxGapSeconds;
+    // perfil vacío que se copia por resultado parcial (null = sin perfiles)
+    private final ArcSpeedProfile profileTemplate;
+    private final boolean quantiles;
+
+    public ScanOptions(ArcMatcher matcher) {
+        this(matcher, DatagramQuery.all(), BusPairAccumulator.DEFAULT_MAX_GAP_SECONDS, null, false);
+    }
+
+    private ScanOptions(ArcMatcher matcher, DatagramQuery query, long maxGapSeconds,
+                        ArcSpeedProfile profileTemplate, boolean quantiles) {
+        this.matcher = matcher;
+        this.query = query;
+        this.maxGapSeconds = maxGapSeconds;
+        this.profileTemplate = profileTemplate;
+        this.quantiles = quantiles;
+    }
+
+    public ArcMatcher matcher() {
+        return matcher;
+    }
+
+    public DatagramQuery query() {
+        return query;
+    }
+
+    public long maxGapSeconds() {
+        return maxGapSeconds;
+    }
+
+    public ScanOptions withMatcher(ArcMatcher matcher) {
+        return new ScanOptions(matcher, query, maxGapSeconds, profileTemplate, quantiles);
+    }
+
+    /**
+     * Sólo las muestras que conserva query (ver DatagramQuery).
+     */
+    public ScanOptions withQuery(DatagramQuery query) {
+        return new ScanOptions(matcher, query, maxGapSeconds, profileTemplate, quantiles);
+    }
+
+    /**
+     * Descarta los pares de un bus separados por más de seconds segundos
+     * (BusPairAccumulator.DEFAULT_MAX_GAP_SECONDS por defecto).
+     */
+    public ScanOptions withMaxGapSeconds(long seconds) {
+        if (seconds <= 0) throw new IllegalArgumentException("maxGapSeconds debe ser positivo: " + seconds);
+        return new ScanOptions(matcher, query, seconds, profileTemplate, quantiles);
+    }
+
+    /**
+     * Perfil por arco y franja de slotSeconds segundos, agrupando los días según cycle (ver ArcSpeedProfile).
+     */
+    public ScanOptions withProfiles(int slotSeconds, ArcSpeedProfile.Cycle cycle) {
+        return new ScanOptions(matcher, query, maxGapSeconds, new ArcSpeedProfile(matcher.getArcCount(), slotSeconds, cycle), quantiles);
+    }
+
+    /**
+     * Cuantiles de velocidad por arco (ver ArcSpeedQuantiles).
+     */
+    public ScanOptions withQuantiles() {
+        return new ScanOptions(matcher, query, maxGapSeconds, profileTemplate, true);
+    }
+
+    /**
+     * Las mismas opciones sin filtro, perfiles ni cuantiles.
+     */
+    public ScanOptions arcStatsOnly() {
+        return new ScanOptions(matcher, DatagramQuery.all(), maxGapSeconds, null, false);
+    }
+
+    /**
+     * Acumulador de pares con el matcher, el filtro y la pausa máxima de estas opciones.
+     */
+    public BusPairAccumulator newAccumulator(PartialResult result) {
+        return new BusPairAccumulator(matcher, result, query).maxGapSeconds(maxGapSeconds);
+    }
+
+    /**
+     * Resultado parcial vacío con los acumuladores pedidos.
+     */
+    public PartialResult newPartial(int partitionId) {
+        PartialResult partial = new PartialResult(partitionId, matcher.getArcCount());
+        if (profileTemplate != null) partial.withProfile(profileTemplate.emptyCopy());
+        if (quantiles) partial.withQuantiles(new ArcSpeedQuantiles(matcher.getArcCount()));
+        return partial;
+    }
+}
@@ -1,16 +1,29 @@
 package com.icesi.mio.worker;
 
+import com.icesi.mio.aggregate.ArcSpeedAggregator;
+import com.icesi.mio.aggregate.ArcSpeedProfile;
+import com.icesi.mio.aggregate.ArcSpeedQuantiles;
 import com.icesi.mio.distributed.PartialResult;
 import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.ByteLineReader;
+import com.icesi.mio.parser.DatagramColumnFile;
+import com.icesi.mio.parser.DatagramQuery;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.parser.DatagramTokenizer;
+import com.icesi.mio.parser.MappedLineReader;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Procesador "streaming" para archivos gigantes de datagramas.
@@ -19,146 +32,327 @@ import java.util.Map;
  *
  * Este procesador está pensado para soportar archivos muy grandes
  * (decenas de GB) sin cargar todo en memoria.
+ *
+ * process() lee el archivo como bytes y decodifica cada fila a primitivos con
+ * DatagramTokenizer (sin String, String[] ni LocalDateTime por fila).
+ * processParallel() recorre el archivo mapeado en memoria con un hilo por rango de bytes.
+ * processWithCheckpoints() guarda puntos de control periódicos para reanudar
+ * una pasada interrumpida o procesar sólo lo agregado al final del archivo.
+ * processColumnFile() lee la conversión binaria columnar del CSV
+ * (DatagramColumnFile, ver tools.ConvertDatagrams) mapeada en memoria, sin parseo.
+ *
+ * Lo que cambia el resultado se configura una vez con los métodos with*, que
+ * arman las ScanOptions de cada pasada: withQuery() restringe el análisis a
+ * ciertas líneas, buses o fechas, descartando lo antes posible lo que no puede
+ * formar muestras, y con withProfiles() / withQuantiles() las pasadas (salvo
+ * las de puntos de control) acumulan además el perfil por
+ * arco y franja horaria y los cuantiles por arco, que quedan en getProfile() /
+ * getQuantiles().
+ * Ninguna pasada empareja datagramas de un bus separados por más de
+ * withMaxGap() (BusPairAccumulator.DEFAULT_MAX_GAP_SECONDS por defecto), y las
+ * secuenciales sobre el CSV sacan de memoria los buses inactivos (ver RangeScan).
  */
 public class StreamingFullFileProcessor {
 
     private final String csvPath;
-    private final Map<Integer, RouteGraph> routeGraphs;
+    private ScanOptions options;
+    // perfiles y cuantiles de la última pasada
+    private ArcSpeedProfile profile;
+    private ArcSpeedQuantiles quantiles;
 
     // Formato real: 0:eventType, 1:registerdate, 2:stopId, 3:odometer,
     // 4:lat, 5:lon, 6:taskId, 7:lineId, 8:tripId, 9:unknown, 10:datagramDate, 11:busId
 
-    private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+    // Ventana de mapeo por rango en processParallel
+    private static final int MAP_WINDOW_BYTES = 256 << 20;
 
     public StreamingFullFileProcessor(String csvPath, Map<Integer, RouteGraph> routeGraphs) {
+        this(csvPath, new ArcMatcher(routeGraphs));
+    }
+
+    /**
+     * Procesador que empareja con matcher (p. ej. uno construido con la tabla
+     * y la geometría de GraphBuilder); los with* derivan de él.
+     */
+    public StreamingFullFileProcessor(String csvPath, ArcMatcher matcher) {
         this.csvPath = csvPath;
-        this.routeGraphs = routeGraphs;
+        this.options = new ScanOptions(matcher);
+    }
+
+    /**
+     * Asigna arcos siguiendo la trayectoria de cada bus (ArcMatcher.tracking()).
+     * processColumnFile sigue siendo exacto con varios rangos (se cortan por
+     * bus), y los puntos de control guardan el último arco de cada bus.
+     * processParallel no lo admite: cada rango del CSV empezaría sin el último
+     * arco de los buses que vienen del rango anterior.
+     */
+    public StreamingFullFileProcessor withTrajectoryMatching() {
+        this.options = options.withMatcher(options.matcher().tracking());
+        return this;
+    }
+
+    /**
+     * withTrajectoryMatching() midiendo la velocidad a lo largo de la ruta
+     * (ArcMatcher.alongRoute()): cada par aporta una muestra a cada arco que
+     * recorre, con peso proporcional a los metros recorridos en él, así que
+     * el número de muestras por arco ya no es el de pares.
+     */
+    public StreamingFullFileProcessor withRouteDistance() {
+        this.options = options.withMatcher(options.matcher().alongRoute());
+        return this;
+    }
+
+    /**
+     * Descarta los pares de un bus separados por más de seconds segundos (por
+     * ejemplo la noche entre dos turnos), que de otro modo darían una
+     * velocidad media baja y falsa. Aplica a todas las pasadas, también a las
+     * del archivo columnar.
+     */
+    public StreamingFullFileProcessor withMaxGap(long seconds) {
+        this.options = options.withMaxGapSeconds(seconds);
+        return this;
+    }
+
+    /**
+     * Conserva sólo las muestras de query: el resultado es el del análisis
+     * completo restringido a esas muestras. Los puntos de control guardan el
+     * estado completo y no aplican el filtro.
+     */
+    public StreamingFullFileProcessor withQuery(DatagramQuery query) {
+        this.options = options.withQuery(query);
+        return this;
+    }
+
+    /**
+     * Acumula también el perfil de velocidad por arco y franja de slotSeconds
+     * segundos, agrupando los días según cycle (ver ArcSpeedProfile).
+     */
+    public StreamingFullFileProcessor withProfiles(int slotSeconds, ArcSpeedProfile.Cycle cycle) {
+        this.options = options.withProfiles(slotSeconds, cycle);
+        return this;
+    }
+
+    /**
+     * Perfil por franja de la última pasada, o null si no se pidió con withProfiles().
+     */
+    public ArcSpeedProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Acumula también los cuantiles de velocidad por arco (ver ArcSpeedQuantiles).
+     */
+    public StreamingFullFileProcessor withQuantiles() {
+        this.options = options.withQuantiles();
+        return this;
+    }
+
+    /**
+     * Cuantiles de la última pasada, o null si no se pidieron con withQuantiles().
+     */
+    public ArcSpeedQuantiles getQuantiles() {
+        return quantiles;
     }
 
     public Map<Long, Double> process() throws IOException {
-        Map<String, String[]> lastByBus = new HashMap<>();
-        PartialResult global = new PartialResult(-1);
-
-        long lineCount = 0L;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(csvPath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                lineCount++;
-                String[] cur = line.split(",");
-                if (cur.length < 12) {
-                    continue; // fila mal formada
-                }
+        RangeScan scan = new RangeScan(-1, false, options);
+        try (FileChannel ch = FileChannel.open(Path.of(csvPath), StandardOpenOption.READ)) {
+            scan.scan(new ByteLineReader(ch, READ_BUFFER_BYTES));
+        }
+        profile = scan.partial.getProfile();
+        quantiles = scan.partial.getQuantiles();
 
-                String busId = cur[11];
-                String[] prev = lastByBus.get(busId);
-                if (prev != null) {
-                    try {
-                        double lat1 = parseLat(prev);
-                        double lon1 = parseLon(prev);
-                        double lat2 = parseLat(cur);
-                        double lon2 = parseLon(cur);
-
-                        double dt = parseDeltaSeconds(prev, cur);
-                        if (dt <= 0) {
-                            lastByBus.put(busId, cur);
-                            continue;
-                        }
-
-                        double dist = haversine(lat1, lon1, lat2, lon2); // metros
-                        double speedMps = dist / dt;
-                        double speedKph = speedMps * 3.6;
-
-                        if (!(speedKph > 0 && speedKph < 200)) {
-                            lastByBus.put(busId, cur);
-                            continue; // descartar outliers
-                        }
-
-                        int lineId = parseLineId(prev, cur);
-                        if (lineId == 0) {
-                            lastByBus.put(busId, cur);
-                            continue;
-                        }
-
-                        double midLat = (lat1 + lat2) / 2.0;
-                        double midLon = (lon1 + lon2) / 2.0;
-
-                        long arcId = ArcMatcher.matchArc(lineId, midLat, midLon, routeGraphs);
-                        if (arcId != -1) {
-                            global.addSample(arcId, speedKph);
-                        }
-                    } catch (Exception ignore) {
-                        // ignorar fila defectuosa
-                    }
-                }
-                // actualizar último datagrama del bus
-                lastByBus.put(busId, cur);
+        System.out.println("[StreamingFullFileProcessor] FIN. Filas procesadas=" + scan.lineCount +
+                " buses=" + scan.pairs.busCount() + " inactivos=" + scan.getEvicted() +
+                " arcs=" + scan.partial.getArcStats().size());
+
+        return toAverages(scan.partial);
+    }
 
-                if (lineCount % 1_000_000 == 0) {
-                    System.out.println("[StreamingFullFileProcessor] procesadas " + lineCount + " filas...");
+    /**
+     * Igual que process(), pero cada checkpointEveryBytes bytes (y al llegar al
+     * final) guarda en checkpointFile el offset, el último datagrama por bus y
+     * los acumuladores por arco. Si checkpointFile ya existe, continúa desde
+     * ahí: tras una caída sólo se reprocesa lo posterior al último punto de
+     * control, y si al archivo se le agregaron días nuevos sólo se leen esos
+     * bytes. El resultado es el mismo que el de process() sobre el archivo completo,
+     * también con withTrajectoryMatching() o withRouteDistance(); un punto de
+     * control escrito con otro modo de asignación de arcos se rechaza.
+     *
+     * Una última línea sin terminador no se incluye en el punto de control final,
+     * porque puede estar a medio escribir.
+     */
+    public Map<Long, Double> processWithCheckpoints(Path checkpointFile, long checkpointEveryBytes) throws IOException {
+        RangeScan scan = new RangeScan(-1, false, options.arcStatsOnly());
+        profile = null;
+        quantiles = null;
+        try (FileChannel ch = FileChannel.open(Path.of(csvPath), StandardOpenOption.READ)) {
+            long start = 0L;
+            boolean skipLf = false;
+            if (Files.exists(checkpointFile)) {
+                HistoryCheckpoint cp = HistoryCheckpoint.read(checkpointFile, options.matcher(), scan.partial, scan.pairs.lastByBus());
+                cp.verify(ch, csvPath);
+                start = cp.offset;
+                skipLf = cp.pendingCr;
+                scan.lineCount = cp.lineCount;
+                System.out.println("[StreamingFullFileProcessor] reanudando desde byte " + start + " (" + cp.lineCount + " filas ya procesadas)");
+            }
+
+            ch.position(start);
+            ByteLineReader reader = new ByteLineReader(ch, READ_BUFFER_BYTES, start);
+            if (skipLf) reader.skipNextLf();
+            DatagramTokenizer tokenizer = new DatagramTokenizer();
+            DatagramRow row = new DatagramRow();
+            long lastCheckpoint = start;
+            boolean complete = true;
+            while (reader.nextLine()) {
+                if (!reader.lineTerminated()) {
+                    // posible línea a medio escribir: el punto de control queda antes de ella
+                    saveCheckpoint(checkpointFile, ch, reader.lineStartOffset(), false, scan);
+                    complete = false;
+                }
+                scan.lineCount++;
+                if (tokenizer.parse(reader.buffer(), reader.lineStart(), reader.lineEnd(), row)) {
+                    scan.accept(row);
+                }
+                if (reader.offset() - lastCheckpoint >= checkpointEveryBytes && reader.lineTerminated()) {
+                    saveCheckpoint(checkpointFile, ch, reader.offset(), reader.pendingCr(), scan);
+                    lastCheckpoint = reader.offset();
                 }
             }
+            if (complete && reader.offset() != lastCheckpoint) {
+                saveCheckpoint(checkpointFile, ch, reader.offset(), reader.pendingCr(), scan);
+            }
         }
 
-        System.out.println("[StreamingFullFileProcessor] FIN. Filas procesadas=" + lineCount +
-                " arcs=" + global.getArcStats().size());
+        System.out.println("[StreamingFullFileProcessor] FIN. Filas procesadas=" + scan.lineCount +
+                " buses=" + scan.pairs.busCount() + " arcs=" + scan.partial.getArcStats().size());
 
-        // Convertir SumCount a promedio
-        Map<Long, Double> res = new HashMap<>();
-        for (Map.Entry<Long, PartialResult.SumCount> e : global.getArcStats().entrySet()) {
-            PartialResult.SumCount sc = e.getValue();
-            double avg = sc.count == 0 ? 0.0 : sc.sum / sc.count;
-            res.put(e.getKey(), avg);
-        }
-        return res;
+        return toAverages(scan.partial);
     }
 
-    private static double parseLat(String[] row) {
-        double raw = Double.parseDouble(row[4]);
-        return raw / 1e7;
+    private void saveCheckpoint(Path file, FileChannel ch, long offset, boolean pendingCr, RangeScan scan) throws IOException {
+        HistoryCheckpoint.write(file, ch, options.matcher(), offset, pendingCr, scan.lineCount, scan.partial, scan.pairs.lastByBus());
     }
 
-    private static double parseLon(String[] row) {
-        double raw = Double.parseDouble(row[5]);
-        return raw / 1e7;
+    /**
+     * Variante paralela: mapea el archivo en memoria y lo divide en nRanges rangos
+     * de bytes alineados a inicio de línea, cada uno procesado en su propio hilo.
+     *
+     * Cada rango produce un PartialResult y recuerda el primer y el último datagrama
+     * de cada bus. Al final se empareja, en orden de archivo, el primer datagrama de
+     * cada bus en el rango k+1 con su último datagrama en los rangos anteriores, de
+     * modo que se generan exactamente los mismos pares que en process().
+     *
+     * Lanza IllegalStateException con withTrajectoryMatching() o withRouteDistance()
+     * (ver RangeStitcher); para esos modos usar process() o processColumnFile().
+     */
+    public Map<Long, Double> processParallel(int nRanges) throws IOException, InterruptedException {
+        return processParallel(nRanges, MAP_WINDOW_BYTES);
     }
 
-    private static double parseDeltaSeconds(String[] prev, String[] cur) {
-        try {
-            LocalDateTime t1 = LocalDateTime.parse(prev[10], TS_FMT);
-            LocalDateTime t2 = LocalDateTime.parse(cur[10], TS_FMT);
-            long s1 = t1.toEpochSecond(ZoneOffset.UTC);
-            long s2 = t2.toEpochSecond(ZoneOffset.UTC);
-            return (double) (s2 - s1);
-        } catch (Exception e) {
-            return 0.0;
+    Map<Long, Double> processParallel(int nRanges, int windowBytes) throws IOException, InterruptedException {
+        ScanOptions options = this.options;
+        if (options.matcher().isTracking()) {
+            throw new IllegalStateException("El seguimiento de trayectoria no se puede dividir en rangos del CSV: use process() o processColumnFile()");
         }
-    }
+        try (FileChannel ch = FileChannel.open(Path.of(csvPath), StandardOpenOption.READ)) {
+            long size = ch.size();
+            long[] bounds = new long[nRanges + 1];
+            for (int k = 1; k < nRanges; k++) {
+                bounds[k] = MappedLineReader.alignToLineStart(ch, Math.max(bounds[k - 1], size * k / nRanges), size);
+            }
+            bounds[nRanges] = size;
 
-    private static int parseLineId(String[] prev, String[] cur) {
-        try {
-            return Integer.parseInt(cur[7].trim());
-        } catch (Exception e) {
+            ExecutorService pool = Executors.newFixedThreadPool(nRanges);
+            List<Future<RangeScan>> futures = new ArrayList<>();
+            for (int k = 0; k < nRanges; k++) {
+                final int id = k;
+                futures.add(pool.submit(() -> {
+                    RangeScan scan = new RangeScan(id, true, options);
+                    scan.scan(new MappedLineReader(ch, bounds[id], bounds[id + 1], windowBytes));
+                    System.out.println("[StreamingFullFileProcessor] rango " + id + " [" + bounds[id] + ", " + bounds[id + 1] +
+                            ") filas=" + scan.lineCount + " arcs=" + scan.partial.getArcStats().size());
+                    return scan;
+                }));
+            }
+
+            ArcSpeedAggregator aggregator = new ArcSpeedAggregator();
+            // Pares que cruzan límites de rango, evaluados en orden de archivo
+            RangeStitcher stitcher = new RangeStitcher(options);
+            long lineCount = 0L;
             try {
-                return Integer.parseInt(prev[7].trim());
-            } catch (Exception ex) {
-                return 0;
+                for (Future<RangeScan> f : futures) {
+                    RangeScan scan = f.get();
+                    lineCount += scan.lineCount;
+                    stitcher.add(scan);
+                    aggregator.merge(scan.partial);
+                }
+            } catch (ExecutionException e) {
+                throw new IOException("Error procesando rango de " + csvPath, e.getCause());
+            } finally {
+                pool.shutdownNow();
             }
+            aggregator.merge(stitcher.getBoundaryPairs());
+            profile = aggregator.getProfile();
+            quantiles = aggregator.getQuantiles();
+
+            System.out.println("[StreamingFullFileProcessor] FIN (paralelo, " + nRanges + " rangos). Filas procesadas=" + lineCount +
+                    " buses=" + stitcher.busCount() + " paresEntreRangos=" + stitcher.getBoundaryPairs().getArcStats().totalCount());
+
+            return aggregator.finalizeAverages();
         }
     }
 
-    // Haversine distance in meters
-    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371000; // metres
-        double phi1 = Math.toRadians(lat1);
-        double phi2 = Math.toRadians(lat2);
-        double dphi = Math.toRadians(lat2 - lat1);
-        double dlambda = Math.toRadians(lon2 - lon1);
+    /**
+     * Promedios sobre un archivo columnar (DatagramColumnFile) en lugar del CSV.
+     * Las filas vienen ordenadas por (bus, datagramDate), así que cada bus se
+     * empareja en orden de tiempo como en DatagramProcessor.processColumnar; si
+     * el CSV ya está en orden temporal por bus el resultado es el de process().
+     * Con withQuery() sólo se leen los tramos del índice (bus, día) y los
+     * bloques que pueden aportar muestras.
+     */
+    public Map<Long, Double> processColumnFile(Path columnFile) throws IOException, InterruptedException {
+        return processColumnFile(columnFile, 1);
+    }
+
+    /**
+     * Igual que processColumnFile(columnFile), con nRanges rangos procesados en
+     * paralelo. Los rangos se cortan en límites de bus (con el índice del
+     * archivo), así que no hay pares entre rangos que unir.
+     */
+    public Map<Long, Double> processColumnFile(Path columnFile, int nRanges) throws IOException, InterruptedException {
+        ScanOptions options = this.options;
+        DatagramColumnFile file = DatagramColumnFile.open(columnFile);
+        long[] bounds = file.splitByBus(nRanges);
+
+        ExecutorService pool = Executors.newFixedThreadPool(nRanges);
+        List<Future<PartialResult>> futures = new ArrayList<>();
+        for (int k = 0; k < nRanges; k++) {
+            final int id = k;
+            futures.add(pool.submit(() -> DatagramProcessor.processColumnRange(id, file, bounds[id], bounds[id + 1], options)));
+        }
+
+        ArcSpeedAggregator aggregator = new ArcSpeedAggregator();
+        try {
+            for (Future<PartialResult> f : futures) aggregator.merge(f.get());
+            profile = aggregator.getProfile();
+            quantiles = aggregator.getQuantiles();
+        } catch (ExecutionException e) {
+            throw new IOException("Error procesando rango de " + columnFile, e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println("[StreamingFullFileProcessor] FIN (columnar, " + nRanges + " rangos). Filas procesadas=" + file.rowCount() +
+                " bloques=" + file.blockCount());
+
+        return aggregator.finalizeAverages();
+    }
 
-        double a = Math.sin(dphi / 2) * Math.sin(dphi / 2) +
-                Math.cos(phi1) * Math.cos(phi2) *
-                        Math.sin(dlambda / 2) * Math.sin(dlambda / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+    // Convertir (sum, count) a promedio
+    private static Map<Long, Double> toAverages(PartialResult global) {
+        return global.getArcStats().toAverages();
     }
 }
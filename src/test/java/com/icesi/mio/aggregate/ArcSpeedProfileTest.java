@@ -0,0 +1,156 @@
+package com.icesi.mio.aggregate;
+
+import com.icesi.mio.benchmark.DatagramGenerator;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.DatagramColumnWriter;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para ArcSpeedProfile
+ */
+class ArcSpeedProfileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static long epoch(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Test
+    void testSlotsByWeekdayAndQuarterHour() {
+        ArcSpeedProfile weekly = ArcSpeedProfile.weekly(3);
+        assertEquals(672, weekly.slotCount());
+        // 2019-05-27 fue lunes
+        assertEquals(0, weekly.slotOf(epoch(2019, 5, 27, 0, 0)));
+        assertEquals(7 * 4 + 1, weekly.slotOf(epoch(2019, 5, 27, 7, 29)));
+        assertEquals(6 * 96 + 95, weekly.slotOf(epoch(2019, 6, 2, 23, 59)));
+        assertEquals(0, weekly.slotOf(epoch(2019, 6, 3, 0, 14)));
+        assertEquals("lunes 07:15", weekly.slotLabel(29));
+        // antes de 1970
+        assertEquals(3 * 96, weekly.slotOf(epoch(1969, 12, 25, 0, 0)));
+
+        ArcSpeedProfile split = new ArcSpeedProfile(3, 3600, ArcSpeedProfile.Cycle.WEEKDAY_WEEKEND);
+        assertEquals(48, split.slotCount());
+        assertEquals(8, split.slotOf(epoch(2019, 5, 31, 8, 59)));       // viernes
+        assertEquals(24 + 8, split.slotOf(epoch(2019, 6, 1, 8, 0)));    // sábado
+        assertEquals("fin_de_semana 08:00", split.slotLabel(32));
+
+        assertThrows(IllegalArgumentException.class, () -> new ArcSpeedProfile(3, 7 * 60, ArcSpeedProfile.Cycle.DAY));
+    }
+
+    @Test
+    void testMergeOfPartitionsEqualsSinglePass() {
+        Random rnd = new Random(11L);
+        ArcSpeedProfile single = ArcSpeedProfile.weekly(50);
+        ArcSpeedProfile[] parts = {single.emptyCopy(), single.emptyCopy(), new ArcSpeedProfile(10, 900, ArcSpeedProfile.Cycle.WEEK)};
+        long t0 = epoch(2019, 5, 27, 0, 0);
+        for (int i = 0; i < 20_000; i++) {
+            int arc = rnd.nextInt(50);
+            // valores enteros y pesos en cuartos: las sumas son exactas en cualquier orden
+            double v = rnd.nextInt(80);
+            long t = t0 + rnd.nextInt(14 * 86_400);
+            double w = rnd.nextInt(4) == 0 ? 0.25 * (1 + rnd.nextInt(3)) : 1.0;
+            single.add(arc, v, t, w);
+            parts[rnd.nextInt(3)].add(arc, v, t, w);
+        }
+        ArcSpeedProfile merged = single.emptyCopy();
+        for (ArcSpeedProfile p : parts) merged.merge(p);
+
+        assertEquals(single.size(), merged.size());
+        long[] total = new long[1];
+        single.forEach((arc, slot, sum, count) -> {
+            assertEquals(count, merged.getCount(arc, slot));
+            assertEquals(sum, merged.getSum(arc, slot), 0.0);
+            assertEquals(single.getWeight(arc, slot), merged.getWeight(arc, slot), 0.0);
+            assertEquals(sum / single.getWeight(arc, slot), merged.getAverage(arc, slot), 0.0);
+            total[0] += count;
+        });
+        assertEquals(20_000, total[0]);
+        assertEquals(0, merged.getCount(60, 0));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> merged.merge(new ArcSpeedProfile(50, 900, ArcSpeedProfile.Cycle.DAY)));
+    }
+
+    @Test
+    void testCsvExport() throws Exception {
+        ArcSpeedProfile p = new ArcSpeedProfile(4, 900, ArcSpeedProfile.Cycle.WEEK);
+        p.add(2, 20.0, epoch(2019, 5, 28, 7, 0));
+        p.add(2, 30.0, epoch(2019, 5, 28, 7, 14));
+        p.add(0, 12.5, epoch(2019, 6, 2, 23, 50));
+        StringWriter out = new StringWriter();
+        p.writeCsv(out);
+        assertEquals("arcId,slot,dia,inicio,muestras,velocidadPromedioKph\n"
+                + "0,671,domingo,23:45,1,12.5\n"
+                + "2,124,martes,07:00,2,25.0\n", out.toString());
+    }
+
+    @Test
+    void testProfilesAgreeInEveryMode() throws Exception {
+        Map<Integer, RouteGraph> graphs = graphs();
+        Path csv = tempDir.resolve("profiles.csv");
+        new DatagramGenerator(graphs, 53L).buses(40).malformedRate(0).generate(csv, 30_000);
+        StreamingFullFileProcessor proc = new StreamingFullFileProcessor(csv.toString(), graphs)
+                .withProfiles(900, ArcSpeedProfile.Cycle.WEEK);
+        Map<Long, Double> averages = proc.process();
+        ArcSpeedProfile sequential = proc.getProfile();
+        assertEquals(averages.size(), sequential.size());
+
+        // el perfil reparte las mismas muestras por franja
+        double[] sums = new double[sequential.arcCount()];
+        long[] counts = new long[sequential.arcCount()];
+        sequential.forEach((arcId, slot, sum, count) -> {
+            sums[arcId] += sum;
+            counts[arcId] += count;
+        });
+        for (Map.Entry<Long, Double> e : averages.entrySet()) {
+            int arc = e.getKey().intValue();
+            assertEquals(e.getValue(), sums[arc] / counts[arc], 1e-9);
+        }
+
+        proc.processParallel(3);
+        assertProfilesEqual(sequential, proc.getProfile());
+        Path columns = tempDir.resolve("profiles.mioc");
+        new DatagramColumnWriter().blockRows(1000).convert(csv, columns);
+        proc.processColumnFile(columns);
+        assertProfilesEqual(sequential, proc.getProfile());
+        proc.processColumnFile(columns, 2);
+        assertProfilesEqual(sequential, proc.getProfile());
+
+        assertNull(new StreamingFullFileProcessor(csv.toString(), graphs).getProfile());
+    }
+
+    private static void assertProfilesEqual(ArcSpeedProfile expected, ArcSpeedProfile actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        expected.forEach((arcId, slot, sum, count) -> {
+            assertEquals(count, actual.getCount(arcId, slot));
+            assertEquals(sum, actual.getSum(arcId, slot), 1e-9 * Math.max(1.0, Math.abs(sum)));
+        });
+    }
+
+    private static Map<Integer, RouteGraph> graphs() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        return new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE)).buildGraphs();
+    }
+}
@@ -0,0 +1,155 @@
+package com.icesi.mio.aggregate;
+
+import com.icesi.mio.benchmark.DatagramGenerator;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.DatagramColumnWriter;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para ArcSpeedQuantiles
+ */
+class ArcSpeedQuantilesTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Velocidades con buses detenidos (~1 km/h), tráfico normal y saltos de GPS.
+     */
+    private static double speed(Random rnd) {
+        int kind = rnd.nextInt(20);
+        if (kind == 0) return 0.2 + rnd.nextDouble() * 2;
+        if (kind == 1) return 120 + rnd.nextDouble() * 79;
+        return Math.exp(Math.log(22) + rnd.nextGaussian() * 0.4);
+    }
+
+    private static double exactQuantile(double[] sorted, double q) {
+        int rank = (int) Math.max(1, Math.ceil(q * sorted.length));
+        return sorted[rank - 1];
+    }
+
+    @Test
+    void testQuantilesWithinRelativeErrorOfExact() {
+        Random rnd = new Random(5L);
+        int arcs = 30;
+        ArcSpeedQuantiles sketch = new ArcSpeedQuantiles(arcs);
+        double[][] samples = new double[arcs][];
+        for (int a = 0; a < arcs; a++) {
+            samples[a] = new double[1 + rnd.nextInt(3000)];
+            for (int i = 0; i < samples[a].length; i++) {
+                samples[a][i] = speed(rnd);
+                sketch.add(a, samples[a][i]);
+            }
+        }
+        assertEquals(arcs, sketch.size());
+        for (int a = 0; a < arcs; a++) {
+            double[] sorted = samples[a].clone();
+            Arrays.sort(sorted);
+            assertEquals(sorted.length, sketch.getCount(a));
+            for (double q : new double[]{0.01, 0.5, 0.85, 0.95, 1.0}) {
+                double exact = exactQuantile(sorted, q);
+                double estimate = sketch.quantile(a, q);
+                assertEquals(exact, estimate, exact * ArcSpeedQuantiles.RELATIVE_ERROR, "arco " + a + " q=" + q);
+            }
+        }
+        assertTrue(Double.isNaN(sketch.median(arcs + 3)));
+    }
+
+    @Test
+    void testBinsAreMonotonicAndContainTheirCenter() {
+        int last = 0;
+        for (double v = ArcSpeedQuantiles.MIN_VALUE; v < ArcSpeedQuantiles.MAX_VALUE; v *= 1.001) {
+            int bin = ArcSpeedQuantiles.binOf(v);
+            assertTrue(bin >= last);
+            last = bin;
+            assertEquals(bin, ArcSpeedQuantiles.binOf(ArcSpeedQuantiles.valueOf(bin)));
+            assertEquals(v, ArcSpeedQuantiles.valueOf(bin), v * ArcSpeedQuantiles.RELATIVE_ERROR);
+        }
+        assertEquals(ArcSpeedQuantiles.BINS - 1, last);
+        assertEquals(0, ArcSpeedQuantiles.binOf(0.0));
+        assertEquals(0, ArcSpeedQuantiles.binOf(Double.NaN));
+        assertEquals(ArcSpeedQuantiles.BINS - 1, ArcSpeedQuantiles.binOf(1e9));
+    }
+
+    @Test
+    void testMergeIsExact() throws Exception {
+        Random rnd = new Random(9L);
+        ArcSpeedQuantiles single = new ArcSpeedQuantiles(20);
+        ArcSpeedQuantiles[] parts = {new ArcSpeedQuantiles(20), new ArcSpeedQuantiles(5), new ArcSpeedQuantiles(20)};
+        for (int i = 0; i < 50_000; i++) {
+            int arc = rnd.nextInt(20);
+            double v = speed(rnd);
+            single.add(arc, v);
+            parts[rnd.nextInt(3)].add(arc, v);
+        }
+        ArcSpeedQuantiles merged = new ArcSpeedQuantiles(0);
+        for (ArcSpeedQuantiles p : parts) merged.merge(p);
+
+        StringWriter a = new StringWriter();
+        StringWriter b = new StringWriter();
+        single.writeCsv(a);
+        merged.writeCsv(b);
+        assertEquals(a.toString(), b.toString());
+        assertTrue(a.toString().startsWith("arcId,muestras,p50,p85,p95\n0,"));
+    }
+
+    @Test
+    void testQuantilesAgreeInEveryMode() throws Exception {
+        Map<Integer, RouteGraph> graphs = graphs();
+        Path csv = tempDir.resolve("quantiles.csv");
+        new DatagramGenerator(graphs, 53L).buses(40).malformedRate(0).generate(csv, 30_000);
+        // el perfil da el número de muestras de cada arco
+        StreamingFullFileProcessor proc = new StreamingFullFileProcessor(csv.toString(), graphs)
+                .withProfiles(900, ArcSpeedProfile.Cycle.WEEK)
+                .withQuantiles();
+        Map<Long, Double> averages = proc.process();
+        ArcSpeedQuantiles quantiles = proc.getQuantiles();
+        assertEquals(averages.size(), quantiles.size());
+        long[] counts = new long[quantiles.arcCount()];
+        proc.getProfile().forEach((arcId, slot, sum, count) -> counts[arcId] += count);
+        for (Long arc : averages.keySet()) assertEquals(counts[arc.intValue()], quantiles.getCount(arc.intValue()));
+        StringWriter expected = new StringWriter();
+        quantiles.writeCsv(expected);
+
+        proc.processParallel(3);
+        assertQuantilesEqual(expected.toString(), proc.getQuantiles());
+        Path columns = tempDir.resolve("quantiles.mioc");
+        new DatagramColumnWriter().blockRows(1000).convert(csv, columns);
+        proc.processColumnFile(columns);
+        assertQuantilesEqual(expected.toString(), proc.getQuantiles());
+        proc.processColumnFile(columns, 2);
+        assertQuantilesEqual(expected.toString(), proc.getQuantiles());
+
+        assertNull(new StreamingFullFileProcessor(csv.toString(), graphs).getQuantiles());
+    }
+
+    private static void assertQuantilesEqual(String expectedCsv, ArcSpeedQuantiles actual) throws IOException {
+        StringWriter out = new StringWriter();
+        actual.writeCsv(out);
+        assertEquals(expectedCsv, out.toString());
+    }
+
+    private static Map<Integer, RouteGraph> graphs() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        return new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE)).buildGraphs();
+    }
+}
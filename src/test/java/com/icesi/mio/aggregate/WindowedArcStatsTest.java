@@ -0,0 +1,54 @@
+package com.icesi.mio.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para WindowedArcStats
+ */
+class WindowedArcStatsTest {
+
+    @Test
+    void testSlidingAndTumblingWindows() {
+        // buckets de 60s, 16 minutos de historia
+        WindowedArcStats w = new WindowedArcStats(4, 60, 16);
+        long t0 = 1_000_200L; // múltiplo de 300
+        w.add(1, 10.0, t0);           // minuto 0
+        w.add(1, 20.0, t0 + 4 * 60);  // minuto 4
+        w.add(2, 30.0, t0 + 6 * 60);  // minuto 6
+        w.add(1, 40.0, t0 + 9 * 60 + 59);
+
+        DenseArcStats last5 = w.sliding(t0 + 9 * 60 + 59, 300); // minutos 5..9
+        assertEquals(1, last5.getCount(1));
+        assertEquals(40.0, last5.getSum(1), 0.0);
+        assertEquals(1, last5.getCount(2));
+
+        DenseArcStats last10 = w.sliding(t0 + 9 * 60, 600); // minutos 0..9
+        assertEquals(3, last10.getCount(1));
+        assertEquals(70.0, last10.getSum(1), 0.0);
+
+        // ventana fija [t0, t0+5min) cerrada en t0+9min: sólo minutos 0..4
+        DenseArcStats tumbling = w.tumbling(t0 + 9 * 60, 300);
+        assertEquals(2, tumbling.getCount(1));
+        assertEquals(30.0, tumbling.getSum(1), 0.0);
+        assertEquals(0, tumbling.getCount(2));
+    }
+
+    @Test
+    void testOldBucketsAreRecycled() {
+        WindowedArcStats w = new WindowedArcStats(2, 60, 5);
+        assertEquals(300, w.retentionSeconds());
+        assertTrue(w.add(0, 1.0, 0));
+        assertTrue(w.add(0, 2.0, 300)); // reutiliza el bucket del minuto 0
+        assertFalse(w.add(0, 3.0, 10)); // ya salió del anillo
+
+        DenseArcStats all = w.sliding(300, 300);
+        assertEquals(1, all.getCount(0));
+        assertEquals(2.0, all.getSum(0), 0.0);
+
+        // sin muestras nuevas, las viejas dejan de contar cuando el head avanza
+        w.add(1, 5.0, 10_000);
+        assertEquals(0, w.sliding(10_000, 300).getCount(0));
+    }
+}
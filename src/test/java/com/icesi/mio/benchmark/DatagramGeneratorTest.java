@@ -0,0 +1,98 @@
+package com.icesi.mio.benchmark;
+
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para DatagramGenerator
+ */
+class DatagramGeneratorTest {
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testOutputDoesNotDependOnThreadCount() throws Exception {
+        assertArrayEquals(generate(1, 30_000), generate(3, 30_000));
+    }
+
+    @Test
+    void testRealFormatOrderedByTime() throws Exception {
+        String[] lines = new String(generate(2, 25_000), StandardCharsets.US_ASCII).split("\n");
+        assertEquals(25_000, lines.length);
+
+        int malformed = 0;
+        String lastTime = "";
+        for (String line : lines) {
+            String[] r = line.split(",");
+            if (r.length != 12 || r[4].isEmpty() || !r[7].matches("\\d+") || r[10].length() != 19) {
+                malformed++;
+                continue;
+            }
+            assertTrue(r[10].compareTo(lastTime) >= 0, line);
+            lastTime = r[10];
+            assertEquals("27-MAY-19", r[1]);
+        }
+        // malformedRate = 0.01
+        assertTrue(malformed > 100 && malformed < 500, "malformed=" + malformed);
+    }
+
+    @Test
+    void testSpeedsComeOutInConfiguredRange() throws Exception {
+        Path csv = tempDir.resolve("generated.csv");
+        new DatagramGenerator(graphs, 7L).buses(100).speedKph(20, 30).gpsNoiseMeters(5).threads(2)
+                .generate(csv, 50_000);
+
+        Map<Long, Double> avg = new StreamingFullFileProcessor(csv.toString(), graphs).process();
+        assertTrue(avg.size() > 100);
+        double[] v = avg.values().stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        double median = v[v.length / 2];
+        assertTrue(median > 17 && median < 35, "median=" + median + " " + Arrays.toString(Arrays.copyOf(v, 10)));
+    }
+
+    @Test
+    void testRejectsConfigurationsWithoutRows() {
+        assertThrows(IllegalArgumentException.class, () -> new DatagramGenerator(graphs, 1L).buses(0));
+        // un reporte cada ~11 días en ventanas de 1 s: casi todas las ventanas quedan vacías
+        DatagramGenerator sparse = new DatagramGenerator(graphs, 1L).buses(1).reportInterval(1_000_000, 1_000_000)
+                .windowSeconds(1).threads(1);
+        assertThrows(IllegalStateException.class, () -> sparse.generate(new ByteArrayOutputStream(), 10));
+    }
+
+    private static byte[] generate(int threads, long rows) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = new DatagramGenerator(graphs, 42L).buses(200).malformedRate(0.01).threads(threads)
+                .windowSeconds(300).generate(out, rows);
+        assertEquals(rows, written);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,90 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.parser.DatagramRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para ColumnarDatagramPartition
+ */
+class ColumnarDatagramPartitionTest {
+
+    @Test
+    void testColumnsSurviveChunkGrowth() {
+        ColumnarDatagramPartition part = new ColumnarDatagramPartition(3);
+        int n = ColumnarDatagramPartition.CHUNK_ROWS * 2 + 17;
+        DatagramRow row = new DatagramRow();
+        for (int i = 0; i < n; i++) {
+            fill(row, 5000 + i % 300, 1_558_987_200L + i, i % 7 != 0);
+            part.add(row);
+        }
+
+        assertEquals(3, part.getId());
+        assertEquals(n, part.size());
+        assertEquals(300, part.busCount());
+        for (int i = 0; i < n; i += 997) {
+            assertEquals(5000 + i % 300, part.busId(part.busCode(i)));
+            assertEquals(1_558_987_200L + i, part.epochSecond(i));
+            assertEquals(34_000_000 + i, part.latE7(i));
+            assertEquals(-765_000_000 - i, part.lonE7(i));
+            assertEquals(131, part.lineId(i));
+            assertEquals(i % 7 != 0, part.has(i, DatagramRow.TIME_VALID));
+        }
+        assertTrue(part.estimatedHeapBytes() < (long) n * 40);
+    }
+
+    @Test
+    void testSortedByBusAndTimeIsStable() {
+        Random rnd = new Random(9);
+        ColumnarDatagramPartition part = new ColumnarDatagramPartition(0);
+        DatagramRow row = new DatagramRow();
+        int n = 20_000;
+        for (int i = 0; i < n; i++) {
+            // pocas marcas de tiempo distintas para forzar empates
+            fill(row, rnd.nextInt(40), 1_558_987_200L + rnd.nextInt(50), rnd.nextInt(20) != 0);
+            part.add(row);
+        }
+
+        int[] order = part.sortedByBusAndTime();
+        assertEquals(n, order.length);
+        boolean[] seen = new boolean[n];
+        for (int k = 0; k < n; k++) {
+            assertFalse(seen[order[k]]);
+            seen[order[k]] = true;
+            if (k == 0) continue;
+            int a = order[k - 1];
+            int b = order[k];
+            assertTrue(part.busCode(a) <= part.busCode(b));
+            if (part.busCode(a) != part.busCode(b)) continue;
+            long ta = part.has(a, DatagramRow.TIME_VALID) ? part.epochSecond(a) : Long.MIN_VALUE;
+            long tb = part.has(b, DatagramRow.TIME_VALID) ? part.epochSecond(b) : Long.MIN_VALUE;
+            assertTrue(ta < tb || (ta == tb && a < b), "k=" + k);
+        }
+    }
+
+    @Test
+    void testCoordinatesOutsideIntRangeAreInvalid() {
+        ColumnarDatagramPartition part = new ColumnarDatagramPartition(0);
+        DatagramRow row = new DatagramRow();
+        fill(row, 1, 0L, true);
+        row.latE7 = 3_000_000_000L;
+        part.add(row);
+        assertFalse(part.has(0, DatagramRow.COORDS_VALID));
+        assertTrue(part.has(0, DatagramRow.TIME_VALID));
+    }
+
+    private static void fill(DatagramRow row, long busId, long epoch, boolean timeValid) {
+        row.complete = true;
+        row.busId = busId;
+        row.coordsValid = true;
+        row.latE7 = 34_000_000 + (epoch - 1_558_987_200L);
+        row.lonE7 = -765_000_000 - (epoch - 1_558_987_200L);
+        row.timeValid = timeValid;
+        row.epochSecond = epoch;
+        row.lineIdValid = true;
+        row.lineId = 131;
+    }
+}
@@ -0,0 +1,61 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import com.icesi.mio.worker.SyntheticDatagrams;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para ColumnarPartitionManager: las particiones columnares por busId
+ * dan los mismos promedios que la pasada secuencial sobre el CSV
+ */
+class ColumnarPartitionManagerTest {
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testColumnarPartitionsMatchStreamingScan() throws Exception {
+        Path csv = tempDir.resolve("columnar.csv");
+        Files.writeString(csv, SyntheticDatagrams.generate(graphs, 20_000, 19L, "\r\n"), StandardCharsets.UTF_8);
+        Map<Long, Double> expected = new StreamingFullFileProcessor(csv.toString(), graphs).process();
+
+        ColumnarPartitionManager cpm = new ColumnarPartitionManager(3, PartitionKey.BUS_ID);
+        assertAveragesEqual(expected, new DistributedComputeCoordinator(cpm, 2, 60).runJob(csv.toString(), graphs));
+        assertEquals(50, cpm.getLastSkew().buses(0) + cpm.getLastSkew().buses(1) + cpm.getLastSkew().buses(2));
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        // el orden de suma entre particiones cambia, sólo se toleran diferencias de redondeo
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arcId=" + e.getKey());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.icesi.mio.distributed;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para ConsistentHashRing y PartitionSkew
+ */
+class ConsistentHashRingTest {
+
+    @Test
+    void testKeysSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(8);
+        long[] rows = new long[8];
+        // busIds reales son enteros consecutivos, el peor caso para un módulo simple
+        for (long busId = 100_000; busId < 200_000; busId++) rows[ring.partitionOf(busId)]++;
+
+        PartitionSkew skew = new PartitionSkew(rows, null);
+        assertEquals(100_000, skew.totalRows());
+        assertTrue(skew.maxOverMean() < 1.15, skew.toString());
+        assertTrue(skew.coefficientOfVariation() < 0.1, skew.toString());
+    }
+
+    @Test
+    void testAddingPartitionMovesFewKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(8);
+        ConsistentHashRing after = new ConsistentHashRing(9);
+        int moved = 0;
+        int keys = 50_000;
+        for (long busId = 0; busId < keys; busId++) {
+            int p = after.partitionOf(busId);
+            if (p != before.partitionOf(busId)) {
+                moved++;
+                // sólo pueden moverse llaves hacia la partición nueva
+                assertEquals(8, p);
+            }
+        }
+        // idealmente 1/9 de las llaves
+        assertTrue(moved < keys * 0.2, "moved=" + moved);
+        assertTrue(moved > 0);
+    }
+
+    @Test
+    void testStringKeysAreStable() {
+        ConsistentHashRing ring = new ConsistentHashRing(5);
+        assertEquals(ring.partitionOf("1234"), new ConsistentHashRing(5).partitionOf("1234"));
+        for (int i = 0; i < 1000; i++) {
+            int p = ring.partitionOf(String.valueOf(i));
+            assertTrue(p >= 0 && p < 5);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(0));
+    }
+
+    @Test
+    void testSkewFromPartitions() {
+        DatagramPartition a = new DatagramPartition(0);
+        DatagramPartition b = new DatagramPartition(1);
+        String[] row = "0,x,1,1,34000000,-765000000,1,131,1,1,2019-05-27 20:14:43,".split(",");
+        for (int i = 0; i < 3; i++) a.addRow((String.join(",", row) + ",77").split(","));
+        b.addRow((String.join(",", row) + ",78").split(","));
+        a.addRow("short,row".split(","));
+
+        PartitionSkew skew = PartitionSkew.of(List.of(a, b));
+        assertEquals(4, skew.rows(0));
+        assertEquals(2, skew.buses(0));
+        assertEquals(1, skew.buses(1));
+        assertEquals(4, skew.maxRows());
+        assertEquals(1, skew.minRows());
+        assertEquals(1.6, skew.maxOverMean(), 1e-12);
+    }
+}
@@ -0,0 +1,80 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import com.icesi.mio.worker.SyntheticDatagrams;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para DistributedComputeCoordinator: los modos de ejecución dan el
+ * mismo resultado y el timeout cancela los workers en lugar de retornar parciales
+ */
+class DistributedComputeCoordinatorTest {
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testVirtualThreadModeMatchesPlatformThreads() throws Exception {
+        Path csv = tempDir.resolve("virtual.csv");
+        Files.writeString(csv, SyntheticDatagrams.generate(graphs, 20_000, 23L, "\n"), StandardCharsets.UTF_8);
+        Map<Long, Double> expected = new StreamingFullFileProcessor(csv.toString(), graphs).process();
+
+        // con hilos virtuales (o su reemplazo en JDK < 21) el emparejamiento va al pool de CPU
+        StreamingPartitionManager byBus = new StreamingPartitionManager(4, 64, 2, PartitionKey.BUS_ID);
+        DistributedComputeCoordinator dcc = new DistributedComputeCoordinator(byBus, 60);
+        dcc.setExecutionMode(ExecutionMode.VIRTUAL_THREADS);
+        assertAveragesEqual(expected, dcc.runJob(csv.toString(), graphs));
+    }
+
+    @Test
+    void testTimeoutCancelsWorkersInsteadOfReturningPartialResults() throws Exception {
+        Path csv = tempDir.resolve("timeout.csv");
+        Files.writeString(csv, SyntheticDatagrams.generate(graphs, 20_000, 29L, "\n"), StandardCharsets.UTF_8);
+
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            DistributedComputeCoordinator dcc = new DistributedComputeCoordinator(
+                    new StreamingPartitionManager(2, 64, 2, PartitionKey.BUS_ID), 0);
+            dcc.setExecutionMode(mode);
+            assertThrows(TimeoutException.class, () -> dcc.runJob(csv.toString(), graphs));
+        }
+        DistributedComputeCoordinator batch = new DistributedComputeCoordinator(
+                new ColumnarPartitionManager(2, PartitionKey.BUS_ID), 2, 0);
+        assertThrows(TimeoutException.class, () -> batch.runJob(csv.toString(), graphs));
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        // el orden de suma entre particiones cambia, sólo se toleran diferencias de redondeo
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arcId=" + e.getKey());
+        }
+    }
+}
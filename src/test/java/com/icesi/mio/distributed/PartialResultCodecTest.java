@@ -0,0 +1,144 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.aggregate.DenseArcStats;
+import com.icesi.mio.util.Lz4Block;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para PartialResultCodec y Lz4Block
+ */
+class PartialResultCodecTest {
+
+    @Test
+    void testRoundTripWithAndWithoutCompression() throws IOException {
+        PartialResult pr = randomResult(7, 7000, 3000, 11L);
+        for (boolean compress : new boolean[]{false, true}) {
+            byte[] frame = PartialResultCodec.encode(pr, compress);
+            assertSameStats(pr, PartialResultCodec.decode(ByteBuffer.wrap(frame)));
+            assertSameStats(pr, PartialResultCodec.read(new ByteArrayInputStream(frame)));
+            // 3000 arcos: unos KB, no los 7000 * 16 bytes de los arreglos densos
+            assertTrue(frame.length < 3000 * 12, "bytes=" + frame.length);
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            PartialResultCodec.write(pr, compress, stream);
+            assertArrayEquals(frame, stream.toByteArray());
+            ByteBuffer buffer = ByteBuffer.allocate(frame.length + 5).position(5);
+            PartialResultCodec.encode(pr, compress, buffer);
+            assertArrayEquals(frame, Arrays.copyOfRange(buffer.array(), 5, buffer.position()));
+            assertThrows(BufferOverflowException.class,
+                    () -> PartialResultCodec.encode(pr, compress, ByteBuffer.allocate(frame.length - 1)));
+        }
+        assertSameStats(new PartialResult(-3, 0), PartialResultCodec.decode(ByteBuffer.wrap(
+                PartialResultCodec.encode(new PartialResult(-3, 0), true))));
+    }
+
+    @Test
+    void testWeightedSamplesKeepTheirWeights() throws IOException {
+        PartialResult pr = randomResult(4, 2000, 500, 13L);
+        Random rnd = new Random(5);
+        for (int i = 0; i < 300; i++) pr.addSample(rnd.nextInt(2000), 5 + rnd.nextDouble() * 50, 0L, rnd.nextDouble());
+        assertTrue(pr.getArcStats().isWeighted());
+        for (boolean compress : new boolean[]{false, true}) {
+            byte[] frame = PartialResultCodec.encode(pr, compress);
+            assertEquals(PartialResultCodec.FLAG_WEIGHTED, frame[5] & PartialResultCodec.FLAG_WEIGHTED);
+            PartialResult decoded = PartialResultCodec.decode(ByteBuffer.wrap(frame));
+            assertSameStats(pr, decoded);
+            assertEquals(pr.getArcStats().toAverages(), decoded.getArcStats().toAverages());
+        }
+        // sin muestras ponderadas no se escriben pesos
+        assertEquals(0, PartialResultCodec.encode(randomResult(4, 2000, 500, 13L), false)[5]);
+    }
+
+    @Test
+    void testStreamingEncodeDecodeInSmallChunks() throws IOException {
+        PartialResult a = randomResult(1, 5000, 2000, 3L);
+        PartialResult b = randomResult(2, 5000, 10, 4L);
+        PartialResultCodec.Decoder dec = PartialResultCodec.decoder();
+        for (boolean compress : new boolean[]{true, false}) {
+            for (PartialResult pr : new PartialResult[]{a, b}) {
+                PartialResultCodec.Encoder enc = PartialResultCodec.encoder(pr, compress);
+                ByteBuffer chunk = ByteBuffer.allocate(7);
+                PartialResult decoded = null;
+                boolean done = false;
+                while (!done) {
+                    chunk.clear();
+                    done = enc.encode(chunk);
+                    chunk.flip();
+                    PartialResult r = dec.decode(chunk);
+                    assertFalse(chunk.hasRemaining());
+                    if (r != null) decoded = r;
+                }
+                assertNotNull(decoded);
+                assertSameStats(pr, decoded);
+            }
+        }
+    }
+
+    @Test
+    void testCorruptFramesAreRejected() {
+        byte[] frame = PartialResultCodec.encode(randomResult(0, 100, 50, 1L), true);
+        byte[] badMagic = frame.clone();
+        badMagic[0] ^= 1;
+        assertThrows(IOException.class, () -> PartialResultCodec.decode(ByteBuffer.wrap(badMagic)));
+        byte[] badVersion = frame.clone();
+        badVersion[4] = 99;
+        assertThrows(IOException.class, () -> PartialResultCodec.decode(ByteBuffer.wrap(badVersion)));
+        assertThrows(IOException.class, () -> PartialResultCodec.decode(ByteBuffer.wrap(Arrays.copyOf(frame, frame.length - 3))));
+        byte[] badPayload = frame.clone();
+        for (int i = 14; i < badPayload.length; i += 3) badPayload[i] ^= 0x5A;
+        assertThrows(IOException.class, () -> PartialResultCodec.decode(ByteBuffer.wrap(badPayload)));
+    }
+
+    @Test
+    void testLz4RoundTrip() throws IOException {
+        Random rnd = new Random(9);
+        byte[] random = new byte[100_000];
+        rnd.nextBytes(random);
+        byte[] text = "1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27 20:14:43,777\n".repeat(2000).getBytes(StandardCharsets.UTF_8);
+        byte[] zeros = new byte[70_000];
+        for (byte[] src : new byte[][]{new byte[0], new byte[]{1, 2, 3}, random, text, zeros,
+                Arrays.copyOf(text, 13), Arrays.copyOf(text, 300)}) {
+            byte[] dst = new byte[Lz4Block.maxCompressedLength(src.length)];
+            int n = Lz4Block.compress(src, 0, src.length, dst, 0);
+            byte[] back = new byte[src.length];
+            Lz4Block.decompress(dst, 0, n, back, 0, back.length);
+            assertArrayEquals(src, back);
+        }
+        byte[] dst = new byte[Lz4Block.maxCompressedLength(text.length)];
+        assertTrue(Lz4Block.compress(text, 0, text.length, dst, 0) < text.length / 20);
+    }
+
+    private static PartialResult randomResult(int partitionId, int arcCount, int sampledArcs, long seed) {
+        Random rnd = new Random(seed);
+        PartialResult pr = new PartialResult(partitionId, arcCount);
+        for (int i = 0; i < sampledArcs; i++) {
+            int arcId = rnd.nextInt(arcCount);
+            int samples = 1 + rnd.nextInt(20);
+            for (int s = 0; s < samples; s++) pr.addSample(arcId, 5 + rnd.nextDouble() * 50);
+        }
+        return pr;
+    }
+
+    private static void assertSameStats(PartialResult expected, PartialResult actual) {
+        assertEquals(expected.getPartitionId(), actual.getPartitionId());
+        DenseArcStats e = expected.getArcStats();
+        DenseArcStats a = actual.getArcStats();
+        assertEquals(e.size(), a.size());
+        e.forEach((arcId, sum, count) -> {
+            assertEquals(count, a.getCount(arcId));
+            assertEquals(sum, a.getSum(arcId), 0.0);
+            assertEquals(e.getWeight(arcId), a.getWeight(arcId), 0.0);
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.SyntheticDatagrams;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para PartitionManager: particionar por busId da los mismos promedios
+ * que una sola partición, con las filas repartidas de forma pareja
+ */
+class PartitionManagerTest {
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testBusPartitioningMatchesSinglePartition() throws Exception {
+        Path csv = tempDir.resolve("bybus.csv");
+        Files.writeString(csv, SyntheticDatagrams.generate(graphs, 20_000, 13L, "\n"), StandardCharsets.UTF_8);
+
+        Map<Long, Double> expected = new DistributedComputeCoordinator(
+                new PartitionManager(1), 1, 60).runJob(csv.toString(), graphs);
+        PartitionManager byBus = new PartitionManager(4, PartitionKey.BUS_ID);
+        Map<Long, Double> actual = new DistributedComputeCoordinator(byBus, 2, 60).runJob(csv.toString(), graphs);
+
+        assertFalse(expected.isEmpty());
+        assertAveragesEqual(expected, actual);
+        assertTrue(byBus.getLastSkew().maxOverMean() < 2.0, byBus.getLastSkew().toString());
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        // el orden de suma entre particiones cambia, sólo se toleran diferencias de redondeo
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arcId=" + e.getKey());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.benchmark.DatagramGenerator;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.util.VarInts;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para RemoteCoordinator / RemoteWorker sobre localhost
+ */
+class RemoteCoordinatorTest {
+
+    private static final String TOKEN = "token-de-prueba";
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testWorkerJvmsMatchSequentialScan() throws Exception {
+        Path csv = tempDir.resolve("datagrams.csv");
+        new DatagramGenerator(graphs, 31L).buses(60).generate(csv, 20_000);
+        // reportes cada 20-40 s: la pausa máxima descarta parte de los pares en los workers y al unir rangos
+        Map<Long, Double> expected = new StreamingFullFileProcessor(csv.toString(), graphs).withMaxGap(30).process();
+
+        List<Process> workers = new ArrayList<>();
+        try (RemoteCoordinator coordinator = new RemoteCoordinator(0, TOKEN, 2, 3, 120)) {
+            assertTrue(coordinator.getBindAddress().isLoopbackAddress());
+            coordinator.setMaxGapSeconds(30);
+            for (int i = 0; i < 2; i++) workers.add(RemoteCoordinator.startLocalWorker(coordinator.getPort(), TOKEN));
+            assertAveragesEqual(expected, coordinator.runJob(csv.toString(), Constants.DEFAULT_DATA_DIR));
+            for (Process p : workers) {
+                assertTrue(p.waitFor(30, TimeUnit.SECONDS));
+                assertEquals(0, p.exitValue());
+            }
+        } finally {
+            for (Process p : workers) p.destroyForcibly();
+        }
+    }
+
+    @Test
+    void testRangeOfFailedWorkerIsReassigned() throws Exception {
+        Path csv = tempDir.resolve("datagrams.csv");
+        new DatagramGenerator(graphs, 37L).buses(40).generate(csv, 10_000);
+        Map<Long, Double> expected = new StreamingFullFileProcessor(csv.toString(), graphs).process();
+
+        try (RemoteCoordinator coordinator = new RemoteCoordinator(0, TOKEN, 2, 2, 120)) {
+            int port = coordinator.getPort();
+            CountDownLatch crashed = new CountDownLatch(1);
+            // los fallos dentro de los hilos se revisan después de join()
+            Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+            // worker que acepta un rango y se cae sin responder
+            Thread flaky = new Thread(() -> {
+                try (Socket s = new Socket("localhost", port)) {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                    DataOutputStream out = new DataOutputStream(s.getOutputStream());
+                    handshake(in, out, TOKEN);
+                    WireProtocol.expect(in, WireProtocol.GRAPH);
+                    for (int i = 0; i < 3; i++) WireProtocol.readBlob(in);
+                    in.readUTF();
+                    VarInts.read(in);
+                    out.writeByte(WireProtocol.READY);
+                    VarInts.write(out, new ArcMatcher(graphs).getArcCount());
+                    WireProtocol.expect(in, WireProtocol.TASK);
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    crashed.countDown();
+                }
+            });
+            Thread healthy = new Thread(() -> {
+                try {
+                    if (!crashed.await(60, TimeUnit.SECONDS)) throw new AssertionError("el worker inestable no terminó");
+                    RemoteWorker.run("localhost", port, TOKEN);
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            flaky.start();
+            healthy.start();
+            assertAveragesEqual(expected, coordinator.runJob(csv.toString(), Constants.DEFAULT_DATA_DIR));
+            flaky.join(30_000);
+            healthy.join(30_000);
+            assertFalse(healthy.isAlive());
+            assertTrue(errors.isEmpty(), () -> "fallos en los workers: " + errors);
+        }
+    }
+
+    @Test
+    void testWorkerWithWrongTokenGetsNoGraph() throws Exception {
+        Path csv = tempDir.resolve("datagrams.csv");
+        new DatagramGenerator(graphs, 41L).buses(20).generate(csv, 2_000);
+        Map<Long, Double> expected = new StreamingFullFileProcessor(csv.toString(), graphs).process();
+
+        try (RemoteCoordinator coordinator = new RemoteCoordinator(0, TOKEN, 1, 1, 120)) {
+            int port = coordinator.getPort();
+            Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+            Thread intruder = new Thread(() -> {
+                try (Socket s = new Socket("localhost", port)) {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                    handshake(in, new DataOutputStream(s.getOutputStream()), "otro-token");
+                    // el coordinador cierra la conexión sin enviar el grafo
+                    assertEquals(-1, in.read());
+                    RemoteWorker.run("localhost", port, TOKEN);
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            intruder.start();
+            assertAveragesEqual(expected, coordinator.runJob(csv.toString(), Constants.DEFAULT_DATA_DIR));
+            intruder.join(30_000);
+            assertFalse(intruder.isAlive());
+            assertTrue(errors.isEmpty(), () -> "fallos en el cliente: " + errors);
+        }
+    }
+
+    private static void handshake(DataInputStream in, DataOutputStream out, String token) throws Exception {
+        out.writeByte(WireProtocol.HELLO);
+        out.writeInt(WireProtocol.MAGIC);
+        out.writeByte(WireProtocol.VERSION);
+        out.flush();
+        WireProtocol.expect(in, WireProtocol.CHALLENGE);
+        byte[] nonce = new byte[WireProtocol.NONCE_BYTES];
+        in.readFully(nonce);
+        out.writeByte(WireProtocol.AUTH);
+        out.write(WireProtocol.sign(token, nonce));
+        out.flush();
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arco " + e.getKey());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.icesi.mio.distributed;
+
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import com.icesi.mio.worker.SyntheticDatagrams;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para StreamingPartitionManager: con colas acotadas y por busId debe
+ * dar los mismos promedios que una pasada secuencial
+ */
+class StreamingPartitionManagerTest {
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testStreamingPartitionerMatchesSequentialScan() throws Exception {
+        Path csv = tempDir.resolve("streaming.csv");
+        Files.writeString(csv, SyntheticDatagrams.generate(graphs, 20_000, 7L, "\n"), StandardCharsets.UTF_8);
+        Map<Long, Double> expected = new StreamingFullFileProcessor(csv.toString(), graphs).process();
+
+        // lotes y colas mínimos para que el productor se bloquee constantemente
+        DistributedComputeCoordinator single = new DistributedComputeCoordinator(
+                new StreamingPartitionManager(1, 64, 2), 60);
+        assertEquals(expected, single.runJob(csv.toString(), graphs));
+
+        // por busId cada bus queda entero en una partición: mismos pares que en una sola pasada
+        StreamingPartitionManager byBus = new StreamingPartitionManager(3, 64, 2, PartitionKey.BUS_ID);
+        assertAveragesEqual(expected, new DistributedComputeCoordinator(byBus, 60).runJob(csv.toString(), graphs));
+        assertEquals(20_000, byBus.getLastSkew().totalRows() + malformedRows(csv));
+    }
+
+    private static long malformedRows(Path csv) throws IOException {
+        return Files.readAllLines(csv).stream().filter(l -> l.split(",").length < 12).count();
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        // el orden de suma entre particiones cambia, sólo se toleran diferencias de redondeo
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arcId=" + e.getKey());
+        }
+    }
+}
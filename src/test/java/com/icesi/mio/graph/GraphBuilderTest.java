@@ -100,4 +100,32 @@ class GraphBuilderTest {
         assertEquals(102, arcsIda.get(1).getFromStop().getStopId());
         assertEquals(103, arcsIda.get(1).getToStop().getStopId());
     }
+
+    @Test
+    void testArcsHaveDenseStableOrdinals() {
+        Map<Integer, RouteGraph> graphs = graphBuilder.buildGraphs();
+        ArcTable table = graphBuilder.getArcTable();
+
+        assertEquals(4, table.size());
+        Set<Integer> ids = new HashSet<>();
+        for (RouteGraph g : graphs.values()) {
+            for (Arc a : g.getArcsIda()) ids.add(a.getId());
+            for (Arc a : g.getArcsVuelta()) ids.add(a.getId());
+        }
+        assertEquals(Set.of(0, 1, 2, 3), ids);
+        for (int id = 0; id < table.size(); id++) {
+            assertEquals(id, table.get(id).getId());
+        }
+
+        // IDA antes que VUELTA, en orden de secuencia
+        assertEquals(0, graphs.get(1).getArcsIda().get(0).getId());
+        assertEquals(3, graphs.get(1).getArcsVuelta().get(1).getId());
+
+        // Reconstruir produce los mismos ordinales
+        GraphBuilder other = new GraphBuilder(lines, stops, lineStops);
+        other.buildGraphs();
+        for (int id = 0; id < table.size(); id++) {
+            assertEquals(table.get(id), other.getArcTable().get(id));
+        }
+    }
 }
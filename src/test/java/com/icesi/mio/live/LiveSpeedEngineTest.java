@@ -0,0 +1,173 @@
+package com.icesi.mio.live;
+
+import com.icesi.mio.benchmark.DatagramGenerator;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para LiveSpeedEngine: con un retraso menor al permitido, el orden de
+ * llegada no cambia el resultado, y el histórico se combina como prior
+ */
+class LiveSpeedEngineTest {
+
+    private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int DAY = 86_400;
+
+    private static Map<Integer, RouteGraph> graphs;
+    private static ArcMatcher matcher;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+        matcher = new ArcMatcher(graphs);
+    }
+
+    // sin filas mal formadas: el motor descarta las filas sin datagramDate válido,
+    // mientras que el procesamiento en orden de archivo las usa para cortar el par
+    @Test
+    void testReplayMatchesBatchProcessing() throws Exception {
+        Path csv = tempDir.resolve("stream.csv");
+        new DatagramGenerator(graphs, 5L).buses(100).malformedRate(0).generate(csv, 10_000);
+        Map<Long, Double> expected = new StreamingFullFileProcessor(csv.toString(), graphs).process();
+        assertFalse(expected.isEmpty());
+
+        LiveSpeedEngine engine = dayWindowEngine(new HashMap<>());
+        new FileTailSource(csv, engine, false).run();
+        assertEquals(0, engine.getLate());
+        assertAveragesEqual(expected, engine.snapshot(0).speeds(DAY));
+    }
+
+    @Test
+    void testOutOfOrderWithinLatenessMatchesSortedInput() throws Exception {
+        Path csv = tempDir.resolve("stream.csv");
+        new DatagramGenerator(graphs, 9L).buses(100).malformedRate(0).generate(csv, 10_000);
+        Map<Long, Double> expected = new StreamingFullFileProcessor(csv.toString(), graphs).process();
+
+        // desordenar: cada línea se atrasa hasta 90s (menos que los 120s permitidos)
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        Random rnd = new Random(3);
+        List<long[]> keys = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            keys.add(new long[]{epochOf(lines.get(i)) + rnd.nextInt(90), i});
+        }
+        keys.sort(Comparator.<long[]>comparingLong(k -> k[0]).thenComparingLong(k -> k[1]));
+        StringBuilder sb = new StringBuilder();
+        for (long[] k : keys) sb.append(lines.get((int) k[1])).append('\n');
+        Path shuffled = tempDir.resolve("shuffled.csv");
+        Files.writeString(shuffled, sb, StandardCharsets.UTF_8);
+
+        LiveSpeedEngine engine = dayWindowEngine(new HashMap<>());
+        new FileTailSource(shuffled, engine, false).run();
+        assertEquals(0, engine.getLate());
+        assertAveragesEqual(expected, engine.snapshot(0).speeds(DAY));
+    }
+
+    @Test
+    void testHistoricalAveragesAreBlendedAsPrior() throws Exception {
+        Path csv = tempDir.resolve("stream.csv");
+        new DatagramGenerator(graphs, 7L).buses(50).generate(csv, 5_000);
+
+        Map<Long, Double> historical = new HashMap<>();
+        for (long arcId = 0; arcId < matcher.getArcCount(); arcId++) historical.put(arcId, 40.0);
+        LiveSpeedEngine engine = dayWindowEngine(historical).priorWeight(5.0);
+        new FileTailSource(csv, engine, false).run();
+
+        LiveSnapshot s = engine.snapshot(0);
+        Map<Long, Double> speeds = s.speeds(DAY);
+        assertEquals(matcher.getArcCount(), speeds.size());
+        int[] sampled = {0};
+        s.window(DAY).forEach((arcId, sum, count) -> {
+            sampled[0]++;
+            assertEquals((5.0 * 40.0 + sum) / (5.0 + count), speeds.get((long) arcId), 1e-9);
+        });
+        assertTrue(sampled[0] > 0);
+        assertTrue(sampled[0] < matcher.getArcCount());
+        for (long arcId = 0; arcId < matcher.getArcCount(); arcId++) {
+            if (s.window(DAY).getCount((int) arcId) == 0) assertEquals(40.0, speeds.get(arcId), 0.0);
+        }
+        // el mapa histórico no se modifica
+        assertTrue(historical.values().stream().allMatch(v -> v == 40.0));
+    }
+
+    @Test
+    void testLateDatagramsAreDroppedAndPublishIsThrottled() {
+        List<LiveSnapshot> published = new ArrayList<>();
+        LiveSpeedEngine engine = new LiveSpeedEngine(matcher, new HashMap<>())
+                .allowedLatenessSeconds(120)
+                .publishIntervalMillis(1000)
+                .listener(published::add);
+
+        LineFeeder feeder = new LineFeeder(engine);
+        byte[] data = ("1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27 20:30:00,777\n"
+                + "1,x,2,3,34000100,-765000100,1,131,1,1,2019-05-27 20:29:00,778\n" // dentro del retraso
+                + "1,x,2,3,34000100,-765000100,1,131,1,1,2019-05-27 20:27:00,779\n" // tardío
+                + "1,x,2,3,34000100,-765000100,1,131,1,1,2019-05-27 20:28:").getBytes(StandardCharsets.UTF_8);
+        feeder.feed(data, 0, data.length);
+        assertEquals(2, engine.getAccepted());
+        assertEquals(1, engine.getLate());
+        assertEquals(2, engine.getBuffered());
+
+        assertNotNull(engine.tick(10_000));
+        assertNull(engine.tick(10_500));
+        assertNotNull(engine.tick(11_000));
+        assertEquals(2, published.size());
+
+        // el resto de la línea llega en otra lectura
+        byte[] rest = "30,780\n".getBytes(StandardCharsets.UTF_8);
+        feeder.feed(rest, 0, rest.length);
+        assertEquals(3, engine.getAccepted());
+        engine.flush(12_000);
+        assertEquals(0, engine.getBuffered());
+        assertEquals(epochOf("0,1,2,3,4,5,6,7,8,9,2019-05-27 20:30:00"), engine.getWatermark());
+    }
+
+    private static LiveSpeedEngine dayWindowEngine(Map<Long, Double> historical) {
+        return new LiveSpeedEngine(matcher, historical)
+                .bucketSeconds(3600)
+                .windows(DAY)
+                .allowedLatenessSeconds(120);
+    }
+
+    private static long epochOf(String line) {
+        return LocalDateTime.parse(line.split(",")[10], TS_FMT).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arco " + e.getKey());
+        }
+    }
+}
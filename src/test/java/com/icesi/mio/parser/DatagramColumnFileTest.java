@@ -0,0 +1,183 @@
+package com.icesi.mio.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para DatagramColumnWriter / DatagramColumnFile: las filas deben quedar
+ * ordenadas de forma estable por (busId, datagramDate), con estadísticas e
+ * índice consistentes, sin importar cuántas corridas use el ordenamiento externo
+ */
+class DatagramColumnFileTest {
+
+    private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRowsSortedByBusAndTimeWithStatsAndIndex() throws IOException {
+        Path csv = tempDir.resolve("datagrams.csv");
+        List<String> lines = unorderedDatagrams(6_000, 7L);
+        Files.write(csv, lines, StandardCharsets.UTF_8);
+
+        // varias corridas temporales y una sola corrida en memoria: mismo archivo
+        Path merged = tempDir.resolve("merged.mioc");
+        Path inMemory = tempDir.resolve("memory.mioc");
+        long rows = new DatagramColumnWriter().blockRows(256).runRows(700).convert(csv, merged);
+        assertEquals(rows, new DatagramColumnWriter().blockRows(256).convert(csv, inMemory));
+        assertEquals(-1L, Files.mismatch(merged, inMemory));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(3, files.count(), "quedaron corridas temporales");
+        }
+
+        List<DatagramRow> expected = expectedOrder(lines);
+        DatagramColumnFile file = DatagramColumnFile.open(merged);
+        assertTrue(DatagramColumnFile.isColumnFile(merged));
+        assertFalse(DatagramColumnFile.isColumnFile(csv));
+        assertEquals(expected.size(), file.rowCount());
+        assertEquals(lines.size(), file.sourceLines());
+        assertEquals((expected.size() + 255) / 256, file.blockCount());
+
+        DatagramRow row = new DatagramRow();
+        int r = 0;
+        for (int b = 0; b < file.blockCount(); b++) {
+            DatagramColumnFile.Block block = file.block(b);
+            for (int i = 0; i < block.rows(); i++, r++) {
+                block.get(i, row);
+                DatagramRow e = expected.get(r);
+                assertEquals(e.busId, row.busId, "fila " + r);
+                assertEquals(e.flags(), row.flags(), "fila " + r);
+                assertEquals(e.epochSecond, row.epochSecond, "fila " + r);
+                assertEquals(e.latE7, row.latE7, "fila " + r);
+                assertEquals(e.lonE7, row.lonE7, "fila " + r);
+                assertEquals(e.lineId, row.lineId, "fila " + r);
+
+                assertTrue(row.busId >= file.minBusId(b) && row.busId <= file.maxBusId(b));
+                if (row.timeValid) {
+                    assertTrue(row.epochSecond >= file.minEpochSecond(b) && row.epochSecond <= file.maxEpochSecond(b));
+                }
+                if (row.lineIdValid) {
+                    assertTrue(row.lineId >= file.minLineId(b) && row.lineId <= file.maxLineId(b));
+                }
+            }
+        }
+
+        long next = 0;
+        for (int e = 0; e < file.indexSize(); e++) {
+            assertEquals(next, file.indexFirstRow(e));
+            for (long k = file.indexFirstRow(e); k < file.indexFirstRow(e) + file.indexRows(e); k++) {
+                DatagramRow x = expected.get((int) k);
+                assertEquals(x.busId, file.indexBusId(e));
+                assertEquals(x.timeValid ? Math.floorDiv(x.epochSecond, 86_400L) : DatagramColumnFile.INVALID_DAY, file.indexDay(e));
+            }
+            next += file.indexRows(e);
+        }
+        assertEquals(file.rowCount(), next);
+
+        long[] bounds = file.splitByBus(4);
+        assertEquals(0, bounds[0]);
+        assertEquals(file.rowCount(), bounds[4]);
+        for (int k = 1; k < 4; k++) {
+            assertTrue(bounds[k] >= bounds[k - 1]);
+            if (bounds[k] > 0 && bounds[k] < file.rowCount()) {
+                assertNotEquals(expected.get((int) bounds[k] - 1).busId, expected.get((int) bounds[k]).busId);
+            }
+        }
+    }
+
+    @Test
+    void testRejectsTruncatedOrForeignFiles() throws IOException {
+        Path csv = tempDir.resolve("small.csv");
+        Files.write(csv, unorderedDatagrams(500, 3L), StandardCharsets.UTF_8);
+        Path out = tempDir.resolve("small.mioc");
+        new DatagramColumnWriter().blockRows(64).convert(csv, out);
+
+        byte[] bytes = Files.readAllBytes(out);
+        Path truncated = tempDir.resolve("truncated.mioc");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> DatagramColumnFile.open(truncated));
+        assertThrows(IOException.class, () -> DatagramColumnFile.open(csv));
+    }
+
+    @Test
+    void testDetectsChangedSource() throws IOException {
+        Path csv = tempDir.resolve("source.csv");
+        Files.write(csv, unorderedDatagrams(300, 5L), StandardCharsets.UTF_8);
+        Path out = tempDir.resolve("source.mioc");
+        new DatagramColumnWriter().blockRows(64).convert(csv, out);
+
+        DatagramColumnFile file = DatagramColumnFile.open(out);
+        assertEquals(Files.size(csv), file.sourceBytes());
+        assertTrue(file.isConversionOf(csv));
+
+        // mismo tamaño, otra fecha de modificación
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(file.sourceModifiedMillis() + 60_000));
+        assertFalse(file.isConversionOf(csv));
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(file.sourceModifiedMillis()));
+        assertTrue(file.isConversionOf(csv));
+
+        // datos agregados al final: cambia el tamaño aunque se restaure la fecha
+        Files.write(csv, unorderedDatagrams(10, 6L), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(file.sourceModifiedMillis()));
+        assertFalse(file.isConversionOf(csv));
+    }
+
+    /**
+     * Filas del CSV decodificadas, en el orden estable que debe tener el archivo.
+     */
+    private static List<DatagramRow> expectedOrder(List<String> lines) {
+        DatagramTokenizer tokenizer = new DatagramTokenizer();
+        List<DatagramRow> rows = new ArrayList<>();
+        for (String line : lines) {
+            byte[] b = line.getBytes(StandardCharsets.UTF_8);
+            DatagramRow row = new DatagramRow();
+            if (tokenizer.parse(ByteBuffer.wrap(b), 0, b.length, row)) rows.add(row);
+        }
+        rows.sort(Comparator.<DatagramRow>comparingLong(r -> r.busId)
+                .thenComparingLong(r -> r.timeValid ? r.epochSecond : Long.MIN_VALUE));
+        return rows;
+    }
+
+    /**
+     * Datagramas de 40 buses en orden aleatorio (no temporal), con fechas,
+     * coordenadas y lineId dañados, filas incompletas y busIds no numéricos.
+     */
+    private static List<String> unorderedDatagrams(int rows, long seed) {
+        Random rnd = new Random(seed);
+        LocalDateTime base = LocalDateTime.of(2019, 5, 27, 0, 0);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            int bus = rnd.nextInt(40);
+            String busId = bus == 0 ? "0042" : bus == 1 ? "bus-x" : String.valueOf(1000 + bus);
+            // tres días, con muchas fechas repetidas para probar la estabilidad
+            String date = rnd.nextInt(50) == 0 ? "sin-fecha"
+                    : base.plusSeconds(rnd.nextInt(3 * 86_400) / 600 * 600).format(TS_FMT);
+            String lat = rnd.nextInt(50) == 0 ? "abc" : String.valueOf(34_000_000 + rnd.nextInt(100_000));
+            String line = rnd.nextInt(50) == 0 ? "x" : String.valueOf(100 + rnd.nextInt(30));
+            if (rnd.nextInt(100) == 0) {
+                lines.add("0,27-MAY-19,500,1000," + lat);
+            } else {
+                lines.add("0,27-MAY-19,500,1000," + lat + ",-765000000,1," + line + ",100,0," + date + "," + busId);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,130 @@
+package com.icesi.mio.parser;
+
+import com.icesi.mio.benchmark.DatagramGenerator;
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.Arc;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.util.Constants;
+import com.icesi.mio.worker.ArcMatcher;
+import com.icesi.mio.worker.BusPairAccumulator;
+import com.icesi.mio.worker.StreamingFullFileProcessor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para DatagramQuery: con el filtro, las pasadas secuencial, por rangos
+ * y columnar conservan exactamente las muestras de las filas que pasan
+ */
+class DatagramQueryTest {
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testLineQueryKeepsExactlyTheLineSamples() throws Exception {
+        Path csv = tempDir.resolve("lines.csv");
+        // turnos cortos y muchos cambios de línea: hay pares entre datagramas de dos líneas
+        new DatagramGenerator(graphs, 43L).buses(60).lineSwitches(1800, 0.5).malformedRate(0).generate(csv, 40_000);
+        StreamingFullFileProcessor proc = new StreamingFullFileProcessor(csv.toString(), graphs);
+        Map<Long, Double> full = proc.process();
+
+        int lineId = -1;
+        Map<Long, Double> expected = new HashMap<>();
+        for (Map.Entry<Integer, RouteGraph> g : new TreeMap<>(graphs).entrySet()) {
+            Map<Long, Double> onLine = new HashMap<>();
+            List<Arc> arcs = new ArrayList<>(g.getValue().getArcsIda());
+            arcs.addAll(g.getValue().getArcsVuelta());
+            for (Arc a : arcs) {
+                Double v = full.get((long) a.getId());
+                if (v != null) onLine.put((long) a.getId(), v);
+            }
+            if (onLine.size() > expected.size()) {
+                lineId = g.getKey();
+                expected = onLine;
+            }
+        }
+        assertFalse(expected.isEmpty());
+
+        // mismas muestras en el mismo orden: promedios idénticos a los del recorrido completo
+        proc.withQuery(DatagramQuery.all().lineIds(lineId));
+        assertEquals(expected, proc.process());
+        assertAveragesEqual(expected, proc.processParallel(3));
+
+        // bloques pequeños para que las estadísticas descarten bloques entre filas de la línea
+        Path columns = tempDir.resolve("lines.mioc");
+        new DatagramColumnWriter().blockRows(500).convert(csv, columns);
+        assertAveragesEqual(expected, proc.processColumnFile(columns));
+        assertAveragesEqual(expected, proc.processColumnFile(columns, 2));
+    }
+
+    @Test
+    void testBusAndDateQueryMatchesFilteredSamples() throws Exception {
+        Path csv = tempDir.resolve("buses.csv");
+        long start = 1_558_933_200L;
+        new DatagramGenerator(graphs, 47L).buses(60).startEpochSecond(start).malformedRate(0).generate(csv, 40_000);
+        List<String> lines = Files.readAllLines(csv);
+        long[] buses = lines.stream().limit(200).mapToLong(l -> Long.parseLong(l.split(",")[11])).distinct().limit(5).toArray();
+        long from = start + 3600;
+        long to = start + 3 * 3600;
+        DatagramQuery query = DatagramQuery.all().busIds(buses).between(from, to);
+
+        // referencia: sólo las filas de esos buses, y las muestras con datagramDate del actual en [from, to)
+        ArcMatcher matcher = new ArcMatcher(graphs);
+        PartialResult reference = new PartialResult(-1, matcher.getArcCount());
+        BusPairAccumulator acc = new BusPairAccumulator(matcher, (arcId, speedKph, epochSecond, weight) -> {
+            if (epochSecond >= from && epochSecond < to) reference.addSample(arcId, speedKph);
+        });
+        DatagramTokenizer tokenizer = new DatagramTokenizer();
+        DatagramRow row = new DatagramRow();
+        for (String line : lines) {
+            byte[] b = line.getBytes(StandardCharsets.UTF_8);
+            if (tokenizer.parse(ByteBuffer.wrap(b), 0, b.length, row) && query.acceptsBus(row.busId)) acc.accept(row);
+        }
+        Map<Long, Double> expected = reference.getArcStats().toAverages();
+        assertFalse(expected.isEmpty());
+
+        StreamingFullFileProcessor proc = new StreamingFullFileProcessor(csv.toString(), graphs).withQuery(query);
+        assertEquals(expected, proc.process());
+        assertAveragesEqual(expected, proc.processParallel(4));
+
+        Path columns = tempDir.resolve("buses.mioc");
+        new DatagramColumnWriter().blockRows(300).convert(csv, columns);
+        assertAveragesEqual(expected, proc.processColumnFile(columns));
+        assertAveragesEqual(expected, proc.processColumnFile(columns, 3));
+        assertTrue(proc.withQuery(query.between(to, to + 60)).processColumnFile(columns).size() < expected.size());
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        // el orden de suma entre particiones cambia, sólo se toleran diferencias de redondeo
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arcId=" + e.getKey());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.icesi.mio.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para DatagramTokenizer: columnas con la forma habitual y con otros
+ * formatos (espacios, decimales, exponentes, fechas irregulares)
+ */
+class DatagramTokenizerTest {
+
+    private final DatagramTokenizer tokenizer = new DatagramTokenizer();
+
+    @Test
+    void testCanonicalRow() {
+        DatagramRow row = parse("0,27-MAY-19,500,1000,34000000,-765000000,1,131,100,0,2019-05-27 20:14:43,777");
+        assertTrue(row.complete);
+        assertEquals(777L, row.busId);
+        assertTrue(row.coordsValid);
+        assertEquals(34000000L, row.latE7);
+        assertEquals(-765000000L, row.lonE7);
+        assertTrue(row.lineIdValid);
+        assertEquals(131, row.lineId);
+        assertTrue(row.timeValid);
+        assertEquals(epoch(2019, 5, 27, 20, 14, 43), row.epochSecond);
+    }
+
+    @Test
+    void testCoordinatesInOtherNumericFormats() {
+        // espacios, signo, decimal entero y exponente: el mismo entero
+        assertCoordinates(" 34000300 ", "+765000200", 34000300L, 765000200L);
+        assertCoordinates("34000300.0", "-765000200", 34000300L, -765000200L);
+        assertCoordinates("3.40005E7", "-7.650003e8", 34000500L, -765000300L);
+        // no enteros, vacíos o texto: coordenadas inválidas
+        assertInvalidCoordinates("34000300.5", "-765000200");
+        assertInvalidCoordinates("", "-765000200");
+        assertInvalidCoordinates("abc", "-765000200");
+        assertInvalidCoordinates("34000300", "1e19");
+    }
+
+    @Test
+    void testLineIdAndBusId() {
+        DatagramRow row = parse("1,x,2,3,34000000,-765000000,1, 131 ,1,1,2019-05-27 20:15:30,777");
+        assertTrue(row.lineIdValid);
+        assertEquals(131, row.lineId);
+        row = parse("1,x,2,3,34000000,-765000000,1,-1,1,1,2019-05-27 20:15:30,777");
+        assertEquals(-1, row.lineId);
+        assertFalse(parse("1,x,2,3,34000000,-765000000,1,x,1,1,2019-05-27 20:15:30,777").lineIdValid);
+        assertFalse(parse("1,x,2,3,34000000,-765000000,1,131.0,1,1,2019-05-27 20:15:30,777").lineIdValid);
+        assertFalse(parse("1,x,2,3,34000000,-765000000,1,99999999999,1,1,2019-05-27 20:15:30,777").lineIdValid);
+
+        // busIds no canónicos: ids negativos, distintos entre sí y del canónico, estables entre instancias
+        long padded = parse("1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27 20:15:30,0777").busId;
+        long spaced = parse("1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27 20:15:30, 777").busId;
+        assertTrue(padded < 0);
+        assertTrue(spaced < 0);
+        assertNotEquals(padded, spaced);
+        assertEquals(padded, parseWith(new DatagramTokenizer(), "1,x,2,3,4,5,1,131,1,1,x,0777").busId);
+        assertEquals(0L, parse("1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27 20:15:30,0").busId);
+    }
+
+    @Test
+    void testIrregularDatesFollowTheJdkParser() {
+        // fecha inexistente: el parser de la JDK (SMART) la ajusta al último día del mes
+        DatagramRow row = parse("1,x,2,3,34000000,-765000000,1,131,1,1,2019-02-29 20:16:00,778");
+        assertTrue(row.timeValid);
+        assertEquals(epoch(2019, 2, 28, 20, 16, 0), row.epochSecond);
+        assertFalse(parse("1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27 20:16:00.000,778").timeValid);
+        assertFalse(parse("1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27,778").timeValid);
+        assertFalse(parse("1,x,2,3,34000000,-765000000,1,131,1,1, 2019-05-27 20:16:00,778").timeValid);
+    }
+
+    @Test
+    void testColumnCountLikeStringSplit() {
+        // menos de 12 columnas, o las últimas vacías: fila incompleta
+        assertFalse(parse("1,x,2,3,34000600,-765000300").complete);
+        assertFalse(parse("1,x,2,3,34000600,-765000300,1,131,1,1,,").complete);
+        assertFalse(parse("").complete);
+        // columnas de más (también vacías al final) no cambian las 12 primeras
+        DatagramRow row = parse("1,x,2,3,34000700,-765000300,1,131,1,1,2019-05-27 20:17:00,777,extra,");
+        assertTrue(row.complete);
+        assertEquals(777L, row.busId);
+        assertEquals(34000700L, row.latE7);
+    }
+
+    @Test
+    void testQuerySkipsOtherBuses() {
+        DatagramQuery query = DatagramQuery.all().busIds(778L);
+        byte[] b = bytes("1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27 20:15:30,777").array();
+        DatagramRow row = new DatagramRow();
+        assertFalse(tokenizer.parse(ByteBuffer.wrap(b), 0, b.length, row, query));
+        assertFalse(row.complete);
+        b = bytes("1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27 20:15:30,778").array();
+        assertTrue(tokenizer.parse(ByteBuffer.wrap(b), 0, b.length, row, query));
+        assertTrue(row.coordsValid);
+    }
+
+    private void assertCoordinates(String lat, String lon, long latE7, long lonE7) {
+        DatagramRow row = parse("1,x,2,3," + lat + "," + lon + ",1,131,1,1,2019-05-27 20:15:30,777");
+        assertTrue(row.coordsValid, lat + " / " + lon);
+        assertEquals(latE7, row.latE7, lat);
+        assertEquals(lonE7, row.lonE7, lon);
+    }
+
+    private void assertInvalidCoordinates(String lat, String lon) {
+        assertFalse(parse("1,x,2,3," + lat + "," + lon + ",1,131,1,1,2019-05-27 20:15:30,777").coordsValid, lat + " / " + lon);
+    }
+
+    private DatagramRow parse(String line) {
+        return parseWith(tokenizer, line);
+    }
+
+    private static DatagramRow parseWith(DatagramTokenizer tokenizer, String line) {
+        ByteBuffer buf = bytes(line);
+        DatagramRow row = new DatagramRow();
+        tokenizer.parse(buf, 0, buf.limit(), row);
+        return row;
+    }
+
+    private static ByteBuffer bytes(String line) {
+        return ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long epoch(int year, int month, int day, int hour, int minute, int second) {
+        return LocalDateTime.of(year, month, day, hour, minute, second).toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,54 @@
+package com.icesi.mio.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para TimestampDecoder: debe coincidir con LocalDateTime.parse
+ */
+class TimestampDecoderTest {
+
+    private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Test
+    void testMatchesJdkOnRandomTimestamps() {
+        Random rnd = new Random(42);
+        LocalDateTime base = LocalDateTime.of(1999, 1, 1, 0, 0);
+        for (int i = 0; i < 100_000; i++) {
+            LocalDateTime t = base.plusSeconds((long) (rnd.nextDouble() * 40L * 365 * 86400));
+            String s = t.format(TS_FMT);
+            assertEquals(t.toEpochSecond(ZoneOffset.UTC), TimestampDecoder.decode(s), s);
+        }
+    }
+
+    @Test
+    void testIrregularValuesFallBackToJdk() {
+        String[] values = {
+                "2019-02-29 20:16:00", // el parser de la JDK (SMART) lo ajusta al 28
+                "2020-02-29 23:59:59",
+                "2019-05-27 24:00:00",
+                "2019-13-01 00:00:00",
+                "2019-05-27 20:16:00.000",
+                "2019-05-27",
+                "2019-05-27T20:16:00",
+                " 2019-05-27 20:16:00",
+                "abcd-ef-gh ij:kl:mn",
+                ""
+        };
+        for (String s : values) {
+            long expected;
+            try {
+                expected = LocalDateTime.parse(s, TS_FMT).toEpochSecond(ZoneOffset.UTC);
+            } catch (Exception e) {
+                expected = TimestampDecoder.INVALID;
+            }
+            assertEquals(expected, TimestampDecoder.decode(s), s);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.aggregate.DenseArcStats;
+import com.icesi.mio.benchmark.DatagramGenerator;
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.Arc;
+import com.icesi.mio.model.ArcGeometry;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.DatagramColumnWriter;
+import com.icesi.mio.parser.DatagramQuery;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para ArcMatcher: el índice espacial debe devolver el mismo arco que el
+ * recorrido lineal, y el seguimiento por bus (tracking, alongRoute) debe dar
+ * lo mismo en la pasada secuencial y sobre el archivo columnar
+ */
+class ArcMatcherTest {
+
+    private static GraphBuilder graphBuilder;
+    private static Map<Integer, RouteGraph> graphs;
+    private static ArcMatcher matcher;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        graphBuilder = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = graphBuilder.buildGraphs();
+        matcher = new ArcMatcher(graphs, graphBuilder.getArcTable(), graphBuilder.getArcGeometry());
+    }
+
+    @Test
+    void testUsesGraphBuilderTableAndGeometry() {
+        assertSame(graphBuilder.getArcTable(), matcher.getArcTable());
+        assertSame(graphBuilder.getArcGeometry(), matcher.getGeometry());
+        assertSame(matcher.getGeometry(), matcher.alongRoute().getGeometry());
+
+        // mismo resultado que un matcher que construye la tabla y la geometría por su cuenta
+        ArcMatcher own = new ArcMatcher(graphs);
+        Random rnd = new Random(5);
+        List<Integer> lineIds = new ArrayList<>(graphs.keySet());
+        for (int i = 0; i < 5_000; i++) {
+            int lineId = lineIds.get(rnd.nextInt(lineIds.size()));
+            double lat = 3.30 + rnd.nextDouble() * 0.20;
+            double lon = -76.60 + rnd.nextDouble() * 0.15;
+            assertEquals(own.match(lineId, lat, lon), matcher.match(lineId, lat, lon));
+        }
+    }
+
+    @Test
+    void testIndexMatchesBruteForceOnRandomPoints() {
+        Random rnd = new Random(42);
+        List<Integer> lineIds = new ArrayList<>(graphs.keySet());
+        int matched = 0;
+        for (int i = 0; i < 50_000; i++) {
+            int lineId = lineIds.get(rnd.nextInt(lineIds.size()));
+            // Caja que cubre Cali con holgura
+            double lat = 3.30 + rnd.nextDouble() * 0.20;
+            double lon = -76.60 + rnd.nextDouble() * 0.15;
+            long expected = ArcMatcher.matchArc(lineId, lat, lon, graphs, matcher.getGeometry());
+            assertEquals(expected, matcher.match(lineId, lat, lon), "lineId=" + lineId + " lat=" + lat + " lon=" + lon);
+            if (expected != -1) matched++;
+        }
+        assertTrue(matched > 0);
+    }
+
+    @Test
+    void testIndexMatchesBruteForceNearArcs() {
+        Random rnd = new Random(7);
+        for (RouteGraph rg : graphs.values()) {
+            List<Arc> arcs = new ArrayList<>(rg.getArcsIda());
+            arcs.addAll(rg.getArcsVuelta());
+            for (Arc a : arcs) {
+                // puntos sobre el segmento y desplazados hasta ~300 m (cruza el umbral de 200 m)
+                double t = rnd.nextDouble();
+                double lat = a.getFromStop().getDecimalLat() + t * (a.getToStop().getDecimalLat() - a.getFromStop().getDecimalLat());
+                double lon = a.getFromStop().getDecimalLong() + t * (a.getToStop().getDecimalLong() - a.getFromStop().getDecimalLong());
+                lat += (rnd.nextDouble() - 0.5) * 0.0054;
+                lon += (rnd.nextDouble() - 0.5) * 0.0054;
+                int lineId = rg.getLine().getLineId();
+                assertEquals(ArcMatcher.matchArc(lineId, lat, lon, graphs, matcher.getGeometry()), matcher.match(lineId, lat, lon));
+            }
+        }
+    }
+
+    @Test
+    void testProjectedGeometryMatchesLocalProjection() {
+        ArcGeometry geometry = matcher.getGeometry();
+        assertEquals(matcher.getArcCount(), geometry.size());
+        Random rnd = new Random(13);
+        for (RouteGraph rg : graphs.values()) {
+            for (Arc a : rg.getArcsIda()) {
+                double lat = a.getFromStop().getDecimalLat() + (rnd.nextDouble() - 0.5) * 0.002;
+                double lon = a.getFromStop().getDecimalLong() + (rnd.nextDouble() - 0.5) * 0.002;
+                double local = ArcMatcher.pointToSegmentDistanceMeters(lat, lon, a.getFromStop().getDecimalLat(),
+                        a.getFromStop().getDecimalLong(), a.getToStop().getDecimalLat(), a.getToStop().getDecimalLong());
+                double projected = Math.sqrt(geometry.distanceSquared(a.getId(), geometry.x(lon), geometry.y(lat)));
+                assertEquals(local, projected, 1e-3 * local + 1e-6);
+
+                // junto a una parada compartida la proyección por arco rompe el empate al azar:
+                // el arco elegido puede cambiar, pero no su distancia
+                int lineId = rg.getLine().getLineId();
+                Arc reference = matcher.getArcTable().get(ArcMatcher.matchArc(lineId, lat, lon, graphs));
+                Arc indexed = matcher.getArcTable().get(matcher.match(lineId, lat, lon));
+                assertEquals(distance(reference, lat, lon), distance(indexed, lat, lon), 1e-3 * distance(reference, lat, lon) + 1e-6);
+            }
+        }
+    }
+
+    private static double distance(Arc a, double lat, double lon) {
+        return ArcMatcher.pointToSegmentDistanceMeters(lat, lon, a.getFromStop().getDecimalLat(),
+                a.getFromStop().getDecimalLong(), a.getToStop().getDecimalLat(), a.getToStop().getDecimalLong());
+    }
+
+    @Test
+    void testDistanceKernelsPickTheSameArc() {
+        // con -Pvector (y -Dmio.simd=true en surefire) compara el kernel del Vector API; si no, sólo el escalar
+        ArcDistanceKernel scalar = ArcDistanceKernel.scalar();
+        ArcDistanceKernel vector = ArcDistanceKernel.vector();
+        ArcDistanceKernel kernel = vector != null ? vector : scalar;
+        assertEquals(Boolean.getBoolean("mio.simd") && vector != null ? vector.name() : scalar.name(),
+                ArcDistanceKernel.select().name());
+
+        ArcGeometry g = matcher.getGeometry();
+        int n = g.size();
+        double[] fromX = new double[n], fromY = new double[n], dx = new double[n], dy = new double[n], inv = new double[n];
+        Random rnd = new Random(17);
+        for (int k = 0; k < n; k++) {
+            // algunos arcos repetidos: empates exactos que deben resolverse hacia la menor posición
+            int id = rnd.nextInt(8) == 0 && k > 0 ? rnd.nextInt(k) : k;
+            fromX[k] = g.fromX(id);
+            fromY[k] = g.fromY(id);
+            dx[k] = g.dx(id);
+            dy[k] = g.dy(id);
+            inv[k] = g.inverseLengthSquared(id);
+        }
+        for (int i = 0; i < 5_000; i++) {
+            int from = rnd.nextInt(n), to = Math.min(n, from + rnd.nextInt(i % 2 == 0 ? 40 : 400));
+            double x = (rnd.nextDouble() - 0.5) * 20_000, y = (rnd.nextDouble() - 0.5) * 20_000;
+            assertEquals(scalar.nearest(fromX, fromY, dx, dy, inv, from, to, x, y),
+                    kernel.nearest(fromX, fromY, dx, dy, inv, from, to, x, y), kernel.name() + " [" + from + ", " + to + ")");
+        }
+        assertEquals(-1, kernel.nearest(fromX, fromY, dx, dy, inv, 5, 5, 0, 0));
+    }
+
+    @Test
+    void testUnknownLineAndFarPoint() {
+        assertEquals(-1, matcher.match(-999, 3.4, -76.5));
+        int lineId = graphs.keySet().iterator().next();
+        assertEquals(-1, matcher.match(lineId, 0.0, 0.0));
+        assertEquals(-1, matcher.match(lineId, Double.NaN, Double.NaN));
+    }
+
+    @Test
+    void testTrackingFollowsDirectionOfTravel() {
+        ArcMatcher tracking = matcher.tracking();
+        assertTrue(tracking.isTracking());
+        assertFalse(matcher.isTracking());
+        assertSame(tracking, tracking.tracking());
+
+        // buses que recorren cada sentido de cada ruta, con datagramas cada ~1/3 de arco y ruido GPS
+        Random rnd = new Random(7);
+        double noise = 15.0 / 111_320;
+        int pairs = 0, wrongStateless = 0, wrongTracking = 0, offSequence = 0;
+        for (RouteGraph rg : graphs.values()) {
+            int lineId = rg.getLine().getLineId();
+            for (List<Arc> path : List.of(rg.getArcsIda(), rg.getArcsVuelta())) {
+                int last = -1;
+                double prevLat = Double.NaN, prevLon = Double.NaN;
+                Arc prevArc = null;
+                for (Arc a : path) {
+                    if (prevArc != null && prevArc.getToStop().getStopId() != a.getFromStop().getStopId()) {
+                        // otra variante: empieza otro recorrido
+                        last = -1;
+                        prevLat = Double.NaN;
+                    }
+                    prevArc = a;
+                    for (double t = 0.15; t < 1.0; t += 0.35) {
+                        double lat = a.getFromStop().getDecimalLat() + t * (a.getToStop().getDecimalLat() - a.getFromStop().getDecimalLat())
+                                + (rnd.nextDouble() - 0.5) * noise;
+                        double lon = a.getFromStop().getDecimalLong() + t * (a.getToStop().getDecimalLong() - a.getFromStop().getDecimalLong())
+                                + (rnd.nextDouble() - 0.5) * noise;
+                        if (!Double.isNaN(prevLat)) {
+                            int s = matcher.match(lineId, (prevLat + lat) / 2, (prevLon + lon) / 2);
+                            int k = tracking.matchAlong(lineId, prevLat, prevLon, lat, lon, last);
+                            pairs++;
+                            if (s >= 0 && matcher.getArcTable().get(s).getOrientation() != a.getOrientation()) wrongStateless++;
+                            if (k >= 0 && matcher.getArcTable().get(k).getOrientation() != a.getOrientation()) wrongTracking++;
+                            if (k < 0) offSequence++;
+                            last = k;
+                        }
+                        prevLat = lat;
+                        prevLon = lon;
+                    }
+                }
+            }
+        }
+        String counts = "pares=" + pairs + " sentidoErradoSinEstado=" + wrongStateless
+                + " sentidoErradoSeguimiento=" + wrongTracking + " sinArco=" + offSequence;
+        assertTrue(pairs > 10_000, counts);
+        assertTrue(wrongTracking * 5 < wrongStateless, "el seguimiento debe evitar los saltos de sentido: " + counts);
+    }
+
+    @Test
+    void testAlongRouteSpeedFollowsTheRoute() {
+        ArcMatcher along = matcher.alongRoute();
+        assertTrue(along.isAlongRoute());
+        assertTrue(along.isTracking());
+        assertTrue(along.tracking().isAlongRoute());
+        assertFalse(matcher.tracking().isAlongRoute());
+        RouteSpeed route = new RouteSpeed(along);
+
+        // buses a 30 km/h exactos por cada variante, con datagramas cada 30 s (~250 m, varios arcos por par)
+        double kph = 30.0, dt = 30.0, step = kph / 3.6 * dt;
+        int pairs = 0, closeAlong = 0, closeStraight = 0, multiArc = 0;
+        for (RouteGraph rg : graphs.values()) {
+            int lineId = rg.getLine().getLineId();
+            for (List<Arc> path : List.of(rg.getArcsIda(), rg.getArcsVuelta())) {
+                List<List<Arc>> variants = new ArrayList<>();
+                Arc prevArc = null;
+                for (Arc a : path) {
+                    if (prevArc == null || prevArc.getToStop().getStopId() != a.getFromStop().getStopId()) {
+                        variants.add(new ArrayList<>());
+                    }
+                    variants.get(variants.size() - 1).add(a);
+                    prevArc = a;
+                }
+                for (List<Arc> variant : variants) {
+                    int last = -1, k = 0;
+                    double start = 0, prevLat = Double.NaN, prevLon = Double.NaN;
+                    for (double s = 1.0; ; s += step) {
+                        Arc a = variant.get(k);
+                        double len = BusPairAccumulator.haversine(a.getFromStop().getDecimalLat(), a.getFromStop().getDecimalLong(),
+                                a.getToStop().getDecimalLat(), a.getToStop().getDecimalLong());
+                        while (s > start + len && k + 1 < variant.size()) {
+                            start += len;
+                            a = variant.get(++k);
+                            len = BusPairAccumulator.haversine(a.getFromStop().getDecimalLat(), a.getFromStop().getDecimalLong(),
+                                    a.getToStop().getDecimalLat(), a.getToStop().getDecimalLong());
+                        }
+                        if (s > start + len) break;
+                        double t = len == 0 ? 0 : (s - start) / len;
+                        double lat = a.getFromStop().getDecimalLat() + t * (a.getToStop().getDecimalLat() - a.getFromStop().getDecimalLat());
+                        double lon = a.getFromStop().getDecimalLong() + t * (a.getToStop().getDecimalLong() - a.getFromStop().getDecimalLong());
+                        if (!Double.isNaN(prevLat)) {
+                            int n = route.pair(lineId, prevLat, prevLon, lat, lon, dt, last);
+                            last = route.lastArc();
+                            pairs++;
+                            if (n > 0 && Math.abs(route.speedKph() - kph) < 0.02 * kph) closeAlong++;
+                            if (n > 1) multiArc++;
+                            double straight = BusPairAccumulator.haversine(prevLat, prevLon, lat, lon) / dt * 3.6;
+                            if (Math.abs(straight - kph) < 0.02 * kph) closeStraight++;
+                        }
+                        prevLat = lat;
+                        prevLon = lon;
+                    }
+                }
+            }
+        }
+        String counts = "pares=" + pairs + " exactosRuta=" + closeAlong
+                + " exactosLineaRecta=" + closeStraight + " variosArcos=" + multiArc;
+        assertTrue(pairs > 5_000, counts);
+        assertTrue(closeAlong > 0.9 * pairs, "la distancia por la ruta debe recuperar la velocidad: " + counts);
+        assertTrue(closeAlong > closeStraight, "la línea recta subestima en las curvas: " + counts);
+        assertTrue(multiArc > pairs / 4, "los pares que cruzan paradas se reparten entre arcos: " + counts);
+    }
+
+    @Test
+    void testAlongRouteWeightsFollowMetersCrossed() {
+        RoutePolylines routes = matcher.alongRoute().routes();
+        // dos arcos seguidos de una cadena, el segundo de más de 400 m
+        Arc first = null, second = null;
+        for (RouteGraph rg : graphs.values()) {
+            List<Arc> path = rg.getArcsIda();
+            for (int k = 0; k + 1 < path.size() && second == null; k++) {
+                Arc a = path.get(k), b = path.get(k + 1);
+                if (a.getToStop().getStopId() == b.getFromStop().getStopId()
+                        && routes.length(a.getId()) > 10 && routes.length(b.getId()) > 410) {
+                    first = a;
+                    second = b;
+                }
+            }
+            if (second != null) break;
+        }
+        assertNotNull(second);
+
+        // un par que toca 1,5 m del primer arco y recorre 400 m del segundo
+        double boundary = routes.position(first.getId(), second.getFromStop().getDecimalLat(), second.getFromStop().getDecimalLong());
+        int[] arcs = new int[routes.arcsBetween(first.getId(), second.getId())];
+        double[] weights = new double[arcs.length];
+        int n = routes.crossed(first.getId(), boundary - 1.5, second.getId(), boundary + 400,
+                RouteSpeed.MIN_CROSSED_METERS, arcs, weights);
+        assertEquals(2, n);
+        assertEquals(first.getId(), arcs[0]);
+        assertEquals(second.getId(), arcs[1]);
+        assertEquals(1.5 / 401.5, weights[0], 1e-6);
+        assertEquals(400 / 401.5, weights[1], 1e-6);
+
+        // con un par a 10 km/h recorrido completo en el primer arco, el roce a 30 km/h casi no mueve su promedio
+        PartialResult result = new PartialResult(0, matcher.getArcCount());
+        result.addSample(first.getId(), 10.0, 0L, 1.0);
+        for (int k = 0; k < n; k++) result.addSample(arcs[k], 30.0, 0L, weights[k]);
+        DenseArcStats stats = result.getArcStats();
+        assertEquals(2, stats.getCount(first.getId()));
+        assertEquals(1.0 + weights[0], stats.getWeight(first.getId()), 1e-12);
+        assertEquals((10.0 + 30.0 * weights[0]) / (1.0 + weights[0]), stats.getAverage(first.getId()), 1e-9);
+        assertEquals(30.0, stats.getAverage(second.getId()), 1e-9);
+    }
+
+    @Test
+    void testRouteChainsSplitAtVariants() {
+        RoutePolylines routes = matcher.alongRoute().routes();
+        // el primer arco de cada variante empieza su propia cadena, aunque la
+        // variante anterior termine en su parada de origen
+        int boundaries = 0, connected = 0;
+        for (RouteGraph rg : graphs.values()) {
+            for (List<Arc> oriented : List.of(rg.getArcsIda(), rg.getArcsVuelta())) {
+                for (int k = 1; k < oriented.size(); k++) {
+                    Arc a = oriented.get(k - 1), b = oriented.get(k);
+                    if (a.getVariant().equals(b.getVariant())) continue;
+                    boundaries++;
+                    if (a.getToStop().getStopId() == b.getFromStop().getStopId()) connected++;
+                    double start = routes.position(b.getId(), b.getFromStop().getDecimalLat(), b.getFromStop().getDecimalLong());
+                    assertEquals(0.0, start, 1e-6, b.toString());
+                }
+            }
+        }
+        assertTrue(connected > 0, "variantes=" + boundaries + " conectadas=" + connected);
+    }
+
+    @Test
+    void testRouteDistanceIsExactPerBus() throws Exception {
+        Path csv = tempDir.resolve("route.csv");
+        new DatagramGenerator(graphs, 61L).buses(40).malformedRate(0).generate(csv, 30_000);
+        Map<Long, Double> straight = new StreamingFullFileProcessor(csv.toString(), graphs).withTrajectoryMatching().process();
+        StreamingFullFileProcessor proc = new StreamingFullFileProcessor(csv.toString(), graphs).withRouteDistance();
+        Map<Long, Double> full = proc.process();
+        // cada par reparte su velocidad entre los arcos que recorre
+        assertTrue(full.size() >= straight.size());
+
+        Path columns = tempDir.resolve("route.mioc");
+        new DatagramColumnWriter().blockRows(400).convert(csv, columns);
+        assertAveragesEqual(full, proc.processColumnFile(columns));
+        assertAveragesEqual(full, proc.processColumnFile(columns, 3));
+    }
+
+    @Test
+    void testTrajectoryMatchingIsExactPerBus() throws Exception {
+        Path csv = tempDir.resolve("trajectory.csv");
+        new DatagramGenerator(graphs, 59L).buses(40).lineSwitches(1800, 0.3).malformedRate(0).generate(csv, 30_000);
+        StreamingFullFileProcessor proc = new StreamingFullFileProcessor(csv.toString(), graphs).withTrajectoryMatching();
+        Map<Long, Double> full = proc.process();
+        assertFalse(full.isEmpty());
+
+        // cada bus se recorre completo en un solo rango: mismo último arco que en la pasada secuencial
+        Path columns = tempDir.resolve("trajectory.mioc");
+        new DatagramColumnWriter().blockRows(400).convert(csv, columns);
+        assertAveragesEqual(full, proc.processColumnFile(columns));
+        assertAveragesEqual(full, proc.processColumnFile(columns, 3));
+        // los rangos del CSV empezarían sin el último arco de cada bus: se rechazan
+        assertThrows(IllegalStateException.class, () -> proc.processParallel(3));
+        assertThrows(IllegalArgumentException.class, () -> new RangeStitcher(new ArcMatcher(graphs).tracking()));
+
+        // el filtro no cambia el seguimiento: resultado completo restringido a la línea
+        RouteGraph route = graphs.values().stream()
+                .filter(g -> g.getArcsIda().stream().anyMatch(a -> full.containsKey((long) a.getId())))
+                .findFirst().orElseThrow();
+        Map<Long, Double> expected = new HashMap<>();
+        List<Arc> arcs = new ArrayList<>(route.getArcsIda());
+        arcs.addAll(route.getArcsVuelta());
+        for (Arc a : arcs) {
+            Double v = full.get((long) a.getId());
+            if (v != null) expected.put((long) a.getId(), v);
+        }
+        proc.withQuery(DatagramQuery.all().lineIds(route.getLine().getLineId()));
+        assertEquals(expected, proc.process());
+        assertAveragesEqual(expected, proc.processColumnFile(columns, 2));
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        // el orden de suma entre particiones cambia, sólo se toleran diferencias de redondeo
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arcId=" + e.getKey());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.benchmark.DatagramGenerator;
+import com.icesi.mio.distributed.ColumnarPartitionManager;
+import com.icesi.mio.distributed.DatagramPartition;
+import com.icesi.mio.distributed.DistributedComputeCoordinator;
+import com.icesi.mio.distributed.PartitionKey;
+import com.icesi.mio.distributed.PartitionManager;
+import com.icesi.mio.distributed.StreamingPartitionManager;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.ByteLineReader;
+import com.icesi.mio.parser.DatagramColumnWriter;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para BusPairAccumulator: los pares separados por más de la pausa
+ * máxima no dan muestras en ningún modo, y sacar los buses inactivos no cambia
+ * el resultado
+ */
+class BusPairAccumulatorTest {
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testLongGapsGiveNoSamplesAndIdleBusesAreEvicted() throws Exception {
+        // los mismos buses en dos turnos separados por la noche
+        long start = 1_558_933_200L;
+        Path day1 = tempDir.resolve("day1.csv");
+        Path day2 = tempDir.resolve("day2.csv");
+        new DatagramGenerator(graphs, 67L).buses(40).malformedRate(0).startEpochSecond(start).generate(day1, 10_000);
+        new DatagramGenerator(graphs, 67L).buses(40).malformedRate(0).startEpochSecond(start + 86_400).generate(day2, 10_000);
+        Path both = tempDir.resolve("both.csv");
+        Files.write(both, Files.readAllBytes(day1));
+        Files.write(both, Files.readAllBytes(day2), StandardOpenOption.APPEND);
+
+        ArcMatcher matcher = new ArcMatcher(graphs);
+        long separate = samples(scan(new RangeScan(-1, false, matcher), day1))
+                + samples(scan(new RangeScan(-1, false, matcher), day2));
+        // sin límite, el primer datagrama de cada bus al día siguiente forma un par con el último de la víspera
+        ScanOptions unbounded = new ScanOptions(matcher).withMaxGapSeconds(Long.MAX_VALUE);
+        assertTrue(samples(scan(new RangeScan(-1, false, unbounded), both)) > separate);
+        // con la pausa máxima por defecto, no
+        RangeScan bounded = scan(new RangeScan(-1, false, matcher), both);
+        assertEquals(separate, samples(bounded));
+
+        // sacar los buses inactivos al terminar el primer turno no cambia ninguna muestra
+        RangeScan evicting = scan(new RangeScan(-1, false, matcher), day1);
+        assertEquals(40, evicting.busCount());
+        assertEquals(40, evicting.pairs.evictIdle(start + 86_400));
+        assertEquals(0, evicting.busCount());
+        scan(evicting, day2);
+        assertEquals(40, evicting.busCount());
+        assertEquals(bounded.getPartial().getArcStats().toAverages(), evicting.getPartial().getArcStats().toAverages());
+
+        // todas las pasadas y todos los modos descartan los mismos pares
+        StreamingFullFileProcessor proc = new StreamingFullFileProcessor(both.toString(), graphs);
+        Map<Long, Double> expected = proc.process();
+        assertEquals(bounded.getPartial().getArcStats().toAverages(), expected);
+        assertAveragesEqual(expected, proc.processParallel(3));
+        Path cp = tempDir.resolve("gap.ckpt");
+        assertEquals(expected, proc.processWithCheckpoints(cp, 4096));
+        Path columns = tempDir.resolve("gap.mioc");
+        new DatagramColumnWriter().blockRows(1000).convert(both, columns);
+        assertAveragesEqual(expected, proc.processColumnFile(columns, 3));
+        assertAveragesEqual(expected, new DistributedComputeCoordinator(
+                new ColumnarPartitionManager(3, PartitionKey.BUS_ID), 2, 60).runJob(both.toString(), graphs));
+        assertAveragesEqual(expected, new DistributedComputeCoordinator(
+                new StreamingPartitionManager(3, 64, 2, PartitionKey.BUS_ID), 60).runJob(both.toString(), graphs));
+        Path withHeader = tempDir.resolve("gap-header.csv");
+        Files.write(withHeader, ("header\n" + Files.readString(both)).getBytes(StandardCharsets.UTF_8));
+        DatagramPartition part = new PartitionManager(1).createPartitions(withHeader.toString()).get(0);
+        assertAveragesEqual(expected, new DatagramProcessor(part, graphs).process().getArcStats().toAverages());
+
+        // un límite mayor que la noche vuelve a unir los turnos en todos los modos
+        StreamingFullFileProcessor unlimited = new StreamingFullFileProcessor(both.toString(), graphs).withMaxGap(Long.MAX_VALUE);
+        Map<Long, Double> joined = unlimited.process();
+        assertNotEquals(expected, joined);
+        assertAveragesEqual(joined, unlimited.processColumnFile(columns, 3));
+        DistributedComputeCoordinator dcc = new DistributedComputeCoordinator(
+                new ColumnarPartitionManager(2, PartitionKey.BUS_ID), 2, 60);
+        dcc.setMaxGapSeconds(Long.MAX_VALUE);
+        assertAveragesEqual(joined, dcc.runJob(both.toString(), graphs));
+    }
+
+    private static RangeScan scan(RangeScan scan, Path csv) throws IOException {
+        try (FileChannel ch = FileChannel.open(csv)) {
+            scan.scan(new ByteLineReader(ch, 1 << 16));
+        }
+        return scan;
+    }
+
+    private static long samples(RangeScan scan) {
+        return scan.getPartial().getArcStats().totalCount();
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        // el orden de suma entre particiones cambia, sólo se toleran diferencias de redondeo
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arcId=" + e.getKey());
+        }
+    }
+}
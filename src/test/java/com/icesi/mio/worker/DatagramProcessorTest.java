@@ -0,0 +1,66 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.distributed.DatagramPartition;
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.distributed.PartitionManager;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para DatagramProcessor: una partición en orden temporal por bus da los
+ * mismos promedios que la pasada secuencial sobre el CSV
+ */
+class DatagramProcessorTest {
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testPartitionProcessorMatchesStreamingScan() throws Exception {
+        String datagrams = SyntheticDatagrams.generate(graphs, 20_000, 17L, "\n");
+        Path csv = tempDir.resolve("partition.csv");
+        Files.writeString(csv, datagrams, StandardCharsets.UTF_8);
+        // PartitionManager lee con CSVReader, que salta la primera línea
+        Path withHeader = tempDir.resolve("partition-header.csv");
+        Files.writeString(withHeader, "header\n" + datagrams, StandardCharsets.UTF_8);
+
+        // los datagramas sintéticos ya vienen en orden temporal por bus
+        DatagramPartition part = new PartitionManager(1).createPartitions(withHeader.toString()).get(0);
+        PartialResult pr = new DatagramProcessor(part, graphs).process();
+        assertAveragesEqual(new StreamingFullFileProcessor(csv.toString(), graphs).process(), pr.getArcStats().toAverages());
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        // el orden de suma cambia, sólo se toleran diferencias de redondeo
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arcId=" + e.getKey());
+        }
+    }
+}
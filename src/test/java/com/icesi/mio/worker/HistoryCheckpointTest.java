@@ -0,0 +1,117 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.benchmark.DatagramGenerator;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para los puntos de control (HistoryCheckpoint) de
+ * StreamingFullFileProcessor.processWithCheckpoints: reanudar sobre un archivo
+ * que crece da lo mismo que una sola pasada, y un punto de control de otro
+ * archivo o de otro modo de asignación se rechaza
+ */
+class HistoryCheckpointTest {
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testCheckpointsResumeAppendedFileExactly() throws Exception {
+        String full = SyntheticDatagrams.generate(graphs, 20_000, 23L, "\r\n")
+                + "1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27 20:14:43,0777\r\n"
+                + "1,x,2,3,34000300,-765000200,1,131,1,1,2019-05-27 20:15:30,0777\r\n";
+        byte[] bytes = full.getBytes(StandardCharsets.UTF_8);
+        Path csv = tempDir.resolve("growing.csv");
+        Files.write(csv, bytes);
+        Map<Long, Double> expected = new StreamingFullFileProcessor(csv.toString(), graphs).process();
+
+        Random rnd = new Random(1);
+        int crlf = full.indexOf("\r\n", bytes.length / 3);
+        // cortes arbitrarios: a mitad de línea, entre '\r' y '\n', y al final de una línea
+        int[][] cuts = {
+                {rnd.nextInt(bytes.length / 2), bytes.length / 2 + rnd.nextInt(bytes.length / 2)},
+                {crlf + 1, crlf + 2 + rnd.nextInt(1000)},
+                {crlf + 2, bytes.length - 1}
+        };
+        for (int[] cut : cuts) {
+            Path cp = tempDir.resolve("history.ckpt");
+            Files.deleteIfExists(cp);
+            Map<Long, Double> actual = null;
+            for (int end : new int[]{cut[0], cut[1], bytes.length}) {
+                // el archivo crece y cada pasada sólo lee lo nuevo
+                Files.write(csv, Arrays.copyOf(bytes, end));
+                actual = new StreamingFullFileProcessor(csv.toString(), graphs).processWithCheckpoints(cp, 4096);
+            }
+            assertEquals(expected, actual, "cortes=" + cut[0] + "," + cut[1]);
+        }
+    }
+
+    @Test
+    void testCheckpointsKeepLastArcWithTrajectoryMatching() throws Exception {
+        Path source = tempDir.resolve("tracked-source.csv");
+        new DatagramGenerator(graphs, 71L).buses(40).malformedRate(0).generate(source, 20_000);
+        byte[] bytes = Files.readAllBytes(source);
+        Path csv = tempDir.resolve("tracked.csv");
+        for (boolean alongRoute : new boolean[]{false, true}) {
+            Files.write(csv, bytes);
+            Map<Long, Double> expected = tracked(csv, alongRoute).process();
+            Path cp = tempDir.resolve("tracked.ckpt");
+            Files.deleteIfExists(cp);
+            Map<Long, Double> actual = null;
+            for (int end : new int[]{bytes.length / 3, 2 * bytes.length / 3, bytes.length}) {
+                Files.write(csv, Arrays.copyOf(bytes, end));
+                actual = tracked(csv, alongRoute).processWithCheckpoints(cp, 4096);
+            }
+            assertEquals(expected, actual, "alongRoute=" + alongRoute);
+            // otro modo de asignación no puede continuar este punto de control
+            assertThrows(IOException.class,
+                    () -> new StreamingFullFileProcessor(csv.toString(), graphs).processWithCheckpoints(cp, 4096));
+        }
+    }
+
+    @Test
+    void testCheckpointRejectsDifferentFile() throws Exception {
+        Path csv = tempDir.resolve("a.csv");
+        Path cp = tempDir.resolve("a.ckpt");
+        Files.writeString(csv, SyntheticDatagrams.generate(graphs, 2_000, 29L, "\n"), StandardCharsets.UTF_8);
+        new StreamingFullFileProcessor(csv.toString(), graphs).processWithCheckpoints(cp, 1 << 20);
+
+        Files.writeString(csv, SyntheticDatagrams.generate(graphs, 2_000, 31L, "\n"), StandardCharsets.UTF_8);
+        assertThrows(IOException.class,
+                () -> new StreamingFullFileProcessor(csv.toString(), graphs).processWithCheckpoints(cp, 1 << 20));
+    }
+
+    private static StreamingFullFileProcessor tracked(Path csv, boolean alongRoute) {
+        StreamingFullFileProcessor proc = new StreamingFullFileProcessor(csv.toString(), graphs);
+        return alongRoute ? proc.withRouteDistance() : proc.withTrajectoryMatching();
+    }
+}
@@ -0,0 +1,114 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.distributed.PartialResult;
+import com.icesi.mio.graph.GraphBuilder;
+import com.icesi.mio.model.RouteGraph;
+import com.icesi.mio.parser.DatagramColumnWriter;
+import com.icesi.mio.parser.DatagramRow;
+import com.icesi.mio.parser.DatagramTokenizer;
+import com.icesi.mio.parser.LineParser;
+import com.icesi.mio.parser.LineStopParser;
+import com.icesi.mio.parser.StopParser;
+import com.icesi.mio.util.Constants;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para StreamingFullFileProcessor: las pasadas secuencial, por rangos y
+ * sobre el archivo columnar deben producir los mismos promedios
+ */
+class StreamingFullFileProcessorTest {
+
+    private static Map<Integer, RouteGraph> graphs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        String dataDir = Constants.DEFAULT_DATA_DIR;
+        GraphBuilder gb = new GraphBuilder(
+                new LineParser().parseLines(dataDir + Constants.LINES_FILE),
+                new StopParser().parseStops(dataDir + Constants.STOPS_FILE),
+                new LineStopParser().parseLineStops(dataDir + Constants.LINESTOPS_FILE));
+        graphs = gb.buildGraphs();
+    }
+
+    @Test
+    void testByteLinesMatchJdkLinesOnMalformedRowsAndCrlf() throws IOException {
+        Path csv = tempDir.resolve("malformed.csv");
+        Files.writeString(csv, SyntheticDatagrams.generate(graphs, 5_000, 3L, "\r\n")
+                + "\r\n"
+                + "1,x,2,3,34000000,-765000000,1,131,1,1,2019-05-27 20:14:43,777\r"
+                + "1,x,2,3,abc,-765000000,1,131,1,1,2019-05-27 20:14:50,777\n"
+                + "1,x,2,3,34000100,-765000100,1,131,1,1,2019-05-27 20:15:00,777\n"
+                + "1,x,2,3, 34000300 ,-765000200,1, 131 ,1,1,2019-05-27 20:15:30, 777\n"
+                + "1,x,2,3,3.40005E7,-765000300,1,x,1,1,2019-05-27 20:16:00,777\n"
+                + "1,x,2,3,34000600,-765000300,1,131,1,1,2019-02-29 20:16:00,778\n"
+                + "1,x,2,3,34000600,-765000300,1,131,1,1,2019-05-27 20:16:00.000,778\n"
+                + "1,x,2,3,34000600,-765000300,1,131,1,1,2019-05-27,0778\n"
+                + "1,x,2,3,34000600,-765000300,1,131,1,1,,\n"
+                + "1,x,2,3,34000600,-765000300\n"
+                + "1,x,2,3,34000700,-765000300,1,131,1,1,2019-05-27 20:17:00,777,extra,",
+                StandardCharsets.UTF_8);
+
+        // referencia: las líneas que separa la JDK ('\n', '\r' o "\r\n"), cada una con DatagramTokenizer
+        // (sus reglas por columna están en DatagramTokenizerTest)
+        ArcMatcher matcher = new ArcMatcher(graphs);
+        BusPairAccumulator acc = new BusPairAccumulator(matcher, new PartialResult(-1, matcher.getArcCount()));
+        DatagramTokenizer tokenizer = new DatagramTokenizer();
+        DatagramRow row = new DatagramRow();
+        for (String line : Files.readAllLines(csv, StandardCharsets.UTF_8)) {
+            byte[] b = line.getBytes(StandardCharsets.UTF_8);
+            if (tokenizer.parse(ByteBuffer.wrap(b), 0, b.length, row)) acc.accept(row);
+        }
+        Map<Long, Double> expected = acc.getResult().getArcStats().toAverages();
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, new StreamingFullFileProcessor(csv.toString(), graphs).process());
+    }
+
+    @Test
+    void testParallelRangesMatchSequentialScan() throws Exception {
+        Path csv = tempDir.resolve("parallel.csv");
+        Files.writeString(csv, SyntheticDatagrams.generate(graphs, 30_000, 5L, "\r\n"), StandardCharsets.UTF_8);
+
+        StreamingFullFileProcessor proc = new StreamingFullFileProcessor(csv.toString(), graphs);
+        Map<Long, Double> expected = proc.process();
+        for (int ranges : new int[]{1, 3, 7}) {
+            // ventanas pequeñas para forzar líneas que cruzan el límite de la ventana
+            assertAveragesEqual(expected, proc.processParallel(ranges, 4096));
+        }
+    }
+
+    @Test
+    void testColumnFileMatchesStreamingScan() throws Exception {
+        Path csv = tempDir.resolve("history.csv");
+        Files.writeString(csv, SyntheticDatagrams.generate(graphs, 20_000, 37L, "\n"), StandardCharsets.UTF_8);
+        StreamingFullFileProcessor proc = new StreamingFullFileProcessor(csv.toString(), graphs);
+        Map<Long, Double> expected = proc.process();
+
+        // varias corridas y bloques; los datagramas ya vienen en orden temporal por bus
+        Path columns = tempDir.resolve("history.mioc");
+        new DatagramColumnWriter().blockRows(1000).runRows(3000).convert(csv, columns);
+        assertAveragesEqual(expected, proc.processColumnFile(columns));
+        assertAveragesEqual(expected, proc.processColumnFile(columns, 3));
+    }
+
+    private static void assertAveragesEqual(Map<Long, Double> expected, Map<Long, Double> actual) {
+        // el orden de suma entre particiones cambia, sólo se toleran diferencias de redondeo
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), 1e-9, "arcId=" + e.getKey());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.icesi.mio.worker;
+
+import com.icesi.mio.model.Arc;
+import com.icesi.mio.model.RouteGraph;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Datagramas sintéticos para los tests que comparan pasadas entre sí: 50 buses
+ * en orden temporal por bus, sin fechas inválidas (el archivo columnar las
+ * ordena primero dentro de cada bus) y con el fin de línea pedido.
+ */
+public final class SyntheticDatagrams {
+
+    private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private SyntheticDatagrams() {
+    }
+
+    /**
+     * Buses recorriendo arcos reales con reportes cada 20-40 s y ~1% de filas dañadas.
+     */
+    public static String generate(Map<Integer, RouteGraph> graphs, int rows, long seed, String eol) {
+        Random rnd = new Random(seed);
+        List<RouteGraph> routes = new ArrayList<>(graphs.values());
+        int buses = 50;
+        int[] line = new int[buses];
+        List<List<Arc>> paths = new ArrayList<>();
+        int[] pos = new int[buses];
+        LocalDateTime[] time = new LocalDateTime[buses];
+        for (int b = 0; b < buses; b++) {
+            RouteGraph rg = routes.get(rnd.nextInt(routes.size()));
+            line[b] = rg.getLine().getLineId();
+            paths.add(rg.getArcsIda().isEmpty() ? rg.getArcsVuelta() : rg.getArcsIda());
+            time[b] = LocalDateTime.of(2019, 5, 27, 5, 0).plusSeconds(rnd.nextInt(3600));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            int b = rnd.nextInt(buses);
+            List<Arc> path = paths.get(b);
+            Arc a = path.get(pos[b] % path.size());
+            pos[b]++;
+            time[b] = time[b].plusSeconds(20 + rnd.nextInt(20));
+            long lat = Math.round((a.getFromStop().getDecimalLat() + (rnd.nextDouble() - 0.5) * 0.0005) * 1e7);
+            long lon = Math.round((a.getFromStop().getDecimalLong() + (rnd.nextDouble() - 0.5) * 0.0005) * 1e7);
+            String lineId = rnd.nextInt(100) == 0 ? "-1" : String.valueOf(line[b]);
+            String latField = rnd.nextInt(100) == 0 ? "" : String.valueOf(lat);
+            sb.append("0,27-MAY-19,500,1000,").append(latField).append(',').append(lon)
+                    .append(",1,").append(lineId).append(",100,0,")
+                    .append(time[b].format(TS_FMT)).append(',').append(1000 + b).append(eol);
+        }
+        return sb.toString();
+    }
+}
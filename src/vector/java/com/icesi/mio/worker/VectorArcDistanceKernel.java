@@ -0,0 +1,69 @@
+package com.icesi.mio.worker;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * ArcDistanceKernel con el Vector API: evalúa SPECIES.length() segmentos por
+ * iteración y lleva por carril el mínimo y su posición (reducción min con
+ * índice); el resto del rango se recorre en escalar. Las operaciones por
+ * carril son las mismas de ArcDistanceKernel.distanceSquared (sin FMA), así
+ * que el resultado es idéntico al del kernel escalar.
+ *
+ * Sólo se compila con -Pvector; ArcDistanceKernel.vector() la carga por reflexión.
+ */
+final class VectorArcDistanceKernel implements ArcDistanceKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    VectorArcDistanceKernel() {
+        // falla aquí (LinkageError) si la JVM no tiene el módulo jdk.incubator.vector
+        SPECIES.length();
+    }
+
+    @Override
+    public int nearest(double[] fromX, double[] fromY, double[] dx, double[] dy, double[] invLen2,
+                       int from, int to, double x, double y) {
+        double bestDist = Double.MAX_VALUE;
+        int best = -1;
+        int upper = from + SPECIES.loopBound(to - from);
+        if (upper > from) {
+            DoubleVector vx = DoubleVector.broadcast(SPECIES, x);
+            DoubleVector vy = DoubleVector.broadcast(SPECIES, y);
+            DoubleVector zero = DoubleVector.zero(SPECIES);
+            DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+            DoubleVector lane = zero.addIndex(1);
+            DoubleVector bestV = DoubleVector.broadcast(SPECIES, Double.MAX_VALUE);
+            DoubleVector bestK = DoubleVector.broadcast(SPECIES, -1.0);
+            for (int k = from; k < upper; k += SPECIES.length()) {
+                DoubleVector px = vx.sub(DoubleVector.fromArray(SPECIES, fromX, k));
+                DoubleVector py = vy.sub(DoubleVector.fromArray(SPECIES, fromY, k));
+                DoubleVector sx = DoubleVector.fromArray(SPECIES, dx, k);
+                DoubleVector sy = DoubleVector.fromArray(SPECIES, dy, k);
+                DoubleVector t = px.mul(sx).add(py.mul(sy)).mul(DoubleVector.fromArray(SPECIES, invLen2, k))
+                        .min(one).max(zero);
+                DoubleVector ex = px.sub(t.mul(sx));
+                DoubleVector ey = py.sub(t.mul(sy));
+                DoubleVector d = ex.mul(ex).add(ey.mul(ey));
+                VectorMask<Double> closer = d.lt(bestV);
+                bestV = bestV.blend(d, closer);
+                bestK = bestK.blend(lane.add(k), closer);
+            }
+            // cada carril guarda su primera posición mínima: entre los carriles empatados, la menor
+            bestDist = bestV.reduceLanes(VectorOperators.MIN);
+            best = (int) bestK.reduceLanes(VectorOperators.MIN, bestV.eq(bestDist));
+        }
+        for (int k = upper; k < to; k++) {
+            double d = ArcDistanceKernel.distanceSquared(fromX, fromY, dx, dy, invLen2, k, x, y);
+            if (d < bestDist) { bestDist = d; best = k; }
+        }
+        return best;
+    }
+
+    @Override
+    public String name() {
+        return "vector" + SPECIES.length();
+    }
+}